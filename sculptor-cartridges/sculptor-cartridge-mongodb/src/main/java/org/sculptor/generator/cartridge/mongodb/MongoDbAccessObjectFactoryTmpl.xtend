@@ -66,10 +66,8 @@ class MongoDbAccessObjectFactoryTmpl {
 			protected void ensureIndex() {
 				com.mongodb.DBCollection dbCollection = dbManager.getDBCollection(aggregateRoot.module.getMapperPackage().aggregateRoot.
 				nameMapper.getInstance().getDBCollectionName());
-				for (fw("accessimpl.mongodb.IndexSpecification") each : aggregateRoot.module.getMapperPackage().aggregateRoot.
-				nameMapper.getInstance().indexes()) {
-					dbCollection.ensureIndex(each.getKeys(), each.getName(), each.isUnique());
-				}
+				fw("accessimpl.mongodb.MongoDbIndexes").ensureIndexes(dbCollection, aggregateRoot.module.getMapperPackage().aggregateRoot.
+				nameMapper.getInstance().indexes());
 			}
 		'''
 	}
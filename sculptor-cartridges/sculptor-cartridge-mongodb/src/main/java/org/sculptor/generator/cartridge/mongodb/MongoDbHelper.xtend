@@ -16,17 +16,118 @@
  */
 package org.sculptor.generator.cartridge.mongodb
 
+import java.util.List
+import java.util.Map
 import javax.inject.Inject
+import org.sculptor.generator.ext.DbHelper
+import org.sculptor.generator.ext.Helper
 import org.sculptor.generator.util.HelperBase
+import sculptormetamodel.Attribute
+import sculptormetamodel.DomainObject
 import sculptormetamodel.Module
 
 class MongoDbHelper {
 
 	@Inject extension HelperBase helperBase
 	@Inject extension MongoDbProperties properties
+	@Inject extension DbHelper dbHelper
+	@Inject extension Helper helper
 
 	def getMapperPackage(Module module) {
 		concatPackage(getBasePackage(module), getMapperPackage())
 	}
 
+	/**
+	 * Indexes of the domain object defined via hints "index.&lt;name&gt;=&lt;path&gt; -&lt;path&gt; ... [unique] [sparse] [ttl=&lt;seconds&gt;]"
+	 * (e.g. hint="index.byCity=address.city -name sparse"). Paths with a leading '-' are indexed in descending order.
+	 * Returns the tokens of the definition by index name.
+	 */
+	def Map<String, List<String>> getIndexDeclarations(DomainObject domainObject) {
+		val Map<String, List<String>> indexes = newLinkedHashMap
+		if (domainObject.hint !== null) {
+			for (part : domainObject.hint.split("[,;]")) {
+				val indexOfEq = part.indexOf("=")
+				if (indexOfEq != -1 && part.substring(0, indexOfEq).trim.startsWith("index.")) {
+					val index = part.substring(0, indexOfEq).trim.substring("index.".length)
+					indexes.put(index, part.substring(indexOfEq + 1).trim.split("\\s+").filter[!empty].toList)
+				}
+			}
+		}
+		indexes
+	}
+
+	def String getIndexKeys(DomainObject domainObject, List<String> tokens) {
+		val paths = getIndexPaths(tokens)
+		if (paths.empty)
+			error("Index without keys in domain object '" + domainObject.name + "'")
+		paths.map[p | '"' + domainObject.getDocumentFieldName(if (p.startsWith("-")) p.substring(1) else p) + '", ' +
+			(if (p.startsWith("-")) "-1" else "1")].join("new com.mongodb.BasicDBObject(", ").append(", ")", [it])
+	}
+
+	private def List<String> getIndexPaths(List<String> tokens) {
+		tokens.filter[t | t != "unique" && t != "sparse" && !t.startsWith("ttl=")].toList
+	}
+
+	/**
+	 * MongoDB expires documents only via single field indexes of a date, so TTL indexes must have a single temporal
+	 * attribute as key.
+	 */
+	def String getIndexTtl(DomainObject domainObject, List<String> tokens) {
+		val ttl = tokens.findFirst[startsWith("ttl=")]
+		if (ttl === null) {
+			return "null"
+		}
+		if (!ttl.substring(4).matches("[0-9]+"))
+			error("Invalid ttl '" + ttl.substring(4) + "' of index in domain object '" + domainObject.name + "'")
+		val paths = getIndexPaths(tokens)
+		val attribute = if (paths.size == 1) domainObject.getIndexedAttribute(paths.head.replaceFirst("^-", ""))
+		if (attribute === null || !attribute.isTemporal())
+			error("TTL index in domain object '" + domainObject.name + "' must have a single date attribute as key")
+		ttl.substring(4)
+	}
+
+	def String getIndexTtl(Attribute attribute) {
+		if (!attribute.hasHint("ttl")) {
+			return "null"
+		}
+		val ttl = attribute.getHint("ttl")
+		if (ttl === null || !ttl.matches("[0-9]+"))
+			error("Invalid ttl '" + ttl + "' of attribute '" + attribute.name + "'")
+		if (!attribute.isTemporal())
+			error("TTL index of attribute '" + attribute.name + "' requires a date attribute")
+		ttl
+	}
+
+	/**
+	 * Attribute for the given property path (e.g. "address.since") of the domain object, or null if the path doesn't
+	 * end with an attribute.
+	 */
+	private def Attribute getIndexedAttribute(DomainObject domainObject, String propertyPath) {
+		val name = propertyPath.split("\\.").head
+		if (!propertyPath.contains("."))
+			return domainObject.getAllAttributes().findFirst[e | e.name == name]
+		val ref = domainObject.getAllReferences().findFirst[e | e.name == name]
+		if (ref === null)
+			return null
+		ref.to.getIndexedAttribute(propertyPath.substring(propertyPath.indexOf(".") + 1))
+	}
+
+	/**
+	 * Field name in the documents for the given property path (e.g. "address.city") of the domain object.
+	 */
+	def String getDocumentFieldName(DomainObject domainObject, String propertyPath) {
+		val name = propertyPath.split("\\.").head
+		val rest = if (propertyPath.contains(".")) propertyPath.substring(propertyPath.indexOf(".") + 1) else null
+		val att = domainObject.getAllAttributes().findFirst[e | e.name == name]
+		val ref = domainObject.getAllReferences().findFirst[e | e.name == name]
+		if (att !== null && rest === null)
+			return att.getDatabaseName()
+		if (ref !== null && rest === null)
+			return ref.getDatabaseName()
+		if (ref !== null && !ref.isUnownedReference())
+			return ref.getDatabaseName() + "." + ref.to.getDocumentFieldName(rest)
+		error("Property '" + propertyPath + "' of index isn't defined in domain object '" + domainObject.name + "'")
+		propertyPath
+	}
+
 }
@@ -31,6 +31,7 @@ import sculptormetamodel.Reference
 class MongoDbMapperTmpl {
 
 	@Inject extension MongoDbHelper mongoDbHelper
+	@Inject extension MongoDbProperties mongoDbProperties
 	@Inject extension DbHelper dbHelper
 	@Inject extension HelperBase helperBase
 	@Inject extension Helper helper
@@ -69,7 +70,8 @@ def String mongoDbMapperBase(DomainObject it) {
 
 /// Sculptor code formatter imports ///
 
-	public IF it.hasHint("gapMapper")abstract ENDIFclass nameMapperIF it.hasHint("gapMapper")BaseENDIF implements fw("accessimpl.mongodb.DataMapper")<getRootExtends(it).getDomainPackage().getRootExtends(it).name, com.mongodb.DBObject> {
+	public IF it.hasHint("gapMapper")abstract ENDIFclass nameMapperIF it.hasHint("gapMapper")BaseENDIF implements fw("accessimpl.mongodb.DataMapper")<getRootExtends(it).getDomainPackage().getRootExtends(it).name, com.mongodb.DBObject>IF isDirectMapper() && !(it instanceof BasicType),
+		fw("accessimpl.mongodb.IdAccessor")<getRootExtends(it).getDomainPackage().getRootExtends(it).name>ENDIF {
 
 	IF ^extends !== null
 		discriminator(it)
@@ -79,6 +81,10 @@ def String mongoDbMapperBase(DomainObject it) {
 			getInstance(it)
 		ENDIF
 		
+		IF isDirectMapper() && !(it instanceof BasicType)
+			fieldSetters(it)
+		ENDIF
+		
 		constructorBase(it)
 		
 		canMapToData(it)
@@ -95,6 +101,10 @@ def String mongoDbMapperBase(DomainObject it) {
 		
 		indexes(it)
 		
+		IF isDirectMapper() && !(it instanceof BasicType)
+			idAccessor(it)
+		ENDIF
+		
 	}
 	'''
 	)
@@ -128,6 +138,46 @@ def String getInstance(DomainObject it) {
 	'''
 }
 
+def String fieldSetters(DomainObject it) {
+	val root = it.getRootExtends()
+	val uuid = it.getAllAttributes().findFirst(e|e.isUuid())
+	'''
+		private static final fw("accessimpl.mongodb.FieldSetter")<root.getDomainPackage().root.name> ID_SETTER =
+			fw("accessimpl.mongodb.FieldSetter").of(root.getDomainPackage().root.name.class, "id");
+		IF it.hasVersionAttribute()
+			private static final fw("accessimpl.mongodb.FieldSetter")<root.getDomainPackage().root.name> VERSION_SETTER =
+				fw("accessimpl.mongodb.FieldSetter").of(root.getDomainPackage().root.name.class, "version");
+		ENDIF
+		IF uuid !== null && !(it.^abstract || it.hasSubClass())
+			private static final fw("accessimpl.mongodb.FieldSetter")<it.getDomainPackage().name> UUID_SETTER =
+				fw("accessimpl.mongodb.FieldSetter").of(it.getDomainPackage().name.class, "uuid.name");
+		ENDIF
+	'''
+}
+
+def String idAccessor(DomainObject it) {
+	val root = it.getRootExtends()
+	'''
+	@Override
+	public void internalSetId(root.getDomainPackage().root.name domainObject, String id) {
+		ID_SETTER.set(domainObject, id);
+	}
+
+	@Override
+	public void internalSetVersion(root.getDomainPackage().root.name domainObject, Long version) {
+		IF it.hasVersionAttribute()
+			VERSION_SETTER.set(domainObject, version);
+		ELSE
+			throw new UnsupportedOperationException("name has no version");
+		ENDIF
+	}
+	'''
+}
+
+def private boolean hasVersionAttribute(DomainObject it) {
+	it.getRootExtends().getAllAttributes().exists[e | e.name == "version"]
+}
+
 def String discriminator(DomainObject it) {
 	'''
 		public static final String it.getRootExtends().inheritance.discriminatorColumnName() = IF discriminatorColumnValue === nullit.getDomainPackage().name.class.getSimpleName()ELSE"discriminatorColumnValue"ENDIF;
@@ -255,13 +305,21 @@ def String toDomain(DomainObject it) {
 			if (from.containsField("_id")) {
 				org.bson.types.ObjectId objectId = (org.bson.types.ObjectId) from.get("_id");
 				String idString = objectId.toStringMongod();
-				fw("accessimpl.mongodb.IdReflectionUtil").internalSetId(result, idString);
+				IF isDirectMapper()
+					ID_SETTER.set(result, idString);
+				ELSE
+					fw("accessimpl.mongodb.IdReflectionUtil").internalSetId(result, idString);
+				ENDIF
 			}
 		ENDIF
 		val uuid = it.getAllAttributes().findFirst(e|e.isUuid())
 		IF uuid !== null
 			if (from.containsField("uuid.getDatabaseName()")) {
-				fw("accessimpl.mongodb.IdReflectionUtil").internalSetUuid(result, (String) from.get("uuid.getDatabaseName()"));
+				IF isDirectMapper() && !(it instanceof BasicType)
+					UUID_SETTER.set(result, (String) from.get("uuid.getDatabaseName()"));
+				ELSE
+					fw("accessimpl.mongodb.IdReflectionUtil").internalSetUuid(result, (String) from.get("uuid.getDatabaseName()"));
+				ENDIF
 			}
 		ENDIF
 		FOR att : it.getAllAttributes().filter[e | !(e.isUuid() || e.name == "id" || constructorParameters.contains(e))]
@@ -386,7 +444,11 @@ def String toData(DomainObject it) {
 		ENDIF
 		fromNullCheck(it)
 
-		com.mongodb.DBObject result = new com.mongodb.BasicDBObject();
+		IF isDirectMapper()
+			com.mongodb.DBObject result = new com.mongodb.BasicDBObject(it.getDataFieldCount());
+		ELSE
+			com.mongodb.DBObject result = new com.mongodb.BasicDBObject();
+		ENDIF
 		IF !(it instanceof BasicType)
 			if (from.getId() != null) {
 				org.bson.types.ObjectId objectId = org.bson.types.ObjectId.massageToObjectId(from.getId());
@@ -419,7 +481,7 @@ def String toData(DomainObject it) {
 		ENDFOR
 
 		FOR ref : allNonEnumNonTransientReferences .filter(e | !e.isBasicTypeReference() && e.many && e.bothEndsInSameAggregateRoot())
-			java.util.List<com.mongodb.DBObject> ref.nameData = new java.util.ArrayList<com.mongodb.DBObject>();
+			java.util.List<com.mongodb.DBObject> ref.nameData = new java.util.ArrayList<com.mongodb.DBObject>(IF isDirectMapper()from.getref.name.toFirstUpper()().size()ENDIF);
 			for (ref.getTypeName() each : from.getref.name.toFirstUpper()()) {
 				ref.nameData.add(ref.to.module.getMapperPackage().ref.to.nameMapper.getInstance().toData(each));
 			}
@@ -431,7 +493,7 @@ def String toData(DomainObject it) {
 		ENDFOR
 
 		FOR ref : allNonEnumNonTransientReferences .filter(e | e.many && e.isUnownedReference())
-			java.util.List<getJavaType("IDTYPE")> ref.nameData = new java.util.ArrayList<getJavaType("IDTYPE")>();
+			java.util.List<getJavaType("IDTYPE")> ref.nameData = new java.util.ArrayList<getJavaType("IDTYPE")>(IF isDirectMapper()from.getref.name.toFirstUpper()Ids().size()ENDIF);
 			for (getJavaType("IDTYPE") each : from.getref.name.toFirstUpper()Ids()) {
 				ref.nameData.add(each);
 			}
@@ -442,6 +504,16 @@ def String toData(DomainObject it) {
 	'''
 }
 
+/**
+ * Returns the (maximum) number of fields of the data object created by toData().
+ */
+def private int getDataFieldCount(DomainObject it) {
+	1 + (if (it.^extends !== null) 1 else 0)
+		+ it.getAllAttributes().filter[e | !(e.name == "id" || e.transient)].size
+		+ it.getAllEnumReferences().filter[e | !e.transient].size
+		+ it.getAllReferences().filter[e | !(e.isEnumReference() || e.transient)].size
+}
+
 def String indexes(DomainObject it) {
 	'''
 	@Override
@@ -454,7 +526,14 @@ def String indexes(DomainObject it) {
 			indexes.add(new fw("accessimpl.mongodb.IndexSpecification")("naturalKey", naturalKey, true));
 		ENDIF
 		FOR att : it.getAllAttributes().filter(e | e.index)
-			indexes.add(new fw("accessimpl.mongodb.IndexSpecification")("att.name", new com.mongodb.BasicDBObject("att.name", 1), false));
+			IF att.hasHint("sparse") || att.hasHint("ttl")
+				indexes.add(new fw("accessimpl.mongodb.IndexSpecification")("att.name", new com.mongodb.BasicDBObject("att.name", 1), false, att.hasHint("sparse"), att.getIndexTtl()));
+			ELSE
+				indexes.add(new fw("accessimpl.mongodb.IndexSpecification")("att.name", new com.mongodb.BasicDBObject("att.name", 1), false));
+			ENDIF
+		ENDFOR
+		FOR index : it.getIndexDeclarations().entrySet
+			indexes.add(new fw("accessimpl.mongodb.IndexSpecification")("index.key", it.getIndexKeys(index.value), index.value.contains("unique"), index.value.contains("sparse"), it.getIndexTtl(index.value)));
 		ENDFOR
 		return indexes;
 	ELSE
@@ -39,6 +39,7 @@ class MongoDbProperties {
 				"org.sculptor.framework.accessimpl.mongodb.MongoDbAccessBase")
 		defaultConfiguration.setString("framework.accessimpl.AccessBaseWithException",
 				"org.sculptor.framework.accessimpl.mongodb.MongoDbAccessBaseWithException")
+		defaultConfiguration.setBoolean("mongodb.mapper.direct", false)
 	}
 
 	def mongoDb() {
@@ -49,4 +50,12 @@ class MongoDbProperties {
 		getProperty("package.mapper")
 	}
 
+	/**
+	 * Generate DataMappers which set the id, uuid and version of the domain objects without reflective lookups
+	 * and create presized data objects.
+	 */
+	def boolean isDirectMapper() {
+		getBooleanProperty("mongodb.mapper.direct")
+	}
+
 }
@@ -75,4 +75,53 @@ class MongoDbMapperTemplatesTest extends XtextTest {
         ])
 	}
 
+	@Test
+	def void testDirectMapper() {
+		System.setProperty("mongodb.mapper.direct", "true")
+		try {
+			val app = generatorModelTestFixtures.app
+			val mediaModule = app.modules.namedElement("media")
+			val book = mediaModule.domainObjects.namedElement("Book")
+
+			val fieldSetters = mongoDbMapperTmpl.fieldSetters(book)
+			fieldSetters.assertContainsConsecutiveFragments(#[
+				"private static final org.sculptor.framework.accessimpl.mongodb.FieldSetter<org.sculptor.example.library.media.domain.Media> ID_SETTER =",
+				"org.sculptor.framework.accessimpl.mongodb.FieldSetter.of(org.sculptor.example.library.media.domain.Media.class, \"id\");"
+			])
+
+			val toDomain = mongoDbMapperTmpl.toDomain(book)
+			toDomain.assertContains("ID_SETTER.set(result, idString);")
+			toDomain.assertNotContains("IdReflectionUtil")
+
+			val toData = mongoDbMapperTmpl.toData(book)
+			toData.assertContains("com.mongodb.DBObject result = new com.mongodb.BasicDBObject(")
+			toData.assertContains("new java.util.ArrayList<com.mongodb.DBObject>(from.getEngagements().size());")
+		} finally {
+			System.clearProperty("mongodb.mapper.direct")
+		}
+	}
+
+	@Test
+	def void testReflectionMapperByDefault() {
+		val app = generatorModelTestFixtures.app
+		val mediaModule = app.modules.namedElement("media")
+		val book = mediaModule.domainObjects.namedElement("Book")
+
+		val toDomain = mongoDbMapperTmpl.toDomain(book)
+		toDomain.assertContains("org.sculptor.framework.accessimpl.mongodb.IdReflectionUtil.internalSetId(result, idString);")
+		toDomain.assertNotContains("ID_SETTER")
+	}
+
+	@Test
+	def void testIndexes() {
+		val app = generatorModelTestFixtures.app
+		val mediaModule = app.modules.namedElement("media")
+		val physicalMedia = mediaModule.domainObjects.namedElement("PhysicalMedia")
+
+		val code = mongoDbMapperTmpl.indexes(physicalMedia)
+		code.assertContains('indexes.add(new org.sculptor.framework.accessimpl.mongodb.IndexSpecification("byLocation", new com.mongodb.BasicDBObject("location", 1).append("status", -1), false, true, null));')
+		code.assertContains('indexes.add(new org.sculptor.framework.accessimpl.mongodb.IndexSpecification("byLibrary", new com.mongodb.BasicDBObject("LIB_REF", 1), false, false, null));')
+		code.assertContains('indexes.add(new org.sculptor.framework.accessimpl.mongodb.IndexSpecification("byExpiry", new com.mongodb.BasicDBObject("expires", 1), false, false, 86400));')
+	}
+
 }
\ No newline at end of file
@@ -0,0 +1,39 @@
+package org.sculptor.framework.accessapi;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Delete Access Objects may implement this interface
+ * to delete rows with statements, without loading
+ * the entities.
+ *
+ */
+public interface BulkDelete {
+
+    /**
+     * Set ids of the entities to delete, implies bulk mode
+     */
+    void setIds(Collection<?> ids);
+
+    /**
+     * Set conditions of the entities to delete, implies bulk mode
+     */
+    void setCondition(List<ConditionalCriteria> condition);
+
+    /**
+     * Delete the given entities with statements as well
+     */
+    void setBulk(boolean bulk);
+
+    /**
+     * Set maximum number of ids per delete statement
+     */
+    void setChunkSize(int chunkSize);
+
+    /**
+     * Get number of rows deleted in bulk mode
+     */
+    int getDeletedCount();
+
+}
@@ -0,0 +1,21 @@
+package org.sculptor.framework.accessapi;
+
+/**
+ * Access Objects that return an result 
+ * may implement this interface to load the result
+ * with a named entity graph.
+ *
+ */
+public interface FetchGraph {
+
+    /**
+     * Set name of the entity graph used as load graph
+     */
+    void setFetchGraph(String fetchGraph);
+
+    /**
+     * Get name of the entity graph used as load graph
+     */
+    String getFetchGraph();
+
+}
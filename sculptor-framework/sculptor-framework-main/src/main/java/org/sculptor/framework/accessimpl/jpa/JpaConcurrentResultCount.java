@@ -0,0 +1,280 @@
+/*
+ * Copyright 2014 The Sculptor Project Team, including the original
+ * author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sculptor.framework.accessimpl.jpa;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.FlushModeType;
+import javax.persistence.PersistenceException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.orm.jpa.EntityManagerFactoryUtils;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.DefaultTransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Counts the rows of the result of a query access object concurrently, e.g.
+ * while the first page of the result is fetched by the calling thread.
+ * <p>
+ * The count query is executed by a thread of the executor set via
+ * {@link #setExecutor(Executor)}, usually owned by a
+ * {@link JpaConcurrentResultCountExecutor} bean, with its own
+ * {@link EntityManager} (and therefore its own database connection). With
+ * Spring ORM on the classpath it runs within a new read-only transaction of a
+ * {@link JpaTransactionManager}, i.e. with Hibernate the connection is marked
+ * read-only. This is done outside of a transaction of the caller and within a
+ * read-only Spring transaction of the caller (e.g. the find methods of the
+ * generated services). Within a read-write transaction of the caller the rows
+ * are counted by the calling thread with the callers entity manager (so the
+ * count includes the changes of the transaction) and only if the count is
+ * requested via {@link #getResultCount(Future)}. The same applies if no
+ * executor is set.
+ * <p>
+ * The caller waits at most <code>sculptor.concurrentResultCount.timeout</code>
+ * milliseconds (system property, 30000 by default, see also
+ * {@link #setTimeout(long)}) for a concurrent count. Afterwards the count is
+ * cancelled and executed by the calling thread instead. A count which isn't
+ * needed anymore can be cancelled via {@link Future#cancel(boolean)}, it isn't
+ * executed if it hasn't been started yet.
+ * <p>
+ * Counts rejected by the executor are executed by the calling thread.
+ */
+public final class JpaConcurrentResultCount {
+
+	public static final String THREADS_PROPERTY = "sculptor.concurrentResultCount.threads";
+	public static final String TIMEOUT_PROPERTY = "sculptor.concurrentResultCount.timeout";
+
+	private static final Logger log = LoggerFactory.getLogger(JpaConcurrentResultCount.class);
+
+	private static final boolean SPRING_ORM_PRESENT = isPresent("org.springframework.orm.jpa.JpaTransactionManager");
+
+	private static volatile Executor executor;
+	private static volatile long timeout = Long.getLong(TIMEOUT_PROPERTY, 30000L);
+
+	private JpaConcurrentResultCount() {
+	}
+
+	public static void setExecutor(Executor executor) {
+		JpaConcurrentResultCount.executor = executor;
+	}
+
+	/**
+	 * Removes the given executor, if it's still the current one. Afterwards
+	 * the rows are counted by the calling thread.
+	 */
+	static synchronized void resetExecutor(Executor expected) {
+		if (executor == expected) {
+			executor = null;
+		}
+	}
+
+	/**
+	 * Maximum time in milliseconds to wait for a concurrent count before the
+	 * rows are counted by the calling thread.
+	 */
+	public static void setTimeout(long timeout) {
+		JpaConcurrentResultCount.timeout = timeout;
+	}
+
+	/**
+	 * Starts counting the rows of the result of the access objects created by
+	 * the given factory.
+	 *
+	 * @param countAccessObjectFactory
+	 *            creates access objects (a {@link JpaQueryAccessBase})
+	 *            initialized with the same query and parameters as the one
+	 *            used for fetching the result, each access object is used
+	 *            only once
+	 * @return future providing the number of rows, to be passed to
+	 *         {@link #getResultCount(Future)}
+	 */
+	public static Future<Long> execute(Supplier<?> countAccessObjectFactory) {
+		final JpaQueryAccessBase<?, ?> accessObject = toQueryAccess(countAccessObjectFactory.get());
+		EntityManager entityManager = accessObject.getEntityManager();
+		Executor currentExecutor = executor;
+		if (currentExecutor == null || !isConcurrentCountAllowed(entityManager)) {
+			return new ResultCount(countAccessObjectFactory, () -> count(accessObject), false);
+		}
+
+		// Retrieve the factory within the callers thread - the entity manager
+		// may be bound to it
+		final EntityManagerFactory entityManagerFactory = entityManager.getEntityManagerFactory();
+		ResultCount resultCount = new ResultCount(countAccessObjectFactory, () -> countConcurrently(accessObject,
+				entityManagerFactory), true);
+		try {
+			currentExecutor.execute(resultCount);
+		} catch (RejectedExecutionException e) {
+			log.debug("Concurrent result count rejected, counting on demand: {}", e.getMessage());
+			return new ResultCount(countAccessObjectFactory, () -> count(accessObject), false);
+		}
+		return resultCount;
+	}
+
+	/**
+	 * Waits for the given result count and returns the number of rows.
+	 */
+	public static Long getResultCount(Future<Long> resultCount) {
+		ResultCount count = (ResultCount) resultCount;
+		try {
+			if (!count.isConcurrent()) {
+				count.run();
+				return count.get();
+			}
+			try {
+				return count.get(timeout, TimeUnit.MILLISECONDS);
+			} catch (TimeoutException e) {
+				count.cancel(false);
+				log.warn("Concurrent result count didn't finish within {} ms, counting synchronously", timeout);
+				return count(toQueryAccess(count.getCountAccessObjectFactory().get()));
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new PersistenceException("Interrupted while waiting for result count", e);
+		} catch (CancellationException e) {
+			throw new PersistenceException("Result count was cancelled", e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof RuntimeException) {
+				throw (RuntimeException) e.getCause();
+			}
+			throw new PersistenceException("Result count failed", e.getCause());
+		}
+	}
+
+	/**
+	 * A concurrent count doesn't see the changes of the callers transaction,
+	 * therefore it's only allowed outside of a transaction or within a
+	 * read-only transaction.
+	 */
+	private static boolean isConcurrentCountAllowed(EntityManager entityManager) {
+		if (!entityManager.isJoinedToTransaction()) {
+			return true;
+		}
+		return SPRING_ORM_PRESENT && ReadOnlyTransaction.isCurrentTransactionReadOnly();
+	}
+
+	private static JpaQueryAccessBase<?, ?> toQueryAccess(Object countAccessObject) {
+		if (!(countAccessObject instanceof JpaQueryAccessBase)) {
+			throw new IllegalArgumentException("Concurrent result count not supported by access object "
+					+ countAccessObject.getClass().getName());
+		}
+		return (JpaQueryAccessBase<?, ?>) countAccessObject;
+	}
+
+	private static Long count(JpaQueryAccessBase<?, ?> accessObject) {
+		accessObject.executeResultCountOnly();
+		return accessObject.getResultCount();
+	}
+
+	private static Long countConcurrently(JpaQueryAccessBase<?, ?> accessObject,
+			EntityManagerFactory entityManagerFactory) {
+		if (SPRING_ORM_PRESENT) {
+			return ReadOnlyTransaction.count(accessObject, entityManagerFactory);
+		}
+		return countWithOwnEntityManager(accessObject, entityManagerFactory);
+	}
+
+	private static Long countWithOwnEntityManager(JpaQueryAccessBase<?, ?> accessObject,
+			EntityManagerFactory entityManagerFactory) {
+		EntityManager entityManager = entityManagerFactory.createEntityManager();
+		try {
+			entityManager.setFlushMode(FlushModeType.COMMIT);
+			accessObject.setEntityManager(entityManager);
+			return count(accessObject);
+		} finally {
+			entityManager.close();
+		}
+	}
+
+	private static boolean isPresent(String className) {
+		try {
+			Class.forName(className, false, JpaConcurrentResultCount.class.getClassLoader());
+			return true;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Counts within a new read-only transaction of its own, separated from the
+	 * outer class to load the Spring ORM classes only if they are available.
+	 * Entity managers which don't support resource-local transactions (JTA)
+	 * count without a transaction.
+	 */
+	private static final class ReadOnlyTransaction {
+
+		static boolean isCurrentTransactionReadOnly() {
+			return TransactionSynchronizationManager.isActualTransactionActive()
+					&& TransactionSynchronizationManager.isCurrentTransactionReadOnly();
+		}
+
+		static Long count(final JpaQueryAccessBase<?, ?> accessObject,
+				final EntityManagerFactory entityManagerFactory) {
+			DefaultTransactionDefinition definition = new DefaultTransactionDefinition(
+					TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+			definition.setReadOnly(true);
+			TransactionTemplate transactionTemplate = new TransactionTemplate(new JpaTransactionManager(
+					entityManagerFactory), definition);
+			try {
+				return transactionTemplate.execute(status -> {
+					accessObject.setEntityManager(EntityManagerFactoryUtils
+							.getTransactionalEntityManager(entityManagerFactory));
+					return JpaConcurrentResultCount.count(accessObject);
+				});
+			} catch (CannotCreateTransactionException e) {
+				log.debug("No read-only transaction for result count: {}", e.getMessage());
+				return countWithOwnEntityManager(accessObject, entityManagerFactory);
+			}
+		}
+	}
+
+	private static final class ResultCount extends FutureTask<Long> {
+
+		private final Supplier<?> countAccessObjectFactory;
+		private final boolean concurrent;
+
+		ResultCount(Supplier<?> countAccessObjectFactory, Callable<Long> count, boolean concurrent) {
+			super(count);
+			this.countAccessObjectFactory = countAccessObjectFactory;
+			this.concurrent = concurrent;
+		}
+
+		Supplier<?> getCountAccessObjectFactory() {
+			return countAccessObjectFactory;
+		}
+
+		boolean isConcurrent() {
+			return concurrent;
+		}
+	}
+
+}
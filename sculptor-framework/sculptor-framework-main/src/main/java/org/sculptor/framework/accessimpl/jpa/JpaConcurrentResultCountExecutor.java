@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014 The Sculptor Project Team, including the original
+ * author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sculptor.framework.accessimpl.jpa;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+
+/**
+ * Bean owning the threads of {@link JpaConcurrentResultCount}. The threads are
+ * started when the bean is initialized and stopped when the application
+ * context is closed. Without this bean (or another executor set via
+ * {@link JpaConcurrentResultCount#setExecutor(java.util.concurrent.Executor)})
+ * the rows are counted by the calling thread.
+ */
+public class JpaConcurrentResultCountExecutor implements InitializingBean, DisposableBean {
+
+	private int threads = Integer.getInteger(JpaConcurrentResultCount.THREADS_PROPERTY, Runtime.getRuntime()
+			.availableProcessors());
+	private ExecutorService executor;
+
+	@Override
+	public void afterPropertiesSet() {
+		final AtomicInteger threadNumber = new AtomicInteger(1);
+		executor = Executors.newFixedThreadPool(threads, runnable -> {
+			Thread thread = new Thread(runnable, "sculptor-result-count-" + threadNumber.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+		JpaConcurrentResultCount.setExecutor(executor);
+	}
+
+	@Override
+	public void destroy() {
+		JpaConcurrentResultCount.resetExecutor(executor);
+		executor.shutdownNow();
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	/**
+	 * Maximum number of concurrently executed count queries, given by the
+	 * system property <code>sculptor.concurrentResultCount.threads</code> or
+	 * the number of available processors by default.
+	 */
+	public void setThreads(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Maximum time in milliseconds to wait for a concurrent count, see
+	 * {@link JpaConcurrentResultCount#setTimeout(long)}.
+	 */
+	public void setTimeout(long timeout) {
+		JpaConcurrentResultCount.setTimeout(timeout);
+	}
+
+}
@@ -17,24 +17,69 @@
 
 package org.sculptor.framework.accessimpl.jpa;
 
+import java.lang.reflect.AnnotatedElement;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.List;
 
+import javax.persistence.CascadeType;
+import javax.persistence.ElementCollection;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.ManyToMany;
+import javax.persistence.OneToMany;
+import javax.persistence.OneToOne;
 import javax.persistence.PersistenceException;
+import javax.persistence.PersistenceUnitUtil;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
 
-import org.sculptor.framework.accessapi.DeleteAccess;
+import org.sculptor.framework.accessapi.ConditionalCriteria;
+import org.sculptor.framework.accessapi.BulkDeleteAccess;
+import org.sculptor.framework.domain.LeafProperty;
+import org.sculptor.framework.persistence.JpaFlushStrategy;
 
 /**
  * <p>
  * Removes an entity.
  * </p>
  * <p>
+ * By default each entity is removed via the {@link EntityManager}, i.e.
+ * detached entities are merged (loaded) first and cascades are applied by the
+ * JPA provider. In bulk mode (see {@link #setBulk(boolean)}) the entities,
+ * the ids given via {@link #setIds(Collection)} or the entities matching the
+ * conditions given via {@link #setCondition(List)} are deleted with
+ * <code>DELETE ... WHERE id IN (...)</code> statements, in chunks of
+ * {@link #setChunkSize(int)} ids, without loading the entities. Bulk deletes
+ * bypass the persistence context, therefore:
+ * <ul>
+ * <li>entity types with associations removed by cascade (not cascaded by the
+ * database), element collections or many-to-many associations are refused
+ * with a {@link PersistenceException}</li>
+ * <li>the second-level cache of the entity type and the query cache are
+ * evicted</li>
+ * <li>only the given entities are detached from the persistence context</li>
+ * </ul>
+ * </p>
+ * <p>
  * Command design pattern.
  * </p>
  */
-public class JpaDeleteAccessImpl<T> extends JpaAccessBase<T> implements DeleteAccess<T> {
+public class JpaDeleteAccessImpl<T> extends JpaAccessBase<T> implements BulkDeleteAccess<T> {
+
+	public static final int DEFAULT_CHUNK_SIZE = 500;
+
+	private static final boolean HIBERNATE_PRESENT = isPresent("org.hibernate.SessionFactory");
 
 	private T entity;
 	private Collection<T> entities;
+	private Collection<?> ids;
+	private List<ConditionalCriteria> conditionalCriterias;
+	private boolean bulk;
+	private int chunkSize = DEFAULT_CHUNK_SIZE;
+	private int deletedCount;
 
 	public JpaDeleteAccessImpl(Class<T> persistentClass) {
 		setPersistentClass(persistentClass);
@@ -56,8 +101,72 @@ public class JpaDeleteAccessImpl<T> extends JpaAccessBase<T> implements DeleteAc
 		this.entities = entities;
 	}
 
+	public Collection<?> getIds() {
+		return ids;
+	}
+
+	/**
+	 * Ids of the entities to delete, implies bulk mode.
+	 */
+	@Override
+	public void setIds(Collection<?> ids) {
+		this.ids = ids;
+		this.bulk = true;
+	}
+
+	public List<ConditionalCriteria> getCondition() {
+		return conditionalCriterias;
+	}
+
+	/**
+	 * Conditions of the entities to delete, implies bulk mode. Only the ids
+	 * of the matching entities are selected.
+	 */
+	@Override
+	public void setCondition(List<ConditionalCriteria> conditionalCriterias) {
+		this.conditionalCriterias = conditionalCriterias;
+		this.bulk = true;
+	}
+
+	public boolean isBulk() {
+		return bulk;
+	}
+
+	@Override
+	public void setBulk(boolean bulk) {
+		this.bulk = bulk;
+	}
+
+	public int getChunkSize() {
+		return chunkSize;
+	}
+
+	/**
+	 * Maximum number of ids per DELETE statement (the number of IN
+	 * parameters is limited by some databases, e.g. 1000 for Oracle).
+	 */
+	@Override
+	public void setChunkSize(int chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("Chunk size must be positive: " + chunkSize);
+		}
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * Number of rows deleted in bulk mode.
+	 */
+	@Override
+	public int getDeletedCount() {
+		return deletedCount;
+	}
+
 	@Override
 	public void performExecute() throws PersistenceException {
+		if (bulk) {
+			performBulkDelete();
+			return;
+		}
 		if (entity != null) {
 			performRemove(entity);
 		}
@@ -75,6 +184,151 @@ public class JpaDeleteAccessImpl<T> extends JpaAccessBase<T> implements DeleteAc
 			T merged = getEntityManager().merge(obj);
 			getEntityManager().remove(merged);
 		}
+		JpaFlushStrategy.modified(getEntityManager(), obj.getClass());
+	}
+
+	protected void performBulkDelete() {
+		EntityType<? extends T> entityType = getEntityManager().getMetamodel().entity(getPersistentClass());
+		checkBulkDeleteSupported(entityType);
+
+		List<Object> idsToDelete = new ArrayList<Object>();
+		PersistenceUnitUtil persistenceUnitUtil = getEntityManager().getEntityManagerFactory().getPersistenceUnitUtil();
+		if (entity != null) {
+			idsToDelete.add(persistenceUnitUtil.getIdentifier(entity));
+		}
+		if (entities != null) {
+			for (T e : entities) {
+				idsToDelete.add(persistenceUnitUtil.getIdentifier(e));
+			}
+		}
+		if (ids != null) {
+			idsToDelete.addAll(ids);
+		}
+		String idName = getIdAttribute(entityType).getName();
+		if (conditionalCriterias != null) {
+			idsToDelete.addAll(findIds(idName));
+		}
+
+		// pending changes must be written before the rows are deleted
+		JpaFlushStrategy.flush(getEntityManager());
+		if (entity != null) {
+			detach(entity);
+		}
+		if (entities != null) {
+			for (T e : entities) {
+				detach(e);
+			}
+		}
+
+		String deleteStatement = "delete from " + entityType.getName() + " e where e." + idName + " in (:ids)";
+		deletedCount = 0;
+		for (int i = 0; i < idsToDelete.size(); i += chunkSize) {
+			List<Object> chunk = idsToDelete.subList(i, Math.min(i + chunkSize, idsToDelete.size()));
+			deletedCount += getEntityManager().createQuery(deleteStatement).setParameter("ids", chunk).executeUpdate();
+		}
+		if (!idsToDelete.isEmpty()) {
+			evictCaches();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private List<Object> findIds(String idName) {
+		JpaFindByConditionAccessImplGeneric<T, Object> findIds = new JpaFindByConditionAccessImplGeneric<T, Object>(
+				(Class<T>) getPersistentClass(), Object.class);
+		findIds.setEntityManager(getEntityManager());
+		findIds.setCondition(new ArrayList<ConditionalCriteria>(conditionalCriterias));
+		findIds.addCondition(ConditionalCriteria.select(new LeafProperty<T>(idName, (Class<T>) getPersistentClass())));
+		findIds.execute();
+		return findIds.getResult();
+	}
+
+	private void detach(T obj) {
+		if (getEntityManager().contains(obj)) {
+			getEntityManager().detach(obj);
+		}
+	}
+
+	private SingularAttribute<?, ?> getIdAttribute(EntityType<? extends T> entityType) {
+		for (SingularAttribute<?, ?> attribute : entityType.getSingularAttributes()) {
+			if (attribute.isId()) {
+				return attribute;
+			}
+		}
+		throw new PersistenceException("Bulk delete of " + entityType.getName() + " requires a single id attribute");
+	}
+
+	/**
+	 * Rows of associations which are removed by the JPA provider (cascade
+	 * remove, orphan removal, element collections and join tables) would be
+	 * left over or violate foreign keys, unless the database cascades the
+	 * delete (<code>@OnDelete(action = CASCADE)</code>).
+	 */
+	protected void checkBulkDeleteSupported(EntityType<? extends T> entityType) {
+		for (Attribute<?, ?> attribute : entityType.getAttributes()) {
+			if (!(attribute.getJavaMember() instanceof AnnotatedElement)) {
+				continue;
+			}
+			AnnotatedElement member = (AnnotatedElement) attribute.getJavaMember();
+			if (HIBERNATE_PRESENT && HibernateSupport.isDeletedByDatabase(member)) {
+				continue;
+			}
+			String reason = null;
+			if (member.isAnnotationPresent(ElementCollection.class)) {
+				reason = "an element collection";
+			} else if (member.isAnnotationPresent(ManyToMany.class)) {
+				reason = "a many-to-many association";
+			} else if (member.isAnnotationPresent(OneToMany.class)) {
+				OneToMany oneToMany = member.getAnnotation(OneToMany.class);
+				if (oneToMany.orphanRemoval() || isCascadeRemove(oneToMany.cascade())) {
+					reason = "a one-to-many association removed by cascade";
+				}
+			} else if (member.isAnnotationPresent(OneToOne.class)) {
+				OneToOne oneToOne = member.getAnnotation(OneToOne.class);
+				if (oneToOne.orphanRemoval() || isCascadeRemove(oneToOne.cascade())) {
+					reason = "a one-to-one association removed by cascade";
+				}
+			}
+			if (reason != null) {
+				throw new PersistenceException("Bulk delete of " + entityType.getName() + " not supported, "
+						+ attribute.getName() + " is " + reason);
+			}
+		}
+	}
+
+	private boolean isCascadeRemove(CascadeType[] cascade) {
+		List<CascadeType> cascadeTypes = Arrays.asList(cascade);
+		return cascadeTypes.contains(CascadeType.ALL) || cascadeTypes.contains(CascadeType.REMOVE);
+	}
+
+	protected void evictCaches() {
+		getEntityManager().getEntityManagerFactory().getCache().evict(getPersistentClass());
+		if (HIBERNATE_PRESENT && JpaHelper.isJpaProviderHibernate(getEntityManager())) {
+			HibernateSupport.evictQueryRegions(getEntityManager().getEntityManagerFactory());
+		}
+	}
+
+	private static boolean isPresent(String className) {
+		try {
+			Class.forName(className, false, JpaDeleteAccessImpl.class.getClassLoader());
+			return true;
+		} catch (ClassNotFoundException | LinkageError e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Hibernate specific parts, separated from the outer class to load the
+	 * Hibernate classes only if they are available.
+	 */
+	private static class HibernateSupport {
+
+		static boolean isDeletedByDatabase(AnnotatedElement member) {
+			return member.isAnnotationPresent(org.hibernate.annotations.OnDelete.class);
+		}
+
+		static void evictQueryRegions(EntityManagerFactory entityManagerFactory) {
+			entityManagerFactory.unwrap(org.hibernate.SessionFactory.class).getCache().evictQueryRegions();
+		}
 	}
 
-}
\ No newline at end of file
+}
@@ -98,6 +98,11 @@ public class JpaFindAllAccessImplGeneric<T,R>
         setResultCountQuery(getEntityManager().createQuery(query.toString(), Long.class));
     }
 
+    @Override
+    protected Class<?> getQueriedType() {
+        return getType();
+    }
+
     @Override
     public void setOrderBy(String orderBy) {
         this.orderBy = orderBy;
@@ -17,6 +17,7 @@
 
 package org.sculptor.framework.accessimpl.jpa;
 
+import org.apache.commons.beanutils.ConstructorUtils;
 import org.hibernate.query.criteria.internal.expression.function.ParameterizedFunctionExpression;
 import org.sculptor.framework.accessapi.ConditionalCriteria;
 import org.sculptor.framework.accessapi.ConditionalCriteria.Operator;
@@ -29,6 +30,7 @@ import org.sculptor.framework.domain.expression.ExpressionConverter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.persistence.Tuple;
 import javax.persistence.criteria.*;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -111,7 +113,9 @@ public class JpaFindByConditionAccessImplGeneric<T,R>
         }
         if (!selections.isEmpty()) {
         	setFetchEager(null);
-            if (selections.size() == 1) {
+            if (selections.size() == 1 && isConstructorResult(selections.get(0))) {
+                criteriaQuery.select(getCriteriaBuilder().construct(getResultType(), selections.get(0)));
+            } else if (selections.size() == 1) {
                 criteriaQuery.select((Selection<? extends R>) selections.get(0));
             } else {
                 criteriaQuery.multiselect(selections);
@@ -119,6 +123,21 @@ public class JpaFindByConditionAccessImplGeneric<T,R>
         }
     }
 
+    /**
+     * A single selection is passed to the constructor of the result type (e.g.
+     * of a projection DTO) if it isn't already of the result type. Multiple
+     * selections are always passed to the constructor by multiselect.
+     */
+    private boolean isConstructorResult(Selection<?> selection) {
+        Class<R> resultType = getResultType();
+        Class<?> javaType = selection.getJavaType();
+        if (resultType == null || javaType == null || resultType.isArray() || Tuple.class.equals(resultType)
+                || resultType.isAssignableFrom(javaType)) {
+            return false;
+        }
+        return ConstructorUtils.getMatchingAccessibleConstructor(resultType, new Class<?>[] { javaType }) != null;
+    }
+
     @Override
     public Expression convertObject(Object param) {
         Expression retVal;
@@ -428,6 +447,50 @@ public class JpaFindByConditionAccessImplGeneric<T,R>
         }
     }
 
+    /**
+     * Conditions on property paths or collections join other entity types,
+     * therefore the whole persistence context is flushed before such queries.
+     */
+    @Override
+    protected Class<?> getQueriedType() {
+        for (ConditionalCriteria criteria : conditionalCriterias) {
+            if (isJoining(criteria)) {
+                return null;
+            }
+        }
+        return super.getQueriedType();
+    }
+
+    private boolean isJoining(ConditionalCriteria criteria) {
+        if (criteria.getPropertyPath().length > 0 || Operator.IsEmpty.equals(criteria.getOperator())
+                || Operator.IsNotEmpty.equals(criteria.getOperator())) {
+            return true;
+        }
+        return isJoining(criteria.getFirstOperant()) || isJoining(criteria.getSecondOperant());
+    }
+
+    private boolean isJoining(Object operant) {
+        if (operant instanceof ConditionalCriteria) {
+            return isJoining((ConditionalCriteria) operant);
+        } else if (operant instanceof Collection) {
+            for (Object each : (Collection<?>) operant) {
+                if (isJoining(each)) {
+                    return true;
+                }
+            }
+            return false;
+        } else if (operant instanceof PropertyWithExpression) {
+            return isJoining(((PropertyWithExpression<?>) operant).getBase());
+        } else if (operant instanceof LeafProperty) {
+            // embedded properties are separated by '#'
+            return ((LeafProperty<?>) operant).getEmbeddedName().indexOf('.') != -1;
+        } else if (operant instanceof Property) {
+            return ((Property<?>) operant).getName().indexOf('.') != -1;
+        } else {
+            return false;
+        }
+    }
+
 	public void executeCount() {
 		executeResultCount();
 	}
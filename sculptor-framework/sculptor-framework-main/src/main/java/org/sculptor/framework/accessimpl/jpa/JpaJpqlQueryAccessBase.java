@@ -93,6 +93,15 @@ public abstract class JpaJpqlQueryAccessBase<T,R>
         this.namedQuery = namedQuery;
     }
 
+    /**
+     * JPQL and named (possibly native) queries may select or join any entity
+     * type.
+     */
+    @Override
+    protected Class<?> getQueriedType() {
+        return null;
+    }
+
     @Override
     protected TypedQuery<R> prepareTypedQuery(QueryConfig config) {
         if (isNamedQuery()) {
@@ -138,6 +147,8 @@ public abstract class JpaJpqlQueryAccessBase<T,R>
     protected void prepareHints(Query query, QueryConfig config) {
         if (!isNamedQuery()) {
             super.prepareHints(query, config);
+        } else {
+            prepareFetchGraph(query, config);
         }
     }
 
@@ -24,8 +24,11 @@ import java.util.Map;
 import javax.persistence.NoResultException;
 import javax.persistence.PersistenceException;
 import javax.persistence.Query;
+import javax.persistence.Tuple;
 import javax.persistence.TypedQuery;
 
+import org.sculptor.framework.persistence.JpaFlushStrategy;
+
 /**
  * <p>
  * Implementation of Access command FindByQueryAccess.
@@ -37,6 +40,8 @@ import javax.persistence.TypedQuery;
 public abstract class JpaQueryAccessBase<T,R>
     extends JpaAccessBase<T> {
 
+    public static final String LOAD_GRAPH_HINT = "javax.persistence.loadgraph";
+
     private List<R> listResult = null;
     private R singleResult = null;
     private Class<T> type;
@@ -44,6 +49,7 @@ public abstract class JpaQueryAccessBase<T,R>
     private Long resultCount = null;
     private Map<String, Object> hints = new HashMap<String, Object>();
     private Map<String, Object> parameters = new HashMap<String, Object>();
+    private String fetchGraph = null;
 
     private QueryConfig config = new QueryConfig.Default();
 
@@ -122,6 +128,15 @@ public abstract class JpaQueryAccessBase<T,R>
         this.type = type;
     }
 
+    /**
+     * The entity type of the query results, which is flushed before the query
+     * by {@link JpaFlushStrategy}, or null if the query may select or join
+     * any entity type.
+     */
+    protected Class<?> getQueriedType() {
+        return type;
+    }
+
     public R getSingleResult() {
         if (singleResult != null) {
             return singleResult;
@@ -156,9 +171,23 @@ public abstract class JpaQueryAccessBase<T,R>
     	hints.put(hint, value);
     }
 
+    public String getFetchGraph() {
+        return fetchGraph;
+    }
+
+    /**
+     * Name of the entity graph (e.g. generated from a fetch profile) which
+     * is passed to the query as load graph. Attributes of the graph are
+     * loaded eager, all other attributes as defined by their mapping.
+     */
+    public void setFetchGraph(String fetchGraph) {
+        this.fetchGraph = fetchGraph;
+    }
+
     @SuppressWarnings("unchecked")
 	@Override
     final public void performExecute() throws PersistenceException {
+        JpaFlushStrategy.beforeQuery(getEntityManager(), getQueriedType());
         init();
         validate();
         prepareConfig(config);
@@ -198,6 +227,19 @@ public abstract class JpaQueryAccessBase<T,R>
         }
     }
 
+    /**
+     * Executes only the query counting the rows of the result, without
+     * fetching the result itself (used by {@link JpaConcurrentResultCount}).
+     */
+    public void executeResultCountOnly() throws PersistenceException {
+        init();
+        validate();
+        prepareConfig(config);
+        prepareQuery(config);
+        prepareResultCount(config);
+        executeResultCount();
+    }
+
     protected void init() { }
 
     protected void validate() { }
@@ -243,6 +285,29 @@ public abstract class JpaQueryAccessBase<T,R>
             	query.setHint(entry.getKey(), entry.getValue());
 			}
         }
+        prepareFetchGraph(query, config);
+    }
+
+    protected void prepareFetchGraph(Query query, QueryConfig config) {
+        if (fetchGraph != null && isEntityResult()) {
+            query.setHint(LOAD_GRAPH_HINT, getEntityManager().getEntityGraph(fetchGraph));
+        }
+    }
+
+    /**
+     * Load graphs apply to entities only, not to projections, e.g. into a
+     * {@link Tuple}, an array or a data transfer object.
+     */
+    protected boolean isEntityResult() {
+        if (resultType == null || resultType.isArray() || Tuple.class.equals(resultType)) {
+            return false;
+        }
+        try {
+            getEntityManager().getMetamodel().entity(resultType);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
     }
 
     protected void prepareSingleResult(R result) { }
@@ -24,6 +24,7 @@ import java.util.List;
 import javax.persistence.PersistenceException;
 
 import org.sculptor.framework.accessapi.SaveAccess;
+import org.sculptor.framework.persistence.JpaFlushStrategy;
 
 /**
  * <p>
@@ -70,11 +71,13 @@ public class JpaSaveAccessImpl<T> extends JpaAccessBase<T> implements SaveAccess
 	public void performExecute() throws PersistenceException {
 		if (entity != null) {
 			result = performMerge(entity);
+			JpaFlushStrategy.modified(getEntityManager(), entity.getClass());
 		}
 		if (entities != null) {
 			List<T> newInstances = new ArrayList<T>();
 			for (T each : getEntities()) {
 				newInstances.add(performMerge(each));
+				JpaFlushStrategy.modified(getEntityManager(), each.getClass());
 			}
 			setEntities(newInstances);
 		}
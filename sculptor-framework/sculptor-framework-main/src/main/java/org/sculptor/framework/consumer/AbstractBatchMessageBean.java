@@ -0,0 +1,358 @@
+/*
+ * Copyright 2014 The Sculptor Project Team, including the original
+ * author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sculptor.framework.consumer;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.annotation.Resource;
+import javax.jms.Connection;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.Session;
+import javax.jms.TransactionInProgressException;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.sculptor.framework.context.ServiceContext;
+import org.sculptor.framework.context.ServiceContextStore;
+import org.sculptor.framework.errorhandling.ApplicationException;
+import org.sculptor.framework.errorhandling.MessageException;
+
+/**
+ * This is a base class for Pure EJB3 implementation of a Consumer which
+ * consumes several messages within one transaction. Subclass must override
+ * the {@link #consumeBatch(ServiceContext, List)} method.
+ * <p>
+ * The message delivered to {@link #onMessage(Message)} starts a batch. More
+ * messages are received from the same destination (message selectors of the
+ * bean aren't applied) until the batch contains {@link #getMaxBatchSize()}
+ * messages, {@link #getMaxBatchWaitMillis()} have passed or a redelivered
+ * message is received. The messages are received in a transacted session of
+ * the connection of {@link #getJmsConnection()}. Within a container managed
+ * transaction the session is committed after the transaction of the bean has
+ * been committed, and rolled back if the transaction is rolled back, see
+ * {@link #getTransactionSynchronizationRegistry()}. So the messages of the
+ * batch are only acknowledged if the changes of the batch have been
+ * committed (if the session commit fails afterwards the messages are
+ * redelivered). Without transaction the session is committed when the batch
+ * has been consumed and the replies have been sent. With a JCA managed
+ * connection factory the session is enlisted in the transaction of the bean
+ * instead, and the messages are acknowledged together with that transaction.
+ * Without connection batches contain only the delivered message. The
+ * connection is closed with {@link #closeConnection()} when the batch is
+ * completed, not after each reply.
+ * <p>
+ * If the batch fails the transaction is rolled back and all messages of the
+ * batch are redelivered. Redelivered messages are never batched, they are
+ * consumed individually via {@link #consume(ServiceContext, String)} with
+ * the error handling of {@link AbstractMessageBean}, i.e. invalid messages
+ * are sent to the invalid message queue and other failures are left to the
+ * redelivery and dead letter handling of the broker. A redelivered message
+ * that is received while collecting a batch ends the batch and is consumed
+ * individually after it. If it fails again it is sent to the invalid message
+ * queue, so that a poison message doesn't roll back the batch, see
+ * {@link #consumeRedelivered(Message)}.
+ */
+public abstract class AbstractBatchMessageBean extends AbstractMessageBean {
+
+    @Resource
+    private TransactionSynchronizationRegistry transactionSynchronizationRegistry;
+
+    private boolean batchInProgress;
+
+    public AbstractBatchMessageBean() {
+    }
+
+    @Override
+    public void onMessage(Message msg) {
+        if (isJmsRedelivered(msg)) {
+            super.onMessage(msg);
+            return;
+        }
+
+        batchInProgress = true;
+        Session session = null;
+        MessageConsumer consumer = null;
+        boolean completedAfterTransaction = false;
+        try {
+            List<Message> received = new ArrayList<Message>();
+            received.add(msg);
+            Message redelivered = null;
+            session = createBatchSession(msg);
+            if (session != null) {
+                consumer = session.createConsumer(msg.getJMSDestination());
+                redelivered = receiveMore(consumer, received);
+            }
+
+            if (!consumeBatch(received)) {
+                rollback(session);
+                return;
+            }
+            if (redelivered != null) {
+                consumeRedelivered(redelivered);
+            }
+            if (isRollbackOnly()) {
+                rollback(session);
+            } else {
+                completedAfterTransaction = completeAfterTransaction(session, consumer);
+                if (!completedAfterTransaction) {
+                    commit(session);
+                }
+            }
+        } catch (JMSException e) {
+            rollback(session);
+            throw new MessageException("Failure when receiving batch from JMS destination: " + e.getMessage(), e);
+        } catch (RuntimeException e) {
+            rollback(session);
+            throw e;
+        } finally {
+            batchInProgress = false;
+            if (!completedAfterTransaction) {
+                close(session, consumer);
+                closeConnection();
+            }
+        }
+    }
+
+    /**
+     * Defers the commit of the batch session until the transaction of the
+     * bean has been completed.
+     *
+     * @return false if there is no active transaction, i.e. the session is
+     *         to be committed immediately
+     */
+    private boolean completeAfterTransaction(final Session session, final MessageConsumer consumer) {
+        TransactionSynchronizationRegistry registry = getTransactionSynchronizationRegistry();
+        if (session == null || registry == null || registry.getTransactionStatus() != Status.STATUS_ACTIVE) {
+            return false;
+        }
+        registry.registerInterposedSynchronization(new Synchronization() {
+            @Override
+            public void beforeCompletion() {
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    if (status == Status.STATUS_COMMITTED) {
+                        commit(session);
+                    } else {
+                        rollback(session);
+                    }
+                } catch (JMSException e) {
+                    getLog().warn("Commit of batch session failed after commit of the transaction, "
+                            + "messages are redelivered: {}", e.getMessage());
+                } finally {
+                    close(session, consumer);
+                    closeConnection();
+                }
+            }
+        });
+        return true;
+    }
+
+    /**
+     * The registry of the container, used to commit the batch session after
+     * the transaction of the bean. Null outside of a container, then the
+     * batch session is committed when the batch is completed.
+     */
+    protected TransactionSynchronizationRegistry getTransactionSynchronizationRegistry() {
+        return transactionSynchronizationRegistry;
+    }
+
+    /**
+     * Consumes the messages of the batch and sends the replies.
+     *
+     * @return false if the batch failed with an ApplicationException, i.e.
+     *         the transaction is rolled back
+     */
+    private boolean consumeBatch(List<Message> received) {
+        List<Message> batch = new ArrayList<Message>(received.size());
+        for (Message each : received) {
+            if (checkSupportedMessageTypes(each)) {
+                batch.add(each);
+            }
+        }
+        if (batch.isEmpty()) {
+            return true;
+        }
+
+        try {
+            ServiceContext serviceContext = createServiceContext();
+            serviceContext.setProperty("jms", Boolean.TRUE);
+            serviceContext.setProperty("jmsRedelivered", Boolean.FALSE);
+            serviceContext.setProperty("jmsBatchSize", batch.size());
+            ServiceContextStore.set(serviceContext);
+
+            List<String> textMessages = new ArrayList<String>(batch.size());
+            for (Message each : batch) {
+                textMessages.add(getMessageText(each));
+            }
+            List<String> replies = consumeBatch(serviceContext, textMessages);
+            for (int i = 0; i < batch.size(); i++) {
+                sendReply(batch.get(i), replies == null || i >= replies.size() ? null : replies.get(i));
+            }
+            return true;
+        } catch (RuntimeException e) {
+            getLog().debug("Batch of {} messages failed, rollback for individual redelivery: {}", batch.size(),
+                    e.getMessage());
+            // re-throw which will cause rollback
+            throw e;
+        } catch (ApplicationException e) {
+            handleApplicationException(e);
+            return false;
+        }
+    }
+
+    /**
+     * A redelivered message received while collecting the batch is consumed
+     * individually after the batch. It has already failed before, so when it
+     * fails again with a RuntimeException it is sent to the invalid message
+     * queue instead of rolling back the batch. Note that the batch is still
+     * rolled back if the failure marked the transaction for rollback.
+     */
+    protected void consumeRedelivered(Message msg) {
+        try {
+            super.onMessage(msg);
+        } catch (RuntimeException e) {
+            getLog().error("Redelivered message " + getJMSMessageID(msg)
+                    + " failed again, sending it to invalid message queue: " + e.getMessage(), e);
+            sendToInvalidMessageQueue(msg);
+        }
+    }
+
+    private Session createBatchSession(Message msg) throws JMSException {
+        if (getMaxBatchSize() <= 1 || msg.getJMSDestination() == null) {
+            return null;
+        }
+        Connection connection = getJmsConnection();
+        if (connection == null) {
+            return null;
+        }
+        return connection.createSession(true, Session.SESSION_TRANSACTED);
+    }
+
+    /**
+     * Receives more messages, while the batch isn't complete. Receiving stops
+     * at the first redelivered message, which is returned to be consumed
+     * individually.
+     *
+     * @return the redelivered message, or null
+     */
+    protected Message receiveMore(MessageConsumer consumer, List<Message> batch) throws JMSException {
+        long deadline = System.currentTimeMillis() + getMaxBatchWaitMillis();
+        while (batch.size() < getMaxBatchSize()) {
+            long remaining = deadline - System.currentTimeMillis();
+            Message next = remaining > 0 ? consumer.receive(remaining) : consumer.receiveNoWait();
+            if (next == null) {
+                return null;
+            }
+            if (isJmsRedelivered(next)) {
+                return next;
+            }
+            batch.add(next);
+        }
+        return null;
+    }
+
+    /**
+     * The connection is used by the batch session until the batch is
+     * completed, it is closed at the end of {@link #onMessage(Message)}.
+     */
+    @Override
+    protected void releaseConnection() {
+        if (!batchInProgress) {
+            super.releaseConnection();
+        }
+    }
+
+    private void commit(Session session) throws JMSException {
+        if (session == null) {
+            return;
+        }
+        try {
+            session.commit();
+        } catch (TransactionInProgressException e) {
+            // session is enlisted in the transaction of the bean
+        }
+    }
+
+    private void rollback(Session session) {
+        if (session == null) {
+            return;
+        }
+        try {
+            session.rollback();
+        } catch (Exception e) {
+            // session is enlisted in the transaction of the bean, or closed
+        }
+    }
+
+    private void close(Session session, MessageConsumer consumer) {
+        if (consumer != null) {
+            try {
+                consumer.close();
+            } catch (Exception ignore) {
+            }
+        }
+        if (session != null) {
+            try {
+                session.close();
+            } catch (Exception ignore) {
+            }
+        }
+    }
+
+    /**
+     * Maximum number of messages of a batch, 100 by default.
+     */
+    protected int getMaxBatchSize() {
+        return 100;
+    }
+
+    /**
+     * Maximum time to wait for more messages of a batch, 100 ms by default.
+     */
+    protected long getMaxBatchWaitMillis() {
+        return 100;
+    }
+
+    /**
+     * Individual messages (redelivered messages) are consumed as a batch of
+     * one message by default.
+     */
+    @Override
+    public String consume(String textMessage) throws ApplicationException {
+        List<String> textMessages = new ArrayList<String>(1);
+        textMessages.add(textMessage);
+        List<String> replies = consumeBatch(ServiceContextStore.get(), textMessages);
+        return replies == null || replies.isEmpty() ? null : replies.get(0);
+    }
+
+    /**
+     * @param textMessages
+     *            the incoming text messages
+     * @return the replies in the order of the messages, return null if there
+     *         are no replies
+     */
+    public abstract List<String> consumeBatch(ServiceContext ctx, List<String> textMessages)
+            throws ApplicationException;
+
+}
@@ -136,6 +136,21 @@ public abstract class AbstractMessageBean {
         mdbContext.setRollbackOnly();
     }
 
+    /**
+     * True if the transaction of the bean has been marked for rollback.
+     */
+    protected boolean isRollbackOnly() {
+        if (mdbContext == null) {
+            return false;
+        }
+        try {
+            return mdbContext.getRollbackOnly();
+        } catch (IllegalStateException e) {
+            // no transaction
+            return false;
+        }
+    }
+
     protected boolean isJmsRedelivered(Message msg) {
 
         try {
@@ -255,7 +270,7 @@ public abstract class AbstractMessageBean {
             getLog().error("Can't send to InvalidMessageQueue: " + e.getMessage(), e);
             getLog().info("Message that was not sent to InvalidMessageQueue:\n" + messageText);
         } finally {
-            closeConnection();
+            releaseConnection();
         }
     }
 
@@ -281,7 +296,7 @@ public abstract class AbstractMessageBean {
             throw new org.sculptor.framework.errorhandling.MessageException(
                     "Failure when sending repy: " + reply + "\n" + e.getMessage(), e);
         } finally {
-            closeConnection();
+            releaseConnection();
         }
     }
 
@@ -304,6 +319,15 @@ public abstract class AbstractMessageBean {
     protected void closeConnection() {
     }
 
+    /**
+     * Called when a reply or invalid message has been sent. Closes the
+     * connection by default, subclass may override to keep the connection
+     * open while it is still in use.
+     */
+    protected void releaseConnection() {
+        closeConnection();
+    }
+
     /**
      * Subclass need to implement this to be able to send to invalid message
      * queue. You could override {@link #sendToInvalidMessageQueue} to implement
@@ -0,0 +1,446 @@
+/*
+ * Copyright 2014 The Sculptor Project Team, including the original
+ * author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sculptor.framework.consumer;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingDeque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.jms.Connection;
+import javax.jms.DeliveryMode;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageProducer;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Implementation of sending JMS messages which reuses sessions and producers.
+ * The connection, including its lifecycle is provided by the client.
+ * <p>
+ * In contrast to {@link MessageSenderImpl}, which creates and closes a
+ * session and a producer for every message, the sessions are kept in a pool
+ * (at most {@link #setMaxSessions(int)} sessions) and every session keeps a
+ * producer per destination. Transacted sessions (for batches) and
+ * non-transacted sessions share the limit. When it is reached, an idle
+ * session of the other kind is closed to make room, so neither kind can
+ * starve the other. A session which failed to send a message is closed
+ * instead of returned to the pool. {@link #close()} closes all idle sessions,
+ * sessions in use are closed when they are returned. Afterwards no more
+ * messages can be sent.
+ * <p>
+ * Several messages can be sent within one transacted session with a single
+ * commit via {@link #sendBatch(BatchCallback)}.
+ * <p>
+ * The number of sent messages, the send latency and the utilization of the
+ * pool are available via the getters, e.g. for JMX export.
+ */
+public class PooledMessageSenderImpl implements MessageSender {
+
+    private static final Logger log = LoggerFactory.getLogger(PooledMessageSenderImpl.class);
+
+    private final Connection connection;
+    private int deliveryMode = DeliveryMode.PERSISTENT;
+    private int acknowledgeMode = Session.AUTO_ACKNOWLEDGE;
+    private int maxSessions = 8;
+    private long maxWaitMillis = 30000;
+
+    private final LinkedBlockingDeque<PooledSession> idleSessions = new LinkedBlockingDeque<PooledSession>();
+    private final LinkedBlockingDeque<PooledSession> idleTransactedSessions = new LinkedBlockingDeque<PooledSession>();
+    private final AtomicInteger sessionCount = new AtomicInteger();
+    private final AtomicInteger activeSessions = new AtomicInteger();
+    private final Object sessionReleased = new Object();
+    private volatile boolean closed;
+    private final AtomicLong evictionCount = new AtomicLong();
+    private final AtomicLong waitCount = new AtomicLong();
+    private final AtomicLong sendCount = new AtomicLong();
+    private final AtomicLong batchCount = new AtomicLong();
+    private final AtomicLong sendOperations = new AtomicLong();
+    private final AtomicLong totalSendNanos = new AtomicLong();
+    private final AtomicLong maxSendNanos = new AtomicLong();
+
+    public PooledMessageSenderImpl(Connection connection) {
+        this.connection = connection;
+    }
+
+    /**
+     * Sends several messages within one transacted session.
+     */
+    public interface BatchCallback {
+        void sendBatch(Batch batch) throws JMSException;
+    }
+
+    /**
+     * Messages sent via a batch are committed together when
+     * {@link BatchCallback#sendBatch(Batch)} returns and rolled back if it
+     * throws an exception.
+     */
+    public interface Batch {
+
+        Session getSession();
+
+        void send(Destination destination, Message message) throws JMSException;
+
+        void send(Destination destination, String message, String correlationId) throws JMSException;
+
+    }
+
+    private class PooledSession implements Batch {
+        private final Session session;
+        private final Map<Destination, MessageProducer> producers = new HashMap<Destination, MessageProducer>();
+
+        PooledSession(Session session) {
+            this.session = session;
+        }
+
+        @Override
+        public Session getSession() {
+            return session;
+        }
+
+        @Override
+        public void send(Destination destination, Message message) throws JMSException {
+            MessageProducer producer = producers.get(destination);
+            if (producer == null) {
+                producer = session.createProducer(destination);
+                producer.setDeliveryMode(deliveryMode);
+                producers.put(destination, producer);
+            }
+            producer.send(message);
+            sendCount.incrementAndGet();
+        }
+
+        @Override
+        public void send(Destination destination, String message, String correlationId) throws JMSException {
+            send(destination, createTextMessage(session, message, correlationId));
+        }
+
+        void close() {
+            for (MessageProducer producer : producers.values()) {
+                try {
+                    producer.close();
+                } catch (Exception ignore) {
+                }
+            }
+            producers.clear();
+            try {
+                session.close();
+            } catch (Exception ignore) {
+            }
+        }
+    }
+
+    public void sendMessage(Destination destination, Message message) {
+        long start = System.nanoTime();
+        PooledSession session = borrow(false);
+        boolean failed = true;
+        try {
+            session.send(destination, message);
+            failed = false;
+        } catch (JMSException e) {
+            throw new RuntimeException(e);
+        } finally {
+            release(session, false, failed);
+            recordLatency(start);
+        }
+    }
+
+    public void sendMessage(Destination destination, String message, String correlationId) {
+        long start = System.nanoTime();
+        PooledSession session = borrow(false);
+        boolean failed = true;
+        try {
+            session.send(destination, message, correlationId);
+            failed = false;
+        } catch (JMSException e) {
+            throw new RuntimeException(e);
+        } finally {
+            release(session, false, failed);
+            recordLatency(start);
+        }
+    }
+
+    /**
+     * Sends the messages of the callback within one transacted session,
+     * committed with a single commit.
+     */
+    public void sendBatch(BatchCallback callback) {
+        long start = System.nanoTime();
+        PooledSession session = borrow(true);
+        boolean failed = true;
+        try {
+            callback.sendBatch(session);
+            session.getSession().commit();
+            failed = false;
+            batchCount.incrementAndGet();
+        } catch (JMSException e) {
+            throw new RuntimeException(e);
+        } finally {
+            if (failed) {
+                rollback(session);
+            }
+            release(session, true, failed);
+            recordLatency(start);
+        }
+    }
+
+    private TextMessage createTextMessage(Session session, String message, String correlationId) throws JMSException {
+        TextMessage textMessage = session.createTextMessage(message);
+        if (correlationId != null) {
+            textMessage.setJMSCorrelationID(correlationId);
+        }
+        return textMessage;
+    }
+
+    private PooledSession borrow(boolean transacted) {
+        checkNotClosed();
+        PooledSession session = acquire(transacted);
+        if (session == null) {
+            waitCount.incrementAndGet();
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(maxWaitMillis);
+            synchronized (sessionReleased) {
+                while ((session = acquire(transacted)) == null) {
+                    checkNotClosed();
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        throw new RuntimeException("No JMS session available within " + maxWaitMillis
+                                + " ms, all " + maxSessions + " sessions in use");
+                    }
+                    try {
+                        TimeUnit.NANOSECONDS.timedWait(sessionReleased, remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new RuntimeException("Interrupted while waiting for a JMS session", e);
+                    }
+                }
+            }
+        }
+        activeSessions.incrementAndGet();
+        return session;
+    }
+
+    private void checkNotClosed() {
+        if (closed) {
+            throw new IllegalStateException("Message sender is closed");
+        }
+    }
+
+    /**
+     * Takes an idle session or creates one, if necessary after closing an idle
+     * session of the other kind.
+     *
+     * @return null if all sessions are in use
+     */
+    private PooledSession acquire(boolean transacted) {
+        PooledSession session = (transacted ? idleTransactedSessions : idleSessions).pollFirst();
+        if (session == null) {
+            session = create(transacted);
+        }
+        if (session == null && evictIdle(transacted ? idleSessions : idleTransactedSessions)) {
+            session = create(transacted);
+        }
+        return session;
+    }
+
+    /**
+     * Closes the least recently used idle session.
+     */
+    private boolean evictIdle(LinkedBlockingDeque<PooledSession> idle) {
+        PooledSession session = idle.pollLast();
+        if (session == null) {
+            return false;
+        }
+        session.close();
+        sessionCount.decrementAndGet();
+        evictionCount.incrementAndGet();
+        return true;
+    }
+
+    private PooledSession create(boolean transacted) {
+        if (sessionCount.incrementAndGet() > maxSessions) {
+            sessionCount.decrementAndGet();
+            return null;
+        }
+        try {
+            return new PooledSession(connection.createSession(transacted, transacted ? Session.SESSION_TRANSACTED
+                    : acknowledgeMode));
+        } catch (JMSException e) {
+            sessionCount.decrementAndGet();
+            throw new RuntimeException(e);
+        }
+    }
+
+    private void release(PooledSession session, boolean transacted, boolean failed) {
+        activeSessions.decrementAndGet();
+        LinkedBlockingDeque<PooledSession> idle = transacted ? idleTransactedSessions : idleSessions;
+        if (failed || closed) {
+            // the session may be broken, e.g. by a lost connection
+            session.close();
+            sessionCount.decrementAndGet();
+        } else {
+            idle.offerFirst(session);
+            if (closed) {
+                // closed concurrently
+                closeIdle(idle);
+            }
+        }
+        synchronized (sessionReleased) {
+            sessionReleased.notifyAll();
+        }
+    }
+
+    private void rollback(PooledSession session) {
+        try {
+            session.getSession().rollback();
+        } catch (Exception e) {
+            log.debug("Rollback of JMS batch failed: {}", e.getMessage());
+        }
+    }
+
+    private void recordLatency(long start) {
+        long nanos = System.nanoTime() - start;
+        sendOperations.incrementAndGet();
+        totalSendNanos.addAndGet(nanos);
+        long max = maxSendNanos.get();
+        while (nanos > max && !maxSendNanos.compareAndSet(max, nanos)) {
+            max = maxSendNanos.get();
+        }
+    }
+
+    /**
+     * Closes the idle sessions and their producers. Sessions in use are
+     * closed when they are returned. Sending afterwards fails with an
+     * {@link IllegalStateException}.
+     */
+    public void close() {
+        closed = true;
+        closeIdle(idleSessions);
+        closeIdle(idleTransactedSessions);
+        synchronized (sessionReleased) {
+            sessionReleased.notifyAll();
+        }
+    }
+
+    private void closeIdle(LinkedBlockingDeque<PooledSession> idle) {
+        PooledSession session;
+        while ((session = idle.pollFirst()) != null) {
+            session.close();
+            sessionCount.decrementAndGet();
+        }
+    }
+
+    public int getDeliveryMode() {
+        return deliveryMode;
+    }
+
+    public void setDeliveryMode(int deliveryMode) {
+        this.deliveryMode = deliveryMode;
+    }
+
+    public int getAcknowledgeMode() {
+        return acknowledgeMode;
+    }
+
+    public void setAcknowledgeMode(int acknowledgeMode) {
+        this.acknowledgeMode = acknowledgeMode;
+    }
+
+    public int getMaxSessions() {
+        return maxSessions;
+    }
+
+    /**
+     * Maximum number of sessions (transacted and non-transacted) in use or
+     * idle, 8 by default. Idle sessions of one kind are closed when a
+     * session of the other kind is needed.
+     */
+    public void setMaxSessions(int maxSessions) {
+        this.maxSessions = maxSessions;
+    }
+
+    public long getMaxWaitMillis() {
+        return maxWaitMillis;
+    }
+
+    /**
+     * Maximum time to wait for a session if all sessions are in use.
+     */
+    public void setMaxWaitMillis(long maxWaitMillis) {
+        this.maxWaitMillis = maxWaitMillis;
+    }
+
+    /**
+     * Number of open sessions (in use and idle).
+     */
+    public int getSessionCount() {
+        return sessionCount.get();
+    }
+
+    /**
+     * Number of sessions currently in use.
+     */
+    public int getActiveSessions() {
+        return activeSessions.get();
+    }
+
+    /**
+     * Number of times a caller had to wait for a session.
+     */
+    public long getWaitCount() {
+        return waitCount.get();
+    }
+
+    /**
+     * Number of idle sessions closed to make room for a session of the other
+     * kind.
+     */
+    public long getEvictionCount() {
+        return evictionCount.get();
+    }
+
+    /**
+     * Number of sent messages, including the messages of batches.
+     */
+    public long getSendCount() {
+        return sendCount.get();
+    }
+
+    public long getBatchCount() {
+        return batchCount.get();
+    }
+
+    /**
+     * Average duration of a send (or a batch), including waiting for a
+     * session.
+     */
+    public long getAverageSendLatencyMicros() {
+        long sends = sendOperations.get();
+        return sends == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalSendNanos.get()) / sends;
+    }
+
+    public long getMaxSendLatencyMicros() {
+        return TimeUnit.NANOSECONDS.toMicros(maxSendNanos.get());
+    }
+
+}
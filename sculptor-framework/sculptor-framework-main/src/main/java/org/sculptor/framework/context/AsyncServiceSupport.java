@@ -0,0 +1,84 @@
+/*
+ * Copyright 2014 The Sculptor Project Team, including the original
+ * author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sculptor.framework.context;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+
+/**
+ * Executes the asynchronous variants of generated service operations
+ * (<code>&lt;operation&gt;Async</code> returning a {@link CompletableFuture}).
+ * <p>
+ * The {@link ServiceContext} of {@link ServiceContextStore}, the
+ * {@link org.slf4j.MDC} and the other contexts of {@link ContextPropagation}
+ * of the calling thread are passed to the thread executing the operation.
+ * The operation is invoked via the service proxy, so it runs within its own
+ * transaction (transactions are bound to the executing thread).
+ * <p>
+ * By default the operations are executed by virtual threads if supported by
+ * the JVM (Java 21 and later), otherwise by a cached thread pool. A different
+ * {@link Executor} can be provided via {@link #setExecutor(Executor)}.
+ */
+public final class AsyncServiceSupport {
+
+    private static volatile Executor executor;
+
+    private AsyncServiceSupport() {
+    }
+
+    public static void setExecutor(Executor executor) {
+        AsyncServiceSupport.executor = executor;
+    }
+
+    private static Executor getExecutor() {
+        Executor result = executor;
+        if (result == null) {
+            synchronized (AsyncServiceSupport.class) {
+                if (executor == null) {
+                    executor = ContextPropagation.newThreadPerTaskExecutor("sculptor-async-service-");
+                }
+                result = executor;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Starts the given service operation. The returned future is completed
+     * with the result of the operation or exceptionally with the exception
+     * thrown by the operation (e.g. an
+     * {@link org.sculptor.framework.errorhandling.ApplicationException}).
+     */
+    public static <T> CompletableFuture<T> supplyAsync(final Callable<T> operation) {
+        final ContextPropagation.Snapshot contexts = ContextPropagation.capture();
+        final CompletableFuture<T> future = new CompletableFuture<T>();
+        getExecutor().execute(() -> {
+            if (future.isDone()) {
+                // cancelled before started
+                return;
+            }
+            try {
+                future.complete(contexts.call(operation));
+            } catch (Throwable e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright 2014 The Sculptor Project Team, including the original
+ * author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sculptor.framework.context;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * {@link ExecutorService} executing the tasks with the contexts of the
+ * submitting thread, see {@link ContextPropagation}.
+ */
+public class ContextPropagatingExecutorService extends ContextPropagatingExecutor implements ExecutorService {
+
+    public ContextPropagatingExecutorService(ExecutorService delegate) {
+        super(delegate);
+    }
+
+    @Override
+    protected ExecutorService getDelegate() {
+        return (ExecutorService) super.getDelegate();
+    }
+
+    @Override
+    public <T> Future<T> submit(Callable<T> task) {
+        return getDelegate().submit(ContextPropagation.wrap(task));
+    }
+
+    @Override
+    public <T> Future<T> submit(Runnable task, T result) {
+        return getDelegate().submit(ContextPropagation.wrap(task), result);
+    }
+
+    @Override
+    public Future<?> submit(Runnable task) {
+        return getDelegate().submit(ContextPropagation.wrap(task));
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks) throws InterruptedException {
+        return getDelegate().invokeAll(wrap(tasks));
+    }
+
+    @Override
+    public <T> List<Future<T>> invokeAll(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+            throws InterruptedException {
+        return getDelegate().invokeAll(wrap(tasks), timeout, unit);
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks) throws InterruptedException,
+            ExecutionException {
+        return getDelegate().invokeAny(wrap(tasks));
+    }
+
+    @Override
+    public <T> T invokeAny(Collection<? extends Callable<T>> tasks, long timeout, TimeUnit unit)
+            throws InterruptedException, ExecutionException, TimeoutException {
+        return getDelegate().invokeAny(wrap(tasks), timeout, unit);
+    }
+
+    private <T> List<Callable<T>> wrap(Collection<? extends Callable<T>> tasks) {
+        ContextPropagation.Snapshot snapshot = ContextPropagation.capture();
+        List<Callable<T>> result = new ArrayList<Callable<T>>(tasks.size());
+        for (Callable<T> task : tasks) {
+            result.add(snapshot.wrap(task));
+        }
+        return result;
+    }
+
+    @Override
+    public void shutdown() {
+        getDelegate().shutdown();
+    }
+
+    @Override
+    public List<Runnable> shutdownNow() {
+        return getDelegate().shutdownNow();
+    }
+
+    @Override
+    public boolean isShutdown() {
+        return getDelegate().isShutdown();
+    }
+
+    @Override
+    public boolean isTerminated() {
+        return getDelegate().isTerminated();
+    }
+
+    @Override
+    public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+        return getDelegate().awaitTermination(timeout, unit);
+    }
+
+}
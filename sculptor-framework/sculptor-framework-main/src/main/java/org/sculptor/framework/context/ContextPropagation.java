@@ -0,0 +1,231 @@
+/*
+ * Copyright 2014 The Sculptor Project Team, including the original
+ * author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sculptor.framework.context;
+
+import java.util.List;
+import java.util.Map;
+import java.util.ServiceLoader;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.MDC;
+
+/**
+ * Passes the thread bound contexts of the thread submitting a task to the
+ * thread executing it, so that the task runs with the same
+ * {@link ServiceContext} (user and roles) of {@link ServiceContextStore}, the
+ * same {@link MDC} and the contexts of additional {@link ContextPropagator}s
+ * (e.g. the <code>DbManager</code> thread instance of the MongoDB support).
+ * After the task the previous contexts of the executing thread are restored,
+ * so pooled threads don't keep the context of a previous task.
+ * <p>
+ * Executors are wrapped via {@link #wrap(Executor)} or
+ * {@link #wrap(ExecutorService)}, e.g. for
+ * <code>JpaConcurrentResultCount.setExecutor</code>,
+ * <code>MongoDbIndexes.setExecutor</code> or
+ * {@link AsyncServiceSupport#setExecutor(Executor)}. Single tasks are wrapped
+ * via {@link #capture()}, e.g. for {@link java.util.concurrent.CompletableFuture}
+ * stages.
+ */
+public final class ContextPropagation {
+
+    private static final List<ContextPropagator<?>> propagators = new CopyOnWriteArrayList<ContextPropagator<?>>();
+
+    static {
+        propagators.add(new ServiceContextPropagator());
+        propagators.add(new MdcPropagator());
+        for (ContextPropagator<?> propagator : ServiceLoader.load(ContextPropagator.class,
+                ContextPropagation.class.getClassLoader())) {
+            propagators.add(propagator);
+        }
+    }
+
+    private ContextPropagation() {
+    }
+
+    public static void register(ContextPropagator<?> propagator) {
+        propagators.add(propagator);
+    }
+
+    public static void unregister(ContextPropagator<?> propagator) {
+        propagators.remove(propagator);
+    }
+
+    /**
+     * Captures the contexts of the current thread.
+     */
+    @SuppressWarnings("unchecked")
+    public static Snapshot capture() {
+        ContextPropagator<Object>[] current = propagators.toArray(new ContextPropagator[0]);
+        Object[] contexts = new Object[current.length];
+        for (int i = 0; i < current.length; i++) {
+            contexts[i] = current[i].capture();
+        }
+        return new Snapshot(current, contexts);
+    }
+
+    public static Runnable wrap(Runnable task) {
+        return capture().wrap(task);
+    }
+
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        return capture().wrap(task);
+    }
+
+    public static Executor wrap(Executor executor) {
+        if (executor instanceof ExecutorService) {
+            return wrap((ExecutorService) executor);
+        }
+        return new ContextPropagatingExecutor(executor);
+    }
+
+    public static ExecutorService wrap(ExecutorService executorService) {
+        if (executorService instanceof ContextPropagatingExecutorService) {
+            return executorService;
+        }
+        return new ContextPropagatingExecutorService(executorService);
+    }
+
+    /**
+     * Creates virtual threads if supported by the JVM (Java 21 and later),
+     * otherwise daemon threads.
+     */
+    public static ThreadFactory newThreadFactory(String namePrefix) {
+        try {
+            Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderClass.getMethod("name", String.class, long.class).invoke(builder, namePrefix, 1L);
+            return (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+        } catch (Exception e) {
+            // virtual threads not supported by this JVM
+            final String prefix = namePrefix;
+            final AtomicInteger threadNumber = new AtomicInteger(1);
+            return runnable -> {
+                Thread thread = new Thread(runnable, prefix + threadNumber.getAndIncrement());
+                thread.setDaemon(true);
+                return thread;
+            };
+        }
+    }
+
+    /**
+     * Creates an executor starting a new virtual thread per task if supported
+     * by the JVM, otherwise a cached thread pool of daemon threads. The
+     * executor doesn't propagate contexts, use {@link #wrap(ExecutorService)}
+     * for that.
+     */
+    public static ExecutorService newThreadPerTaskExecutor(String namePrefix) {
+        ThreadFactory threadFactory = newThreadFactory(namePrefix);
+        try {
+            return (ExecutorService) Executors.class.getMethod("newThreadPerTaskExecutor", ThreadFactory.class)
+                    .invoke(null, threadFactory);
+        } catch (Exception e) {
+            return Executors.newCachedThreadPool(threadFactory);
+        }
+    }
+
+    /**
+     * Contexts captured from a thread.
+     */
+    public static final class Snapshot {
+        private final ContextPropagator<Object>[] propagators;
+        private final Object[] contexts;
+
+        private Snapshot(ContextPropagator<Object>[] propagators, Object[] contexts) {
+            this.propagators = propagators;
+            this.contexts = contexts;
+        }
+
+        /**
+         * Runs the task with the captured contexts within the current thread.
+         */
+        public <T> T call(Callable<T> task) throws Exception {
+            Object[] previous = apply();
+            try {
+                return task.call();
+            } finally {
+                restore(previous);
+            }
+        }
+
+        public void run(Runnable task) {
+            Object[] previous = apply();
+            try {
+                task.run();
+            } finally {
+                restore(previous);
+            }
+        }
+
+        public Runnable wrap(final Runnable task) {
+            return () -> run(task);
+        }
+
+        public <T> Callable<T> wrap(final Callable<T> task) {
+            return () -> call(task);
+        }
+
+        private Object[] apply() {
+            Object[] previous = new Object[propagators.length];
+            for (int i = 0; i < propagators.length; i++) {
+                previous[i] = propagators[i].capture();
+                propagators[i].restore(contexts[i]);
+            }
+            return previous;
+        }
+
+        private void restore(Object[] previous) {
+            for (int i = propagators.length - 1; i >= 0; i--) {
+                propagators[i].restore(previous[i]);
+            }
+        }
+    }
+
+    private static class ServiceContextPropagator implements ContextPropagator<ServiceContext> {
+        @Override
+        public ServiceContext capture() {
+            return ServiceContextStore.get();
+        }
+
+        @Override
+        public void restore(ServiceContext context) {
+            ServiceContextStore.set(context);
+        }
+    }
+
+    private static class MdcPropagator implements ContextPropagator<Map<String, String>> {
+        @Override
+        public Map<String, String> capture() {
+            return MDC.getCopyOfContextMap();
+        }
+
+        @Override
+        public void restore(Map<String, String> context) {
+            if (context == null) {
+                MDC.clear();
+            } else {
+                MDC.setContextMap(context);
+            }
+        }
+    }
+
+}
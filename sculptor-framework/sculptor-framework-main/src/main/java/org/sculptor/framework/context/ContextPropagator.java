@@ -0,0 +1,45 @@
+/*
+ * Copyright 2014 The Sculptor Project Team, including the original
+ * author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sculptor.framework.context;
+
+/**
+ * Passes a thread bound context (e.g. a {@link ThreadLocal}) from the thread
+ * submitting a task to the thread executing it, see
+ * {@link ContextPropagation}.
+ * <p>
+ * Additional propagators are registered via
+ * {@link ContextPropagation#register(ContextPropagator)} or as
+ * {@link java.util.ServiceLoader} provider
+ * (<code>META-INF/services/org.sculptor.framework.context.ContextPropagator</code>).
+ *
+ * @param <T>
+ *            type of the context
+ */
+public interface ContextPropagator<T> {
+
+    /**
+     * @return the context of the current thread, may be null
+     */
+    T capture();
+
+    /**
+     * Binds the given context (a result of {@link #capture()}, may be null) to
+     * the current thread.
+     */
+    void restore(T context);
+
+}
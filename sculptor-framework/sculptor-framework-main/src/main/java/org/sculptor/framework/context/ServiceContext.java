@@ -16,12 +16,28 @@
  */
 package org.sculptor.framework.context;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InvalidClassException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.ObjectStreamClass;
 import java.io.Serializable;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 /**
  * The ServiceContext class is needed to support logging and audit trail
@@ -40,6 +56,13 @@ import java.util.Set;
  * In addition, other (application-/service specific) properties may be added to
  * the context.
  * <p>
+ * The properties are stored copy-on-write: a map is never changed after it has
+ * been assigned, {@link #setProperty(String, Serializable)} replaces it by a
+ * changed copy. So properties can be read without locking, also when the
+ * context is shared by several threads (e.g. asynchronous tasks). The Java
+ * serialized form is unchanged, {@link #writeCompact(DataOutput)} provides a
+ * more compact form.
+ * <p>
  * 
  * @author Patrik Nordwall
  */
@@ -47,10 +70,14 @@ public class ServiceContext implements Serializable {
 
     private static final long serialVersionUID = 6953254895524422542L;
 
+    @SuppressWarnings("rawtypes")
+    private static final AtomicReferenceFieldUpdater<ServiceContext, Map> PROPERTIES_UPDATER = AtomicReferenceFieldUpdater
+            .newUpdater(ServiceContext.class, Map.class, "properties");
+
     private String userId = null;
     private String sessionId = null;
     private String applicationId = null;
-    private Map<String, Serializable> properties = null;
+    private volatile Map<String, Serializable> properties = null;
     private Set<String> roles = Collections.emptySet();
 
     /**
@@ -120,11 +147,12 @@ public class ServiceContext implements Serializable {
      *            the property key
      * @return the property value (null if key was not found)
      */
-    public synchronized Serializable getProperty(String key) {
-        if (properties == null) {
+    public Serializable getProperty(String key) {
+        Map<String, Serializable> current = properties;
+        if (current == null) {
             return null;
         }
-        return properties.get(key);
+        return current.get(key);
     }
 
     /**
@@ -135,11 +163,16 @@ public class ServiceContext implements Serializable {
      * @param value
      *            the property value
      */
-    public synchronized void setProperty(String key, Serializable value) {
-        if (properties == null) {
-            properties = new HashMap<String, Serializable>();
+    public void setProperty(String key, Serializable value) {
+        while (true) {
+            Map<String, Serializable> current = properties;
+            Map<String, Serializable> changed = current == null ? new HashMap<String, Serializable>()
+                    : new HashMap<String, Serializable>(current);
+            changed.put(key, value);
+            if (PROPERTIES_UPDATER.compareAndSet(this, current, changed)) {
+                return;
+            }
         }
-        properties.put(key, value);
     }
 
     /**
@@ -147,25 +180,271 @@ public class ServiceContext implements Serializable {
      * 
      * @return property key values, String elements
      */
-    public synchronized Iterator<String> getPropertyKeys() {
-        if (properties == null) {
-            properties = new HashMap<String, Serializable>();
+    public Iterator<String> getPropertyKeys() {
+        Map<String, Serializable> current = properties;
+        if (current == null) {
+            return Collections.<String> emptySet().iterator();
+        }
+        return Collections.unmodifiableSet(current.keySet()).iterator();
+    }
+
+    /**
+     * Writes this context in a compact form, e.g. for propagation to remote
+     * services via message headers. Strings, numbers and booleans are written
+     * as such, other property values via Java serialization. Only the classes
+     * of {@link #SERIALIZABLE_CLASSES}, enums and the classes given by the
+     * system property {@link #SERIALIZABLE_CLASSES_PROPERTY} are accepted when
+     * such a value is read.
+     */
+    public void writeCompact(DataOutput out) throws IOException {
+        writeNullableString(out, userId);
+        writeNullableString(out, sessionId);
+        writeNullableString(out, applicationId);
+        out.writeInt(roles.size());
+        for (String role : roles) {
+            writeString(out, role);
+        }
+        Map<String, Serializable> current = properties;
+        out.writeInt(current == null ? -1 : current.size());
+        if (current != null) {
+            for (Map.Entry<String, Serializable> entry : current.entrySet()) {
+                writeString(out, entry.getKey());
+                writeValue(out, entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Reads a context written by {@link #writeCompact(DataOutput)}.
+     */
+    public static ServiceContext readCompact(DataInput in) throws IOException {
+        String userId = readNullableString(in);
+        String sessionId = readNullableString(in);
+        String applicationId = readNullableString(in);
+        int roleCount = in.readInt();
+        Set<String> roles = new HashSet<String>();
+        for (int i = 0; i < roleCount; i++) {
+            roles.add(readString(in));
+        }
+        ServiceContext result = new ServiceContext(userId, sessionId, applicationId, roles);
+        int propertyCount = in.readInt();
+        if (propertyCount >= 0) {
+            Map<String, Serializable> properties = new HashMap<String, Serializable>();
+            for (int i = 0; i < propertyCount; i++) {
+                String key = readString(in);
+                properties.put(key, readValue(in));
+            }
+            result.properties = properties;
+        }
+        return result;
+    }
+
+    public byte[] toCompactBytes() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try {
+            writeCompact(new DataOutputStream(bytes));
+        } catch (IOException e) {
+            throw new IllegalStateException("Can't write ServiceContext: " + e.getMessage(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    public static ServiceContext fromCompactBytes(byte[] bytes) {
+        try {
+            return readCompact(new DataInputStream(new ByteArrayInputStream(bytes)));
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Can't read ServiceContext: " + e.getMessage(), e);
+        }
+    }
+
+    private static final byte NULL_VALUE = 0;
+    private static final byte STRING_VALUE = 1;
+    private static final byte BOOLEAN_VALUE = 2;
+    private static final byte INTEGER_VALUE = 3;
+    private static final byte LONG_VALUE = 4;
+    private static final byte SERIALIZED_VALUE = 5;
+
+    /**
+     * System property with a comma separated list of additional class names
+     * or package prefixes (ending with '.') of property values that are read
+     * from the compact form.
+     */
+    public static final String SERIALIZABLE_CLASSES_PROPERTY = "sculptor.serviceContext.serializableClasses";
+
+    /**
+     * Class names and package prefixes (ending with '.') of property values
+     * that are read from the compact form by default.
+     */
+    public static final Set<String> SERIALIZABLE_CLASSES = Collections.unmodifiableSet(new HashSet<String>(
+            Arrays.asList("java.lang.Number", "java.lang.Boolean", "java.lang.Byte", "java.lang.Character",
+                    "java.lang.Short", "java.lang.Integer", "java.lang.Long", "java.lang.Float",
+                    "java.lang.Double", "java.lang.String", "java.lang.Enum", "java.math.BigDecimal",
+                    "java.math.BigInteger", "java.util.Date", "java.sql.Date", "java.sql.Time",
+                    "java.sql.Timestamp", "java.time.")));
+
+    private static void writeNullableString(DataOutput out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            writeString(out, value);
+        }
+    }
+
+    private static String readNullableString(DataInput in) throws IOException {
+        return in.readBoolean() ? readString(in) : null;
+    }
+
+    /**
+     * Length prefixed UTF-8, since {@link DataOutput#writeUTF(String)} is
+     * limited to 64 KB.
+     */
+    private static void writeString(DataOutput out, String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in) throws IOException {
+        return new String(readBytes(in), StandardCharsets.UTF_8);
+    }
+
+    private static byte[] readBytes(DataInput in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            throw new IOException("Invalid ServiceContext length: " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return bytes;
+    }
+
+    private static void writeValue(DataOutput out, Serializable value) throws IOException {
+        if (value == null) {
+            out.writeByte(NULL_VALUE);
+        } else if (value instanceof String) {
+            out.writeByte(STRING_VALUE);
+            writeString(out, (String) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN_VALUE);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INTEGER_VALUE);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG_VALUE);
+            out.writeLong((Long) value);
+        } else {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream objectOut = new ObjectOutputStream(bytes);
+            objectOut.writeObject(value);
+            objectOut.close();
+            out.writeByte(SERIALIZED_VALUE);
+            out.writeInt(bytes.size());
+            out.write(bytes.toByteArray());
+        }
+    }
+
+    private static Serializable readValue(DataInput in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+        case NULL_VALUE:
+            return null;
+        case STRING_VALUE:
+            return readString(in);
+        case BOOLEAN_VALUE:
+            return in.readBoolean();
+        case INTEGER_VALUE:
+            return in.readInt();
+        case LONG_VALUE:
+            return in.readLong();
+        case SERIALIZED_VALUE:
+            ObjectInputStream objectIn = new PropertyValueInputStream(new ByteArrayInputStream(readBytes(in)));
+            try {
+                return (Serializable) objectIn.readObject();
+            } catch (ClassNotFoundException e) {
+                throw new IOException("Can't read ServiceContext property: " + e.getMessage(), e);
+            } finally {
+                objectIn.close();
+            }
+        default:
+            throw new IOException("Unknown ServiceContext property type: " + type);
+        }
+    }
+
+    /**
+     * Reads serialized property values, only the allowed classes are resolved
+     * so that arbitrary classes aren't instantiated from received messages.
+     * Classes are loaded by the context class loader of the thread, like
+     * Spring's ConfigurableObjectInputStream with the default class loader,
+     * e.g. when the context is read from an event outbox.
+     */
+    private static class PropertyValueInputStream extends ObjectInputStream {
+
+        PropertyValueInputStream(InputStream in) throws IOException {
+            super(in);
+        }
+
+        @Override
+        protected Class<?> resolveClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            Class<?> clazz = loadClass(desc);
+            Class<?> type = clazz;
+            while (type.isArray()) {
+                type = type.getComponentType();
+            }
+            if (!type.isPrimitive() && !type.isEnum() && !isAllowed(type.getName())) {
+                throw new InvalidClassException(clazz.getName(), "Not allowed as ServiceContext property");
+            }
+            return clazz;
+        }
+
+        private Class<?> loadClass(ObjectStreamClass desc) throws IOException, ClassNotFoundException {
+            ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+            if (classLoader == null) {
+                classLoader = ServiceContext.class.getClassLoader();
+            }
+            try {
+                return Class.forName(desc.getName(), false, classLoader);
+            } catch (ClassNotFoundException e) {
+                // primitive types
+                return super.resolveClass(desc);
+            }
+        }
+
+        private static boolean isAllowed(String className) {
+            if (isAllowed(className, SERIALIZABLE_CLASSES)) {
+                return true;
+            }
+            String additional = System.getProperty(SERIALIZABLE_CLASSES_PROPERTY);
+            return additional != null
+                    && isAllowed(className, new HashSet<String>(Arrays.asList(additional.trim().split(
+                            "\\s*,\\s*"))));
+        }
+
+        private static boolean isAllowed(String className, Set<String> allowed) {
+            if (allowed.contains(className)) {
+                return true;
+            }
+            for (String each : allowed) {
+                if (each.endsWith(".") && className.startsWith(each)) {
+                    return true;
+                }
+            }
+            return false;
         }
-        return properties.keySet().iterator();
     }
 
     /**
      * @return String representation of this instance
      */
     @Override
-    public synchronized String toString() {
-        if (properties == null) {
+    public String toString() {
+        Map<String, Serializable> current = properties;
+        if (current == null) {
             return "user-id=" + userId + ", session-id=" + sessionId + ", application-id=" + applicationId;
         } else {
             StringBuilder sb = new StringBuilder();
             sb.append("user-id=" + userId + ", session-id=" + sessionId + ", application-id=" + applicationId);
-            for (String key : properties.keySet()) {
-                sb.append(", " + key + "=" + properties.get(key));
+            for (Map.Entry<String, Serializable> entry : current.entrySet()) {
+                sb.append(", " + entry.getKey() + "=" + entry.getValue());
             }
             return sb.toString();
         }
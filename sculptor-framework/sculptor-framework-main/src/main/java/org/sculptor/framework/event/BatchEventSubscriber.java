@@ -0,0 +1,34 @@
+/*
+ * Copyright 2014 The Sculptor Project Team, including the original
+ * author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sculptor.framework.event;
+
+import java.util.List;
+
+/**
+ * Subscriber accepting several events at once. Event buses delivering events
+ * in batches pass the whole batch, other subscribers receive the events of a
+ * batch one by one.
+ */
+public interface BatchEventSubscriber extends EventSubscriber {
+
+    /**
+     * @param events
+     *            the events in the order they were published
+     */
+    void receive(List<Event> events);
+
+}
@@ -16,8 +16,15 @@
  */
 package org.sculptor.framework.event;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.annotation.Resource;
 
@@ -28,16 +35,50 @@ import org.apache.camel.Exchange;
 import org.apache.camel.ProducerTemplate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+/**
+ * Publishes events to Camel endpoints named as the topic, by default
+ * <code>direct:</code> endpoints. The endpoint of a topic is resolved once and
+ * cached, the events are passed by reference.
+ * <p>
+ * Topics defined via {@link #setAsyncTopics(Map)} are delivered
+ * asynchronously via <code>seda:</code> endpoints (or <code>vm:</code>, see
+ * {@link #setAsyncTopicPrefix(String)}) with a bounded queue. Publishers
+ * block when the queue is full. All subscribers of an asynchronous topic
+ * receive every event.
+ * <p>
+ * With a {@link #setBatchSize(int) batch size} greater than 1 the events of
+ * asynchronous topics are collected and sent as one exchange with a list of
+ * events, when the batch is full or {@link #setBatchWaitMillis(long)} have
+ * passed. {@link BatchEventSubscriber}s receive the whole list, other
+ * subscribers receive the events one by one, in the order they were
+ * published. When the bus is created with <code>propagateException</code> a
+ * failure to send a batch in the background is thrown by the next publish to
+ * the topic, and {@link #flush()} throws the first failure. The events of a
+ * failed batch are kept and sent before the events published afterwards, up
+ * to the size of the topic queue. Older events exceeding it, and events that
+ * can't be sent by {@link #destroy()}, are dropped and logged. Publish
+ * returns false after {@link #destroy()}.
+ */
 @Component
-public class CamelEventBusImpl implements EventBus {
+public class CamelEventBusImpl implements EventBus, DisposableBean {
     private static final String DEFAULT_TOPIC_PREFIX = "direct:";
+    private static final String DEFAULT_ASYNC_TOPIC_PREFIX = "seda:";
 
     private final Logger log = LoggerFactory.getLogger(getClass());
 
     private final Map<EventListener, Consumer> listeners = new HashMap<EventListener, Consumer>();
+    private final Map<String, Endpoint> endpoints = new ConcurrentHashMap<String, Endpoint>();
+    private final Map<String, TopicBatch> batches = new ConcurrentHashMap<String, TopicBatch>();
+    private Map<String, Integer> asyncTopics = new HashMap<String, Integer>();
+    private String asyncTopicPrefix = DEFAULT_ASYNC_TOPIC_PREFIX;
+    private int batchSize = 1;
+    private long batchWaitMillis = 10;
+    private ScheduledExecutorService batchScheduler;
+    private volatile boolean destroyed;
 
     @Resource(name = "producerTemplate")
     private ProducerTemplate producer;
@@ -56,8 +97,17 @@ public class CamelEventBusImpl implements EventBus {
     }
 
     public boolean publish(String toTopic, Event event) {
+        if (destroyed) {
+            log.warn("Event bus is destroyed, event {} was not published to topic {}", event, toTopic);
+            return false;
+        }
         try {
-            producer.sendBody(prefixed(toTopic), event);
+            TopicBatch batch = getBatch(toTopic);
+            if (batch == null) {
+                producer.sendBody(getEndpoint(toTopic), event);
+            } else {
+                batch.add(event);
+            }
             return true;
         } catch (RuntimeException e) {
             if (propagateException) {
@@ -71,11 +121,20 @@ public class CamelEventBusImpl implements EventBus {
 
     public boolean subscribe(String toTopic, final EventSubscriber subscriber) {
         try {
-            Endpoint endpoint = camelContext.getEndpoint(prefixed(toTopic));
+            Endpoint endpoint = getEndpoint(toTopic);
             Consumer consumer = endpoint.createConsumer(new org.apache.camel.Processor() {
+                @SuppressWarnings("unchecked")
                 public void process(Exchange exchange) throws Exception {
-                    Event event = (Event) exchange.getIn().getBody();
-                    subscriber.receive(event);
+                    Object body = exchange.getIn().getBody();
+                    if (!(body instanceof List)) {
+                        subscriber.receive((Event) body);
+                    } else if (subscriber instanceof BatchEventSubscriber) {
+                        ((BatchEventSubscriber) subscriber).receive((List<Event>) body);
+                    } else {
+                        for (Event each : (List<Event>) body) {
+                            subscriber.receive(each);
+                        }
+                    }
                 }
             });
             camelContext.addService(consumer);
@@ -112,9 +171,244 @@ public class CamelEventBusImpl implements EventBus {
     protected String prefixed(String topic) {
         if (topic.contains(":")) {
             return topic;
+        } else if (asyncTopics.containsKey(topic)) {
+            return asyncTopicPrefix + topic + "?size=" + asyncTopics.get(topic)
+                    + "&blockWhenFull=true&multipleConsumers=true";
         } else {
             return DEFAULT_TOPIC_PREFIX + topic;
         }
     }
 
+    protected Endpoint getEndpoint(String topic) {
+        Endpoint endpoint = endpoints.get(topic);
+        if (endpoint == null) {
+            endpoint = camelContext.getEndpoint(prefixed(topic));
+            endpoints.put(topic, endpoint);
+        }
+        return endpoint;
+    }
+
+    private TopicBatch getBatch(String topic) {
+        if (batchSize <= 1 || !asyncTopics.containsKey(topic)) {
+            return null;
+        }
+        TopicBatch batch = batches.get(topic);
+        if (batch == null) {
+            synchronized (batches) {
+                batch = batches.get(topic);
+                if (batch == null) {
+                    if (destroyed) {
+                        throw new IllegalStateException("Event bus is destroyed");
+                    }
+                    batch = new TopicBatch(topic, getEndpoint(topic));
+                    batches.put(topic, batch);
+                    startBatchScheduler();
+                }
+            }
+        }
+        return batch;
+    }
+
+    private void startBatchScheduler() {
+        if (batchScheduler != null) {
+            return;
+        }
+        batchScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sculptor-camel-event-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+        batchScheduler.scheduleWithFixedDelay(this::flushScheduled, batchWaitMillis, batchWaitMillis,
+                TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends the collected events of all topics.
+     */
+    public void flush() {
+        RuntimeException failure = null;
+        for (Map.Entry<String, TopicBatch> each : batches.entrySet()) {
+            try {
+                each.getValue().flush();
+            } catch (RuntimeException e) {
+                log.warn(String.format("Exception when publishing batch of events to topic %s", each.getKey()), e);
+                if (failure == null) {
+                    failure = e;
+                }
+            }
+        }
+        if (failure != null && propagateException) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Flush by the scheduler, which must not throw. Failures are thrown by
+     * the next publish to the topic instead.
+     */
+    private void flushScheduled() {
+        for (TopicBatch each : batches.values()) {
+            each.flushScheduled();
+        }
+    }
+
+    /**
+     * Stops the batch scheduler and sends the collected events. Events that
+     * can't be sent are logged as lost, since there is no later publish that
+     * could report the failure.
+     */
+    @Override
+    public void destroy() {
+        synchronized (batches) {
+            destroyed = true;
+            if (batchScheduler != null) {
+                batchScheduler.shutdown();
+                batchScheduler = null;
+            }
+        }
+        for (TopicBatch each : batches.values()) {
+            each.flushOnDestroy();
+        }
+    }
+
+    /**
+     * Events of one topic waiting to be sent. Sending is done while holding
+     * the lock, so that batches are sent in order.
+     */
+    private class TopicBatch {
+        private final String topic;
+        private final Endpoint endpoint;
+        private List<Event> events = new ArrayList<Event>();
+        private RuntimeException failure;
+
+        TopicBatch(String topic, Endpoint endpoint) {
+            this.topic = topic;
+            this.endpoint = endpoint;
+        }
+
+        synchronized void add(Event event) {
+            if (failure != null) {
+                RuntimeException e = failure;
+                failure = null;
+                throw new RuntimeException(String.format("Publishing batch of events to topic %s failed: %s", topic,
+                        e.getMessage()), e);
+            }
+            events.add(event);
+            if (events.size() >= batchSize) {
+                flush();
+            }
+        }
+
+        /**
+         * Sends the collected events. When sending fails the events are put
+         * back in front of the events published meanwhile, so that they are
+         * sent in order with the next batch.
+         */
+        synchronized void flush() {
+            if (events.isEmpty()) {
+                return;
+            }
+            List<Event> batch = events;
+            events = new ArrayList<Event>(batchSize);
+            try {
+                producer.sendBody(endpoint, Collections.unmodifiableList(batch));
+            } catch (RuntimeException e) {
+                batch.addAll(events);
+                events = batch;
+                dropExcess();
+                throw e;
+            }
+        }
+
+        /**
+         * Limits the events kept after failures to the size of the topic queue
+         * by dropping the oldest ones.
+         */
+        private void dropExcess() {
+            Integer queueSize = asyncTopics.get(topic);
+            int max = Math.max(batchSize, queueSize == null ? 0 : queueSize);
+            if (events.size() > max) {
+                List<Event> dropped = events.subList(0, events.size() - max);
+                log.error("Dropped {} events of topic {} after failures: {}", dropped.size(), topic, dropped);
+                dropped.clear();
+            }
+        }
+
+        synchronized void flushOnDestroy() {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                log.error(String.format("Exception when publishing batch of events to topic %s, %d events are lost: %s",
+                        topic, events.size(), events), e);
+                events.clear();
+            }
+        }
+
+        synchronized void flushScheduled() {
+            try {
+                flush();
+            } catch (RuntimeException e) {
+                log.warn(String.format("Exception when publishing batch of events to topic %s", topic), e);
+                if (propagateException) {
+                    failure = e;
+                }
+            }
+        }
+    }
+
+    public void setProducerTemplate(ProducerTemplate producer) {
+        this.producer = producer;
+    }
+
+    public void setCamelContext(CamelContext camelContext) {
+        this.camelContext = camelContext;
+    }
+
+    /**
+     * Topics delivered asynchronously, with the maximum number of pending
+     * events (or batches) of the topic.
+     */
+    public void setAsyncTopics(Map<String, Integer> asyncTopics) {
+        this.asyncTopics = new HashMap<String, Integer>(asyncTopics);
+    }
+
+    public Map<String, Integer> getAsyncTopics() {
+        return asyncTopics;
+    }
+
+    /**
+     * Component of asynchronous topics, <code>seda:</code> by default. Use
+     * <code>vm:</code> to deliver events between Camel contexts of the JVM.
+     */
+    public void setAsyncTopicPrefix(String asyncTopicPrefix) {
+        this.asyncTopicPrefix = asyncTopicPrefix;
+    }
+
+    public String getAsyncTopicPrefix() {
+        return asyncTopicPrefix;
+    }
+
+    /**
+     * Maximum number of events of asynchronous topics sent as one exchange, 1
+     * (no batching) by default.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Maximum time events wait for a batch to be completed, 10 ms by default.
+     */
+    public void setBatchWaitMillis(long batchWaitMillis) {
+        this.batchWaitMillis = batchWaitMillis;
+    }
+
+    public long getBatchWaitMillis() {
+        return batchWaitMillis;
+    }
+
 }
\ No newline at end of file
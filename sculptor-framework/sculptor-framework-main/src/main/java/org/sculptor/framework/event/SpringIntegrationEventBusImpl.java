@@ -18,8 +18,19 @@ package org.sculptor.framework.event;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
+import org.sculptor.framework.context.ContextPropagation;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.ApplicationContextAware;
 import org.springframework.integration.MessageRejectedException;
@@ -30,18 +41,226 @@ import org.springframework.messaging.MessageHandler;
 import org.springframework.messaging.MessageHandlingException;
 import org.springframework.messaging.support.GenericMessage;
 import org.springframework.stereotype.Component;
+import org.springframework.util.ErrorHandler;
 
+/**
+ * Publishes events to the {@link PublishSubscribeChannel} bean named as the
+ * topic.
+ * <p>
+ * By default the subscribers are invoked by the publishing thread. For topics
+ * with a concurrency defined via {@link #setTopicConcurrency(Map)} the events
+ * are delivered asynchronously by that number of partitions, each with its own
+ * thread. The partition of an event is given by the
+ * {@link PartitionedEvent#getPartitionKey() partition key}, events without
+ * partition key are delivered by the first partition. So subscribers are
+ * invoked concurrently for events of different partitions, while events with
+ * the same partition key are delivered in the order they were published. The
+ * subscribers are invoked with the {@link ContextPropagation contexts} of the
+ * publishing thread. The number of events waiting for delivery per partition
+ * is available via {@link #getBacklog(String)}.
+ * <p>
+ * The backlog of a partition is limited by {@link #setMaxBacklog(int)}. When it
+ * is full the event is rejected and publish returns false, the event isn't
+ * delivered by the publishing thread because that would break the order of the
+ * partition. Publish also returns false after {@link #destroy()}. Failures of
+ * asynchronous delivery are counted, see {@link #getFailedCount(String)}, and
+ * passed to the {@link #setErrorHandler(ErrorHandler) error handler}, which
+ * logs them by default.
+ */
 @Component
-public class SpringIntegrationEventBusImpl implements EventBus, ApplicationContextAware {
+public class SpringIntegrationEventBusImpl implements EventBus, ApplicationContextAware, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(SpringIntegrationEventBusImpl.class);
+
     private ApplicationContext ctx;
     private final Map<EventListener, MessageHandler> listeners = new HashMap<EventListener, MessageHandler>();
+    private Map<String, Integer> topicConcurrency = new HashMap<String, Integer>();
+    private final Map<String, Partitions> partitions = new ConcurrentHashMap<String, Partitions>();
+    private int maxBacklog = 10000;
+    private ErrorHandler errorHandler;
+    private volatile boolean destroyed;
 
     @Override
     public boolean publish(String topic, Event event) {
+        if (destroyed) {
+            log.warn("Event bus is destroyed, event {} was not published to topic {}", event, topic);
+            return false;
+        }
         PublishSubscribeChannel intChannel = getChannel(topic);
         GenericMessage<Object> intMessage = new GenericMessage<Object>(event);
-        intChannel.send(intMessage);
-        return true;
+        try {
+            Partitions topicPartitions = getPartitions(topic);
+            if (topicPartitions == null) {
+                intChannel.send(intMessage);
+            } else {
+                topicPartitions.deliver(intChannel, intMessage, event);
+            }
+            return true;
+        } catch (RejectedExecutionException e) {
+            log.warn("Event {} was rejected by topic {}, backlog is full or event bus is destroyed", event, topic);
+            return false;
+        }
+    }
+
+    /**
+     * Number of partitions (threads) delivering the events of a topic
+     * concurrently, topics without concurrency are delivered by the publishing
+     * thread.
+     */
+    public void setTopicConcurrency(Map<String, Integer> topicConcurrency) {
+        this.topicConcurrency = new HashMap<String, Integer>(topicConcurrency);
+    }
+
+    public Map<String, Integer> getTopicConcurrency() {
+        return topicConcurrency;
+    }
+
+    /**
+     * Maximum number of events waiting for delivery per partition, 10000 by
+     * default. Events published to a full partition are rejected.
+     */
+    public void setMaxBacklog(int maxBacklog) {
+        this.maxBacklog = maxBacklog;
+    }
+
+    public int getMaxBacklog() {
+        return maxBacklog;
+    }
+
+    /**
+     * Handler of exceptions thrown by subscribers when events are delivered
+     * asynchronously, logs the exception by default.
+     */
+    public void setErrorHandler(ErrorHandler errorHandler) {
+        this.errorHandler = errorHandler;
+    }
+
+    /**
+     * @return number of events waiting for delivery per partition of the
+     *         topic, empty for topics without concurrency
+     */
+    public int[] getBacklog(String topic) {
+        Partitions topicPartitions = partitions.get(topic);
+        if (topicPartitions == null) {
+            return new int[0];
+        }
+        int[] result = new int[topicPartitions.backlog.length];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = topicPartitions.backlog[i].get();
+        }
+        return result;
+    }
+
+    /**
+     * @return number of events delivered asynchronously for the topic
+     */
+    public long getDeliveredCount(String topic) {
+        Partitions topicPartitions = partitions.get(topic);
+        return topicPartitions == null ? 0 : topicPartitions.delivered.get();
+    }
+
+    /**
+     * @return number of events of the topic which failed in asynchronous
+     *         delivery
+     */
+    public long getFailedCount(String topic) {
+        Partitions topicPartitions = partitions.get(topic);
+        return topicPartitions == null ? 0 : topicPartitions.failed.get();
+    }
+
+    private Partitions getPartitions(String topic) {
+        Integer concurrency = topicConcurrency.get(topic);
+        if (concurrency == null || concurrency < 1) {
+            return null;
+        }
+        Partitions result = partitions.get(topic);
+        if (result == null) {
+            synchronized (partitions) {
+                result = partitions.get(topic);
+                if (result == null) {
+                    if (destroyed) {
+                        throw new RejectedExecutionException("Event bus is destroyed");
+                    }
+                    result = new Partitions(topic, concurrency, maxBacklog, errorHandler);
+                    partitions.put(topic, result);
+                }
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void destroy() {
+        synchronized (partitions) {
+            destroyed = true;
+        }
+        for (Partitions each : partitions.values()) {
+            each.shutdown();
+        }
+    }
+
+    private static class Partitions {
+        private final ThreadPoolExecutor[] executors;
+        private final AtomicInteger[] backlog;
+        private final AtomicLong delivered = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final ErrorHandler errorHandler;
+
+        Partitions(String topic, int concurrency, int maxBacklog, ErrorHandler errorHandler) {
+            this.errorHandler = errorHandler;
+            executors = new ThreadPoolExecutor[concurrency];
+            backlog = new AtomicInteger[concurrency];
+            for (int i = 0; i < concurrency; i++) {
+                final String threadName = "sculptor-event-" + topic + "-" + i;
+                executors[i] = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS,
+                        new LinkedBlockingQueue<Runnable>(maxBacklog), runnable -> {
+                            Thread thread = new Thread(runnable, threadName);
+                            thread.setDaemon(true);
+                            return thread;
+                        }, new ThreadPoolExecutor.AbortPolicy());
+                backlog[i] = new AtomicInteger();
+            }
+        }
+
+        void deliver(final PublishSubscribeChannel channel, final Message<?> message, Event event) {
+            Object key = event instanceof PartitionedEvent ? ((PartitionedEvent) event).getPartitionKey() : null;
+            final int partition = key == null ? 0 : Math.floorMod(key.hashCode(), executors.length);
+            backlog[partition].incrementAndGet();
+            try {
+                executors[partition].execute(ContextPropagation.wrap(() -> {
+                    try {
+                        channel.send(message);
+                        delivered.incrementAndGet();
+                    } catch (RuntimeException e) {
+                        failed.incrementAndGet();
+                        if (errorHandler == null) {
+                            log.error("Delivery of event " + message.getPayload() + " failed: " + e.getMessage(), e);
+                        } else {
+                            errorHandler.handleError(e);
+                        }
+                    } finally {
+                        backlog[partition].decrementAndGet();
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                backlog[partition].decrementAndGet();
+                throw e;
+            }
+        }
+
+        void shutdown() {
+            for (ThreadPoolExecutor executor : executors) {
+                executor.shutdown();
+            }
+            for (ThreadPoolExecutor executor : executors) {
+                try {
+                    executor.awaitTermination(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
     }
 
     @Override
@@ -26,6 +26,7 @@ import org.aspectj.lang.annotation.Aspect;
 import org.sculptor.framework.context.ServiceContext;
 import org.sculptor.framework.event.Event;
 import org.sculptor.framework.event.EventBus;
+import org.sculptor.framework.event.outbox.EventOutboxRelay;
 import org.sculptor.framework.util.FactoryHelper;
 import org.springframework.beans.BeansException;
 import org.springframework.context.ApplicationContext;
@@ -38,11 +39,17 @@ import org.springframework.context.ApplicationContextAware;
  * is published. When eventType is specified in the annotation then a new event
  * of this type is created using a constructor matching the method return value
  * or method parameters.
+ * <p>
+ * When an {@link EventOutboxRelay} is defined, the event is stored in its
+ * outbox within the transaction of the method and published after commit,
+ * instead of being published immediately.
  */
 @Aspect
 public class PublishAdvice implements ApplicationContextAware {
 
     private ApplicationContext applicationContext;
+    private volatile EventOutboxRelay eventOutboxRelay;
+    private volatile boolean eventOutboxRelayResolved;
 
     @Around("@annotation(publish)")
     public Object publish(ProceedingJoinPoint joinPoint, Publish publish) throws Throwable {
@@ -74,8 +81,13 @@ public class PublishAdvice implements ApplicationContextAware {
                     "Return value or some argument need to be of event type, or match constructor of specified eventType");
         }
 
-        EventBus eventBus = getEventBus(publish.eventBus());
-        eventBus.publish(topic, event);
+        EventOutboxRelay relay = getEventOutboxRelay();
+        if (relay != null) {
+            relay.enqueue(publish.eventBus(), topic, event);
+        } else {
+            EventBus eventBus = getEventBus(publish.eventBus());
+            eventBus.publish(topic, event);
+        }
 
         return retVal;
     }
@@ -88,6 +100,19 @@ public class PublishAdvice implements ApplicationContextAware {
         return (EventBus) bean;
     }
 
+    protected EventOutboxRelay getEventOutboxRelay() {
+        if (!eventOutboxRelayResolved) {
+            eventOutboxRelay = getApplicationContext().getBeanProvider(EventOutboxRelay.class).getIfAvailable();
+            eventOutboxRelayResolved = true;
+        }
+        return eventOutboxRelay;
+    }
+
+    public void setEventOutboxRelay(EventOutboxRelay eventOutboxRelay) {
+        this.eventOutboxRelay = eventOutboxRelay;
+        this.eventOutboxRelayResolved = true;
+    }
+
     private Event createEvent(Class<?> clazz, Object retVal, Object[] args) {
         Object occured;
         if (isJoda(clazz)) {
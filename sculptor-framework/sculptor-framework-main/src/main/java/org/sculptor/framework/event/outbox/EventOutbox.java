@@ -0,0 +1,50 @@
+/*
+ * Copyright 2014 The Sculptor Project Team, including the original
+ * author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sculptor.framework.event.outbox;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Durable store of events which are published by the
+ * {@link EventOutboxRelay} after the transaction storing them is committed.
+ */
+public interface EventOutbox {
+
+    /**
+     * Stores the entry within the current transaction, if any.
+     */
+    void add(OutboxEntry entry);
+
+    /**
+     * @return the oldest entries, at most max entries, in the order they were
+     *         added
+     */
+    List<OutboxEntry> fetch(int max);
+
+    /**
+     * Removes the published entries.
+     */
+    void remove(Collection<String> ids);
+
+    /**
+     * Moves the entry which can't be published to the dead letters, it is
+     * kept but no longer fetched.
+     */
+    void deadLetter(String id);
+
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright 2014 The Sculptor Project Team, including the original
+ * author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sculptor.framework.event.outbox;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.sculptor.framework.context.ServiceContext;
+import org.sculptor.framework.context.ServiceContextStore;
+import org.sculptor.framework.event.Event;
+import org.sculptor.framework.event.EventBus;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.BeansException;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.ApplicationContextAware;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Publishes events via an {@link EventOutbox}. {@link #enqueue(String, String,
+ * Event)} stores the event in the outbox within the current transaction, so
+ * events of rolled back transactions are never published. After the commit a
+ * relay thread publishes the stored events in batches to their event bus and
+ * removes them from the outbox. The publisher doesn't wait for the
+ * subscribers.
+ * <p>
+ * Delivery is at-least-once: events are removed after they were published,
+ * an event bus returning false or throwing an exception stops the batch and
+ * the remaining events are retried after {@link #setPollIntervalMillis(long)}.
+ * An event that fails {@link #setMaxAttempts(int)} times, or can't be read
+ * from the outbox, is moved to the dead letters of the outbox, so that it
+ * doesn't block the following events. Dead letters are kept in the outbox
+ * until they are handled manually.
+ * Events may also be published twice after a crash or when several
+ * applications relay the same outbox. Subscribers detect duplicates by the
+ * unique id of the event, which is available as {@link #EVENT_ID} property of
+ * the {@link ServiceContext} (the context of the publisher) and in the MDC
+ * while the event is published.
+ * <p>
+ * When a bean of this type is defined the
+ * {@link org.sculptor.framework.event.annotation.PublishAdvice} uses it for
+ * all events of the {@link org.sculptor.framework.event.annotation.Publish}
+ * annotation.
+ */
+public class EventOutboxRelay implements ApplicationContextAware, SmartLifecycle {
+
+    public static final String EVENT_ID = "eventId";
+
+    private static final Logger log = LoggerFactory.getLogger(EventOutboxRelay.class);
+
+    private final EventOutbox outbox;
+    private ApplicationContext applicationContext;
+    private int batchSize = 100;
+    private long pollIntervalMillis = 1000;
+
+    private final Object monitor = new Object();
+    private boolean wakeUpPending;
+    private volatile boolean running;
+    private Thread relayThread;
+    private final AtomicLong relayedCount = new AtomicLong();
+    private final AtomicLong failureCount = new AtomicLong();
+    private final AtomicLong deadLetterCount = new AtomicLong();
+    private int maxAttempts = 10;
+    private final Map<String, Integer> attempts = new ConcurrentHashMap<String, Integer>();
+
+    public EventOutboxRelay(EventOutbox outbox) {
+        this.outbox = outbox;
+    }
+
+    /**
+     * Stores the event in the outbox, it is published after the current
+     * transaction is committed, or immediately when there is no transaction.
+     */
+    public void enqueue(String eventBus, String topic, Event event) {
+        outbox.add(new OutboxEntry(UUID.randomUUID().toString(), eventBus, topic, event, ServiceContextStore.get()));
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wakeUp();
+                }
+            });
+        } else {
+            wakeUp();
+        }
+    }
+
+    /**
+     * Lets the relay thread check the outbox without waiting for the poll
+     * interval.
+     */
+    public void wakeUp() {
+        synchronized (monitor) {
+            wakeUpPending = true;
+            monitor.notifyAll();
+        }
+    }
+
+    /**
+     * Publishes the oldest events of the outbox, at most batch size events.
+     *
+     * @return number of published events
+     */
+    public int relayBatch() {
+        List<OutboxEntry> entries = outbox.fetch(batchSize);
+        forgetAttemptsOfOtherEntries(entries);
+        List<String> relayed = new ArrayList<String>(entries.size());
+        try {
+            for (OutboxEntry each : entries) {
+                if (publish(each)) {
+                    relayed.add(each.getId());
+                    attempts.remove(each.getId());
+                } else {
+                    failureCount.incrementAndGet();
+                    if (!deadLetterAfterMaxAttempts(each)) {
+                        log.warn("Publishing {} failed, retry later", each);
+                        break;
+                    }
+                }
+            }
+        } finally {
+            outbox.remove(relayed);
+            relayedCount.addAndGet(relayed.size());
+        }
+        return relayed.size();
+    }
+
+    /**
+     * Counts the failed attempt of the entry, and moves the entry to the dead
+     * letters of the outbox when it has failed max attempts times.
+     *
+     * @return true if the entry was moved to the dead letters
+     */
+    private boolean deadLetterAfterMaxAttempts(OutboxEntry entry) {
+        int attempt = attempts.merge(entry.getId(), 1, Integer::sum);
+        if (entry.getEvent() != null && (maxAttempts <= 0 || attempt < maxAttempts)) {
+            return false;
+        }
+        outbox.deadLetter(entry.getId());
+        attempts.remove(entry.getId());
+        deadLetterCount.incrementAndGet();
+        log.error("Publishing {} failed {} times, moved to dead letters of outbox", entry, attempt);
+        return true;
+    }
+
+    /**
+     * Attempts are only counted for entries still in the outbox, entries
+     * failing in a batch are always fetched again as the oldest ones.
+     */
+    private void forgetAttemptsOfOtherEntries(List<OutboxEntry> entries) {
+        if (attempts.isEmpty()) {
+            return;
+        }
+        Set<String> ids = new HashSet<String>();
+        for (OutboxEntry each : entries) {
+            ids.add(each.getId());
+        }
+        attempts.keySet().retainAll(ids);
+    }
+
+    private boolean publish(OutboxEntry entry) {
+        if (entry.getEvent() == null) {
+            log.error("Event of {} can't be read from the outbox", entry);
+            return false;
+        }
+        ServiceContext previous = ServiceContextStore.get();
+        ServiceContext serviceContext = entry.getServiceContext() == null ? new ServiceContext(null, null, null)
+                : entry.getServiceContext();
+        serviceContext.setProperty(EVENT_ID, entry.getId());
+        ServiceContextStore.set(serviceContext);
+        MDC.put(EVENT_ID, entry.getId());
+        try {
+            return getEventBus(entry.getEventBus()).publish(entry.getTopic(), entry.getEvent());
+        } catch (RuntimeException e) {
+            log.warn("Publishing " + entry + " failed: " + e.getMessage(), e);
+            return false;
+        } finally {
+            MDC.remove(EVENT_ID);
+            ServiceContextStore.set(previous);
+        }
+    }
+
+    protected EventBus getEventBus(String name) {
+        Object bean = applicationContext.getBean(name);
+        if (!(bean instanceof EventBus)) {
+            throw new IllegalStateException("Wrong EventBus type, got: " + bean.getClass().getName());
+        }
+        return (EventBus) bean;
+    }
+
+    private void relay() {
+        while (running) {
+            int relayed = 0;
+            try {
+                relayed = relayBatch();
+            } catch (RuntimeException e) {
+                failureCount.incrementAndGet();
+                log.warn("Relaying events of outbox failed, retry later: " + e.getMessage(), e);
+            }
+            if (relayed < batchSize) {
+                awaitWakeUp();
+            }
+        }
+    }
+
+    private void awaitWakeUp() {
+        synchronized (monitor) {
+            try {
+                if (!wakeUpPending && running) {
+                    monitor.wait(pollIntervalMillis);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            wakeUpPending = false;
+        }
+    }
+
+    @Override
+    public void start() {
+        synchronized (monitor) {
+            if (running) {
+                return;
+            }
+            running = true;
+            relayThread = new Thread(this::relay, "sculptor-event-outbox-relay");
+            relayThread.setDaemon(true);
+            relayThread.start();
+        }
+    }
+
+    @Override
+    public void stop() {
+        Thread thread;
+        synchronized (monitor) {
+            running = false;
+            thread = relayThread;
+            relayThread = null;
+            monitor.notifyAll();
+        }
+        if (thread != null) {
+            try {
+                thread.join(10000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public void setApplicationContext(ApplicationContext applicationContext) throws BeansException {
+        this.applicationContext = applicationContext;
+    }
+
+    public EventOutbox getOutbox() {
+        return outbox;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Maximum number of events published per batch, 100 by default.
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Number of attempts to publish an event before it is moved to the dead
+     * letters of the outbox, 10 by default. 0 retries forever.
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public long getPollIntervalMillis() {
+        return pollIntervalMillis;
+    }
+
+    /**
+     * Interval of checking the outbox when the relay isn't woken up by a
+     * commit, e.g. for events of other applications or events to retry, 1000
+     * ms by default.
+     */
+    public void setPollIntervalMillis(long pollIntervalMillis) {
+        this.pollIntervalMillis = pollIntervalMillis;
+    }
+
+    /**
+     * Number of published events.
+     */
+    public long getRelayedCount() {
+        return relayedCount.get();
+    }
+
+    /**
+     * Number of failed attempts to publish events.
+     */
+    public long getFailureCount() {
+        return failureCount.get();
+    }
+
+    /**
+     * Number of events moved to the dead letters of the outbox.
+     */
+    public long getDeadLetterCount() {
+        return deadLetterCount.get();
+    }
+
+}
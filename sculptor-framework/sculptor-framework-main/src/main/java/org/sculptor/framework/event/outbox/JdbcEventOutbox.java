@@ -0,0 +1,243 @@
+/*
+ * Copyright 2014 The Sculptor Project Team, including the original
+ * author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sculptor.framework.event.outbox;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javax.sql.DataSource;
+
+import org.sculptor.framework.context.ServiceContext;
+import org.sculptor.framework.event.Event;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.core.ConfigurableObjectInputStream;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.ClassUtils;
+
+/**
+ * {@link EventOutbox} storing the entries in a database table, by default
+ * <code>SCULPTOR_EVENT_OUTBOX</code>. The connection is obtained via
+ * {@link JdbcTemplate}, i.e. entries are added within the transaction bound
+ * to the thread, e.g. by the JpaTransactionManager of the application when
+ * it uses the same data source.
+ * <p>
+ * Events are stored with Java serialization, the {@link ServiceContext} of
+ * the publisher in its compact form. The table can be created with
+ * {@link #createTableIfMissing()}, e.g. as init-method of the bean. The column
+ * type of the serialized data is chosen by the database product, see
+ * {@link #setBinaryType(String)}. Dead letters are kept in the table with
+ * <code>DEAD_LETTER = 1</code>, set it to 0 to publish them again.
+ */
+public class JdbcEventOutbox implements EventOutbox {
+
+    public static final String DEFAULT_TABLE_NAME = "SCULPTOR_EVENT_OUTBOX";
+
+    private static final Logger log = LoggerFactory.getLogger(JdbcEventOutbox.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private String tableName = DEFAULT_TABLE_NAME;
+    private String binaryType;
+    private final AtomicLong lastSequenceNr = new AtomicLong();
+
+    public JdbcEventOutbox(DataSource dataSource) {
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+    }
+
+    /**
+     * Creates the outbox table, unless it already exists.
+     */
+    public void createTableIfMissing() {
+        boolean exists = jdbcTemplate.execute((Connection con) -> {
+            DatabaseMetaData metaData = con.getMetaData();
+            for (String each : new String[] { tableName, tableName.toUpperCase(), tableName.toLowerCase() }) {
+                try (ResultSet rs = metaData.getTables(null, null, each, null)) {
+                    if (rs.next()) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        });
+        if (!exists) {
+            jdbcTemplate.execute(getCreateTableSql());
+        }
+    }
+
+    protected String getCreateTableSql() {
+        return "create table " + tableName + " (ID varchar(36) not null primary key, SEQUENCE_NR bigint not null, "
+                + "EVENT_BUS varchar(255) not null, TOPIC varchar(255) not null, EVENT " + getBinaryType()
+                + " not null, SERVICE_CONTEXT " + getBinaryType() + ", DEAD_LETTER smallint default 0 not null)";
+    }
+
+    /**
+     * Column type of the serialized event and service context. Unless defined
+     * via {@link #setBinaryType(String)} it is given by the database product:
+     * bytea for PostgreSQL, longblob for MySQL and MariaDB, varbinary(max) for
+     * SQL Server and blob for other databases.
+     */
+    protected String getBinaryType() {
+        if (binaryType == null) {
+            String product = jdbcTemplate.execute((Connection con) -> con.getMetaData().getDatabaseProductName());
+            binaryType = getBinaryType(product == null ? "" : product.toLowerCase());
+        }
+        return binaryType;
+    }
+
+    private String getBinaryType(String product) {
+        if (product.contains("postgresql")) {
+            return "bytea";
+        } else if (product.contains("mysql") || product.contains("mariadb")) {
+            return "longblob";
+        } else if (product.contains("microsoft sql server")) {
+            return "varbinary(max)";
+        } else {
+            return "blob";
+        }
+    }
+
+    public void setBinaryType(String binaryType) {
+        this.binaryType = binaryType;
+    }
+
+    @Override
+    public void add(final OutboxEntry entry) {
+        final byte[] event = serialize(entry.getEvent());
+        final byte[] serviceContext = entry.getServiceContext() == null ? null : entry.getServiceContext()
+                .toCompactBytes();
+        jdbcTemplate.update("insert into " + tableName
+                + " (ID, SEQUENCE_NR, EVENT_BUS, TOPIC, EVENT, SERVICE_CONTEXT) values (?, ?, ?, ?, ?, ?)", ps -> {
+            ps.setString(1, entry.getId());
+            ps.setLong(2, nextSequenceNr());
+            ps.setString(3, entry.getEventBus());
+            ps.setString(4, entry.getTopic());
+            ps.setBytes(5, event);
+            if (serviceContext == null) {
+                // not BLOB, which isn't compatible with bytea of PostgreSQL
+                ps.setNull(6, Types.VARBINARY);
+            } else {
+                ps.setBytes(6, serviceContext);
+            }
+        });
+    }
+
+    /**
+     * Increasing within this JVM and, based on the current time, roughly
+     * ordered between JVMs.
+     */
+    private long nextSequenceNr() {
+        long now = System.currentTimeMillis() * 1000;
+        while (true) {
+            long last = lastSequenceNr.get();
+            long next = Math.max(now, last + 1);
+            if (lastSequenceNr.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+
+    @Override
+    public List<OutboxEntry> fetch(final int max) {
+        final String sql = "select ID, EVENT_BUS, TOPIC, EVENT, SERVICE_CONTEXT from " + tableName
+                + " where DEAD_LETTER = 0 order by SEQUENCE_NR";
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(sql);
+            ps.setMaxRows(max);
+            return ps;
+        }, (rs, rowNum) -> {
+            String id = rs.getString("ID");
+            Event event = deserialize(id, rs.getBytes("EVENT"));
+            byte[] serviceContextBytes = rs.getBytes("SERVICE_CONTEXT");
+            ServiceContext serviceContext = null;
+            if (serviceContextBytes != null) {
+                try {
+                    serviceContext = ServiceContext.fromCompactBytes(serviceContextBytes);
+                } catch (RuntimeException e) {
+                    log.warn("Failed to read service context of event {} of outbox: {}", id, e.getMessage());
+                    // without event the entry is moved to the dead letters
+                    event = null;
+                }
+            }
+            return new OutboxEntry(id, rs.getString("EVENT_BUS"), rs.getString("TOPIC"), event, serviceContext);
+        });
+    }
+
+    @Override
+    public void remove(Collection<String> ids) {
+        if (ids.isEmpty()) {
+            return;
+        }
+        List<Object[]> args = new ArrayList<Object[]>(ids.size());
+        for (String each : ids) {
+            args.add(new Object[] { each });
+        }
+        jdbcTemplate.batchUpdate("delete from " + tableName + " where ID = ?", args);
+    }
+
+    @Override
+    public void deadLetter(String id) {
+        jdbcTemplate.update("update " + tableName + " set DEAD_LETTER = 1 where ID = ?", id);
+    }
+
+    private byte[] serialize(Event event) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(event);
+            out.close();
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Event is not serializable: " + event, e);
+        }
+    }
+
+    /**
+     * @return the event, or null if it can't be deserialized, so that the
+     *         other entries can still be fetched
+     */
+    private Event deserialize(String id, byte[] bytes) {
+        try {
+            ObjectInputStream in = new ConfigurableObjectInputStream(new ByteArrayInputStream(bytes), ClassUtils
+                    .getDefaultClassLoader());
+            return (Event) in.readObject();
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            log.warn("Failed to deserialize event {} of outbox: {}", id, e.getMessage());
+            return null;
+        }
+    }
+
+    public String getTableName() {
+        return tableName;
+    }
+
+    public void setTableName(String tableName) {
+        this.tableName = tableName;
+    }
+
+}
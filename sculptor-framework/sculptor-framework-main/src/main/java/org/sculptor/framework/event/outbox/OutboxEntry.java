@@ -0,0 +1,77 @@
+/*
+ * Copyright 2014 The Sculptor Project Team, including the original
+ * author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sculptor.framework.event.outbox;
+
+import org.sculptor.framework.context.ServiceContext;
+import org.sculptor.framework.event.Event;
+
+/**
+ * Event waiting in the {@link EventOutbox} to be published to an event bus.
+ */
+public class OutboxEntry {
+
+    private final String id;
+    private final String eventBus;
+    private final String topic;
+    private final Event event;
+    private final ServiceContext serviceContext;
+
+    /**
+     * @param id
+     *            unique id of the entry, subscribers use it to detect
+     *            duplicates
+     * @param eventBus
+     *            bean name of the event bus
+     * @param event
+     *            the event, null if it can't be read from the outbox
+     * @param serviceContext
+     *            context of the publisher, may be null
+     */
+    public OutboxEntry(String id, String eventBus, String topic, Event event, ServiceContext serviceContext) {
+        this.id = id;
+        this.eventBus = eventBus;
+        this.topic = topic;
+        this.event = event;
+        this.serviceContext = serviceContext;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getEventBus() {
+        return eventBus;
+    }
+
+    public String getTopic() {
+        return topic;
+    }
+
+    public Event getEvent() {
+        return event;
+    }
+
+    public ServiceContext getServiceContext() {
+        return serviceContext;
+    }
+
+    @Override
+    public String toString() {
+        return "OutboxEntry[" + id + ", " + eventBus + ", " + topic + ", " + event + "]";
+    }
+
+}
@@ -22,27 +22,94 @@ import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TransactionRequiredException;
 
-import org.springframework.aop.AfterReturningAdvice;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
 
 /**
  * This advice flushes the {@link EntityManager} after normal return.
  * <p>
  * We have to flush eagerly in order to detect OptimisticLockingException and do
  * proper rollback.
+ * <p>
+ * By default every advised service call is flushed, also nested ones. With
+ * {@link #setFlushNested(boolean)} false only the outermost advised service
+ * call is flushed, service calls nested within it are flushed together with
+ * it. Flushes within the service call are decided by
+ * {@link JpaFlushStrategy}, see {@link #setBatchSize(int)} and
+ * {@link #setDeferAutoFlush(boolean)}.
+ * <p>
+ * The advice used to be an <code>AfterReturningAdvice</code>, it's an around
+ * advice now. Subclasses overriding
+ * {@link #afterReturning(Object, Method, Object[], Object)} still work, the
+ * method is called after each advised service call which is to be flushed.
+ * The advice can't be used as <code>AfterReturningAdvice</code> anymore.
  */
-public class JpaFlushEagerAdvice implements AfterReturningAdvice {
+public class JpaFlushEagerAdvice implements MethodInterceptor {
 
 	@PersistenceContext
 	private EntityManager entityManager;
 
+	private boolean flushNested = true;
+	private int batchSize;
+	private boolean deferAutoFlush;
+
+	public void setEntityManager(EntityManager entityManager) {
+		this.entityManager = entityManager;
+	}
+
+	/**
+	 * Flush after every advised service call, also nested ones (default).
+	 * False flushes only after the outermost advised service call, which
+	 * avoids repeated dirty checking of the persistence context, but
+	 * constraint violations and optimistic locking failures of nested calls
+	 * surface only at the outermost call.
+	 */
+	public void setFlushNested(boolean flushNested) {
+		this.flushNested = flushNested;
+	}
+
+	/**
+	 * Flush after the given number of entities were saved or deleted by the
+	 * repositories, 0 (default) for no intermediate flushes.
+	 */
+	public void setBatchSize(int batchSize) {
+		this.batchSize = batchSize;
+	}
+
+	/**
+	 * Defer the automatic flush of the JPA provider before queries, flush
+	 * only before queries of entity types modified by the repositories.
+	 */
+	public void setDeferAutoFlush(boolean deferAutoFlush) {
+		this.deferAutoFlush = deferAutoFlush;
+	}
+
 	@Override
-	public void afterReturning(Object returnValue, Method method, Object[] args, Object target) throws Throwable {
-		if (entityManager != null) {
-			try {
-				entityManager.flush();
-			} catch (TransactionRequiredException ignore) {
-				// already marked for rollback
+	public Object invoke(MethodInvocation invocation) throws Throwable {
+		if (entityManager == null) {
+			return invocation.proceed();
+		}
+		boolean outermost = JpaFlushStrategy.begin(entityManager, batchSize, deferAutoFlush);
+		try {
+			Object result = invocation.proceed();
+			if (outermost || flushNested) {
+				afterReturning(result, invocation.getMethod(), invocation.getArguments(), invocation.getThis());
 			}
+			return result;
+		} finally {
+			JpaFlushStrategy.end(entityManager);
+		}
+	}
+
+	/**
+	 * Flushes the {@link EntityManager} after normal return of an advised
+	 * service call.
+	 */
+	public void afterReturning(Object returnValue, Method method, Object[] args, Object target) throws Throwable {
+		try {
+			JpaFlushStrategy.flush(entityManager);
+		} catch (TransactionRequiredException ignore) {
+			// already marked for rollback
 		}
 	}
 
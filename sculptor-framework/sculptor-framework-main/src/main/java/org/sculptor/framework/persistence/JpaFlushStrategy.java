@@ -0,0 +1,160 @@
+/*
+ * Copyright 2014 The Sculptor Project Team, including the original
+ * author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sculptor.framework.persistence;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import javax.persistence.EntityManager;
+import javax.persistence.FlushModeType;
+
+/**
+ * Decides when the {@link EntityManager} is flushed within a business
+ * service call, instead of flushing after every (nested) service call.
+ * <p>
+ * The state is bound to the calling thread between {@link #begin} and
+ * {@link #end} of the outermost service call (see {@link JpaFlushEagerAdvice}
+ * ). The JPA access objects report the entity types they modify via
+ * {@link #modified(EntityManager, Class)} and the entity type they query via
+ * {@link #beforeQuery(EntityManager, Class)}. The EntityManager is flushed:
+ * <ul>
+ * <li>at the end of the outermost service call (by the advice)</li>
+ * <li>when the number of modifications since the last flush reaches the
+ * batch size (if a batch size is defined)</li>
+ * <li>before a query of a modified entity type, if the automatic flush of the
+ * JPA provider is deferred (flush mode {@link FlushModeType#COMMIT} during
+ * the service call). The automatic flush checks all managed entities before
+ * every query, the deferred flush only modifications done via the access
+ * objects. Entities only changed via their setters aren't flushed before
+ * criteria queries in that case. Before JPQL and native queries, or queries
+ * of unknown type, the EntityManager is always flushed.</li>
+ * </ul>
+ */
+public final class JpaFlushStrategy {
+
+	private static final ThreadLocal<State> STATE = new ThreadLocal<State>();
+
+	private JpaFlushStrategy() {
+	}
+
+	private static class State {
+		private final int batchSize;
+		private final boolean deferAutoFlush;
+		private final FlushModeType previousFlushMode;
+		private final Set<Class<?>> dirtyTypes = new HashSet<Class<?>>();
+		private int depth;
+		private int modifications;
+
+		State(int batchSize, boolean deferAutoFlush, FlushModeType previousFlushMode) {
+			this.batchSize = batchSize;
+			this.deferAutoFlush = deferAutoFlush;
+			this.previousFlushMode = previousFlushMode;
+		}
+	}
+
+	/**
+	 * Begins a service call.
+	 *
+	 * @return true if it is the outermost service call of the thread
+	 */
+	public static boolean begin(EntityManager entityManager, int batchSize, boolean deferAutoFlush) {
+		State state = STATE.get();
+		if (state == null) {
+			FlushModeType previousFlushMode = null;
+			if (deferAutoFlush) {
+				previousFlushMode = entityManager.getFlushMode();
+				entityManager.setFlushMode(FlushModeType.COMMIT);
+			}
+			state = new State(batchSize, deferAutoFlush, previousFlushMode);
+			STATE.set(state);
+		}
+		state.depth++;
+		return state.depth == 1;
+	}
+
+	/**
+	 * Ends a service call.
+	 *
+	 * @return true if it was the outermost service call of the thread
+	 */
+	public static boolean end(EntityManager entityManager) {
+		State state = STATE.get();
+		if (state == null) {
+			return false;
+		}
+		state.depth--;
+		if (state.depth > 0) {
+			return false;
+		}
+		STATE.remove();
+		if (state.previousFlushMode != null) {
+			entityManager.setFlushMode(state.previousFlushMode);
+		}
+		return true;
+	}
+
+	/**
+	 * Called after entities of the given type were saved or deleted.
+	 */
+	public static void modified(EntityManager entityManager, Class<?> type) {
+		State state = STATE.get();
+		if (state == null) {
+			return;
+		}
+		state.dirtyTypes.add(type);
+		state.modifications++;
+		if (state.batchSize > 0 && state.modifications >= state.batchSize) {
+			flush(entityManager);
+		}
+	}
+
+	/**
+	 * Called before entities of the given type are queried. The type is null
+	 * if it is unknown, e.g. for JPQL and native queries, then the
+	 * EntityManager is always flushed (like the automatic flush of the JPA
+	 * provider).
+	 */
+	public static void beforeQuery(EntityManager entityManager, Class<?> type) {
+		State state = STATE.get();
+		if (state == null || !state.deferAutoFlush) {
+			return;
+		}
+		if (type == null) {
+			flush(entityManager);
+			return;
+		}
+		for (Class<?> dirtyType : state.dirtyTypes) {
+			if (type.isAssignableFrom(dirtyType) || dirtyType.isAssignableFrom(type)) {
+				flush(entityManager);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Flushes the EntityManager and resets the modifications.
+	 */
+	public static void flush(EntityManager entityManager) {
+		entityManager.flush();
+		State state = STATE.get();
+		if (state != null) {
+			state.dirtyTypes.clear();
+			state.modifications = 0;
+		}
+	}
+
+}
@@ -0,0 +1,217 @@
+package org.sculptor.framework.accessimpl.jpa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.persistence.Entity;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Id;
+
+import org.hibernate.Session;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class JpaConcurrentResultCountTest {
+
+    private LocalContainerEntityManagerFactoryBean factoryBean;
+    private EntityManager entityManager;
+    private TransactionTemplate transactionTemplate;
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setUp() {
+        HibernateJpaVendorAdapter vendorAdapter = new HibernateJpaVendorAdapter();
+        vendorAdapter.setGenerateDdl(true);
+        factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(new DriverManagerDataSource("jdbc:hsqldb:mem:resultcount", "sa", ""));
+        factoryBean.setJpaVendorAdapter(vendorAdapter);
+        factoryBean.setPackagesToScan(JpaConcurrentResultCountTest.class.getPackage().getName());
+        factoryBean.getJpaPropertyMap().put("hibernate.hbm2ddl.auto", "create-drop");
+        factoryBean.afterPropertiesSet();
+        EntityManagerFactory entityManagerFactory = factoryBean.getObject();
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+        transactionTemplate = new TransactionTemplate(new JpaTransactionManager(entityManagerFactory));
+        transactionTemplate.execute(status -> {
+            for (int i = 1; i <= 3; i++) {
+                entityManager.persist(new CountedItem(i));
+            }
+            return null;
+        });
+        executor = Executors.newSingleThreadExecutor();
+        JpaConcurrentResultCount.setExecutor(executor);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        JpaConcurrentResultCount.setExecutor(null);
+        JpaConcurrentResultCount.setTimeout(30000);
+        executor.shutdownNow();
+        factoryBean.destroy();
+    }
+
+    @Test
+    public void countsConcurrentlyOnReadOnlyConnection() {
+        List<CountAccess> accessObjects = new ArrayList<CountAccess>();
+        Future<Long> resultCount = JpaConcurrentResultCount.execute(() -> createAccessObject(accessObjects));
+
+        assertEquals(Long.valueOf(3), JpaConcurrentResultCount.getResultCount(resultCount));
+        assertEquals(1, accessObjects.size());
+        assertNotEquals(Thread.currentThread(), accessObjects.get(0).countThread);
+        assertTrue(accessObjects.get(0).readOnlyConnection);
+    }
+
+    @Test
+    public void countsOnCallersEntityManagerWithinTransaction() {
+        List<CountAccess> accessObjects = new ArrayList<CountAccess>();
+        Long count = transactionTemplate.execute(status -> {
+            entityManager.persist(new CountedItem(4));
+            Future<Long> resultCount = JpaConcurrentResultCount.execute(() -> createAccessObject(accessObjects));
+            return JpaConcurrentResultCount.getResultCount(resultCount);
+        });
+
+        assertEquals(Long.valueOf(4), count);
+        assertEquals(Thread.currentThread(), accessObjects.get(0).countThread);
+        assertFalse(accessObjects.get(0).readOnlyConnection);
+    }
+
+    @Test
+    public void countsConcurrentlyWithinReadOnlyTransaction() {
+        List<CountAccess> accessObjects = new ArrayList<CountAccess>();
+        TransactionTemplate readOnlyTemplate = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        readOnlyTemplate.setReadOnly(true);
+        Long count = readOnlyTemplate.execute(status -> {
+            Future<Long> resultCount = JpaConcurrentResultCount.execute(() -> createAccessObject(accessObjects));
+            return JpaConcurrentResultCount.getResultCount(resultCount);
+        });
+
+        assertEquals(Long.valueOf(3), count);
+        assertNotEquals(Thread.currentThread(), accessObjects.get(0).countThread);
+        assertTrue(accessObjects.get(0).readOnlyConnection);
+    }
+
+    @Test
+    public void countsOnDemandWithoutExecutor() {
+        JpaConcurrentResultCount.setExecutor(null);
+        List<CountAccess> accessObjects = new ArrayList<CountAccess>();
+        Future<Long> resultCount = JpaConcurrentResultCount.execute(() -> createAccessObject(accessObjects));
+
+        assertNull(accessObjects.get(0).countThread);
+        assertEquals(Long.valueOf(3), JpaConcurrentResultCount.getResultCount(resultCount));
+        assertEquals(Thread.currentThread(), accessObjects.get(0).countThread);
+    }
+
+    @Test
+    public void executorBeanIsShutDownOnDestroy() throws Exception {
+        JpaConcurrentResultCountExecutor executorBean = new JpaConcurrentResultCountExecutor();
+        executorBean.setThreads(1);
+        executorBean.afterPropertiesSet();
+        List<CountAccess> accessObjects = new ArrayList<CountAccess>();
+        Future<Long> resultCount = JpaConcurrentResultCount.execute(() -> createAccessObject(accessObjects));
+        assertEquals(Long.valueOf(3), JpaConcurrentResultCount.getResultCount(resultCount));
+        assertTrue(accessObjects.get(0).countThread.getName().startsWith("sculptor-result-count-"));
+
+        executorBean.destroy();
+        accessObjects.clear();
+        resultCount = JpaConcurrentResultCount.execute(() -> createAccessObject(accessObjects));
+        assertEquals(Long.valueOf(3), JpaConcurrentResultCount.getResultCount(resultCount));
+        assertEquals(Thread.currentThread(), accessObjects.get(0).countThread);
+    }
+
+    @Test
+    public void countsSynchronouslyAfterTimeout() {
+        List<Runnable> pending = new ArrayList<Runnable>();
+        JpaConcurrentResultCount.setExecutor(pending::add);
+        JpaConcurrentResultCount.setTimeout(10);
+        List<CountAccess> accessObjects = new ArrayList<CountAccess>();
+        Future<Long> resultCount = JpaConcurrentResultCount.execute(() -> createAccessObject(accessObjects));
+
+        assertEquals(Long.valueOf(3), JpaConcurrentResultCount.getResultCount(resultCount));
+        assertTrue(resultCount.isCancelled());
+        assertEquals(2, accessObjects.size());
+        assertEquals(Thread.currentThread(), accessObjects.get(1).countThread);
+
+        // The cancelled count isn't executed anymore
+        pending.get(0).run();
+        assertNull(accessObjects.get(0).countThread);
+    }
+
+    @Test
+    public void cancelledCountIsNotExecuted() {
+        final AtomicInteger executed = new AtomicInteger();
+        final List<Runnable> pending = new ArrayList<Runnable>();
+        JpaConcurrentResultCount.setExecutor(pending::add);
+        Future<Long> resultCount = JpaConcurrentResultCount.execute(() -> new CountAccess(entityManager) {
+            @Override
+            public void executeResultCount() {
+                executed.incrementAndGet();
+            }
+        });
+
+        assertTrue(resultCount.cancel(false));
+        pending.get(0).run();
+        assertEquals(0, executed.get());
+    }
+
+    private CountAccess createAccessObject(List<CountAccess> accessObjects) {
+        CountAccess accessObject = new CountAccess(entityManager);
+        accessObjects.add(accessObject);
+        return accessObject;
+    }
+
+    private static class CountAccess extends JpaFindAllAccessImplGeneric<CountedItem, CountedItem> {
+        volatile Thread countThread;
+        volatile boolean readOnlyConnection;
+
+        CountAccess(EntityManager entityManager) {
+            super(CountedItem.class, CountedItem.class);
+            setEntityManager(entityManager);
+        }
+
+        @Override
+        public void executeResultCount() {
+            countThread = Thread.currentThread();
+            // Outside of a transaction the shared entity manager has no session to unwrap
+            readOnlyConnection = TransactionSynchronizationManager.isActualTransactionActive()
+                    && getEntityManager().unwrap(Session.class).doReturningWork(Connection::isReadOnly);
+            super.executeResultCount();
+        }
+    }
+
+    @Entity(name = "CountedItem")
+    public static class CountedItem {
+        @Id
+        private Integer id;
+
+        protected CountedItem() {
+        }
+
+        CountedItem(Integer id) {
+            this.id = id;
+        }
+
+        public Integer getId() {
+            return id;
+        }
+    }
+
+}
@@ -0,0 +1,249 @@
+package org.sculptor.framework.accessimpl.jpa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.persistence.CascadeType;
+import javax.persistence.Entity;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.Id;
+import javax.persistence.ManyToOne;
+import javax.persistence.OneToMany;
+import javax.persistence.PersistenceException;
+
+import org.hibernate.annotations.OnDelete;
+import org.hibernate.annotations.OnDeleteAction;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sculptor.framework.accessapi.ConditionalCriteria;
+import org.sculptor.framework.domain.LeafProperty;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class JpaDeleteAccessImplTest {
+
+    private LocalContainerEntityManagerFactoryBean factoryBean;
+    private EntityManager entityManager;
+    private TransactionTemplate transactionTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        HibernateJpaVendorAdapter vendorAdapter = new HibernateJpaVendorAdapter();
+        vendorAdapter.setGenerateDdl(true);
+        factoryBean = new LocalContainerEntityManagerFactoryBean();
+        factoryBean.setDataSource(new DriverManagerDataSource("jdbc:hsqldb:mem:bulkdelete", "sa", ""));
+        factoryBean.setJpaVendorAdapter(vendorAdapter);
+        factoryBean.setPackagesToScan(JpaDeleteAccessImplTest.class.getPackage().getName());
+        factoryBean.getJpaPropertyMap().put("hibernate.hbm2ddl.auto", "create-drop");
+        factoryBean.afterPropertiesSet();
+        EntityManagerFactory entityManagerFactory = factoryBean.getObject();
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+        transactionTemplate = new TransactionTemplate(new JpaTransactionManager(entityManagerFactory));
+        transactionTemplate.execute(status -> {
+            for (int i = 1; i <= 5; i++) {
+                entityManager.persist(new DeletedItem(i));
+            }
+            return null;
+        });
+    }
+
+    @AfterEach
+    public void tearDown() {
+        factoryBean.destroy();
+    }
+
+    @Test
+    public void deletesIdsInChunks() {
+        JpaDeleteAccessImpl<DeletedItem> delete = createDeleteAccess(DeletedItem.class);
+        delete.setIds(Arrays.asList(1, 2, 3, 4));
+        delete.setChunkSize(3);
+        execute(delete);
+
+        assertEquals(4, delete.getDeletedCount());
+        assertEquals(Collections.singletonList(5), findIds("DeletedItem"));
+    }
+
+    @Test
+    public void deletesEntitiesMatchingCondition() {
+        JpaDeleteAccessImpl<DeletedItem> delete = createDeleteAccess(DeletedItem.class);
+        List<ConditionalCriteria> condition = new ArrayList<ConditionalCriteria>();
+        condition.add(ConditionalCriteria.lessThan(new LeafProperty<DeletedItem>("id", DeletedItem.class), 3));
+        delete.setCondition(condition);
+        execute(delete);
+
+        assertEquals(2, delete.getDeletedCount());
+        assertEquals(Arrays.asList(3, 4, 5), findIds("DeletedItem"));
+    }
+
+    @Test
+    public void detachesGivenEntities() {
+        boolean contained = transactionTemplate.execute(status -> {
+            DeletedItem item = entityManager.find(DeletedItem.class, 1);
+            JpaDeleteAccessImpl<DeletedItem> delete = createDeleteAccess(DeletedItem.class);
+            delete.setEntities(Collections.singletonList(item));
+            delete.setBulk(true);
+            delete.execute();
+            assertEquals(1, delete.getDeletedCount());
+            return entityManager.contains(item);
+        });
+
+        assertFalse(contained);
+        assertEquals(Arrays.asList(2, 3, 4, 5), findIds("DeletedItem"));
+    }
+
+    @Test
+    public void refusesAssociationsRemovedByCascade() {
+        transactionTemplate.execute(status -> {
+            entityManager.persist(new DeletedParent(1));
+            return null;
+        });
+        JpaDeleteAccessImpl<DeletedParent> delete = createDeleteAccess(DeletedParent.class);
+        delete.setIds(Collections.singletonList(1));
+
+        assertThrows(PersistenceException.class, () -> execute(delete));
+        assertEquals(Collections.singletonList(1), findIds("DeletedParent"));
+    }
+
+    @Test
+    public void allowsAssociationsDeletedByDatabase() {
+        transactionTemplate.execute(status -> {
+            DeletedOwner owner = new DeletedOwner(1);
+            entityManager.persist(owner);
+            entityManager.persist(new DeletedOwned(1, owner));
+            return null;
+        });
+        JpaDeleteAccessImpl<DeletedOwner> delete = createDeleteAccess(DeletedOwner.class);
+        delete.setIds(Collections.singletonList(1));
+        execute(delete);
+
+        assertEquals(1, delete.getDeletedCount());
+        assertEquals(Collections.emptyList(), findIds("DeletedOwner"));
+        assertEquals(Collections.emptyList(), findIds("DeletedOwned"));
+    }
+
+    private <T> JpaDeleteAccessImpl<T> createDeleteAccess(Class<T> persistentClass) {
+        JpaDeleteAccessImpl<T> delete = new JpaDeleteAccessImpl<T>(persistentClass);
+        delete.setEntityManager(entityManager);
+        return delete;
+    }
+
+    private void execute(JpaDeleteAccessImpl<?> delete) {
+        transactionTemplate.execute(status -> {
+            delete.execute();
+            return null;
+        });
+    }
+
+    private List<Integer> findIds(String entityName) {
+        return transactionTemplate.execute(status -> entityManager.createQuery(
+                "select e.id from " + entityName + " e order by e.id", Integer.class).getResultList());
+    }
+
+    @Entity(name = "DeletedItem")
+    public static class DeletedItem {
+        @Id
+        private Integer id;
+
+        protected DeletedItem() {
+        }
+
+        DeletedItem(Integer id) {
+            this.id = id;
+        }
+
+        public Integer getId() {
+            return id;
+        }
+    }
+
+    @Entity(name = "DeletedParent")
+    public static class DeletedParent {
+        @Id
+        private Integer id;
+
+        @OneToMany(mappedBy = "parent", cascade = CascadeType.ALL)
+        private List<DeletedChild> children = new ArrayList<DeletedChild>();
+
+        protected DeletedParent() {
+        }
+
+        DeletedParent(Integer id) {
+            this.id = id;
+        }
+
+        public Integer getId() {
+            return id;
+        }
+    }
+
+    @Entity(name = "DeletedChild")
+    public static class DeletedChild {
+        @Id
+        private Integer id;
+
+        @ManyToOne
+        private DeletedParent parent;
+
+        protected DeletedChild() {
+        }
+
+        public Integer getId() {
+            return id;
+        }
+    }
+
+    @Entity(name = "DeletedOwner")
+    public static class DeletedOwner {
+        @Id
+        private Integer id;
+
+        @OneToMany(mappedBy = "owner", cascade = CascadeType.ALL)
+        @OnDelete(action = OnDeleteAction.CASCADE)
+        private List<DeletedOwned> owned = new ArrayList<DeletedOwned>();
+
+        protected DeletedOwner() {
+        }
+
+        DeletedOwner(Integer id) {
+            this.id = id;
+        }
+
+        public Integer getId() {
+            return id;
+        }
+    }
+
+    @Entity(name = "DeletedOwned")
+    public static class DeletedOwned {
+        @Id
+        private Integer id;
+
+        @ManyToOne
+        private DeletedOwner owner;
+
+        protected DeletedOwned() {
+        }
+
+        DeletedOwned(Integer id, DeletedOwner owner) {
+            this.id = id;
+            this.owner = owner;
+        }
+
+        public Integer getId() {
+            return id;
+        }
+    }
+
+}
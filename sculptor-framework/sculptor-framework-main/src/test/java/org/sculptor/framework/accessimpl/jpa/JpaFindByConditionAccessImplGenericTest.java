@@ -0,0 +1,52 @@
+package org.sculptor.framework.accessimpl.jpa;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+import org.sculptor.framework.accessapi.ConditionalCriteria;
+import org.sculptor.framework.domain.LeafProperty;
+
+public class JpaFindByConditionAccessImplGenericTest {
+
+    private static final LeafProperty<Order> NAME = new LeafProperty<Order>("name", Order.class);
+    private static final LeafProperty<Order> CITY = new LeafProperty<Order>("address", "city", true, Order.class);
+    private static final LeafProperty<Order> CUSTOMER_NAME = new LeafProperty<Order>("customer", "name", false,
+            Order.class);
+    private static final LeafProperty<Order> LINES = new LeafProperty<Order>("lines", Order.class);
+
+    private final JpaFindByConditionAccessImplGeneric<Order, Order> accessObject = new JpaFindByConditionAccessImplGeneric<Order, Order>(
+            Order.class, Order.class);
+
+    @Test
+    public void queriesRootTypeForConditionsOnItsOwnColumns() {
+        accessObject.setCondition(Arrays.asList(ConditionalCriteria.equal(NAME, "a"),
+                ConditionalCriteria.equal(CITY, "b"), ConditionalCriteria.orderAsc(NAME)));
+        assertEquals(Order.class, accessObject.getQueriedType());
+    }
+
+    @Test
+    public void queriesAnyTypeForConditionsOnPropertyPaths() {
+        accessObject.setCondition(Arrays.asList(ConditionalCriteria.equal(CUSTOMER_NAME, "a")));
+        assertNull(accessObject.getQueriedType());
+    }
+
+    @Test
+    public void queriesAnyTypeForNestedConditionsOnPropertyPaths() {
+        accessObject.setCondition(Arrays.asList(ConditionalCriteria.or(ConditionalCriteria.equal(NAME, "a"),
+                ConditionalCriteria.not(ConditionalCriteria.equalProperty(NAME, CUSTOMER_NAME)))));
+        assertNull(accessObject.getQueriedType());
+    }
+
+    @Test
+    public void queriesAnyTypeForConditionsOnCollections() {
+        accessObject.setCondition(Arrays.asList(ConditionalCriteria.isNotEmpty(LINES)));
+        assertNull(accessObject.getQueriedType());
+    }
+
+    private static class Order {
+    }
+
+}
@@ -0,0 +1,326 @@
+package org.sculptor.framework.consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import javax.jms.Connection;
+import javax.jms.ConnectionFactory;
+import javax.jms.Destination;
+import javax.jms.JMSException;
+import javax.jms.Message;
+import javax.jms.MessageConsumer;
+import javax.jms.MessageProducer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+import javax.transaction.Status;
+import javax.transaction.Synchronization;
+import javax.transaction.TransactionSynchronizationRegistry;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sculptor.framework.context.ServiceContext;
+
+public class AbstractBatchMessageBeanTest {
+
+    private Connection connection;
+    private Session session;
+    private Queue queue;
+    private Queue replyQueue;
+    private Queue invalidQueue;
+    private BatchBean bean;
+
+    @BeforeEach
+    public void setUp() throws JMSException {
+        ActiveMQConnectionFactory connectionFactory = new ActiveMQConnectionFactory(
+                "vm://batch-bean-test?broker.persistent=false&broker.useJmx=false");
+        // messages that are not received stay on the queue
+        connectionFactory.getPrefetchPolicy().setQueuePrefetch(0);
+        connection = connectionFactory.createConnection();
+        connection.start();
+        session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        queue = session.createQueue("batch-bean-test");
+        replyQueue = session.createQueue("batch-bean-test-reply");
+        invalidQueue = session.createQueue("batch-bean-test-invalid");
+        bean = new BatchBean(connectionFactory, invalidQueue);
+    }
+
+    @AfterEach
+    public void tearDown() throws JMSException {
+        bean.closeConnection();
+        session.close();
+        connection.close();
+    }
+
+    @Test
+    public void batchIsCommittedAfterReplies() throws JMSException {
+        send("a", false);
+        send("b", false);
+        send("c", false);
+
+        bean.onMessage(receive(queue));
+
+        assertEquals(Collections.singletonList(Arrays.asList("a", "b", "c")), bean.batches);
+        assertEquals(1, bean.closeCount);
+        assertEquals(Arrays.asList("OK a", "OK b", "OK c"), receiveAll(replyQueue));
+        // extra messages of the batch are acknowledged
+        assertEquals(Collections.emptyList(), receiveAll(queue));
+    }
+
+    @Test
+    public void batchIsCommittedAfterTransaction() throws JMSException {
+        RecordingRegistry registry = new RecordingRegistry();
+        bean.registry = registry;
+        send("a", false);
+        send("b", false);
+        send("c", false);
+
+        bean.onMessage(receive(queue));
+
+        assertEquals(Arrays.asList("OK a", "OK b", "OK c"), receiveAll(replyQueue));
+        assertEquals(0, bean.closeCount);
+        assertNotNull(registry.synchronization);
+
+        registry.synchronization.afterCompletion(Status.STATUS_COMMITTED);
+        assertEquals(1, bean.closeCount);
+        assertEquals(Collections.emptyList(), receiveAll(queue));
+    }
+
+    @Test
+    public void batchIsRolledBackWithTransaction() throws JMSException {
+        RecordingRegistry registry = new RecordingRegistry();
+        bean.registry = registry;
+        send("a", false);
+        send("b", false);
+        send("c", false);
+
+        bean.onMessage(receive(queue));
+        registry.synchronization.afterCompletion(Status.STATUS_ROLLEDBACK);
+
+        assertEquals(1, bean.closeCount);
+        MessageConsumer consumer = session.createConsumer(queue);
+        for (String expected : Arrays.asList("b", "c")) {
+            Message redelivered = consumer.receive(5000);
+            assertNotNull(redelivered);
+            assertEquals(expected, ((TextMessage) redelivered).getText());
+            assertTrue(redelivered.getJMSRedelivered());
+        }
+        consumer.close();
+    }
+
+    @Test
+    public void redeliveredMessageEndsBatchAndIsConsumedIndividually() throws JMSException {
+        send("a", false);
+        send("b", false);
+        send("c", true);
+        send("d", false);
+
+        bean.onMessage(receive(queue));
+
+        assertEquals(Arrays.asList(Arrays.asList("a", "b"), Collections.singletonList("c")), bean.batches);
+        assertEquals(Arrays.asList("OK a", "OK b", "OK c"), receiveAll(replyQueue));
+        assertEquals(Collections.singletonList("d"), receiveAll(queue));
+    }
+
+    @Test
+    public void poisonRedeliveredMessageDoesNotRollBackBatch() throws JMSException {
+        bean.poison = "poison";
+        send("a", false);
+        send("b", false);
+        send("poison", true);
+
+        bean.onMessage(receive(queue));
+
+        assertEquals(Arrays.asList(Arrays.asList("a", "b"), Collections.singletonList("poison")), bean.batches);
+        assertEquals(Arrays.asList("OK a", "OK b"), receiveAll(replyQueue));
+        assertEquals(Collections.singletonList("poison"), receiveAll(invalidQueue));
+        assertEquals(Collections.emptyList(), receiveAll(queue));
+    }
+
+    @Test
+    public void failedBatchIsRolledBack() throws JMSException {
+        bean.poison = "poison";
+        send("a", false);
+        send("poison", false);
+        send("c", false);
+
+        assertThrows(IllegalStateException.class, () -> bean.onMessage(receive(queue)));
+
+        assertEquals(1, bean.closeCount);
+        assertEquals(Collections.emptyList(), receiveAll(replyQueue));
+        MessageConsumer consumer = session.createConsumer(queue);
+        for (String expected : Arrays.asList("poison", "c")) {
+            Message redelivered = consumer.receive(5000);
+            assertNotNull(redelivered);
+            assertEquals(expected, ((TextMessage) redelivered).getText());
+            assertTrue(redelivered.getJMSRedelivered());
+        }
+        consumer.close();
+    }
+
+    private void send(String text, boolean redelivered) throws JMSException {
+        MessageProducer producer = session.createProducer(queue);
+        TextMessage message = session.createTextMessage(text);
+        message.setJMSReplyTo(replyQueue);
+        message.setBooleanProperty("redelivered", redelivered);
+        producer.send(message);
+        producer.close();
+    }
+
+    private Message receive(Destination destination) throws JMSException {
+        MessageConsumer consumer = session.createConsumer(destination);
+        try {
+            Message message = consumer.receive(1000);
+            assertNotNull(message);
+            return message;
+        } finally {
+            consumer.close();
+        }
+    }
+
+    private List<String> receiveAll(Destination destination) throws JMSException {
+        List<String> result = new ArrayList<String>();
+        MessageConsumer consumer = session.createConsumer(destination);
+        try {
+            for (Message message = consumer.receive(500); message != null; message = consumer.receive(200)) {
+                result.add(((TextMessage) message).getText());
+            }
+        } finally {
+            consumer.close();
+        }
+        return result;
+    }
+
+    /**
+     * Active transaction, which records the synchronization of the batch.
+     */
+    private static class RecordingRegistry implements TransactionSynchronizationRegistry {
+        private Synchronization synchronization;
+
+        @Override
+        public Object getTransactionKey() {
+            return this;
+        }
+
+        @Override
+        public void putResource(Object key, Object value) {
+        }
+
+        @Override
+        public Object getResource(Object key) {
+            return null;
+        }
+
+        @Override
+        public void registerInterposedSynchronization(Synchronization sync) {
+            synchronization = sync;
+        }
+
+        @Override
+        public int getTransactionStatus() {
+            return Status.STATUS_ACTIVE;
+        }
+
+        @Override
+        public void setRollbackOnly() {
+        }
+
+        @Override
+        public boolean getRollbackOnly() {
+            return false;
+        }
+    }
+
+    /**
+     * Opens a new connection when needed and closes it for real, like a
+     * pooled connection of an application server. A message with the
+     * property "redelivered" counts as redelivered.
+     */
+    private static class BatchBean extends AbstractBatchMessageBean {
+        private final ConnectionFactory connectionFactory;
+        private final Destination invalidMessageQueue;
+        private Connection jmsConnection;
+        private final List<List<String>> batches = new ArrayList<List<String>>();
+        private String poison;
+        private int closeCount;
+        private TransactionSynchronizationRegistry registry;
+
+        BatchBean(ConnectionFactory connectionFactory, Destination invalidMessageQueue) {
+            this.connectionFactory = connectionFactory;
+            this.invalidMessageQueue = invalidMessageQueue;
+        }
+
+        @Override
+        public List<String> consumeBatch(ServiceContext ctx, List<String> textMessages) {
+            batches.add(new ArrayList<String>(textMessages));
+            if (textMessages.contains(poison)) {
+                throw new IllegalStateException("Poison message");
+            }
+            List<String> replies = new ArrayList<String>();
+            for (String each : textMessages) {
+                replies.add("OK " + each);
+            }
+            return replies;
+        }
+
+        @Override
+        protected boolean isJmsRedelivered(Message msg) {
+            try {
+                return super.isJmsRedelivered(msg) || msg.getBooleanProperty("redelivered");
+            } catch (JMSException e) {
+                return false;
+            }
+        }
+
+        @Override
+        protected ServiceContext createServiceContext() {
+            return new ServiceContext(getMessageConsumerBeanId(), "session", "test");
+        }
+
+        @Override
+        protected Connection getJmsConnection() {
+            if (jmsConnection == null) {
+                try {
+                    jmsConnection = connectionFactory.createConnection();
+                    jmsConnection.start();
+                } catch (JMSException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+            return jmsConnection;
+        }
+
+        @Override
+        protected void closeConnection() {
+            if (jmsConnection != null) {
+                try {
+                    jmsConnection.close();
+                } catch (JMSException ignore) {
+                }
+                jmsConnection = null;
+                closeCount++;
+            }
+        }
+
+        @Override
+        protected Destination getInvalidMessageQueue() {
+            return invalidMessageQueue;
+        }
+
+        @Override
+        protected TransactionSynchronizationRegistry getTransactionSynchronizationRegistry() {
+            return registry;
+        }
+    }
+
+}
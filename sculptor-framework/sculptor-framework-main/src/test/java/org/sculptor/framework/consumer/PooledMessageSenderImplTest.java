@@ -0,0 +1,183 @@
+package org.sculptor.framework.consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javax.jms.Connection;
+import javax.jms.JMSException;
+import javax.jms.MessageConsumer;
+import javax.jms.Queue;
+import javax.jms.Session;
+import javax.jms.TextMessage;
+
+import org.apache.activemq.ActiveMQConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class PooledMessageSenderImplTest {
+
+    private Connection connection;
+    private Session session;
+    private Queue queue;
+    private PooledMessageSenderImpl sender;
+
+    @BeforeEach
+    public void setUp() throws JMSException {
+        ActiveMQConnectionFactory connectionFactory = new ActiveMQConnectionFactory(
+                "vm://pooled-sender-test?broker.persistent=false&broker.useJmx=false");
+        connection = connectionFactory.createConnection();
+        connection.start();
+        session = connection.createSession(false, Session.AUTO_ACKNOWLEDGE);
+        queue = session.createQueue("pooled-sender-test");
+        sender = new PooledMessageSenderImpl(connection);
+    }
+
+    @AfterEach
+    public void tearDown() throws JMSException {
+        sender.close();
+        session.close();
+        connection.close();
+    }
+
+    @Test
+    public void sessionIsReused() throws JMSException {
+        for (int i = 0; i < 10; i++) {
+            sender.sendMessage(queue, "message " + i, "correlation " + i);
+        }
+
+        assertEquals(1, sender.getSessionCount());
+        assertEquals(0, sender.getActiveSessions());
+        assertEquals(10, sender.getSendCount());
+        MessageConsumer consumer = session.createConsumer(queue);
+        for (int i = 0; i < 10; i++) {
+            TextMessage message = (TextMessage) consumer.receive(1000);
+            assertEquals("message " + i, message.getText());
+            assertEquals("correlation " + i, message.getJMSCorrelationID());
+        }
+        consumer.close();
+    }
+
+    @Test
+    public void batchIsCommittedOnce() throws JMSException {
+        sender.sendBatch(new PooledMessageSenderImpl.BatchCallback() {
+            @Override
+            public void sendBatch(PooledMessageSenderImpl.Batch batch) throws JMSException {
+                for (int i = 0; i < 5; i++) {
+                    batch.send(queue, "batch " + i, null);
+                }
+            }
+        });
+
+        assertEquals(1, sender.getBatchCount());
+        assertEquals(5, sender.getSendCount());
+        MessageConsumer consumer = session.createConsumer(queue);
+        for (int i = 0; i < 5; i++) {
+            assertNotNull(consumer.receive(1000));
+        }
+        consumer.close();
+    }
+
+    @Test
+    public void failedBatchIsRolledBack() throws JMSException {
+        assertThrows(RuntimeException.class, () -> sender.sendBatch(batch -> {
+            batch.send(queue, "rolled back", null);
+            throw new JMSException("failure");
+        }));
+
+        assertEquals(0, sender.getSessionCount());
+        MessageConsumer consumer = session.createConsumer(queue);
+        assertNull(consumer.receive(200));
+        consumer.close();
+    }
+
+    @Test
+    public void sessionInUseIsClosedWhenReturnedAfterClose() {
+        sender.sendBatch(batch -> {
+            batch.send(queue, "batch", null);
+            sender.close();
+            assertEquals(1, sender.getSessionCount());
+        });
+
+        assertEquals(0, sender.getSessionCount());
+        assertEquals(0, sender.getActiveSessions());
+        assertThrows(IllegalStateException.class, () -> sender.sendMessage(queue, "after close", null));
+        assertEquals(0, sender.getSessionCount());
+    }
+
+    @Test
+    public void waitForSessionIsLimited() {
+        sender.setMaxSessions(1);
+        sender.setMaxWaitMillis(10);
+
+        assertThrows(RuntimeException.class, () -> sender.sendBatch(batch -> sender.sendMessage(queue, "nested",
+                null)));
+        assertEquals(1, sender.getWaitCount());
+    }
+
+    @Test
+    public void idleSessionOfOtherKindIsClosedAtCapacity() throws JMSException {
+        sender.setMaxSessions(1);
+        sender.setMaxWaitMillis(10);
+
+        sender.sendMessage(queue, "single 1", null);
+        sender.sendBatch(batch -> {
+            batch.send(queue, "batch 1", null);
+            batch.send(queue, "batch 2", null);
+        });
+        sender.sendMessage(queue, "single 2", null);
+
+        assertEquals(2, sender.getEvictionCount());
+        assertEquals(0, sender.getWaitCount());
+        assertEquals(1, sender.getSessionCount());
+        MessageConsumer consumer = session.createConsumer(queue);
+        for (int i = 0; i < 4; i++) {
+            assertNotNull(consumer.receive(1000));
+        }
+        consumer.close();
+    }
+
+    @Test
+    public void waitingSendGetsSessionReleasedByBatch() throws Exception {
+        sender.setMaxSessions(1);
+        sender.setMaxWaitMillis(10000);
+        final CountDownLatch inBatch = new CountDownLatch(1);
+        final CountDownLatch finishBatch = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> batchResult = executor.submit(() -> sender.sendBatch(batch -> {
+                batch.send(queue, "batch", null);
+                inBatch.countDown();
+                try {
+                    finishBatch.await(10, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertTrue(inBatch.await(10, TimeUnit.SECONDS));
+            Future<?> sendResult = executor.submit(() -> sender.sendMessage(queue, "single", null));
+            while (sender.getWaitCount() == 0) {
+                Thread.sleep(10);
+            }
+            finishBatch.countDown();
+
+            batchResult.get(10, TimeUnit.SECONDS);
+            sendResult.get(10, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        assertEquals(1, sender.getEvictionCount());
+        assertEquals(2, sender.getSendCount());
+    }
+
+}
@@ -0,0 +1,128 @@
+package org.sculptor.framework.context;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+
+public class ContextPropagationTest {
+
+    private static final int SUBMITTERS = 16;
+    private static final int TASKS_PER_SUBMITTER = 200;
+
+    private ExecutorService pool;
+    private ExecutorService executor;
+
+    @BeforeEach
+    public void setUp() {
+        pool = Executors.newFixedThreadPool(4);
+        executor = ContextPropagation.wrap(pool);
+    }
+
+    @AfterEach
+    public void tearDown() throws InterruptedException {
+        executor.shutdown();
+        executor.awaitTermination(10, TimeUnit.SECONDS);
+        ServiceContextStore.set(null);
+        MDC.clear();
+    }
+
+    @Test
+    public void contextsAreIsolatedUnderConcurrency() throws Exception {
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Future<List<String>>> submitters = new ArrayList<Future<List<String>>>();
+        ExecutorService submitterPool = Executors.newFixedThreadPool(SUBMITTERS);
+        for (int s = 0; s < SUBMITTERS; s++) {
+            final String user = "user" + s;
+            submitters.add(submitterPool.submit(() -> {
+                ServiceContextStore.set(new ServiceContext(user, "session", "app"));
+                MDC.put("user", user);
+                start.await();
+                List<Future<String>> tasks = new ArrayList<Future<String>>();
+                for (int i = 0; i < TASKS_PER_SUBMITTER; i++) {
+                    tasks.add(executor.submit(() -> ServiceContextStore.getCurrentUser() + "/" + MDC.get("user")));
+                }
+                List<String> results = new ArrayList<String>();
+                for (Future<String> task : tasks) {
+                    results.add(task.get());
+                }
+                return results;
+            }));
+        }
+        start.countDown();
+
+        for (int s = 0; s < SUBMITTERS; s++) {
+            for (String result : submitters.get(s).get(30, TimeUnit.SECONDS)) {
+                assertEquals("user" + s + "/user" + s, result);
+            }
+        }
+        submitterPool.shutdown();
+    }
+
+    @Test
+    public void previousContextsOfPooledThreadAreRestored() throws Exception {
+        ServiceContextStore.set(new ServiceContext("user", "session", "app"));
+        MDC.put("user", "user");
+        executor.submit(() -> "done").get();
+
+        ServiceContextStore.set(null);
+        MDC.clear();
+        Callable<String> unwrapped = () -> ServiceContextStore.get() + "/" + MDC.get("user");
+        for (int i = 0; i < 8; i++) {
+            assertEquals("null/null", pool.submit(unwrapped).get());
+        }
+    }
+
+    @Test
+    public void additionalPropagator() throws Exception {
+        final ThreadLocal<String> tenant = new ThreadLocal<String>();
+        ContextPropagator<String> propagator = new ContextPropagator<String>() {
+            @Override
+            public String capture() {
+                return tenant.get();
+            }
+
+            @Override
+            public void restore(String context) {
+                tenant.set(context);
+            }
+        };
+        ContextPropagation.register(propagator);
+        try {
+            tenant.set("tenant1");
+            assertEquals("tenant1", executor.submit(() -> tenant.get()).get());
+            assertNull(pool.submit(() -> tenant.get()).get());
+        } finally {
+            ContextPropagation.unregister(propagator);
+            tenant.remove();
+        }
+    }
+
+    @Test
+    public void completableFutureStages() throws Exception {
+        ServiceContextStore.set(new ServiceContext("user", "session", "app"));
+        String result = CompletableFuture.supplyAsync(() -> "first", executor)
+                .thenApplyAsync(first -> first + "/" + ServiceContextStore.getCurrentUser(), executor).get();
+        assertEquals("first/user", result);
+    }
+
+    @Test
+    public void asyncServiceSupport() throws Exception {
+        ServiceContextStore.set(new ServiceContext("asyncUser", "session", "app"));
+        assertEquals("asyncUser", AsyncServiceSupport.supplyAsync(() -> ServiceContextStore.getCurrentUser()).get());
+    }
+
+}
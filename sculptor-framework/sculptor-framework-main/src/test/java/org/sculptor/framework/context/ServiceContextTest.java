@@ -0,0 +1,133 @@
+package org.sculptor.framework.context;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.jupiter.api.Test;
+
+public class ServiceContextTest {
+
+    @Test
+    public void concurrentlySetPropertiesAreKept() throws Exception {
+        final ServiceContext ctx = new ServiceContext("user", "session", "app");
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final int thread = t;
+            threads[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < 250; i++) {
+                    ctx.setProperty("key-" + thread + "-" + i, i);
+                }
+            });
+            threads[t].start();
+        }
+        start.countDown();
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        int count = 0;
+        for (Iterator<String> iter = ctx.getPropertyKeys(); iter.hasNext(); iter.next()) {
+            count++;
+        }
+        assertEquals(1000, count);
+        assertEquals(249, ctx.getProperty("key-3-249"));
+    }
+
+    @Test
+    public void propertyKeysOfEmptyContext() {
+        ServiceContext ctx = new ServiceContext("user", "session", "app");
+        assertFalse(ctx.getPropertyKeys().hasNext());
+        assertNull(ctx.getProperty("jms"));
+    }
+
+    @Test
+    public void javaSerialization() throws Exception {
+        ServiceContext ctx = new ServiceContext("user", "session", "app", new HashSet<String>(Arrays.asList("admin")));
+        ctx.setProperty("jms", Boolean.TRUE);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(ctx);
+        out.close();
+        ServiceContext copy = (ServiceContext) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))
+                .readObject();
+
+        assertEquals(ctx.toString(), copy.toString());
+        assertTrue(copy.isUserInRole("admin"));
+    }
+
+    @Test
+    public void compactForm() {
+        ServiceContext ctx = new ServiceContext("user", null, "app", new HashSet<String>(Arrays.asList("admin")));
+        ctx.setProperty("jms", Boolean.TRUE);
+        ctx.setProperty("jmsMessageID", "ID:1");
+        ctx.setProperty("jmsBatchSize", 10);
+        ctx.setProperty("timestamp", 42L);
+        Date date = new Date();
+        ctx.setProperty("date", date);
+        ctx.setProperty("empty", null);
+
+        ServiceContext copy = ServiceContext.fromCompactBytes(ctx.toCompactBytes());
+
+        assertEquals("user", copy.getUserId());
+        assertNull(copy.getSessionId());
+        assertEquals("app", copy.getApplicationId());
+        assertTrue(copy.isUserInRole("admin"));
+        assertEquals(Boolean.TRUE, copy.getProperty("jms"));
+        assertEquals("ID:1", copy.getProperty("jmsMessageID"));
+        assertEquals(10, copy.getProperty("jmsBatchSize"));
+        assertEquals(42L, copy.getProperty("timestamp"));
+        assertEquals(date, copy.getProperty("date"));
+        assertNull(copy.getProperty("empty"));
+    }
+
+    @Test
+    public void compactFormWithLongString() {
+        String longString = String.join("", Collections.nCopies(70000, "\u00e5"));
+        ServiceContext ctx = new ServiceContext(longString, "session", "app");
+        ctx.setProperty("text", longString);
+
+        ServiceContext copy = ServiceContext.fromCompactBytes(ctx.toCompactBytes());
+
+        assertEquals(longString, copy.getUserId());
+        assertEquals(longString, copy.getProperty("text"));
+    }
+
+    @Test
+    public void compactFormRejectsClassThatIsNotAllowed() {
+        ServiceContext ctx = new ServiceContext("user", "session", "app");
+        ctx.setProperty("list", new ArrayList<String>(Arrays.asList("a")));
+        byte[] bytes = ctx.toCompactBytes();
+
+        assertThrows(IllegalArgumentException.class, () -> ServiceContext.fromCompactBytes(bytes));
+
+        System.setProperty(ServiceContext.SERIALIZABLE_CLASSES_PROPERTY, "java.util.ArrayList");
+        try {
+            assertEquals(Arrays.asList("a"), ServiceContext.fromCompactBytes(bytes).getProperty("list"));
+        } finally {
+            System.clearProperty(ServiceContext.SERIALIZABLE_CLASSES_PROPERTY);
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+package org.sculptor.framework.event;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Compares the throughput of the transports of {@link CamelEventBusImpl}
+ * with sending to the topic URI via the producer template, as done before
+ * endpoints were cached. Run with
+ * <code>mvn test-compile exec:java -Dexec.classpathScope=test
+ * -Dexec.mainClass=org.sculptor.framework.event.CamelEventBusImplBenchmark</code>.
+ */
+public class CamelEventBusImplBenchmark {
+
+    private static final int EVENTS = 200000;
+    private static final int ROUNDS = 5;
+
+    private static final Logger log = LoggerFactory.getLogger(CamelEventBusImplBenchmark.class);
+
+    public static void main(String[] args) throws Exception {
+        for (int round = 1; round <= ROUNDS; round++) {
+            log.info("Round {}", round);
+            run("uri (previous)", 1, true);
+            run("direct", 1, false);
+            run("seda", 1, false);
+            run("seda batch 100", 100, false);
+        }
+    }
+
+    private static void run(String name, int batchSize, boolean uri) throws Exception {
+        CamelContext camelContext = new DefaultCamelContext();
+        camelContext.start();
+        ProducerTemplate producerTemplate = camelContext.createProducerTemplate();
+        CamelEventBusImpl eventBus = new CamelEventBusImpl(true);
+        eventBus.setCamelContext(camelContext);
+        eventBus.setProducerTemplate(producerTemplate);
+        eventBus.setBatchSize(batchSize);
+        boolean async = name.startsWith("seda");
+        if (async) {
+            Map<String, Integer> asyncTopics = new HashMap<String, Integer>();
+            asyncTopics.put("benchmark", 10000);
+            eventBus.setAsyncTopics(asyncTopics);
+        }
+        final CountDownLatch done = new CountDownLatch(EVENTS);
+        eventBus.subscribe("benchmark", new BatchEventSubscriber() {
+            @Override
+            public void receive(List<Event> events) {
+                for (int i = 0; i < events.size(); i++) {
+                    done.countDown();
+                }
+            }
+
+            @Override
+            public void receive(Event event) {
+                done.countDown();
+            }
+        });
+
+        Event event = new BenchmarkEvent();
+        long start = System.nanoTime();
+        for (int i = 0; i < EVENTS; i++) {
+            if (uri) {
+                producerTemplate.sendBody("direct:benchmark", event);
+            } else {
+                eventBus.publish("benchmark", event);
+            }
+        }
+        eventBus.flush();
+        if (!done.await(60, TimeUnit.SECONDS)) {
+            throw new IllegalStateException("Events of " + name + " not delivered");
+        }
+        long millis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        log.info(String.format("  %-16s %6d ms %10d events/s", name, millis, EVENTS * 1000L / Math.max(1, millis)));
+
+        eventBus.destroy();
+        camelContext.stop();
+    }
+
+    private static class BenchmarkEvent implements Event {
+        private static final long serialVersionUID = 1L;
+    }
+
+}
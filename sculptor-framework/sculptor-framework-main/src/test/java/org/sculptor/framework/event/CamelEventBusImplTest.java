@@ -0,0 +1,245 @@
+package org.sculptor.framework.event;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.camel.CamelContext;
+import org.apache.camel.ProducerTemplate;
+import org.apache.camel.impl.DefaultCamelContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class CamelEventBusImplTest {
+
+    private CamelContext camelContext;
+    private CamelEventBusImpl eventBus;
+
+    @BeforeEach
+    public void setUp() throws Exception {
+        camelContext = new DefaultCamelContext();
+        camelContext.start();
+        eventBus = new CamelEventBusImpl(true);
+        eventBus.setCamelContext(camelContext);
+        eventBus.setProducerTemplate(camelContext.createProducerTemplate());
+        Map<String, Integer> asyncTopics = new HashMap<String, Integer>();
+        asyncTopics.put("asyncTopic", 100);
+        eventBus.setAsyncTopics(asyncTopics);
+    }
+
+    @AfterEach
+    public void tearDown() throws Exception {
+        eventBus.destroy();
+        camelContext.stop();
+    }
+
+    @Test
+    public void directTopic() {
+        final List<String> threads = new ArrayList<String>();
+        eventBus.subscribe("directTopic", event -> threads.add(Thread.currentThread().getName()));
+
+        assertTrue(eventBus.publish("directTopic", new TestEvent(1)));
+        assertTrue(eventBus.publish("directTopic", new TestEvent(2)));
+
+        assertEquals(2, threads.size());
+        assertEquals(Thread.currentThread().getName(), threads.get(0));
+    }
+
+    @Test
+    public void asyncTopicWithSeveralSubscribers() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(20);
+        final List<Integer> first = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<Integer> second = Collections.synchronizedList(new ArrayList<Integer>());
+        eventBus.subscribe("asyncTopic", event -> {
+            first.add(((TestEvent) event).sequence);
+            done.countDown();
+        });
+        eventBus.subscribe("asyncTopic", event -> {
+            second.add(((TestEvent) event).sequence);
+            done.countDown();
+        });
+
+        for (int i = 0; i < 10; i++) {
+            eventBus.publish("asyncTopic", new TestEvent(i));
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(sequence(10), first);
+        assertEquals(sequence(10), second);
+    }
+
+    @Test
+    public void batches() throws InterruptedException {
+        eventBus.setBatchSize(4);
+        eventBus.setBatchWaitMillis(200);
+        final CountDownLatch done = new CountDownLatch(20);
+        final List<Integer> batchSizes = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<Integer> batched = Collections.synchronizedList(new ArrayList<Integer>());
+        final List<Integer> single = Collections.synchronizedList(new ArrayList<Integer>());
+        eventBus.subscribe("asyncTopic", new BatchEventSubscriber() {
+            @Override
+            public void receive(List<Event> events) {
+                batchSizes.add(events.size());
+                for (Event each : events) {
+                    receive(each);
+                }
+            }
+
+            @Override
+            public void receive(Event event) {
+                batched.add(((TestEvent) event).sequence);
+                done.countDown();
+            }
+        });
+        eventBus.subscribe("asyncTopic", event -> {
+            single.add(((TestEvent) event).sequence);
+            done.countDown();
+        });
+
+        for (int i = 0; i < 10; i++) {
+            eventBus.publish("asyncTopic", new TestEvent(i));
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(sequence(10), batched);
+        assertEquals(sequence(10), single);
+        assertEquals(Integer.valueOf(4), batchSizes.get(0));
+        assertEquals(Integer.valueOf(4), batchSizes.get(1));
+        assertEquals(Integer.valueOf(2), batchSizes.get(2));
+    }
+
+    @Test
+    public void failedBackgroundBatchIsThrownByNextPublish() throws InterruptedException {
+        eventBus.setBatchSize(10);
+        eventBus.setProducerTemplate(failingProducerTemplate());
+
+        assertTrue(eventBus.publish("asyncTopic", new TestEvent(0)));
+        RuntimeException failure = null;
+        long deadline = System.currentTimeMillis() + 10000;
+        while (failure == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            try {
+                eventBus.publish("asyncTopic", new TestEvent(1));
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+
+        assertNotNull(failure);
+        assertEquals("Broker down", failure.getCause().getMessage());
+    }
+
+    @Test
+    public void failedBatchIsThrownByFlush() {
+        eventBus.setBatchSize(10);
+        eventBus.setBatchWaitMillis(60000);
+        eventBus.setProducerTemplate(failingProducerTemplate());
+
+        assertTrue(eventBus.publish("asyncTopic", new TestEvent(0)));
+
+        RuntimeException failure = assertThrows(RuntimeException.class, () -> eventBus.flush());
+        assertEquals("Broker down", failure.getMessage());
+    }
+
+    @Test
+    public void failedBatchIsSentWithNextBatch() throws InterruptedException {
+        eventBus.setBatchSize(10);
+        eventBus.setBatchWaitMillis(60000);
+        final CountDownLatch done = new CountDownLatch(2);
+        final List<List<Integer>> received = Collections.synchronizedList(new ArrayList<List<Integer>>());
+        eventBus.subscribe("asyncTopic", new BatchEventSubscriber() {
+            @Override
+            public void receive(List<Event> events) {
+                List<Integer> sequences = new ArrayList<Integer>();
+                for (Event each : events) {
+                    sequences.add(((TestEvent) each).sequence);
+                    done.countDown();
+                }
+                received.add(sequences);
+            }
+
+            @Override
+            public void receive(Event event) {
+                throw new UnsupportedOperationException();
+            }
+        });
+        ProducerTemplate producerTemplate = camelContext.createProducerTemplate();
+        eventBus.setProducerTemplate(failingProducerTemplate());
+
+        assertTrue(eventBus.publish("asyncTopic", new TestEvent(0)));
+        assertThrows(RuntimeException.class, () -> eventBus.flush());
+        eventBus.setProducerTemplate(producerTemplate);
+        assertTrue(eventBus.publish("asyncTopic", new TestEvent(1)));
+        eventBus.flush();
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList(sequence(2)), received);
+    }
+
+    @Test
+    public void publishIsRefusedAfterDestroy() {
+        eventBus.setBatchSize(10);
+        eventBus.destroy();
+
+        assertFalse(eventBus.publish("asyncTopic", new TestEvent(0)));
+        assertFalse(eventBus.publish("directTopic", new TestEvent(1)));
+    }
+
+    @Test
+    public void failedBatchIsOnlyLoggedWithoutPropagateException() {
+        CamelEventBusImpl loggingEventBus = new CamelEventBusImpl(false);
+        loggingEventBus.setCamelContext(camelContext);
+        loggingEventBus.setProducerTemplate(failingProducerTemplate());
+        loggingEventBus.setAsyncTopics(eventBus.getAsyncTopics());
+        loggingEventBus.setBatchSize(10);
+        loggingEventBus.setBatchWaitMillis(60000);
+        try {
+            assertTrue(loggingEventBus.publish("asyncTopic", new TestEvent(0)));
+            loggingEventBus.flush();
+        } finally {
+            loggingEventBus.destroy();
+        }
+    }
+
+    private static ProducerTemplate failingProducerTemplate() {
+        return (ProducerTemplate) Proxy.newProxyInstance(ProducerTemplate.class.getClassLoader(),
+                new Class<?>[] { ProducerTemplate.class }, (proxy, method, args) -> {
+                    if (method.getName().equals("sendBody")) {
+                        throw new IllegalStateException("Broker down");
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    private static List<Integer> sequence(int size) {
+        List<Integer> result = new ArrayList<Integer>();
+        for (int i = 0; i < size; i++) {
+            result.add(i);
+        }
+        return result;
+    }
+
+    private static class TestEvent implements Event {
+        private static final long serialVersionUID = 1L;
+
+        private final int sequence;
+
+        TestEvent(int sequence) {
+            this.sequence = sequence;
+        }
+    }
+
+}
@@ -0,0 +1,214 @@
+package org.sculptor.framework.event;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sculptor.framework.context.ServiceContext;
+import org.sculptor.framework.context.ServiceContextStore;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.integration.channel.PublishSubscribeChannel;
+
+public class SpringIntegrationEventBusImplTest {
+
+    private static final int PARTITIONS = 4;
+    private static final int AGGREGATES = 20;
+    private static final int EVENTS_PER_AGGREGATE = 100;
+
+    private GenericApplicationContext applicationContext;
+    private SpringIntegrationEventBusImpl eventBus;
+
+    @BeforeEach
+    public void setUp() {
+        applicationContext = new GenericApplicationContext();
+        applicationContext.registerBean("inlineTopic", PublishSubscribeChannel.class);
+        applicationContext.registerBean("partitionedTopic", PublishSubscribeChannel.class);
+        applicationContext.refresh();
+        eventBus = new SpringIntegrationEventBusImpl();
+        eventBus.setApplicationContext(applicationContext);
+        Map<String, Integer> concurrency = new HashMap<String, Integer>();
+        concurrency.put("partitionedTopic", PARTITIONS);
+        eventBus.setTopicConcurrency(concurrency);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        eventBus.destroy();
+        applicationContext.close();
+        ServiceContextStore.set(null);
+    }
+
+    @Test
+    public void inlineDelivery() {
+        final List<String> threads = new ArrayList<String>();
+        eventBus.subscribe("inlineTopic", event -> threads.add(Thread.currentThread().getName()));
+
+        eventBus.publish("inlineTopic", new TestEvent("a", 1));
+
+        assertEquals(Collections.singletonList(Thread.currentThread().getName()), threads);
+        assertEquals(0, eventBus.getBacklog("inlineTopic").length);
+    }
+
+    @Test
+    public void orderIsKeptWithinPartition() throws InterruptedException {
+        final Map<Object, List<Integer>> received = new ConcurrentHashMap<Object, List<Integer>>();
+        final Set<String> threads = ConcurrentHashMap.newKeySet();
+        final CountDownLatch done = new CountDownLatch(AGGREGATES * EVENTS_PER_AGGREGATE);
+        eventBus.subscribe("partitionedTopic", event -> {
+            TestEvent testEvent = (TestEvent) event;
+            received.computeIfAbsent(testEvent.getPartitionKey(), key -> new ArrayList<Integer>()).add(
+                    testEvent.sequence);
+            threads.add(Thread.currentThread().getName());
+            done.countDown();
+        });
+
+        for (int i = 0; i < EVENTS_PER_AGGREGATE; i++) {
+            for (int a = 0; a < AGGREGATES; a++) {
+                eventBus.publish("partitionedTopic", new TestEvent("aggregate" + a, i));
+            }
+        }
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(AGGREGATES, received.size());
+        for (List<Integer> sequences : received.values()) {
+            for (int i = 0; i < EVENTS_PER_AGGREGATE; i++) {
+                assertEquals(Integer.valueOf(i), sequences.get(i));
+            }
+        }
+        assertTrue(threads.size() > 1);
+        long deadline = System.currentTimeMillis() + 10000;
+        while (eventBus.getDeliveredCount("partitionedTopic") < AGGREGATES * EVENTS_PER_AGGREGATE
+                && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(AGGREGATES * EVENTS_PER_AGGREGATE, eventBus.getDeliveredCount("partitionedTopic"));
+        assertEquals(PARTITIONS, eventBus.getBacklog("partitionedTopic").length);
+    }
+
+    @Test
+    public void backlogOfBlockedPartition() throws InterruptedException {
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(3);
+        eventBus.subscribe("partitionedTopic", event -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        });
+
+        for (int i = 0; i < 3; i++) {
+            eventBus.publish("partitionedTopic", new TestEvent(null, i));
+        }
+
+        int[] backlog = eventBus.getBacklog("partitionedTopic");
+        assertEquals(3, backlog[0]);
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void fullBacklogRejectsEvents() throws InterruptedException {
+        eventBus.setMaxBacklog(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final CountDownLatch done = new CountDownLatch(2);
+        eventBus.subscribe("partitionedTopic", event -> {
+            try {
+                release.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            done.countDown();
+        });
+
+        // one event in delivery and one waiting
+        assertTrue(eventBus.publish("partitionedTopic", new TestEvent(null, 1)));
+        assertTrue(eventBus.publish("partitionedTopic", new TestEvent(null, 2)));
+        assertFalse(eventBus.publish("partitionedTopic", new TestEvent(null, 3)));
+
+        assertEquals(2, eventBus.getBacklog("partitionedTopic")[0]);
+        release.countDown();
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void deliveryFailuresAreSurfaced() throws InterruptedException {
+        final List<Throwable> errors = Collections.synchronizedList(new ArrayList<Throwable>());
+        final CountDownLatch done = new CountDownLatch(1);
+        eventBus.setErrorHandler(e -> {
+            errors.add(e);
+            done.countDown();
+        });
+        eventBus.subscribe("partitionedTopic", event -> {
+            throw new IllegalStateException("failure");
+        });
+
+        assertTrue(eventBus.publish("partitionedTopic", new TestEvent("a", 1)));
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(1, errors.size());
+        assertEquals(1, eventBus.getFailedCount("partitionedTopic"));
+        assertEquals(0, eventBus.getDeliveredCount("partitionedTopic"));
+    }
+
+    @Test
+    public void publishIsRefusedAfterDestroy() {
+        final List<Event> received = Collections.synchronizedList(new ArrayList<Event>());
+        eventBus.subscribe("inlineTopic", received::add);
+        eventBus.subscribe("partitionedTopic", received::add);
+
+        eventBus.destroy();
+
+        assertFalse(eventBus.publish("inlineTopic", new TestEvent("a", 1)));
+        assertFalse(eventBus.publish("partitionedTopic", new TestEvent("a", 2)));
+        assertEquals(Collections.emptyList(), received);
+    }
+
+    @Test
+    public void serviceContextOfPublisher() throws InterruptedException {
+        final List<String> users = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch done = new CountDownLatch(1);
+        eventBus.subscribe("partitionedTopic", event -> {
+            users.add(ServiceContextStore.getCurrentUser());
+            done.countDown();
+        });
+
+        ServiceContextStore.set(new ServiceContext("publisher", "session", "app"));
+        eventBus.publish("partitionedTopic", new TestEvent("a", 1));
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertEquals(Collections.singletonList("publisher"), users);
+    }
+
+    private static class TestEvent implements PartitionedEvent {
+        private static final long serialVersionUID = 1L;
+
+        private final String aggregateId;
+        private final int sequence;
+
+        TestEvent(String aggregateId, int sequence) {
+            this.aggregateId = aggregateId;
+            this.sequence = sequence;
+        }
+
+        @Override
+        public Object getPartitionKey() {
+            return aggregateId;
+        }
+    }
+
+}
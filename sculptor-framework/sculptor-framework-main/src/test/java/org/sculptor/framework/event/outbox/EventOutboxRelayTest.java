@@ -0,0 +1,229 @@
+package org.sculptor.framework.event.outbox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sculptor.framework.context.ServiceContext;
+import org.sculptor.framework.context.ServiceContextStore;
+import org.sculptor.framework.event.Event;
+import org.sculptor.framework.event.SimpleEventBusImpl;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+public class EventOutboxRelayTest {
+
+    private DriverManagerDataSource dataSource;
+    private TransactionTemplate transactionTemplate;
+    private SimpleEventBusImpl eventBus;
+    private EventOutboxRelay relay;
+
+    @BeforeEach
+    public void setUp() {
+        dataSource = new DriverManagerDataSource("jdbc:hsqldb:mem:outbox", "sa", "");
+        transactionTemplate = new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+        JdbcEventOutbox outbox = new JdbcEventOutbox(dataSource);
+        outbox.createTableIfMissing();
+        outbox.createTableIfMissing();
+
+        StaticApplicationContext applicationContext = new StaticApplicationContext();
+        eventBus = new SimpleEventBusImpl();
+        applicationContext.getBeanFactory().registerSingleton("eventBus", eventBus);
+        relay = new EventOutboxRelay(outbox);
+        relay.setApplicationContext(applicationContext);
+        relay.setPollIntervalMillis(50);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        relay.stop();
+        new JdbcTemplate(dataSource).execute("drop table " + JdbcEventOutbox.DEFAULT_TABLE_NAME);
+        ServiceContextStore.set(null);
+    }
+
+    @Test
+    public void eventsOfRolledBackTransactionAreNotPublished() {
+        final List<Event> received = new ArrayList<Event>();
+        eventBus.subscribe("topic", event -> received.add(event));
+
+        assertThrows(IllegalStateException.class, () -> transactionTemplate.execute(status -> {
+            relay.enqueue("eventBus", "topic", new TestEvent("rolled back"));
+            throw new IllegalStateException("rollback");
+        }));
+        transactionTemplate.execute(status -> {
+            relay.enqueue("eventBus", "topic", new TestEvent("committed"));
+            return null;
+        });
+        assertTrue(received.isEmpty());
+
+        assertEquals(1, relay.relayBatch());
+        assertEquals(Collections.singletonList(new TestEvent("committed")), received);
+        assertEquals(0, relay.relayBatch());
+    }
+
+    @Test
+    public void relayThreadPublishesAfterCommitWithContext() throws InterruptedException {
+        final CountDownLatch done = new CountDownLatch(1);
+        final List<Serializable> eventIds = new ArrayList<Serializable>();
+        final List<String> users = new ArrayList<String>();
+        eventBus.subscribe("topic", event -> {
+            eventIds.add(ServiceContextStore.get().getProperty(EventOutboxRelay.EVENT_ID));
+            users.add(ServiceContextStore.getCurrentUser());
+            done.countDown();
+        });
+        relay.setPollIntervalMillis(60000);
+        relay.start();
+
+        ServiceContextStore.set(new ServiceContext("publisher", "session", "app"));
+        transactionTemplate.execute(status -> {
+            relay.enqueue("eventBus", "topic", new TestEvent("committed"));
+            return null;
+        });
+
+        assertTrue(done.await(10, TimeUnit.SECONDS));
+        assertNotNull(eventIds.get(0));
+        assertEquals(Collections.singletonList("publisher"), users);
+    }
+
+    @Test
+    public void failedEventsAreRetriedInOrder() {
+        final List<Event> received = new ArrayList<Event>();
+        final boolean[] failing = { true };
+        eventBus.subscribe("topic", event -> {
+            if (failing[0] && event.equals(new TestEvent("second"))) {
+                throw new IllegalStateException("subscriber failure");
+            }
+            received.add(event);
+        });
+        relay.enqueue("eventBus", "topic", new TestEvent("first"));
+        relay.enqueue("eventBus", "topic", new TestEvent("second"));
+        relay.enqueue("eventBus", "topic", new TestEvent("third"));
+
+        assertEquals(1, relay.relayBatch());
+        assertEquals(1, relay.getFailureCount());
+        failing[0] = false;
+        assertEquals(2, relay.relayBatch());
+
+        List<Event> expected = new ArrayList<Event>();
+        expected.add(new TestEvent("first"));
+        expected.add(new TestEvent("second"));
+        expected.add(new TestEvent("third"));
+        assertEquals(expected, received);
+        assertEquals(3, relay.getRelayedCount());
+    }
+
+    @Test
+    public void failingEventIsDeadLetteredAfterMaxAttempts() {
+        final List<Event> received = new ArrayList<Event>();
+        eventBus.subscribe("topic", event -> {
+            if (event.equals(new TestEvent("second"))) {
+                throw new IllegalStateException("subscriber failure");
+            }
+            received.add(event);
+        });
+        relay.setMaxAttempts(2);
+        relay.enqueue("eventBus", "topic", new TestEvent("first"));
+        relay.enqueue("eventBus", "topic", new TestEvent("second"));
+        relay.enqueue("eventBus", "topic", new TestEvent("third"));
+
+        assertEquals(1, relay.relayBatch());
+        assertEquals(0, relay.getDeadLetterCount());
+        assertEquals(1, relay.relayBatch());
+        assertEquals(1, relay.getDeadLetterCount());
+        assertEquals(0, relay.relayBatch());
+
+        List<Event> expected = new ArrayList<Event>();
+        expected.add(new TestEvent("first"));
+        expected.add(new TestEvent("third"));
+        assertEquals(expected, received);
+        assertEquals(2, relay.getFailureCount());
+        assertEquals(Integer.valueOf(1), countDeadLetters());
+    }
+
+    @Test
+    public void unreadableEventIsDeadLettered() {
+        final List<Event> received = new ArrayList<Event>();
+        eventBus.subscribe("topic", event -> received.add(event));
+        new JdbcTemplate(dataSource).update("insert into " + JdbcEventOutbox.DEFAULT_TABLE_NAME
+                + " (ID, SEQUENCE_NR, EVENT_BUS, TOPIC, EVENT) values (?, ?, ?, ?, ?)", "unreadable", 1L,
+                "eventBus", "topic", new byte[] { 1, 2, 3 });
+        relay.enqueue("eventBus", "topic", new TestEvent("readable"));
+
+        assertEquals(1, relay.relayBatch());
+
+        assertEquals(Collections.singletonList(new TestEvent("readable")), received);
+        assertEquals(1, relay.getDeadLetterCount());
+        assertEquals(Integer.valueOf(1), countDeadLetters());
+    }
+
+    @Test
+    public void entryWithUnreadableServiceContextIsDeadLettered() {
+        final List<Event> received = new ArrayList<Event>();
+        eventBus.subscribe("topic", event -> received.add(event));
+        ServiceContext serviceContext = new ServiceContext("publisher", "session", "app");
+        serviceContext.setProperty("notAllowed", new ArrayList<String>());
+        ServiceContextStore.set(serviceContext);
+        relay.enqueue("eventBus", "topic", new TestEvent("unreadable"));
+        ServiceContextStore.set(null);
+        relay.enqueue("eventBus", "topic", new TestEvent("readable"));
+
+        assertEquals(1, relay.relayBatch());
+
+        assertEquals(Collections.singletonList(new TestEvent("readable")), received);
+        assertEquals(1, relay.getDeadLetterCount());
+        assertEquals(Integer.valueOf(1), countDeadLetters());
+    }
+
+    @Test
+    public void binaryTypeOfDatabase() {
+        assertEquals("blob", new JdbcEventOutbox(dataSource).getBinaryType());
+        JdbcEventOutbox outbox = new JdbcEventOutbox(dataSource);
+        outbox.setBinaryType("varbinary(16000)");
+        assertEquals("varbinary(16000)", outbox.getBinaryType());
+    }
+
+    private Integer countDeadLetters() {
+        return new JdbcTemplate(dataSource).queryForObject("select count(*) from "
+                + JdbcEventOutbox.DEFAULT_TABLE_NAME + " where DEAD_LETTER = 1", Integer.class);
+    }
+
+    private static class TestEvent implements Event {
+        private static final long serialVersionUID = 1L;
+
+        private final String name;
+
+        TestEvent(String name) {
+            this.name = name;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof TestEvent && ((TestEvent) obj).name.equals(name);
+        }
+
+        @Override
+        public int hashCode() {
+            return name.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            return name;
+        }
+    }
+
+}
@@ -0,0 +1,92 @@
+package org.sculptor.framework.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.lang.reflect.AccessibleObject;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.aopalliance.intercept.MethodInvocation;
+import org.junit.jupiter.api.Test;
+import org.sculptor.framework.persistence.JpaFlushStrategyTest.RecordingEntityManager;
+
+public class JpaFlushEagerAdviceTest {
+
+    private final RecordingEntityManager recorder = new RecordingEntityManager();
+    private final JpaFlushEagerAdvice advice = new JpaFlushEagerAdvice();
+
+    @Test
+    public void flushesEveryServiceCallByDefault() throws Throwable {
+        advice.setEntityManager(recorder.create());
+
+        assertEquals("result", advice.invoke(invocation(() -> advice.invoke(invocation(() -> "result")))));
+        assertEquals(2, recorder.flushCount);
+    }
+
+    @Test
+    public void flushesOnlyOutermostServiceCallWhenNotNested() throws Throwable {
+        advice.setEntityManager(recorder.create());
+        advice.setFlushNested(false);
+
+        advice.invoke(invocation(() -> {
+            Object result = advice.invoke(invocation(() -> "result"));
+            assertEquals(0, recorder.flushCount);
+            return result;
+        }));
+        assertEquals(1, recorder.flushCount);
+    }
+
+    @Test
+    public void callsOverriddenAfterReturning() throws Throwable {
+        final List<Object> returnValues = new ArrayList<Object>();
+        JpaFlushEagerAdvice subclass = new JpaFlushEagerAdvice() {
+            @Override
+            public void afterReturning(Object returnValue, Method method, Object[] args, Object target)
+                    throws Throwable {
+                returnValues.add(returnValue);
+                super.afterReturning(returnValue, method, args, target);
+            }
+        };
+        subclass.setEntityManager(recorder.create());
+
+        subclass.invoke(invocation(() -> "result"));
+        assertEquals(Collections.singletonList("result"), returnValues);
+        assertEquals(1, recorder.flushCount);
+    }
+
+    private interface Call {
+        Object proceed() throws Throwable;
+    }
+
+    private static MethodInvocation invocation(final Call call) {
+        return new MethodInvocation() {
+            @Override
+            public Object proceed() throws Throwable {
+                return call.proceed();
+            }
+
+            @Override
+            public Method getMethod() {
+                return null;
+            }
+
+            @Override
+            public Object[] getArguments() {
+                return new Object[0];
+            }
+
+            @Override
+            public Object getThis() {
+                return null;
+            }
+
+            @Override
+            public AccessibleObject getStaticPart() {
+                return null;
+            }
+        };
+    }
+
+}
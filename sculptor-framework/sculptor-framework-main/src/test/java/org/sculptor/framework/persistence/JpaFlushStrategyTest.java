@@ -0,0 +1,122 @@
+package org.sculptor.framework.persistence;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.lang.reflect.Proxy;
+
+import javax.persistence.EntityManager;
+import javax.persistence.FlushModeType;
+
+import org.junit.jupiter.api.Test;
+
+public class JpaFlushStrategyTest {
+
+    private final RecordingEntityManager recorder = new RecordingEntityManager();
+    private final EntityManager entityManager = recorder.create();
+
+    @Test
+    public void flushesUnknownQueryTypeWhenAutoFlushIsDeferred() {
+        assertTrue(JpaFlushStrategy.begin(entityManager, 0, true));
+        assertEquals(FlushModeType.COMMIT, recorder.flushMode);
+
+        JpaFlushStrategy.beforeQuery(entityManager, null);
+        assertEquals(1, recorder.flushCount);
+
+        assertTrue(JpaFlushStrategy.end(entityManager));
+        assertEquals(FlushModeType.AUTO, recorder.flushMode);
+    }
+
+    @Test
+    public void flushesOnlyBeforeQueriesOfModifiedTypes() {
+        JpaFlushStrategy.begin(entityManager, 0, true);
+        try {
+            JpaFlushStrategy.beforeQuery(entityManager, String.class);
+            assertEquals(0, recorder.flushCount);
+
+            JpaFlushStrategy.modified(entityManager, String.class);
+            JpaFlushStrategy.beforeQuery(entityManager, Integer.class);
+            assertEquals(0, recorder.flushCount);
+
+            JpaFlushStrategy.beforeQuery(entityManager, CharSequence.class);
+            assertEquals(1, recorder.flushCount);
+
+            // nothing modified since the flush
+            JpaFlushStrategy.beforeQuery(entityManager, String.class);
+            assertEquals(1, recorder.flushCount);
+        } finally {
+            JpaFlushStrategy.end(entityManager);
+        }
+    }
+
+    @Test
+    public void leavesFlushBeforeQueriesToProviderByDefault() {
+        JpaFlushStrategy.begin(entityManager, 0, false);
+        try {
+            JpaFlushStrategy.modified(entityManager, String.class);
+            JpaFlushStrategy.beforeQuery(entityManager, null);
+            JpaFlushStrategy.beforeQuery(entityManager, String.class);
+            assertEquals(0, recorder.flushCount);
+            assertEquals(FlushModeType.AUTO, recorder.flushMode);
+        } finally {
+            JpaFlushStrategy.end(entityManager);
+        }
+    }
+
+    @Test
+    public void flushesAfterBatchSizeModifications() {
+        JpaFlushStrategy.begin(entityManager, 2, false);
+        try {
+            JpaFlushStrategy.modified(entityManager, String.class);
+            assertEquals(0, recorder.flushCount);
+            JpaFlushStrategy.modified(entityManager, String.class);
+            assertEquals(1, recorder.flushCount);
+            JpaFlushStrategy.modified(entityManager, String.class);
+            assertEquals(1, recorder.flushCount);
+        } finally {
+            JpaFlushStrategy.end(entityManager);
+        }
+    }
+
+    @Test
+    public void nestedCallsShareTheStateOfTheOutermostCall() {
+        assertTrue(JpaFlushStrategy.begin(entityManager, 0, true));
+        assertFalse(JpaFlushStrategy.begin(entityManager, 0, false));
+        assertFalse(JpaFlushStrategy.end(entityManager));
+        assertEquals(FlushModeType.COMMIT, recorder.flushMode);
+        assertTrue(JpaFlushStrategy.end(entityManager));
+        assertEquals(FlushModeType.AUTO, recorder.flushMode);
+
+        // without service call there is no state
+        JpaFlushStrategy.modified(entityManager, String.class);
+        assertFalse(JpaFlushStrategy.end(entityManager));
+    }
+
+    /**
+     * Records the flushes and the flush mode of an EntityManager.
+     */
+    static class RecordingEntityManager {
+        int flushCount;
+        FlushModeType flushMode = FlushModeType.AUTO;
+
+        EntityManager create() {
+            return (EntityManager) Proxy.newProxyInstance(EntityManager.class.getClassLoader(),
+                    new Class<?>[] { EntityManager.class }, (proxy, method, args) -> {
+                        switch (method.getName()) {
+                        case "flush":
+                            flushCount++;
+                            return null;
+                        case "getFlushMode":
+                            return flushMode;
+                        case "setFlushMode":
+                            flushMode = (FlushModeType) args[0];
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException(method.getName());
+                        }
+                    });
+        }
+    }
+
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2014 The Sculptor Project Team, including the original
+ * author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sculptor.framework.accessimpl.mongodb;
+
+import org.sculptor.framework.context.ContextPropagator;
+
+/**
+ * Passes the {@link DbManager#getThreadInstance()} set by
+ * {@link DbManagerAdvice} to tasks executed by other threads, e.g. for lazy
+ * loading of associations. Registered as {@link java.util.ServiceLoader}
+ * provider of {@link ContextPropagator}.
+ */
+public class DbManagerContextPropagator implements ContextPropagator<DbManager> {
+
+    @Override
+    public DbManager capture() {
+        return DbManager.getThreadInstance();
+    }
+
+    @Override
+    public void restore(DbManager context) {
+        DbManager.setThreadInstance(context);
+    }
+
+}
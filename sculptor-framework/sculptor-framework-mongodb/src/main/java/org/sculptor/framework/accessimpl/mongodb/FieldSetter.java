@@ -0,0 +1,67 @@
+/*
+ * Copyright 2014 The Sculptor Project Team, including the original
+ * author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sculptor.framework.accessimpl.mongodb;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+
+/**
+ * Sets a field of a domain object which isn't accessible via a public setter,
+ * e.g. the id or the version. In contrast to
+ * {@link IdReflectionUtil#internalSet(Object, String, Object)} the field is
+ * looked up only once (when the setter is created) and afterwards accessed via
+ * a {@link MethodHandle}.
+ * <p>
+ * Used by the generated DataMappers as <code>static final</code> constants.
+ *
+ * @param <T>
+ *            domain object type
+ */
+public final class FieldSetter<T> {
+
+    private final String fieldName;
+    private final MethodHandle handle;
+
+    private FieldSetter(String fieldName, MethodHandle handle) {
+        this.fieldName = fieldName;
+        this.handle = handle;
+    }
+
+    public static <T> FieldSetter<T> of(Class<T> domainObjectClass, String fieldName) {
+        try {
+            MethodHandle handle = MethodHandles.lookup().unreflectSetter(
+                    IdReflectionUtil.getField(domainObjectClass, fieldName));
+            return new FieldSetter<T>(fieldName, handle.asType(MethodType.methodType(void.class, Object.class,
+                    Object.class)));
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Can't get " + fieldName + " field of domainObject class: "
+                    + domainObjectClass.getName(), e);
+        }
+    }
+
+    public void set(T domainObject, Object value) {
+        try {
+            handle.invokeExact((Object) domainObject, value);
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Throwable e) {
+            throw new IllegalArgumentException("Can't set " + fieldName + " field of domainObject: " + domainObject, e);
+        }
+    }
+
+}
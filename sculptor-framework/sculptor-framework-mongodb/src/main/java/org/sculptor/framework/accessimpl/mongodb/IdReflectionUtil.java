@@ -18,12 +18,24 @@ package org.sculptor.framework.accessimpl.mongodb;
 
 import java.io.Serializable;
 import java.lang.reflect.Field;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.commons.beanutils.PropertyUtils;
 import org.sculptor.framework.domain.Identifiable;
 
 public class IdReflectionUtil {
 
+    /**
+     * Fields already looked up, by declaring (sub)class and field name.
+     */
+    private static final ClassValue<Map<String, Field>> FIELDS = new ClassValue<Map<String, Field>>() {
+        @Override
+        protected Map<String, Field> computeValue(Class<?> type) {
+            return new ConcurrentHashMap<String, Field>();
+        }
+    };
+
     public static Serializable internalGetId(Object domainObject) {
         if (domainObject instanceof Identifiable) {
             return ((Identifiable) domainObject).getId();
@@ -56,14 +68,28 @@ public class IdReflectionUtil {
 
     public static void internalSet(Object domainObject, String fieldName, Object value) {
         try {
-            Field field = findField(domainObject.getClass(), fieldName);
-            field.setAccessible(true);
-            field.set(domainObject, value);
+            getField(domainObject.getClass(), fieldName).set(domainObject, value);
         } catch (Exception e) {
             throw new IllegalArgumentException("Can't get " + fieldName + " field of domainObject: " + domainObject);
         }
     }
 
+    /**
+     * Returns the accessible field with the given name declared by the given
+     * class or one of its superclasses. The lookup is done only once per
+     * class and field name.
+     */
+    static Field getField(Class<?> clazz, String fieldName) throws NoSuchFieldException {
+        Map<String, Field> fields = FIELDS.get(clazz);
+        Field field = fields.get(fieldName);
+        if (field == null) {
+            field = findField(clazz, fieldName);
+            field.setAccessible(true);
+            fields.put(fieldName, field);
+        }
+        return field;
+    }
+
     private static Field findField(Class<?> clazz, String fieldName) throws NoSuchFieldException {
         try {
             return clazz.getDeclaredField(fieldName);
@@ -16,17 +16,26 @@
  */
 package org.sculptor.framework.accessimpl.mongodb;
 
+import com.mongodb.BasicDBObject;
 import com.mongodb.DBObject;
 
 public class IndexSpecification {
     private final String name;
     private final DBObject keys;
     private final boolean unique;
+    private final boolean sparse;
+    private final Integer expireAfterSeconds;
 
     public IndexSpecification(String name, DBObject keys, boolean unique) {
+        this(name, keys, unique, false, null);
+    }
+
+    public IndexSpecification(String name, DBObject keys, boolean unique, boolean sparse, Integer expireAfterSeconds) {
         this.name = name;
         this.keys = keys;
         this.unique = unique;
+        this.sparse = sparse;
+        this.expireAfterSeconds = expireAfterSeconds;
     }
 
     public String getName() {
@@ -41,4 +50,41 @@ public class IndexSpecification {
         return unique;
     }
 
+    public boolean isSparse() {
+        return sparse;
+    }
+
+    /**
+     * Time to live of the documents (TTL index) or <code>null</code>.
+     */
+    public Integer getExpireAfterSeconds() {
+        return expireAfterSeconds;
+    }
+
+    /**
+     * Options used for creating the index. Unique indexes are built in the
+     * foreground, so the constraint is in place as soon as the creation
+     * returns, all other indexes in the background.
+     */
+    public DBObject getOptions() {
+        BasicDBObject options = new BasicDBObject("name", name);
+        if (unique) {
+            options.append("unique", true);
+        } else {
+            options.append("background", true);
+        }
+        if (sparse) {
+            options.append("sparse", true);
+        }
+        if (expireAfterSeconds != null) {
+            options.append("expireAfterSeconds", expireAfterSeconds);
+        }
+        return options;
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + keys + " " + getOptions();
+    }
+
 }
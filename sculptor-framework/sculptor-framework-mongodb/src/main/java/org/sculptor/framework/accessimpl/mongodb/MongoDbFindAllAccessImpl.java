@@ -73,6 +73,18 @@ public class MongoDbFindAllAccessImpl<T> extends MongoDbAccessBase<T> implements
         return fetchEager;
     }
 
+    /**
+     * Ignored, documents are always loaded including their embedded objects.
+     */
+    @Override
+    public void setFetchGraph(String fetchGraph) {
+    }
+
+    @Override
+    public String getFetchGraph() {
+        return null;
+    }
+
     public void setFirstResult(int firstResult) {
         this.firstResult = firstResult;
     }
@@ -83,6 +83,18 @@ public class MongoDbFindByConditionAccessImpl<T> extends MongoDbAccessBase<T> im
         return fetchEager;
     }
 
+    /**
+     * Ignored, documents are always loaded including their embedded objects.
+     */
+    @Override
+    public void setFetchGraph(String fetchGraph) {
+    }
+
+    @Override
+    public String getFetchGraph() {
+        return null;
+    }
+
     protected int getFirstResult() {
         return firstResult;
     }
@@ -0,0 +1,334 @@
+/*
+ * Copyright 2014 The Sculptor Project Team, including the original
+ * author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sculptor.framework.accessimpl.mongodb;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBCollection;
+import com.mongodb.DBObject;
+import com.mongodb.MongoException;
+
+/**
+ * Synchronizes the indexes declared in the model (see
+ * {@link DataMapper#indexes()}) with the live indexes of a collection.
+ * <p>
+ * Missing unique indexes are created within the calling thread before the
+ * application uses the collection, otherwise documents violating the
+ * constraint could be stored meanwhile. All other missing indexes are created
+ * with the option <code>background</code>, so the database builds them
+ * without blocking the collection. Their creation and the comparison of the
+ * indexes is done by a separate thread, so the application start isn't
+ * blocked either. A different {@link Executor} (e.g. one running the task
+ * within the calling thread) can be provided via
+ * {@link #setExecutor(Executor)}.
+ * <p>
+ * Existing indexes are never changed or dropped. Instead the following is
+ * reported:
+ * <ul>
+ * <li>declared indexes which differ from the live index with the same name
+ * (keys or options)</li>
+ * <li>live indexes which aren't declared in the model</li>
+ * <li>redundant indexes, i.e. indexes whose keys are a prefix of the keys of
+ * another index</li>
+ * <li>indexes which weren't used since the start of the database (if
+ * <code>$indexStats</code> is supported by the database)</li>
+ * </ul>
+ */
+public final class MongoDbIndexes {
+
+    private static final Logger log = LoggerFactory.getLogger(MongoDbIndexes.class);
+
+    private static final String ID_INDEX = "_id_";
+
+    private static volatile Executor executor;
+
+    private MongoDbIndexes() {
+    }
+
+    public static void setExecutor(Executor executor) {
+        MongoDbIndexes.executor = executor;
+    }
+
+    private static Executor getExecutor() {
+        Executor result = executor;
+        if (result == null) {
+            synchronized (MongoDbIndexes.class) {
+                if (executor == null) {
+                    executor = Executors.newSingleThreadExecutor(runnable -> {
+                        Thread thread = new Thread(runnable, "sculptor-mongodb-indexes");
+                        thread.setDaemon(true);
+                        return thread;
+                    });
+                }
+                result = executor;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Creates the missing unique indexes and starts the synchronization of the
+     * other indexes with the live indexes of the collection.
+     *
+     * @throws MongoException
+     *             if a unique index can't be created, e.g. because of
+     *             duplicate keys
+     */
+    public static void ensureIndexes(final DBCollection collection, final List<IndexSpecification> indexes) {
+        List<IndexSpecification> uniqueIndexes = new ArrayList<IndexSpecification>();
+        for (IndexSpecification index : indexes) {
+            if (index.isUnique()) {
+                uniqueIndexes.add(index);
+            }
+        }
+        createIndexes(collection, findMissingIndexes(uniqueIndexes, collection.getIndexInfo()));
+        getExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    synchronizeIndexes(collection, indexes);
+                } catch (MongoException e) {
+                    log.error("Ensuring indexes of collection " + collection.getName() + " failed", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Synchronizes the given indexes with the live indexes of the collection
+     * within the calling thread.
+     *
+     * @return the indexes which were created
+     */
+    public static List<IndexSpecification> synchronizeIndexes(DBCollection collection,
+            List<IndexSpecification> indexes) {
+        List<DBObject> liveIndexes = collection.getIndexInfo();
+        List<IndexSpecification> created = findMissingIndexes(indexes, liveIndexes);
+        createIndexes(collection, created);
+        for (Map.Entry<IndexSpecification, DBObject> each : findChangedIndexes(indexes, liveIndexes).entrySet()) {
+            log.warn("Index {} of collection {} differs from the model: {} (drop the index to rebuild it)",
+                    each.getKey(), collection.getName(), each.getValue());
+        }
+        for (String name : findUndeclaredIndexes(indexes, liveIndexes)) {
+            log.warn("Index {} of collection {} isn't declared in the model", name, collection.getName());
+        }
+        for (Map.Entry<String, String> each : findRedundantIndexes(liveIndexes).entrySet()) {
+            log.warn("Index {} of collection {} is redundant, its keys are a prefix of index {}", each.getKey(),
+                    collection.getName(), each.getValue());
+        }
+        reportUnusedIndexes(collection);
+        return created;
+    }
+
+    private static void createIndexes(DBCollection collection, List<IndexSpecification> indexes) {
+        for (IndexSpecification index : indexes) {
+            log.info("Building index {} of collection {}{}", index, collection.getName(),
+                    index.isUnique() ? "" : " in the background");
+            collection.createIndex(index.getKeys(), index.getOptions());
+        }
+    }
+
+    /**
+     * @return the declared indexes without a live index with the same name or
+     *         keys
+     */
+    static List<IndexSpecification> findMissingIndexes(List<IndexSpecification> indexes, List<DBObject> liveIndexes) {
+        List<IndexSpecification> result = new ArrayList<IndexSpecification>();
+        for (IndexSpecification index : indexes) {
+            if (findLiveIndex(index, liveIndexes) == null) {
+                result.add(index);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the live index by declared index, for the declared indexes
+     *         whose keys or options differ from the live index
+     */
+    static Map<IndexSpecification, DBObject> findChangedIndexes(List<IndexSpecification> indexes,
+            List<DBObject> liveIndexes) {
+        Map<IndexSpecification, DBObject> result = new LinkedHashMap<IndexSpecification, DBObject>();
+        for (IndexSpecification index : indexes) {
+            DBObject liveIndex = findLiveIndex(index, liveIndexes);
+            if (liveIndex != null
+                    && (!isSameKeys(index.getKeys(), (DBObject) liveIndex.get("key")) || !isSameOptions(index,
+                            liveIndex))) {
+                result.put(index, liveIndex);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the names of the live indexes (except the index of the id)
+     *         which aren't declared
+     */
+    static List<String> findUndeclaredIndexes(List<IndexSpecification> indexes, List<DBObject> liveIndexes) {
+        List<String> result = new ArrayList<String>();
+        for (DBObject liveIndex : liveIndexes) {
+            String name = (String) liveIndex.get("name");
+            if (!ID_INDEX.equals(name) && !isDeclared(liveIndex, indexes)) {
+                result.add(name);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the name of the covering index by the name of the redundant
+     *         live index
+     */
+    static Map<String, String> findRedundantIndexes(List<DBObject> liveIndexes) {
+        Map<String, String> result = new LinkedHashMap<String, String>();
+        for (DBObject liveIndex : liveIndexes) {
+            String name = (String) liveIndex.get("name");
+            DBObject coveringIndex = ID_INDEX.equals(name) ? null : findCoveringIndex(liveIndex, liveIndexes);
+            if (coveringIndex != null) {
+                result.put(name, (String) coveringIndex.get("name"));
+            }
+        }
+        return result;
+    }
+
+    private static DBObject findLiveIndex(IndexSpecification index, List<DBObject> liveIndexes) {
+        for (DBObject liveIndex : liveIndexes) {
+            if (index.getName().equals(liveIndex.get("name"))) {
+                return liveIndex;
+            }
+        }
+        for (DBObject liveIndex : liveIndexes) {
+            if (isSameKeys(index.getKeys(), (DBObject) liveIndex.get("key"))) {
+                return liveIndex;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isDeclared(DBObject liveIndex, List<IndexSpecification> indexes) {
+        for (IndexSpecification index : indexes) {
+            if (index.getName().equals(liveIndex.get("name"))
+                    || isSameKeys(index.getKeys(), (DBObject) liveIndex.get("key"))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSameOptions(IndexSpecification index, DBObject liveIndex) {
+        Number expireAfterSeconds = (Number) liveIndex.get("expireAfterSeconds");
+        return index.isUnique() == isTrue(liveIndex.get("unique")) && index.isSparse() == isTrue(liveIndex.get("sparse"))
+                && (index.getExpireAfterSeconds() == null ? expireAfterSeconds == null : expireAfterSeconds != null
+                        && index.getExpireAfterSeconds().longValue() == expireAfterSeconds.longValue());
+    }
+
+    /**
+     * Unique, sparse and TTL indexes aren't redundant because of their
+     * additional semantics.
+     */
+    private static DBObject findCoveringIndex(DBObject liveIndex, List<DBObject> liveIndexes) {
+        if (isTrue(liveIndex.get("unique")) || isTrue(liveIndex.get("sparse"))
+                || liveIndex.get("expireAfterSeconds") != null) {
+            return null;
+        }
+        DBObject keys = (DBObject) liveIndex.get("key");
+        for (DBObject other : liveIndexes) {
+            if (other != liveIndex && !isTrue(other.get("sparse")) && isPrefix(keys, (DBObject) other.get("key"))) {
+                return other;
+            }
+        }
+        return null;
+    }
+
+    private static boolean isSameKeys(DBObject keys, DBObject otherKeys) {
+        return keys != null && otherKeys != null && keys.keySet().size() == otherKeys.keySet().size()
+                && isPrefix(keys, otherKeys);
+    }
+
+    /**
+     * The order of the keys matters, the direction of the keys is compared
+     * numerically (the database may return 1.0 instead of 1).
+     */
+    private static boolean isPrefix(DBObject keys, DBObject otherKeys) {
+        if (keys == null || otherKeys == null || keys.keySet().size() > otherKeys.keySet().size()) {
+            return false;
+        }
+        Iterator<String> otherIter = otherKeys.keySet().iterator();
+        for (String key : keys.keySet()) {
+            String otherKey = otherIter.next();
+            if (!key.equals(otherKey) || !isSameDirection(keys.get(key), otherKeys.get(otherKey))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isSameDirection(Object direction, Object otherDirection) {
+        if (direction instanceof Number && otherDirection instanceof Number) {
+            return ((Number) direction).doubleValue() == ((Number) otherDirection).doubleValue();
+        }
+        return direction != null && direction.equals(otherDirection);
+    }
+
+    private static boolean isTrue(Object value) {
+        return Boolean.TRUE.equals(value) || (value instanceof Number && ((Number) value).intValue() == 1);
+    }
+
+    private static void reportUnusedIndexes(DBCollection collection) {
+        try {
+            List<DBObject> pipeline = Collections.<DBObject> singletonList(new BasicDBObject("$indexStats",
+                    new BasicDBObject()));
+            for (Map.Entry<String, Object> each : findUnusedIndexes(collection.aggregate(pipeline).results())
+                    .entrySet()) {
+                log.info("Index {} of collection {} wasn't used since {}", each.getKey(), collection.getName(),
+                        each.getValue());
+            }
+        } catch (MongoException e) {
+            log.debug("Usage of indexes of collection {} not available: {}", collection.getName(), e.getMessage());
+        }
+    }
+
+    /**
+     * @param indexStats
+     *            result of <code>$indexStats</code>
+     * @return the start of the statistics by the name of the indexes (except
+     *         the index of the id) without any access
+     */
+    static Map<String, Object> findUnusedIndexes(Iterable<DBObject> indexStats) {
+        Map<String, Object> result = new LinkedHashMap<String, Object>();
+        for (DBObject stats : indexStats) {
+            DBObject accesses = (DBObject) stats.get("accesses");
+            Number ops = accesses != null ? (Number) accesses.get("ops") : null;
+            if (ops != null && ops.longValue() == 0 && !ID_INDEX.equals(stats.get("name"))) {
+                result.put((String) stats.get("name"), accesses.get("since"));
+            }
+        }
+        return result;
+    }
+
+}
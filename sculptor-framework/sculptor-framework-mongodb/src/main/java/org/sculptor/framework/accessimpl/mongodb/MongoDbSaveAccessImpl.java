@@ -117,9 +117,9 @@ public class MongoDbSaveAccessImpl<T> extends MongoDbAccessBase<T> implements Sa
         }
         getDBCollection().insert(dbObj);
         checkLastError();
-        IdReflectionUtil.internalSetId(obj, objectId.toStringMongod());
+        internalSetId(obj, objectId.toStringMongod());
         if (newVersion != null) {
-            IdReflectionUtil.internalSetVersion(obj, newVersion);
+            internalSetVersion(obj, newVersion);
         }
     }
 
@@ -150,7 +150,25 @@ public class MongoDbSaveAccessImpl<T> extends MongoDbAccessBase<T> implements Sa
         }
 
         checkLastError();
-        IdReflectionUtil.internalSetVersion(obj, newVersion);
+        internalSetVersion(obj, newVersion);
+    }
+
+    @SuppressWarnings("unchecked")
+    protected void internalSetId(T obj, String id) {
+        if (getDataMapper() instanceof IdAccessor) {
+            ((IdAccessor<T>) getDataMapper()).internalSetId(obj, id);
+        } else {
+            IdReflectionUtil.internalSetId(obj, id);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    protected void internalSetVersion(T obj, Long version) {
+        if (getDataMapper() instanceof IdAccessor) {
+            ((IdAccessor<T>) getDataMapper()).internalSetVersion(obj, version);
+        } else {
+            IdReflectionUtil.internalSetVersion(obj, version);
+        }
     }
 
     protected void updateAuditInformation(T obj) {
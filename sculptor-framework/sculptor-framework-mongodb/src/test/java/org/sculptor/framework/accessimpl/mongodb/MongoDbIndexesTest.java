@@ -0,0 +1,107 @@
+package org.sculptor.framework.accessimpl.mongodb;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.mongodb.BasicDBObject;
+import com.mongodb.DBObject;
+
+public class MongoDbIndexesTest {
+
+    private static final DBObject ID_INDEX = liveIndex("_id_", new BasicDBObject("_id", 1));
+
+    @Test
+    public void missingIndexesAreFoundByNameOrKeys() {
+        IndexSpecification byName = new IndexSpecification("byName", new BasicDBObject("name", 1), false);
+        IndexSpecification byCity = new IndexSpecification("byCity", new BasicDBObject("city", 1), false);
+        IndexSpecification byZip = new IndexSpecification("byZip", new BasicDBObject("zip", 1), false);
+        List<DBObject> liveIndexes = Arrays.asList(ID_INDEX, liveIndex("byName", new BasicDBObject("name", 1)),
+                liveIndex("city_1", new BasicDBObject("city", 1.0)));
+
+        assertEquals(Collections.singletonList(byZip),
+                MongoDbIndexes.findMissingIndexes(Arrays.asList(byName, byCity, byZip), liveIndexes));
+    }
+
+    @Test
+    public void changedKeysAndOptionsAreDetected() {
+        IndexSpecification keys = new IndexSpecification("keys", new BasicDBObject("a", 1).append("b", 1), false);
+        IndexSpecification unique = new IndexSpecification("unique", new BasicDBObject("c", 1), true);
+        IndexSpecification ttl = new IndexSpecification("ttl", new BasicDBObject("d", 1), false, false, 60);
+        IndexSpecification same = new IndexSpecification("same", new BasicDBObject("e", -1), false, true, null);
+        DBObject liveTtl = liveIndex("ttl", new BasicDBObject("d", 1));
+        liveTtl.put("expireAfterSeconds", 3600);
+        DBObject liveSame = liveIndex("same", new BasicDBObject("e", -1.0));
+        liveSame.put("sparse", true);
+        List<DBObject> liveIndexes = Arrays.asList(ID_INDEX, liveIndex("keys", new BasicDBObject("b", 1).append("a",
+                1)), liveIndex("unique", new BasicDBObject("c", 1)), liveTtl, liveSame);
+
+        Map<IndexSpecification, DBObject> changed = MongoDbIndexes.findChangedIndexes(Arrays.asList(keys, unique,
+                ttl, same), liveIndexes);
+        assertEquals(Arrays.asList(keys, unique, ttl), Arrays.asList(changed.keySet().toArray()));
+        assertEquals(liveTtl, changed.get(ttl));
+        assertFalse(changed.containsKey(same));
+    }
+
+    @Test
+    public void undeclaredIndexesExceptIdAreReported() {
+        IndexSpecification byName = new IndexSpecification("byName", new BasicDBObject("name", 1), false);
+        List<DBObject> liveIndexes = Arrays.asList(ID_INDEX, liveIndex("byName", new BasicDBObject("name", 1)),
+                liveIndex("legacy", new BasicDBObject("legacy", 1)));
+
+        assertEquals(Collections.singletonList("legacy"),
+                MongoDbIndexes.findUndeclaredIndexes(Collections.singletonList(byName), liveIndexes));
+    }
+
+    @Test
+    public void prefixIndexesAreRedundantUnlessTheyHaveAdditionalSemantics() {
+        DBObject unique = liveIndex("uniqueA", new BasicDBObject("a", 1));
+        unique.put("unique", true);
+        DBObject sparse = liveIndex("sparseAB", new BasicDBObject("a", 1).append("b", 1));
+        sparse.put("sparse", true);
+        List<DBObject> liveIndexes = Arrays.asList(ID_INDEX, liveIndex("a", new BasicDBObject("a", 1)), liveIndex(
+                "aDesc", new BasicDBObject("a", -1)), liveIndex("abc", new BasicDBObject("a", 1).append("b", 1).append(
+                "c", 1)), liveIndex("ba", new BasicDBObject("b", 1).append("a", 1)), unique, sparse);
+
+        Map<String, String> redundant = MongoDbIndexes.findRedundantIndexes(liveIndexes);
+        assertEquals(Collections.singletonMap("a", "abc"), redundant);
+        assertNull(redundant.get("uniqueA"));
+    }
+
+    @Test
+    public void indexesWithoutAccessesAreUnused() {
+        List<DBObject> indexStats = Arrays.asList(indexStats("_id_", 0), indexStats("used", 12), indexStats(
+                "unused", 0), new BasicDBObject("name", "noStats"));
+
+        Map<String, Object> unused = MongoDbIndexes.findUnusedIndexes(indexStats);
+        assertEquals(Collections.singleton("unused"), unused.keySet());
+        assertEquals("since", unused.get("unused"));
+    }
+
+    @Test
+    public void onlyNonUniqueIndexesAreBuiltInTheBackground() {
+        assertTrue((Boolean) new IndexSpecification("a", new BasicDBObject("a", 1), false).getOptions().get(
+                "background"));
+        DBObject uniqueOptions = new IndexSpecification("b", new BasicDBObject("b", 1), true).getOptions();
+        assertFalse(uniqueOptions.containsField("background"));
+        assertEquals(Boolean.TRUE, uniqueOptions.get("unique"));
+    }
+
+    private static DBObject liveIndex(String name, DBObject keys) {
+        return new BasicDBObject("v", 2).append("key", keys).append("name", name);
+    }
+
+    private static DBObject indexStats(String name, long ops) {
+        return new BasicDBObject("name", name).append("accesses", new BasicDBObject("ops", ops).append("since",
+                "since"));
+    }
+
+}
@@ -0,0 +1,155 @@
+/*
+ * Copyright 2014 The Sculptor Project Team, including the original
+ * author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sculptor.generator.chain;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.StringWriter;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+public class GeneratorProfilerTest {
+
+	private final GeneratorProfiler profiler = new GeneratorProfiler();
+
+	@AfterEach
+	public void deactivateProfiler() {
+		while (GeneratorProfiler.getCurrent() != null) {
+			GeneratorProfiler.getCurrent().deactivate();
+		}
+	}
+
+	@Test
+	public void testDisabledByDefault() {
+		assertFalse(GeneratorProfiler.isEnabled());
+		GeneratorProfiler.enter("RootTmpl.root");
+		GeneratorProfiler.exit();
+		assertTrue(profiler.getStatistics().isEmpty());
+	}
+
+	@Test
+	public void testNestedSections() throws Exception {
+		profiler.activate();
+		assertTrue(GeneratorProfiler.isEnabled());
+		GeneratorProfiler.enter("RootTmpl.root");
+		GeneratorProfiler.enter("DomainObjectTmpl.domainObject");
+		Thread.sleep(5);
+		GeneratorProfiler.exit();
+		GeneratorProfiler.enter("DomainObjectTmpl.domainObject");
+		GeneratorProfiler.exit();
+		GeneratorProfiler.exit();
+		profiler.deactivate();
+		assertFalse(GeneratorProfiler.isEnabled());
+
+		List<GeneratorProfiler.Statistics> statistics = profiler.getStatistics();
+		assertEquals(2, statistics.size());
+		GeneratorProfiler.Statistics domainObject = statistics.get(0);
+		assertEquals("DomainObjectTmpl.domainObject", domainObject.getName());
+		assertEquals(2, domainObject.getCalls());
+		GeneratorProfiler.Statistics root = statistics.get(1);
+		assertEquals("RootTmpl.root", root.getName());
+		assertEquals(1, root.getCalls());
+		assertTrue(root.getInclusiveTime() >= domainObject.getInclusiveTime());
+		assertEquals(root.getInclusiveTime(), root.getExclusiveTime() + domainObject.getInclusiveTime());
+
+		StringWriter writer = new StringWriter();
+		profiler.writeFoldedStacks(writer);
+		assertTrue(writer.toString().startsWith("RootTmpl.root;DomainObjectTmpl.domainObject "));
+
+		assertEquals(3, profiler.getSummary(10).size());
+		assertEquals(2, profiler.getSummary(1).size());
+	}
+
+	@Test
+	public void testRecursiveSections() throws Exception {
+		profiler.activate();
+		GeneratorProfiler.enter("HelperBase.getAllAttributes");
+		GeneratorProfiler.enter("HelperBase.getAllAttributes");
+		Thread.sleep(5);
+		GeneratorProfiler.exit();
+		GeneratorProfiler.exit();
+		profiler.deactivate();
+
+		List<GeneratorProfiler.Statistics> statistics = profiler.getStatistics();
+		assertEquals(1, statistics.size());
+		GeneratorProfiler.Statistics s = statistics.get(0);
+		assertEquals(2, s.getCalls());
+
+		// Inclusive time of the inner call is not counted twice
+		assertEquals(s.getInclusiveTime(), s.getExclusiveTime());
+	}
+
+	@Test
+	public void testConcurrentRunsAreIsolated() throws Exception {
+		final GeneratorProfiler other = new GeneratorProfiler();
+		ExecutorService executor = Executors.newFixedThreadPool(2);
+		try {
+			profiler.activate();
+			Future<?> wrapped = executor.submit(GeneratorProfiler.wrap(() -> {
+				GeneratorProfiler.enter("JavaCodeFormatter.format");
+				GeneratorProfiler.exit();
+			}));
+			profiler.deactivate();
+			Future<?> otherRun = executor.submit(() -> {
+				other.activate();
+				try {
+					GeneratorProfiler.enter("RootTmpl.root");
+					GeneratorProfiler.exit();
+				} finally {
+					other.deactivate();
+				}
+			});
+			wrapped.get();
+			otherRun.get();
+		} finally {
+			executor.shutdown();
+		}
+
+		assertEquals(1, profiler.getStatistics().size());
+		assertEquals("JavaCodeFormatter.format", profiler.getStatistics().get(0).getName());
+		assertEquals(1, other.getStatistics().size());
+		assertEquals("RootTmpl.root", other.getStatistics().get(0).getName());
+
+		// Resetting one run doesn't affect the other
+		other.reset();
+		assertEquals(1, profiler.getStatistics().size());
+	}
+
+	@Test
+	public void testNestedActivation() {
+		GeneratorProfiler other = new GeneratorProfiler();
+		profiler.activate();
+		other.activate();
+		assertSame(other, GeneratorProfiler.getCurrent());
+		assertThrows(IllegalStateException.class, () -> profiler.deactivate());
+		other.deactivate();
+		assertSame(profiler, GeneratorProfiler.getCurrent());
+		profiler.deactivate();
+		assertNull(GeneratorProfiler.getCurrent());
+	}
+
+}
@@ -134,6 +134,15 @@ class ChainOverridableProcessor extends AbstractClassProcessor {
 				dispatchMethod.docComment = publicMethod.docComment
 				dispatchMethod.body = ['''
 					annotatedClass.simpleName nextObj = methodsDispatchTable[annotatedClass.methodIndexesName.methodInfo.methodIndexName];
+					if (PROFILER_CLASS_NAME.isEnabled()) {
+						PROFILER_CLASS_NAME.enter(nextObj.getClass().getSimpleName() + ".methodName");
+						try {
+							IF !publicMethod.returnType.isVoidreturnENDIF nextObj.RENAMED_METHOD_NAME_PREFIX + methodName(FOR p : publicMethod.parameters SEPARATOR ", "p.simpleNameENDFOR);
+						} finally {
+							PROFILER_CLASS_NAME.exit();
+						}
+						IF publicMethod.returnType.isVoidreturn;ENDIF
+					}
 					IF !publicMethod.returnType.isVoidreturnENDIF nextObj.RENAMED_METHOD_NAME_PREFIX + methodName(FOR p : publicMethod.parameters SEPARATOR ", "p.simpleNameENDFOR);
 				''']
 			]
@@ -30,6 +30,8 @@ class ChainOverrideHelper {
 
 	public static final String RENAMED_METHOD_NAME_PREFIX = '_chained_'
 
+	public static final String PROFILER_CLASS_NAME = 'org.sculptor.generator.chain.GeneratorProfiler'
+
 	/**
 	 * Add a method to get the dispatch array for each overrideable method for classToModify
 	 */
@@ -130,11 +132,21 @@ class ChainOverrideHelper {
 			delegateMethod.body = publicMethod.body 
 		]
 
-		// Change the original method to now do delegation to head of chain
+		// Change the original method to now do delegation to head of chain (recorded by profiler if enabled)
 		publicMethod.visibility = Visibility.PUBLIC
 			publicMethod.body = ['''
 				originalTmplClass.simpleName headObj = getMethodsDispatchHead()[originalTmplClass.methodIndexesName.methodInfo.
 					methodIndexName];
+				if (PROFILER_CLASS_NAME.isEnabled()) {
+					PROFILER_CLASS_NAME.enter(headObj.getClass().getSimpleName() + ".methodName");
+					try {
+						IF !publicMethod.returnType.isVoidreturn ENDIFheadObj.RENAMED_METHOD_NAME_PREFIX + methodName(FOR p : publicMethod.
+							parameters SEPARATOR ", "p.simpleNameENDFOR);
+					} finally {
+						PROFILER_CLASS_NAME.exit();
+					}
+					IF publicMethod.returnType.isVoidreturn;ENDIF
+				}
 				IF !publicMethod.returnType.isVoidreturn ENDIFheadObj.RENAMED_METHOD_NAME_PREFIX + methodName(FOR p : publicMethod.
 					parameters SEPARATOR ", "p.simpleNameENDFOR);
 			''']
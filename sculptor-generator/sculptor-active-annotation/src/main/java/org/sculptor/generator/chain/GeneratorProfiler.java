@@ -0,0 +1,340 @@
+/*
+ * Copyright 2014 The Sculptor Project Team, including the original 
+ * author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sculptor.generator.chain;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Opt-in profiler for the code generator. It records the number of calls and
+ * the inclusive and exclusive time of
+ * <ul>
+ * <li>every overridable method of the chain-overridable templates (the
+ * delegation to the head of the chain added by {@link ChainOverridable} and
+ * {@link ChainOverride} and the delegation to the next chain link of the
+ * method dispatch classes are calling {@link #enter(String)} and
+ * {@link #exit()}) and
+ * <li>any other section of the generator which is wrapped in calls to
+ * {@link #enter(String)} and {@link #exit()}, e.g. Java code formatting and
+ * writing of the generated files.
+ * </ul>
+ * Every code generator run uses its own profiler instance, which is bound to
+ * the threads of the run via {@link #activate()} (or {@link #wrap(Callable)}
+ * for tasks executed by other threads). So concurrent runs (e.g. of several
+ * model files or of a parallel Maven build) don't mix or reset the data of
+ * each other. The call stacks are recorded per thread. The exclusive time per
+ * call stack can be written in the "folded stacks" format understood by flame
+ * graph tools (via {@link #writeFoldedStacks(Writer)}).
+ * <p>
+ * Without an active profiler the overhead is a single check of a volatile
+ * counter per call.
+ */
+public final class GeneratorProfiler {
+
+	private static final AtomicInteger activeBindings = new AtomicInteger();
+	private static final ThreadLocal<Binding> currentBinding = new ThreadLocal<Binding>();
+
+	private final ConcurrentMap<String, Statistics> statistics = new ConcurrentHashMap<String, Statistics>();
+	private final ConcurrentMap<String, AtomicLong> stacks = new ConcurrentHashMap<String, AtomicLong>();
+
+	/**
+	 * Returns true if a profiler is bound to the current thread.
+	 */
+	public static boolean isEnabled() {
+		return activeBindings.get() > 0 && currentBinding.get() != null;
+	}
+
+	/**
+	 * Returns the profiler bound to the current thread or null.
+	 */
+	public static GeneratorProfiler getCurrent() {
+		Binding binding = currentBinding.get();
+		return binding == null ? null : binding.profiler;
+	}
+
+	/**
+	 * Binds this profiler to the current thread. Every call of this method has
+	 * to be followed by a call of {@link #deactivate()} (in a finally block).
+	 */
+	public void activate() {
+		currentBinding.set(new Binding(this, currentBinding.get()));
+		activeBindings.incrementAndGet();
+	}
+
+	/**
+	 * Removes the binding of this profiler from the current thread, the
+	 * previously bound profiler (if any) is bound again.
+	 */
+	public void deactivate() {
+		Binding binding = currentBinding.get();
+		if (binding == null || binding.profiler != this) {
+			throw new IllegalStateException("Profiler is not bound to the current thread");
+		}
+		if (binding.previous == null) {
+			currentBinding.remove();
+		} else {
+			currentBinding.set(binding.previous);
+		}
+		activeBindings.decrementAndGet();
+	}
+
+	/**
+	 * Returns a task which executes the given task with the profiler bound to
+	 * the calling thread (if any).
+	 */
+	public static <T> Callable<T> wrap(final Callable<T> task) {
+		final GeneratorProfiler profiler = getCurrent();
+		if (profiler == null) {
+			return task;
+		}
+		return () -> {
+			profiler.activate();
+			try {
+				return task.call();
+			} finally {
+				profiler.deactivate();
+			}
+		};
+	}
+
+	/**
+	 * Returns a task which executes the given task with the profiler bound to
+	 * the calling thread (if any).
+	 */
+	public static Runnable wrap(final Runnable task) {
+		final GeneratorProfiler profiler = getCurrent();
+		if (profiler == null) {
+			return task;
+		}
+		return () -> {
+			profiler.activate();
+			try {
+				task.run();
+			} finally {
+				profiler.deactivate();
+			}
+		};
+	}
+
+	/**
+	 * Drops all recorded data.
+	 */
+	public void reset() {
+		statistics.clear();
+		stacks.clear();
+	}
+
+	/**
+	 * Starts the section with the given name, e.g.
+	 * <code>"RepositoryTmpl.repository"</code>, for the profiler bound to the
+	 * current thread. Every call of this method has to be followed by a call of
+	 * {@link #exit()} (in a finally block).
+	 * <p>
+	 * The caller is responsible for checking {@link #isEnabled()} before.
+	 */
+	public static void enter(String name) {
+		Binding binding = currentBinding.get();
+		if (binding != null) {
+			binding.enter(name);
+		}
+	}
+
+	/**
+	 * Ends the section started by the last call of {@link #enter(String)}.
+	 */
+	public static void exit() {
+		Binding binding = currentBinding.get();
+		if (binding != null) {
+			binding.exit();
+		}
+	}
+
+	private void record(Frame frame, long inclusive, long exclusive) {
+		getStatistics(frame.name).record(inclusive, exclusive);
+		AtomicLong stackTime = stacks.get(frame.stack);
+		if (stackTime == null) {
+			AtomicLong newStackTime = new AtomicLong();
+			stackTime = stacks.putIfAbsent(frame.stack, newStackTime);
+			if (stackTime == null) {
+				stackTime = newStackTime;
+			}
+		}
+		stackTime.addAndGet(exclusive);
+	}
+
+	/**
+	 * Returns the recorded statistics sorted by exclusive time (descending).
+	 */
+	public List<Statistics> getStatistics() {
+		List<Statistics> result = new ArrayList<Statistics>(statistics.values());
+		Collections.sort(result, (s1, s2) -> Long.compare(s2.getExclusiveTime(), s1.getExclusiveTime()));
+		return result;
+	}
+
+	/**
+	 * Writes the exclusive time (in microseconds) per recorded call stack in
+	 * the folded stacks format (<code>"frame1;frame2;frame3 time"</code>).
+	 */
+	public void writeFoldedStacks(Writer writer) throws IOException {
+		List<String> sortedStacks = new ArrayList<String>(stacks.keySet());
+		Collections.sort(sortedStacks);
+		for (String stack : sortedStacks) {
+			long micros = stacks.get(stack).get() / 1000;
+			if (micros > 0) {
+				writer.write(stack + " " + micros + "\n");
+			}
+		}
+	}
+
+	/**
+	 * Returns a table with the statistics of the given number of sections
+	 * with the highest exclusive time.
+	 */
+	public List<String> getSummary(int maxSections) {
+		List<String> lines = new ArrayList<String>();
+		lines.add(String.format("%10s %12s %12s  %s", "Calls", "Incl. [ms]", "Excl. [ms]", "Section"));
+		int count = 0;
+		for (Statistics s : getStatistics()) {
+			if (count++ == maxSections) {
+				break;
+			}
+			lines.add(String.format("%10d %12.1f %12.1f  %s", s.getCalls(), s.getInclusiveTime() / 1000000d,
+					s.getExclusiveTime() / 1000000d, s.getName()));
+		}
+		return lines;
+	}
+
+	private Statistics getStatistics(String name) {
+		Statistics s = statistics.get(name);
+		if (s == null) {
+			Statistics newStatistics = new Statistics(name);
+			s = statistics.putIfAbsent(name, newStatistics);
+			if (s == null) {
+				s = newStatistics;
+			}
+		}
+		return s;
+	}
+
+	/**
+	 * Recorded data of a single section, e.g. a template method. Times are in
+	 * nanoseconds.
+	 */
+	public static final class Statistics {
+
+		private final String name;
+		private final AtomicLong calls = new AtomicLong();
+		private final AtomicLong inclusiveTime = new AtomicLong();
+		private final AtomicLong exclusiveTime = new AtomicLong();
+
+		private Statistics(String name) {
+			this.name = name;
+		}
+
+		private void record(long inclusive, long exclusive) {
+			calls.incrementAndGet();
+			inclusiveTime.addAndGet(inclusive);
+			exclusiveTime.addAndGet(exclusive);
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public long getCalls() {
+			return calls.get();
+		}
+
+		public long getInclusiveTime() {
+			return inclusiveTime.get();
+		}
+
+		public long getExclusiveTime() {
+			return exclusiveTime.get();
+		}
+
+	}
+
+	/**
+	 * Binding of a profiler to a thread, with the call stack of the thread.
+	 */
+	private static final class Binding {
+		private final GeneratorProfiler profiler;
+		private final Binding previous;
+		private final Deque<Frame> frames = new ArrayDeque<Frame>();
+		private final Map<String, Integer> activeNames = new HashMap<String, Integer>();
+
+		private Binding(GeneratorProfiler profiler, Binding previous) {
+			this.profiler = profiler;
+			this.previous = previous;
+		}
+
+		private void enter(String name) {
+			Frame parent = frames.peek();
+			frames.push(new Frame(name, parent == null ? name : parent.stack + ";" + name, System.nanoTime()));
+			Integer active = activeNames.get(name);
+			activeNames.put(name, active == null ? 1 : active + 1);
+		}
+
+		private void exit() {
+			Frame frame = frames.poll();
+			if (frame != null) {
+				long elapsed = System.nanoTime() - frame.start;
+				long exclusive = elapsed - frame.childTime;
+				Frame parent = frames.peek();
+				if (parent != null) {
+					parent.childTime += elapsed;
+				}
+
+				// Inclusive time of recursive calls is only counted for the
+				// outermost call
+				Integer previouslyActive = activeNames.remove(frame.name);
+				int active = (previouslyActive == null ? 1 : previouslyActive) - 1;
+				if (active > 0) {
+					activeNames.put(frame.name, active);
+				}
+				profiler.record(frame, active == 0 ? elapsed : 0, exclusive);
+			}
+		}
+	}
+
+	private static final class Frame {
+		private final String name;
+		private final String stack;
+		private final long start;
+		private long childTime;
+
+		private Frame(String name, String stack, long start) {
+			this.name = name;
+			this.stack = stack;
+			this.start = start;
+		}
+	}
+
+}
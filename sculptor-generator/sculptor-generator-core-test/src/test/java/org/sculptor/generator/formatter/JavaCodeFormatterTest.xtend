@@ -17,6 +17,8 @@
 package org.sculptor.generator.formatter
 
 import com.google.inject.Guice
+import java.io.File
+import java.nio.file.Files
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -39,6 +41,7 @@ class JavaCodeFormatterTest {
 	@AfterEach
 	def void clearSystemProperties() {
 		System.clearProperty(ConfigurationProviderModule.PROPERTIES_LOCATION_PROPERTY)
+		System.clearProperty("java.codeformatter.cache.dir")
 	}
 
 	@Test
@@ -180,4 +183,21 @@ class JavaCodeFormatterTest {
 			'''.toString, source)
 	}
 
+	@Test
+	def testFormatWithCache() {
+		val cacheDir = new File("target/java-code-formatter-cache")
+		cacheDir.listFiles?.forEach[delete]
+		System.setProperty("java.codeformatter.cache.dir", cacheDir.path)
+
+		val code = "package      com.acme;\n" + JavaCodeFormatter.IMPORT_MARKER_PATTERN + "\nclass    Test {\n}\n"
+		val source = codeFormatter.format("Test.java", code, true)
+		assertEquals("package com.acme;\n\nclass Test {\n}\n", source)
+		assertEquals(1, cacheDir.listFiles.length)
+
+		// Unchanged code is not formatted again but retrieved from cache
+		val cacheFile = cacheDir.listFiles.get(0)
+		Files.write(cacheFile.toPath, "cached".bytes)
+		assertEquals("cached", codeFormatter.format("Test.java", code, true))
+	}
+
 }
@@ -0,0 +1,160 @@
+/*
+ * Copyright 2014 The Sculptor Project Team, including the original 
+ * author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.sculptor.generator.util;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.sculptor.generator.chain.ChainOverrideAwareInjector;
+import org.sculptor.generator.ext.Helper;
+
+import com.google.inject.Injector;
+
+import sculptormetamodel.Application;
+import sculptormetamodel.Attribute;
+import sculptormetamodel.DomainObject;
+import sculptormetamodel.Entity;
+import sculptormetamodel.Module;
+import sculptormetamodel.Reference;
+import sculptormetamodel.SculptormetamodelFactory;
+
+public class ModelQueryCacheTest {
+
+	private static final SculptormetamodelFactory FACTORY = SculptormetamodelFactory.eINSTANCE;
+
+	private ModelQueryCache cache;
+	private AtomicInteger executions;
+
+	@BeforeEach
+	public void setup() {
+		cache = new ModelQueryCache();
+		executions = new AtomicInteger();
+	}
+
+	@Test
+	public void assertQueryExecutedIfDisabled() {
+		Application app = createApplication(1, 1);
+		List<Entity> first = cache.get("entities", app, this::getAllEntities);
+		List<Entity> second = cache.get("entities", app, this::getAllEntities);
+
+		assertNotSame(first, second);
+		assertEquals(2, executions.get());
+	}
+
+	@Test
+	public void assertQueryMemoizedPerElementIfEnabled() {
+		Application app1 = createApplication(2, 3);
+		Application app2 = createApplication(2, 3);
+		cache.enable();
+
+		List<Entity> first = cache.get("entities", app1, this::getAllEntities);
+		assertSame(first, cache.get("entities", app1, this::getAllEntities));
+		assertEquals(6, first.size());
+		assertEquals(1, executions.get());
+
+		// Elements are compared by identity
+		assertNotSame(first, cache.get("entities", app2, this::getAllEntities));
+		assertEquals(2, executions.get());
+
+		// Different queries for the same element are cached separately
+		cache.get("otherEntities", app1, this::getAllEntities);
+		assertEquals(3, executions.get());
+	}
+
+	@Test
+	public void assertCachedResultsDroppedIfDisabled() {
+		Application app = createApplication(1, 1);
+		cache.enable();
+		List<Entity> first = cache.get("entities", app, this::getAllEntities);
+
+		cache.disable();
+		cache.enable();
+		assertNotSame(first, cache.get("entities", app, this::getAllEntities));
+		assertEquals(2, executions.get());
+	}
+
+	@Test
+	public void assertHelperQueriesMemoized() {
+		Injector injector = ChainOverrideAwareInjector.createInjector(Helper.class);
+		Helper helper = injector.getInstance(Helper.class);
+		ModelQueryCache helperCache = injector.getInstance(ModelQueryCache.class);
+		Application app = createApplication(5, 20);
+		Entity entity = (Entity) ((Module) app.getModules().get(0)).getDomainObjects().get(0);
+
+		// Disabled during transformation - every call executes the query
+		assertNotSame(helper.getAllDomainObjects(app, true), helper.getAllDomainObjects(app, true));
+		assertEquals(0, helperCache.getHits() + helperCache.getMisses());
+
+		helperCache.enable();
+		try {
+			Collection<DomainObject> domainObjects = helper.getAllDomainObjects(app, true);
+			Collection<Attribute> attributes = helper.getAllAttributes(entity);
+			Set<Reference> references = injector.getInstance(HelperBase.class).getAllReferences(app);
+			long misses = helperCache.getMisses();
+			assertEquals(100, domainObjects.size());
+
+			for (int i = 0; i < 100; i++) {
+				assertSame(domainObjects, helper.getAllDomainObjects(app, true));
+				assertSame(attributes, helper.getAllAttributes(entity));
+				assertSame(references, injector.getInstance(HelperBase.class).getAllReferences(app));
+			}
+			assertEquals(misses, helperCache.getMisses());
+			assertEquals(300, helperCache.getHits());
+		} finally {
+			helperCache.disable();
+		}
+		assertEquals(0, helperCache.getHits());
+	}
+
+	private List<Entity> getAllEntities(Application app) {
+		executions.incrementAndGet();
+		List<Entity> entities = new ArrayList<Entity>();
+		for (Object module : app.getModules()) {
+			for (Object domainObject : ((Module) module).getDomainObjects()) {
+				entities.add((Entity) domainObject);
+			}
+		}
+		return HelperBase.sortByName(entities);
+	}
+
+	private Application createApplication(int modules, int entitiesPerModule) {
+		Application app = FACTORY.createApplication();
+		app.setName("App");
+		for (int m = 0; m < modules; m++) {
+			Module module = FACTORY.createModule();
+			module.setName("module" + m);
+			for (int e = entitiesPerModule; e > 0; e--) {
+				Entity entity = FACTORY.createEntity();
+				entity.setName("Entity" + m + "x" + e);
+				module.getDomainObjects().add(entity);
+			}
+			app.getModules().add(module);
+		}
+		return app;
+	}
+
+}
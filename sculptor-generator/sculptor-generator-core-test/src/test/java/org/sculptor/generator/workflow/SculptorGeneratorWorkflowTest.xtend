@@ -16,7 +16,9 @@
  */
 package org.sculptor.generator.workflow
 
+import java.io.File
 import java.util.List
+import java.util.Properties
 import org.junit.jupiter.api.Test;
 import org.sculptor.generator.SculptorGeneratorContext
 import org.sculptor.generator.SculptorGeneratorIssue
@@ -68,7 +70,28 @@ class SculptorGeneratorWorkflowTest {
 		assertEquals(Severity.ERROR, issues.get(0).severity)
 	}
 
+	@Test
+	def void assertRunWorkflowWithModelCache() {
+		val cacheDir = new File("target/model-resource-cache")
+		cacheDir.listFiles?.forEach[delete]
+		val properties = new Properties
+		properties.setProperty("generator.model.cache.dir", cacheDir.path)
+
+		assertTrue(runWorkflow("valid", properties).empty)
+		val cachedFiles = cacheDir.listFiles[name.endsWith(".bin")]
+		assertEquals(2, cachedFiles.length)
+
+		// Unchanged resources are loaded from cache and not stored again
+		cachedFiles.forEach[lastModified = 0]
+		assertTrue(runWorkflow("valid", properties).empty)
+		cachedFiles.forEach[assertEquals(0L, lastModified)]
+	}
+
 	private def List<SculptorGeneratorIssue> runWorkflow(String testName) {
+		runWorkflow(testName, null)
+	}
+
+	private def List<SculptorGeneratorIssue> runWorkflow(String testName, Properties properties) {
 
 		// Create workflow with disabled code generation step
 		val injector = new SculptorGeneratorSetup().createInjectorAndDoEMFRegistration();
@@ -85,7 +108,7 @@ class SculptorGeneratorWorkflowTest {
 
 		SculptorGeneratorContext.getGeneratedFiles().clear()
 		try {
-			workflow.run("src/test/resources/" + CONFIG_DIR + testName + "/model.btdesign", null)
+			workflow.run("src/test/resources/" + CONFIG_DIR + testName + "/model.btdesign", properties)
 			SculptorGeneratorContext.issues
 		} finally {
 			SculptorGeneratorContext.close()
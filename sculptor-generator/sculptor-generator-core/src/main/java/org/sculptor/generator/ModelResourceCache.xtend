@@ -0,0 +1,390 @@
+/*
+ * Copyright 2013 The Sculptor Project Team, including the original
+ * author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sculptor.generator
+
+import com.google.inject.Inject
+import java.io.BufferedInputStream
+import java.io.BufferedOutputStream
+import java.io.File
+import java.io.FileInputStream
+import java.io.FileOutputStream
+import java.io.IOException
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.security.MessageDigest
+import java.util.Map
+import java.util.Properties
+import org.eclipse.emf.common.util.URI
+import org.eclipse.emf.ecore.resource.Resource
+import org.eclipse.emf.ecore.resource.ResourceSet
+import org.eclipse.emf.ecore.resource.impl.BinaryResourceImpl
+import org.eclipse.emf.ecore.util.EcoreUtil
+import org.eclipse.xtext.resource.FileExtensionProvider
+import org.sculptor.dsl.sculptordsl.DslModel
+import org.sculptor.generator.configuration.ConfigurationProvider
+import org.slf4j.LoggerFactory
+
+/**
+ * File-based cache for the parsed and linked resources of the Sculptor DSL model.
+ * <p>
+ * The resources are stored as EMF binary resources in the directory given via the configuration property
+ * <code>generator.model.cache.dir</code>. The name of a cache entry is a hash calculated from the URI and the
+ * content of the model file. Additionally the content hashes of all the model files referenced by the cached
+ * resource (e.g. via imports) are stored with the cache entry. So a cache entry is only used if neither the model
+ * file itself nor one of the model files it refers to changed since the previous generator run.
+ * <p>
+ * The name of a cache entry also includes a fingerprint of the generator (the implementation version and the code
+ * location of the DSL and generator classes). So cache entries of a different generator build aren't used, even when
+ * the generator runs from an IDE or an unpacked classpath without implementation version.
+ * <p>
+ * Only resources of a successfully validated resource set are stored. The cache saves parsing and linking only,
+ * resources loaded from the cache are validated again (validation rules may depend on other, changed resources).
+ * <p>
+ * If the configuration property is not set then caching is disabled.
+ */
+class ModelResourceCache {
+
+	static val LOG = LoggerFactory.getLogger(typeof(ModelResourceCache))
+
+	static val CACHE_DIR_PROPERTY = "generator.model.cache.dir"
+
+	static val CACHE_FORMAT_VERSION = "2"
+	static val RESOURCE_SUFFIX = ".bin"
+	static val REFERENCES_SUFFIX = ".refs"
+
+	@Inject var ConfigurationProvider configuration
+	@Inject var FileExtensionProvider fileExtensionProvider
+
+	static var String generatorFingerprint
+
+	var File cacheDir
+	var boolean initialized
+	var ResourceSet resourceSet
+	val Map<URI, String> contentHashes = newHashMap
+
+	/**
+	 * Installs the cache in the given resource set. Afterwards all model files with a valid cache entry are loaded
+	 * from the cache instead of being parsed and linked.
+	 */
+	def void install(ResourceSet resourceSet) {
+		this.resourceSet = resourceSet
+		contentHashes.clear
+		if (getCacheDir() !== null && !(resourceSet.resourceFactoryRegistry instanceof CachingResourceFactoryRegistry)) {
+			resourceSet.resourceFactoryRegistry = new CachingResourceFactoryRegistry(this,
+				resourceSet.resourceFactoryRegistry)
+		}
+	}
+
+	/**
+	 * Returns <code>true</code> if the given resource was loaded from the cache.
+	 */
+	def boolean isCached(Resource resource) {
+		resource instanceof CachedResource
+	}
+
+	/**
+	 * Stores all model resources of the resource set the cache is installed in (except the ones loaded from the
+	 * cache). <strong>Call this method only if all resources are successfully validated!!!</strong>
+	 */
+	def void store() {
+		if (resourceSet !== null && getCacheDir() !== null) {
+			resourceSet.resources.filter[!isCached(it) && isModelResource(it.URI)].toList.forEach[store(it)]
+		}
+	}
+
+	private def void store(Resource resource) {
+		val hash = getContentHash(resource.URI)
+		if (hash === null || !resource.errors.empty) {
+			return
+		}
+
+		// Collect the content hashes of all the resources referenced by the given resource
+		val references = new Properties
+		for (obj : resource.allContents.toIterable) {
+			for (target : obj.eCrossReferences) {
+				if (target.eIsProxy) {
+					LOG.debug("Resource '{}' has unresolved references and is not cached", resource.URI)
+					return
+				}
+				val targetResource = target.eResource
+				if (targetResource !== null && targetResource !== resource &&
+					!references.containsKey(targetResource.URI.toString)) {
+					val targetHash = getContentHash(targetResource.URI)
+					if (targetHash === null) {
+						return
+					}
+					references.setProperty(targetResource.URI.toString, targetHash)
+				}
+			}
+		}
+
+		// Copy the contents - the original resource is still needed by the generator
+		val binaryResource = new CachedResource(resource.URI)
+		binaryResource.contents.addAll(EcoreUtil.copyAll(resource.contents))
+		try {
+			writeFile(hash + REFERENCES_SUFFIX) [
+				references.store(it, resource.URI.toString)
+			]
+			writeFile(hash + RESOURCE_SUFFIX) [
+				binaryResource.save(it, null)
+			]
+			LOG.debug("Stored resource '{}' in cache", resource.URI)
+		} catch (IOException e) {
+			LOG.warn("Writing resource '{}' to cache failed: {}", resource.URI, e.message)
+		}
+	}
+
+	private def void writeFile(String name, (BufferedOutputStream)=>void writer) {
+
+		// Write to temporary file first - a partially written cache entry must never be used
+		val file = new File(cacheDir, name)
+		val tempFile = File.createTempFile(name, ".tmp", cacheDir)
+		try {
+			val out = new BufferedOutputStream(new FileOutputStream(tempFile))
+			try {
+				writer.apply(out)
+			} finally {
+				out.close
+			}
+			Files.move(tempFile.toPath, file.toPath, StandardCopyOption.REPLACE_EXISTING)
+		} finally {
+			tempFile.delete
+		}
+	}
+
+	/**
+	 * Returns the cached resource for the given URI or <code>null</code> if there's no valid cache entry.
+	 */
+	package def Resource load(URI uri) {
+		if (!isModelResource(uri)) {
+			return null
+		}
+		val hash = getContentHash(uri)
+		if (hash === null) {
+			return null
+		}
+		val resourceFile = new File(cacheDir, hash + RESOURCE_SUFFIX)
+		val referencesFile = new File(cacheDir, hash + REFERENCES_SUFFIX)
+		if (!resourceFile.file || !referencesFile.file) {
+			return null
+		}
+		try {
+			val references = new Properties
+			val referencesIn = new FileInputStream(referencesFile)
+			try {
+				references.load(referencesIn)
+			} finally {
+				referencesIn.close
+			}
+			for (referencedUri : references.stringPropertyNames) {
+				if (getContentHash(URI.createURI(referencedUri)) != references.getProperty(referencedUri)) {
+					LOG.debug("Cached resource '{}' is outdated - referenced resource '{}' changed", uri, referencedUri)
+					return null
+				}
+			}
+			val resource = new CachedResource(uri)
+			val resourceIn = new BufferedInputStream(new FileInputStream(resourceFile))
+			try {
+				resource.load(resourceIn, null)
+			} finally {
+				resourceIn.close
+			}
+			LOG.debug("Loaded resource '{}' from cache", uri)
+			resource
+		} catch (Exception e) {
+			LOG.warn("Reading cached resource '{}' from '{}' failed: {}", uri, resourceFile, e.message)
+			null
+		}
+	}
+
+	private def boolean isModelResource(URI uri) {
+		uri !== null && fileExtensionProvider.isValid(uri.fileExtension)
+	}
+
+	/**
+	 * Returns a hash calculated from the given URI and the content of the corresponding file or <code>null</code>
+	 * if the content can't be read.
+	 */
+	private def String getContentHash(URI uri) {
+		if (contentHashes.containsKey(uri)) {
+			return contentHashes.get(uri)
+		}
+		var String hash = null
+		try {
+			val digest = MessageDigest.getInstance("SHA-256")
+			digest.update((CACHE_FORMAT_VERSION + ":" + getGeneratorFingerprint() + ":" + uri + "\n").getBytes(
+				StandardCharsets.UTF_8))
+			val in = resourceSet.URIConverter.createInputStream(uri)
+			try {
+				val buffer = newByteArrayOfSize(8192)
+				var length = in.read(buffer)
+				while (length != -1) {
+					digest.update(buffer, 0, length)
+					length = in.read(buffer)
+				}
+			} finally {
+				in.close
+			}
+			val hashBuilder = new StringBuilder
+			for (b : digest.digest) {
+				hashBuilder.append(String.format("%02x", b))
+			}
+			hash = hashBuilder.toString
+		} catch (IOException e) {
+			LOG.debug("Reading content of resource '{}' failed: {}", uri, e.message)
+		}
+		contentHashes.put(uri, hash)
+		hash
+	}
+
+	/**
+	 * Returns the fingerprint of the DSL and generator classes. The implementation version is only available from
+	 * packaged jars, so the size and modification time of the code locations (jar file or class directory) are
+	 * included as well.
+	 */
+	private static synchronized def String getGeneratorFingerprint() {
+		if (generatorFingerprint === null) {
+			val builder = new StringBuilder
+			for (clazz : #[typeof(DslModel), typeof(ModelResourceCache)]) {
+				builder.append(clazz.getPackage?.implementationVersion).append(":")
+				builder.append(getCodeLocationFingerprint(clazz)).append(";")
+			}
+			generatorFingerprint = builder.toString
+			LOG.debug("Using generator fingerprint '{}' for model cache", generatorFingerprint)
+		}
+		generatorFingerprint
+	}
+
+	private static def String getCodeLocationFingerprint(Class<?> clazz) {
+		try {
+			val location = new File(clazz.protectionDomain.codeSource.location.toURI)
+			if (location.directory) {
+				val long[] latestModification = newLongArrayOfSize(2)
+				collectLatestModification(location, latestModification)
+				location.path + ":" + latestModification.get(1) + ":" + latestModification.get(0)
+			} else {
+				location.path + ":" + location.length + ":" + location.lastModified
+			}
+		} catch (Exception e) {
+
+			// Never reuse cache entries if the code location is unknown
+			LOG.debug("Code location of '{}' is unknown: {}", clazz, e.message)
+			"unknown:" + System.nanoTime
+		}
+	}
+
+	private static def void collectLatestModification(File dir, long[] latestModification) {
+		val files = dir.listFiles
+		if (files !== null) {
+			for (file : files) {
+				if (file.directory) {
+					collectLatestModification(file, latestModification)
+				} else {
+					latestModification.set(0, Math.max(latestModification.get(0), file.lastModified))
+					latestModification.set(1, latestModification.get(1) + 1)
+				}
+			}
+		}
+	}
+
+	private synchronized def getCacheDir() {
+		if (!initialized) {
+			if (configuration.has(CACHE_DIR_PROPERTY)) {
+				val dirName = configuration.getString(CACHE_DIR_PROPERTY)
+				if (!dirName.nullOrEmpty) {
+					val dir = new File(dirName)
+					if (dir.directory || dir.mkdirs()) {
+						LOG.debug("Using cache directory '{}' for model resources", dir)
+						cacheDir = dir
+					} else {
+						LOG.warn("Cache directory '{}' for model resources can't be created", dir)
+					}
+				}
+			}
+			initialized = true
+		}
+		cacheDir
+	}
+
+	/**
+	 * EMF binary resource used for storing and loading the cached model resources.
+	 */
+	private static class CachedResource extends BinaryResourceImpl {
+
+		new(URI uri) {
+			super(uri)
+		}
+
+	}
+
+	/**
+	 * Resource factory registry which provides the cached resource (if available) instead of the resource factory
+	 * of the delegate registry.
+	 */
+	private static class CachingResourceFactoryRegistry implements Resource.Factory.Registry {
+
+		val ModelResourceCache cache
+		val Resource.Factory.Registry delegate
+
+		new(ModelResourceCache cache, Resource.Factory.Registry delegate) {
+			this.cache = cache
+			this.delegate = delegate
+		}
+
+		override getFactory(URI uri) {
+			val resource = cache.load(uri)
+			if(resource !== null) new CachedResourceFactory(resource) else delegate.getFactory(uri)
+		}
+
+		override getFactory(URI uri, String contentType) {
+			val resource = cache.load(uri)
+			if(resource !== null) new CachedResourceFactory(resource) else delegate.getFactory(uri, contentType)
+		}
+
+		override getProtocolToFactoryMap() {
+			delegate.protocolToFactoryMap
+		}
+
+		override getExtensionToFactoryMap() {
+			delegate.extensionToFactoryMap
+		}
+
+		override getContentTypeToFactoryMap() {
+			delegate.contentTypeToFactoryMap
+		}
+
+	}
+
+	/**
+	 * Returns the already loaded cached resource (the resource set skips loading of loaded resources).
+	 */
+	private static class CachedResourceFactory implements Resource.Factory {
+
+		val Resource resource
+
+		new(Resource resource) {
+			this.resource = resource
+		}
+
+		override createResource(URI uri) {
+			resource
+		}
+
+	}
+
+}
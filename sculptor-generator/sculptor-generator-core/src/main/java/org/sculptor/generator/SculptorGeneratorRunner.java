@@ -18,11 +18,20 @@ package org.sculptor.generator;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Collections;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 import org.eclipse.emf.common.util.URI;
+import org.sculptor.generator.SculptorGeneratorIssue.SculptorGeneratorIssueImpl;
+import org.sculptor.generator.SculptorGeneratorIssue.Severity;
 import org.sculptor.generator.SculptorGeneratorResult.Status;
+import org.sculptor.generator.chain.GeneratorProfiler;
 import org.sculptor.generator.util.FileHelper;
 
 import com.google.inject.Injector;
@@ -33,14 +42,27 @@ import com.google.inject.Injector;
  * properties and returns a {@link SculptorGeneratorResult} instance (holding
  * lists of generated {@link File}s and {@link SculptorGeneratorIssue}s
  * instances).
+ * <p>
+ * Multiple model files can be processed concurrently via
+ * {@link #run(List, Properties, ExecutorService)}. Every model file is
+ * processed with its own workflow instance (and resource set) and
+ * {@link SculptorGeneratorContext}. The injector (with the templates and the
+ * EMF registration) is created once per executor thread and reused for the
+ * following model files as long as the context class loader and the generator
+ * properties don't change.
  * 
  * @see SculptorGeneratorSetup#createInjectorAndDoEMFRegistration()
  * @see SculptorGeneratorWorkflow#run(String)
  */
 public class SculptorGeneratorRunner {
 
+	private static final ThreadLocal<WorkerSetup> WORKER_SETUP = new ThreadLocal<WorkerSetup>();
+
 	public static final SculptorGeneratorResult run(File modelFile, Properties generatorProperties) {
-		Injector injector = new SculptorGeneratorSetup().createInjectorAndDoEMFRegistration();
+		return run(modelFile, generatorProperties, createInjector());
+	}
+
+	private static SculptorGeneratorResult run(File modelFile, Properties generatorProperties, Injector injector) {
 		SculptorGeneratorWorkflow workflow = injector.getInstance(SculptorGeneratorWorkflow.class);
 		SculptorGeneratorContext.getGeneratedFiles().clear();
 		try {
@@ -71,4 +93,100 @@ public class SculptorGeneratorRunner {
 		}
 	}
 
+	/**
+	 * Runs the code generator for each of the given model files by using the
+	 * given executor. The context class loader (and the {@link GeneratorProfiler},
+	 * if any) of the calling thread is used by the executors threads while
+	 * running the code generator.
+	 * 
+	 * @return results of the code generator runs in the order of the given
+	 *         model files
+	 */
+	public static final Map<File, SculptorGeneratorResult> run(List<File> modelFiles,
+			final Properties generatorProperties, ExecutorService executor) {
+		final ClassLoader contextClassLoader = Thread.currentThread().getContextClassLoader();
+		Map<File, Future<SculptorGeneratorResult>> futures = new LinkedHashMap<File, Future<SculptorGeneratorResult>>();
+		for (final File modelFile : modelFiles) {
+			futures.put(modelFile, executor.submit(GeneratorProfiler.wrap(() -> {
+				Thread thread = Thread.currentThread();
+				ClassLoader previousClassLoader = thread.getContextClassLoader();
+				thread.setContextClassLoader(contextClassLoader);
+				try {
+					return run(modelFile, generatorProperties, getWorkerInjector(contextClassLoader, generatorProperties));
+				} finally {
+					thread.setContextClassLoader(previousClassLoader);
+				}
+			})));
+		}
+
+		// Wait for all code generator runs to finish
+		Map<File, SculptorGeneratorResult> results = new LinkedHashMap<File, SculptorGeneratorResult>();
+		for (Map.Entry<File, Future<SculptorGeneratorResult>> entry : futures.entrySet()) {
+			SculptorGeneratorResult result;
+			try {
+				result = entry.getValue().get();
+			} catch (ExecutionException e) {
+				result = createFailedResult(entry.getKey(), e.getCause());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				result = createFailedResult(entry.getKey(), e);
+			}
+			results.put(entry.getKey(), result);
+		}
+		return results;
+	}
+
+	private static Injector createInjector() {
+
+		// The global EMF registries updated by the setup are not thread-safe
+		synchronized (SculptorGeneratorRunner.class) {
+			return new SculptorGeneratorSetup().createInjectorAndDoEMFRegistration();
+		}
+	}
+
+	/**
+	 * Returns the injector of the current executor thread. A new injector is
+	 * created if the thread has none yet or if it was created for another class
+	 * loader or other generator properties (the configuration provider of the
+	 * injector is updated with the generator properties by the workflow).
+	 */
+	private static Injector getWorkerInjector(ClassLoader classLoader, Properties generatorProperties) {
+		Properties properties = copyOf(generatorProperties);
+		WorkerSetup setup = WORKER_SETUP.get();
+		if (setup == null || setup.classLoader != classLoader || !setup.properties.equals(properties)) {
+			setup = new WorkerSetup(classLoader, properties, createInjector());
+			WORKER_SETUP.set(setup);
+		}
+		return setup.injector;
+	}
+
+	private static Properties copyOf(Properties properties) {
+		Properties copy = new Properties();
+		if (properties != null) {
+			for (String key : properties.stringPropertyNames()) {
+				copy.setProperty(key, properties.getProperty(key));
+			}
+		}
+		return copy;
+	}
+
+	private static final class WorkerSetup {
+		private final ClassLoader classLoader;
+		private final Properties properties;
+		private final Injector injector;
+
+		WorkerSetup(ClassLoader classLoader, Properties properties, Injector injector) {
+			this.classLoader = classLoader;
+			this.properties = properties;
+			this.injector = injector;
+		}
+	}
+
+	private static SculptorGeneratorResult createFailedResult(File modelFile, Throwable t) {
+		SculptorGeneratorIssue issue = new SculptorGeneratorIssueImpl(Severity.ERROR, "Running code generator for '"
+				+ modelFile + "' failed: " + t.getMessage(), t);
+		return new SculptorGeneratorResult(Status.FAILED, Collections.singletonList(issue),
+				Collections.<File> emptyList());
+	}
+
 }
@@ -37,6 +37,8 @@ import org.sculptor.dsl.sculptordsl.DslModel
 import org.sculptor.generator.SculptorGeneratorIssue.SculptorGeneratorIssueImpl
 import org.sculptor.generator.SculptorGeneratorIssue.Severity
 import org.sculptor.generator.configuration.MutableConfigurationProvider
+import org.sculptor.generator.formatter.JavaCodeFormatterPipeline
+import org.sculptor.generator.util.ModelQueryCache
 import org.slf4j.LoggerFactory
 import sculptormetamodel.Application
 
@@ -44,11 +46,13 @@ import sculptormetamodel.Application
  * This class provides a strategy implementation of the Sculptor generators internal workflow:
  * <ol>
  * <li>updates the generator configuration with the given properties
- * <li>read the Sculptor DSL model from a given URL
- * <li>validate the resources of the DSL model 
+ * <li>read the Sculptor DSL model from a given URL (unchanged resources are loaded from the model cache)
+ * <li>validate the resources of the DSL model (including the ones loaded from the model cache)
+ * <li>store the validated resources of the DSL model in the model cache
  * <li>validate the DSL model
  * <li>transform the DSL model into a generator model  
  * <li>generate the code from the generator model
+ * <li>wait for the pending formatting of the generated Java code
  * </ol>
  * 
  * Any problems occurring during workflow execution are stored as {@link SculptorGeneratorIssue} in
@@ -73,6 +77,15 @@ class SculptorGeneratorWorkflow {
 	@Inject
 	var Diagnostician diagnostitian
 
+	@Inject
+	var JavaCodeFormatterPipeline javaCodeFormatterPipeline
+
+	@Inject
+	var ModelQueryCache modelQueryCache
+
+	@Inject
+	var ModelResourceCache modelResourceCache
+
 	var XtextResourceSet resourceSet
 
 	@Inject
@@ -86,6 +99,7 @@ class SculptorGeneratorWorkflow {
 		updateConfiguration(properties)
 		if (readModel(modelURI)) {
 			if (validateResources()) {
+				cacheResources()
 				val dslApp = getApplication()
 				if (validateApplication(dslApp)) {
 					val app = transformAndModifyApplication(dslApp)
@@ -110,6 +124,7 @@ class SculptorGeneratorWorkflow {
 
 	protected def boolean readModel(String modelUri) {
 		LOG.debug("Reading model from '{}'", modelUri)
+		modelResourceCache.install(resourceSet)
 
 		// Read all the models from given URI and check for imports 
 		var newUris = newArrayList
@@ -156,7 +171,8 @@ class SculptorGeneratorWorkflow {
 	protected def boolean validateResources() {
 		LOG.debug("Validating resource in resourceset '{}'", resourceSet)
 
-		// Validate all resources in resource set
+		// Validate all resources in resource set - the ones loaded from the model cache as well, because checks across
+		// resources may fail due to changes of other resources
 		resourceSet.resources.forall [
 			LOG.debug("Validating resource '{}'", it.URI)
 			val provider = registry.getResourceServiceProvider(it.URI)
@@ -179,6 +195,13 @@ class SculptorGeneratorWorkflow {
 		]
 	}
 
+	protected def void cacheResources() {
+		LOG.debug("Storing resources of resourceset '{}' in model cache", resourceSet)
+
+		// Store before the resources are modified by merging the applications modules
+		modelResourceCache.store()
+	}
+
 	protected def DslApplication getApplication() {
 		LOG.debug("Retrieving application from resource set '{}'", resourceSet)
 		var DslApplication mainApp = null
@@ -237,7 +260,30 @@ class SculptorGeneratorWorkflow {
 
 	protected def Object generateCode(Application application) {
 		LOG.debug("Generating code from application '{}'", application.name)
-		runAction("org.sculptor.generator.template.RootTmpl.root", application)
+
+		// The transformed model isn't modified anymore - so the results of model queries can be cached
+		modelQueryCache.enable()
+		val result = try {
+			runAction("org.sculptor.generator.template.RootTmpl.root", application)
+		} finally {
+			modelQueryCache.disable()
+		}
+
+		// Java files may still be formatted concurrently
+		if (!awaitJavaCodeFormatting()) {
+			return null
+		}
+		result
+	}
+
+	protected def boolean awaitJavaCodeFormatting() {
+		LOG.debug("Waiting for pending Java code formatting")
+		val errors = javaCodeFormatterPipeline.awaitCompletion()
+		errors.forEach [
+			SculptorGeneratorContext.addIssue(
+				new SculptorGeneratorIssueImpl(Severity.ERROR, "Error formatting Java code: " + it.message, it))
+		]
+		errors.empty
 	}
 
 	protected def Object runAction(String actionName, Object input) {
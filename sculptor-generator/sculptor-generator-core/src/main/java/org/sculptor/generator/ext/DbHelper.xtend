@@ -16,6 +16,8 @@
  */
 package org.sculptor.generator.ext
 
+import java.time.LocalDate
+import java.time.format.DateTimeParseException
 import java.util.Collection
 import java.util.List
 import java.util.Set
@@ -23,7 +25,9 @@ import javax.inject.Inject
 import org.sculptor.generator.chain.ChainOverridable
 import org.sculptor.generator.util.CamelCaseConverter
 import org.sculptor.generator.util.DbHelperBase
+import org.sculptor.generator.util.HelperBase
 import org.sculptor.generator.util.PropertiesBase
+import sculptormetamodel.Application
 import sculptormetamodel.Attribute
 import sculptormetamodel.BasicType
 import sculptormetamodel.DiscriminatorType
@@ -33,6 +37,7 @@ import sculptormetamodel.Inheritance
 import sculptormetamodel.InheritanceType
 import sculptormetamodel.NamedElement
 import sculptormetamodel.Reference
+import sculptormetamodel.RepositoryOperation
 import sculptormetamodel.SculptormetamodelFactory
 
 @ChainOverridable
@@ -41,6 +46,7 @@ class DbHelper {
 	@Inject extension Properties properties
 	@Inject extension DbHelperBase dbHelperBase
 	@Inject extension Helper helper
+	@Inject extension HelperBase helperBase
 
 	def String getCascade(Reference ref) {
 		if (ref.cascade === null || ref.cascade == "")
@@ -304,6 +310,228 @@ class DbHelper {
 		}
 	}
 
+	// Batch size given via hint, e.g. hint="batchSize=25". One references without hint use the batch size of the
+	// referenced domain object.
+	def String getBatchSize(Reference ref) {
+		val batchSize = ref.getHint("batchSize")
+		if (!batchSize.nullOrEmpty)
+			validBatchSize(ref, batchSize)
+		else if (!ref.many && ref.to !== null)
+			ref.to.getClassBatchSize()
+		else
+			null
+	}
+
+	def String getClassBatchSize(DomainObject domainObject) {
+		val batchSize = domainObject.getHint("batchSize")
+		if (!batchSize.nullOrEmpty) validBatchSize(domainObject, batchSize) else null
+	}
+
+	def private String validBatchSize(NamedElement element, String batchSize) {
+		if (!batchSize.matches("[1-9][0-9]*"))
+			error("Invalid batchSize hint '" + batchSize + "' of " + element.name)
+		batchSize
+	}
+
+	def boolean isBatchFetch(Reference ref) {
+		ref.getBatchSize() !== null || getFetch(ref) == "subselect"
+	}
+
+	def String getEclipseLinkBatchFetch(Reference ref) {
+		val type = if (getFetch(ref) == "subselect") "EXISTS" else "IN"
+		val batchSize = ref.getBatchSize()
+		"value = org.eclipse.persistence.annotations.BatchFetchType." + type + (if (batchSize !== null) ", size = " + batchSize else "")
+	}
+
+	def boolean isBatchFetchUsed(Application application) {
+		application.getAllDomainObjects(false).exists[e | e.getClassBatchSize() !== null || e.references.exists[isBatchFetch]]
+	}
+
+	// Table partitioning defined via hints, e.g. hint="partition=occurred, partitionInterval=month" (range partitions)
+	// or hint="partition=region, partitionType=list, partitionValues=EU US"
+	def boolean isPartitioned(DomainObject domainObject) {
+		domainObject !== null && domainObject.hasHint("partition")
+	}
+
+	def String getPartitionColumn(DomainObject domainObject) {
+		val name = domainObject.getHint("partition")
+		if (domainObject.^extends !== null || domainObject.hasSubClass())
+			error("Partitioning of domain object '" + domainObject.name + "' with inheritance isn't supported")
+		val NamedElement element = domainObject.attributes.findFirst[e | e.name == name] ?:
+			domainObject.getEnumReferences().findFirst[e | e.name == name]
+		if (element === null) {
+			error("Partition attribute '" + name + "' isn't defined in domain object '" + domainObject.name + "'")
+			return name
+		}
+		if (domainObject.getPartitionType() == "range" && !(element instanceof Attribute && (element as Attribute).isTemporal()))
+			error("Range partition key '" + name + "' of domain object '" + domainObject.name + "' must be a date attribute")
+		element.getDatabaseName()
+	}
+
+	def String getPartitionType(DomainObject domainObject) {
+		val type = domainObject.getHintOrDefault("partitionType", "range")
+		if (type != "range" && type != "list")
+			error("Invalid partitionType '" + type + "' of domain object '" + domainObject.name + "'")
+		type
+	}
+
+	def String getPartitionInterval(DomainObject domainObject) {
+		val interval = domainObject.getHintOrDefault("partitionInterval", "month")
+		if (interval != "day" && interval != "month" && interval != "year")
+			error("Invalid partitionInterval '" + interval + "' of domain object '" + domainObject.name + "'")
+		interval
+	}
+
+	// Lower bound of the first range partition (yyyy-MM-dd)
+	def String getPartitionStart(DomainObject domainObject) {
+		domainObject.getHintOrDefault("partitionStart", "2000-01-01")
+	}
+
+	// Number of range partitions created ahead of time for databases without interval partitioning
+	def int getPartitionCount(DomainObject domainObject) {
+		val count = domainObject.getHintOrDefault("partitionCount", "12")
+		if (!count.matches("[0-9]+"))
+			error("Invalid partitionCount '" + count + "' of domain object '" + domainObject.name + "'")
+		Integer.parseInt(count)
+	}
+
+	// Lower and upper bound (yyyy-MM-dd) of each range partition created ahead of time, starting at partitionStart
+	def List<Pair<String, String>> getPartitionRanges(DomainObject domainObject) {
+		var LocalDate from
+		try {
+			from = LocalDate.parse(domainObject.getPartitionStart())
+		} catch (DateTimeParseException e) {
+			error("Invalid partitionStart '" + domainObject.getPartitionStart() + "' of domain object '" + domainObject.name + "'")
+			return newArrayList
+		}
+		val List<Pair<String, String>> ranges = newArrayList
+		for (i : 0 ..< domainObject.getPartitionCount()) {
+			val to = switch (domainObject.getPartitionInterval()) {
+				case "day" : from.plusDays(1)
+				case "year" : from.plusYears(1)
+				default : from.plusMonths(1)
+			}
+			ranges.add(from.toString() -> to.toString())
+			from = to
+		}
+		ranges
+	}
+
+	def List<String> getPartitionValues(DomainObject domainObject) {
+		domainObject.getHintOrDefault("partitionValues", "").split("\\s+").filter[!empty].toList
+	}
+
+	def String getPartitionValueLiteral(String value) {
+		if (value.matches("-?[0-9]+")) value else "'" + value + "'"
+	}
+
+	def String getPartitionName(DomainObject domainObject, String value) {
+		truncateLongDatabaseName(domainObject.getDatabaseName(), value.toUpperCase().replaceAll("[^A-Z0-9_]", "_"))
+	}
+
+	/**
+	 * Indexes derived from the generated finders of the repository of the domain object. The columns of an index are
+	 * given by the parameters of the finder (equality conditions). Finders already served by an index or constraint
+	 * of the table (its columns in any order as the leading columns of the index) don't get an index of their own.
+	 * Returns the finders defining an index, the finders with most columns first.
+	 */
+	def List<RepositoryOperation> getFinderIndexOperations(DomainObject domainObject) {
+		val List<RepositoryOperation> result = newArrayList
+		if (!isDdlFinderIndexesToBeGenerated() || domainObject.repository === null ||
+				(domainObject.^extends !== null && isInheritanceTypeSingleTable(domainObject.getRootExtends())))
+			return result
+		val indexes = domainObject.getIndexedColumns()
+		val finders = domainObject.repository.operations.filter[op | op.getFinderIndexColumns() !== null]
+		for (op : finders.sortBy[op | -op.getFinderIndexColumns().size]) {
+			val columns = op.getFinderIndexColumns()
+			if (!indexes.exists[index | index.isServingColumns(columns)]) {
+				indexes.add(columns)
+				result.add(op)
+			}
+		}
+		result
+	}
+
+	/**
+	 * Columns of the index serving the generated finder, null if the where clause of the finder isn't built from
+	 * its parameters or a parameter doesn't match a column of the table of the aggregate root.
+	 */
+	def List<String> getFinderIndexColumns(RepositoryOperation op) {
+		if (!op.isGeneratedFinder() || op.delegateToAccessObject || op.isGenericAccessObject() || op.isQueryBased() ||
+				op.hasHint("condition") || op.hasHint("useName"))
+			return null
+		val parameters = op.parameters.filter[p | !p.isPagingParameter()]
+		val columns = parameters.map[p | op.getAggregateRoot().getColumnName(p.name)].toList
+		if (columns.empty || columns.contains(null)) null else columns
+	}
+
+	/**
+	 * Columns selected by a finder returning a projection, added as non-key columns to the index (PostgreSQL only)
+	 * so that the finder is served by the index alone.
+	 */
+	def List<String> getFinderIndexIncludeColumns(RepositoryOperation op) {
+		val columns = op.getFinderIndexColumns()
+		if (dbProduct != "postgresql" || !op.isReturningProjection())
+			return newArrayList
+		op.domainObjectType.getConstructorParameters().map[p | op.getAggregateRoot().getColumnName(p.name)]
+			.filter[c | c !== null && !columns.contains(c)].toList
+	}
+
+	def String getFinderIndexName(RepositoryOperation op) {
+		"IX_" + truncateLongDatabaseName(op.getAggregateRoot().getDatabaseName(), op.getFinderIndexColumns().join("_"))
+	}
+
+	// All finders of the repository which are served by the index of the given finder
+	def List<RepositoryOperation> getFindersServedByIndex(RepositoryOperation op) {
+		val columns = op.getFinderIndexColumns()
+		op.repository.operations.filter[o | o.getFinderIndexColumns() !== null && columns.isServingColumns(o.getFinderIndexColumns())].toList
+	}
+
+	def private boolean isServingColumns(List<String> indexColumns, List<String> columns) {
+		indexColumns.size >= columns.size && indexColumns.subList(0, columns.size).toSet == columns.toSet
+	}
+
+	// Primary key, unique constraint, foreign key indexes and attribute indexes
+	def private List<List<String>> getIndexedColumns(DomainObject domainObject) {
+		val List<List<String>> indexes = newArrayList
+		indexes.add(newArrayList(domainObject.getIdAttribute()?.getDatabaseName() ?: "ID"))
+		val uuid = domainObject.attributes.findFirst[a | a.isUuid()]
+		if (uuid !== null)
+			indexes.add(newArrayList(uuid.getDatabaseName()))
+		else if (domainObject.hasUniqueConstraints())
+			indexes.add(domainObject.getAllNaturalKeys().map[key |
+				if (key.isBasicTypeReference())
+					(key as Reference).to.getAllNaturalKeys().map[a | getDatabaseName(key.getDatabaseName(), a)]
+				else
+					newArrayList(key.getDatabaseName())
+			].flatten.toList)
+		domainObject.attributes.filter[a | a.index].forEach[a | indexes.add(newArrayList(a.getDatabaseName()))]
+		// MySQL indexes foreign keys implicitly, there are no foreign keys from or to partitioned tables
+		domainObject.references.filter[r | !r.transient && !r.many && r.to.hasOwnDatabaseRepresentation()]
+			.filter[r | dbProduct != "mysql" || !(domainObject.isPartitioned() || r.to.getRootExtends().isPartitioned())]
+			.forEach[r | indexes.add(newArrayList(r.getForeignKeyName()))]
+		indexes
+	}
+
+	// Column of a property of the domain object, nested properties of basic types are separated by '_'
+	def private String getColumnName(DomainObject domainObject, String propertyName) {
+		val path = propertyName.split("_")
+		val attribute = domainObject.attributes.findFirst[a | !a.transient && a.name == path.head]
+		val reference = domainObject.references.findFirst[r | !r.transient && !r.many && r.name == path.head]
+		if (path.size == 1 && attribute !== null)
+			attribute.getDatabaseName()
+		else if (path.size == 1 && reference !== null && reference.isEnumReference())
+			reference.getDatabaseName()
+		else if (path.size == 1 && reference !== null && reference.to.hasOwnDatabaseRepresentation() &&
+				!(reference.isOneToOne() && reference.isInverse()))
+			reference.getForeignKeyName()
+		else if (path.size == 2 && reference !== null && reference.isBasicTypeReference() &&
+				reference.to.attributes.exists[a | a.name == path.last])
+			getDatabaseName(reference.getDatabaseName(), reference.to.attributes.findFirst[a | a.name == path.last])
+		else
+			null
+	}
+
 	def boolean isInheritanceTypeSingleTable(DomainObject domainObject) {
 		(domainObject !== null && domainObject.inheritance !== null && domainObject.inheritance.type == InheritanceType.SINGLE_TABLE)
 	}
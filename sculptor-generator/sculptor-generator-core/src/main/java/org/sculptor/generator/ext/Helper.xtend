@@ -20,14 +20,16 @@ import java.io.File
 import java.io.FileWriter
 import java.util.Collection
 import java.util.List
+import java.util.Map
 import javax.inject.Inject
 import org.sculptor.generator.SculptorGeneratorContext
 import org.sculptor.generator.chain.ChainOverridable
 import org.sculptor.generator.check.AggregateConstraints
 import org.sculptor.generator.check.DependencyConstraints
-import org.sculptor.generator.formatter.JavaCodeFormatter
+import org.sculptor.generator.formatter.JavaCodeFormatterPipeline
 import org.sculptor.generator.util.GenericAccessObjectManager
 import org.sculptor.generator.util.HelperBase
+import org.sculptor.generator.util.ModelQueryCache
 import org.sculptor.generator.util.OutputSlot
 import org.sculptor.generator.util.PropertiesBase
 import org.sculptor.generator.util.SingularPluralConverter
@@ -65,9 +67,10 @@ class Helper {
 
 	static val LOG = LoggerFactory.getLogger(typeof(Helper))
 
-	@Inject var JavaCodeFormatter javaCodeFormatter
+	@Inject var JavaCodeFormatterPipeline javaCodeFormatterPipeline
 	@Inject var SingularPluralConverter singularPluralConverter
 	@Inject var GenericAccessObjectManager genericAccessObjectManager
+	@Inject var ModelQueryCache modelQueryCache
 
 	@Inject extension HelperBase helperBase
 	@Inject extension PropertiesBase propertiesBase
@@ -95,13 +98,14 @@ class Helper {
 		val overwrite = getProperty("outputSlot.overwrite."+slot.name, "false")
 		if (!fl.exists || (fl.exists && "true" == overwrite)) {
 			fl.parentFile.mkdirs()
-			var out = new FileWriter(fl)
-			out.write(
-				if ((fileName.endsWith(JAVA_EXT)) && propertiesBase.getBooleanProperty("java.codeformatter.enabled"))
-					javaCodeFormatter.format(flTr, text, propertiesBase.getBooleanProperty("java.codeformatter.error.abort"))
-				else
-					text)
-			out.close()
+			if ((fileName.endsWith(JAVA_EXT)) && propertiesBase.getBooleanProperty("java.codeformatter.enabled")) {
+				// Formatting (and writing) may be done concurrently by the formatter pipeline
+				javaCodeFormatterPipeline.write(fl, flTr, text, propertiesBase.getBooleanProperty("java.codeformatter.error.abort"))
+			} else {
+				var out = new FileWriter(fl)
+				out.write(text)
+				out.close()
+			}
 			SculptorGeneratorContext.addGeneratedFile(fl)
 			LOG.debug("Created file : " + fl)
 		} else {
@@ -125,6 +129,9 @@ class Helper {
 		simpleMetaTypeName(element)
 	}
 
+	// The results of the following model queries are memoized during code generation
+	// (see ModelQueryCache) - the returned collections must not be modified
+
 	// Use this with "includeExternal=false" to retrieve all DomainObjects except those belonging
 	// to external modules
 	def dispatch Collection<Repository> getAllRepositories(Application app) {
@@ -132,12 +139,16 @@ class Helper {
 	}
 
 	def dispatch Collection<Repository> getAllRepositories(Module module) {
-		module.domainObjects.filter[repository?.name !== null].map[repository].sortBy[name]
+		modelQueryCache.get("moduleRepositories", module) [ m |
+			m.domainObjects.filter[repository?.name !== null].map[repository].sortBy[name]
+		]
 	}
 
 	def Collection<Repository> getAllRepositories(Application app, boolean includeExternal) {
-		app.modules.map[it.getAllRepositories].flatten
-			.filter[includeExternal || !aggregateRoot.module.external].sortBy[name]
+		modelQueryCache.get("allRepositories." + includeExternal, app) [ a |
+			a.modules.map[it.getAllRepositories].flatten
+				.filter[includeExternal || !aggregateRoot.module.external].sortBy[name]
+		]
 	}
 
 	// All DomainObjects in the Applications, including those belonging to external modules
@@ -148,7 +159,9 @@ class Helper {
 	// Use this witha includeExternal=false to retrieve all DomainObjects except those belonging
 	// to external modules
 	def Collection<DomainObject> getAllDomainObjects(Application app, boolean includeExternal) {
-		app.modules.filter[m | includeExternal || !m.external].map[domainObjects].flatten.sortBy[name]
+		modelQueryCache.get("allDomainObjects." + includeExternal, app) [ a |
+			a.modules.filter[m | includeExternal || !m.external].map[domainObjects].flatten.sortBy[name]
+		]
 	}
 
 	def Module moduleFor(String name, Application app) {
@@ -454,13 +467,15 @@ class Helper {
 		if (domainObject.getExtends === null)
 			newArrayList
 		else
-			domainObject.getExtends.getAllAttributes()
+			domainObject.getExtends.getAllAttributes().toList
 	}
 
 	def Collection<Attribute> getAllAttributes(DomainObject domainObject) {
-		val allSuper = domainObject.getSuperAllAttributes()
-		allSuper.addAll(domainObject.attributes)
-		allSuper
+		modelQueryCache.get("allAttributes", domainObject) [ d |
+			val allSuper = d.getSuperAllAttributes()
+			allSuper.addAll(d.attributes)
+			allSuper
+		]
 	}
 
 	def private Collection<Reference> getSuperAllReferences(DomainObject domainObject) {
@@ -638,13 +653,17 @@ class Helper {
 	}
 
 	def Collection<DomainObject> getSubclasses(DomainObject domainObject) {
-		domainObject.module.application.getAllDomainObjects().filter[d | d.getExtends == domainObject].toSet
+		modelQueryCache.get("subclasses", domainObject) [ o |
+			o.module.application.getAllDomainObjects().filter[d | d.getExtends == o].toSet
+		]
 	}
 
 	def Collection<DomainObject> getAllSubclasses(DomainObject domainObject) {
-		val subs = domainObject.getSubclasses().toList
-		subs.addAll(domainObject.getSubclasses().map[d | d.getAllSubclasses()].flatten)
-		subs.toSet
+		modelQueryCache.get("allSubclasses", domainObject) [ o |
+			val subs = o.getSubclasses().toList
+			subs.addAll(o.getSubclasses().map[d | d.getAllSubclasses()].flatten)
+			subs.toSet
+		]
 	}
 
 	def boolean hasOwnDatabaseRepresentation(DomainObject domainObject) {
@@ -805,10 +824,12 @@ class Helper {
 	}
 
 	def List<NamedElement> getAllNaturalKeys(DomainObject domainObject) {
-		val List<NamedElement> keys = newArrayList()
-		keys.addAll(getAllNaturalKeyAttributes(domainObject))
-		keys.addAll(getAllNaturalKeyReferences(domainObject))
-		keys
+		modelQueryCache.get("allNaturalKeys", domainObject) [ d |
+			val List<NamedElement> keys = newArrayList()
+			keys.addAll(getAllNaturalKeyAttributes(d))
+			keys.addAll(getAllNaturalKeyReferences(d))
+			keys
+		]
 	}
 
 	def dispatch boolean isBasicTypeReference(NamedElement ref) {
@@ -1218,10 +1239,65 @@ class Helper {
 		(op.delegate === null && op.serviceDelegate === null)
 	}
 
+	/**
+	 * Public service operations of Spring services with hint "async" (of the operation or the service) or all of them
+	 * with property generate.service.async get an asynchronous variant returning a CompletableFuture.
+	 */
+	def boolean isAsync(ServiceOperation op) {
+		isSpringToBeGenerated() && !pureEjb3() && op.isPublicVisibility() &&
+			(op.hasHint("async") || op.service.hasHint("async") || isServiceAsyncToBeGenerated())
+	}
+
+	def String getAsyncTypeName(ServiceOperation op) {
+		"java.util.concurrent.CompletableFuture<" +
+			(if (op.getTypeName() == "void") "Void" else op.getTypeName().getObjectTypeName()) + ">"
+	}
+
 	def dispatch boolean isImplementedInGapClass(ResourceOperation op) {
 		(op.delegate === null && !(op.parameters.isEmpty && op.returnString !== null && op.httpMethod == HttpMethod.GET))
 	}
 
+	/**
+	 * GETs with hint "stream" delegating to a service operation returning a collection get an additional JSON endpoint
+	 * writing the elements while they are read (e.g. from a repository finder with hint "scroll").
+	 */
+	def boolean isStreamingGet(ResourceOperation op) {
+		op.httpMethod == HttpMethod.GET && op.hasHint("stream") && op.delegate !== null &&
+			op.delegate.collectionType !== null
+	}
+
+	/**
+	 * GETs delegating to a service operation returning a single versioned or auditable domain object support
+	 * conditional requests (ETag from the version, Last-Modified from lastUpdated).
+	 */
+	def boolean isConditionalGet(ResourceOperation op) {
+		op.httpMethod == HttpMethod.GET && op.delegate !== null && !op.isImplementedInGapClass() &&
+			op.delegate.domainObjectType !== null && op.delegate.collectionType === null && !op.delegate.isPagedResult() &&
+			(op.delegate.domainObjectType.getAllAttributes().exists[a | a.name == "version" || a.name == "lastUpdated"])
+	}
+
+	def String getETagExpression(DomainObject domainObject, String variable) {
+		if (domainObject.getAllAttributes().exists[a | a.name == "version"])
+			"String.valueOf(" + variable + ".getVersion())"
+		else
+			null
+	}
+
+	def String getLastModifiedExpression(DomainObject domainObject, String variable) {
+		val lastUpdated = domainObject.getAllAttributes().findFirst[a | a.name == "lastUpdated"]
+		if (lastUpdated === null)
+			return null
+		val value = variable + ".getLastUpdated()"
+		val millis = switch (lastUpdated.getTypeName()) {
+			case "java.time.LocalDateTime" : value + ".atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli()"
+			case "java.time.ZonedDateTime" : value + ".toInstant().toEpochMilli()"
+			case "org.joda.time.DateTime" : value + ".getMillis()"
+			case "java.util.Date" : value + ".getTime()"
+			default : null
+		}
+		if (millis === null) null else "(" + value + " == null ? -1 : " + millis + ")"
+	}
+
 	def HttpMethod mapHttpMethod(String methodName) {
 		switch (methodName) {
 			case "GET" :
@@ -1419,7 +1495,19 @@ class Helper {
 	}
 
 	def boolean useTupleToObjectMapping(RepositoryOperation op) {
-		jpa && (!op.hasHint("construct") && (op.hasHint("map") || op.isReturningDataTranferObject()))
+		jpa && (!op.hasHint("construct") && !op.isReturningProjection() && (op.hasHint("map") || op.isReturningDataTranferObject()))
+	}
+
+	/**
+	 * Projections are immutable DataTransferObjects (with hint="projection") which are selected directly from
+	 * the aggregate root via constructor expression.
+	 */
+	def boolean isProjection(DomainObject domainObject) {
+		domainObject.isDataTranferObject() && domainObject.hasHint("projection")
+	}
+
+	def boolean isReturningProjection(RepositoryOperation op) {
+		jpa && op.domainObjectType !== null && op.domainObjectType.isProjection()
 	}
 
 	def private boolean isReturningDataTranferObject(RepositoryOperation op) {
@@ -1470,7 +1558,9 @@ class Helper {
 	}
 
 	def private String buildSelectFromReturnType(RepositoryOperation op) {
-		if (op.buildSelectForReference() !== null)
+		if (op.isReturningProjection())
+			op.buildSelectForProjection()
+		else if (op.buildSelectForReference() !== null)
 			op.buildSelectForReference()
 		else if (op.buildSelectUsingAttributes() !== null)
 			op.buildSelectUsingAttributes()
@@ -1481,6 +1571,18 @@ class Helper {
 			""
 	}
 
+	// The selected properties are passed to the constructor of the projection - same order required
+	def private String buildSelectForProjection(RepositoryOperation op) {
+		val aggregateRoot = op.getAggregateRoot()
+		val properties = op.domainObjectType.getConstructorParameters()
+		val unmatched = properties.filter[p | !(p instanceof Attribute) || getPropertyPath(p.name, aggregateRoot) === null]
+		if (!unmatched.empty)
+			error(
+				"Could not select " + unmatched.map[name].join(", ") + " of projection '" + op.domainObjectType.name +
+				"' from domain object '" + aggregateRoot.name + "' in repository operation '" + op.name + "'")
+		"select " + properties.map[p | getPropertyPath(p.name, aggregateRoot)].join(", ")
+	}
+
 	def private String buildSelectForReference(RepositoryOperation op) {
 		val path = op.getReferencePathFromReturnType()
 		if (path !== null)
@@ -1570,6 +1672,68 @@ class Helper {
 		genericAccessObjectManager.isGenericAccessObject(op)
 	}
 
+	/**
+	 * Paged finders with hint "concurrentCount" are counting the total number of rows concurrently to fetching the
+	 * requested page (not supported in combination with hint "countOperation" or "countQuery").
+	 */
+	def boolean isConcurrentResultCount(RepositoryOperation op) {
+		jpa() && op.hasHint("concurrentCount") && !op.hasHint("countOperation") && !op.hasHint("countQuery") &&
+			op.isGenericAccessObject() && op.isPagedResult() && op.pagingParameter !== null
+	}
+
+	/**
+	 * The threads counting concurrently are provided by a Spring bean, if any repository operation of the application
+	 * uses hint "concurrentCount".
+	 */
+	def boolean isConcurrentResultCountUsed(Application app) {
+		app.getAllRepositories(false).exists[operations.exists[isConcurrentResultCount
+	}
+
+	/**
+	 * Fetch profiles of the domain object defined via hints "fetchProfile.&lt;name&gt;=&lt;path&gt; &lt;path&gt; ..."
+	 * (e.g. hint="fetchProfile.summary=customer items.product"). Returns the attribute paths by profile name.
+	 */
+	def Map<String, List<String>> getFetchProfiles(DomainObject domainObject) {
+		val Map<String, List<String>> profiles = newLinkedHashMap
+		if (domainObject.hint !== null) {
+			for (part : domainObject.hint.split("[,;]")) {
+				val indexOfEq = part.indexOf("=")
+				if (indexOfEq != -1 && part.substring(0, indexOfEq).trim.startsWith("fetchProfile.")) {
+					val profile = part.substring(0, indexOfEq).trim.substring("fetchProfile.".length)
+					profiles.put(profile, part.substring(indexOfEq + 1).trim.split("\\s+").filter[!empty].toList)
+				}
+			}
+		}
+		profiles
+	}
+
+	/**
+	 * Only the generic access objects of findAll and findByCondition implement the access API FetchGraph.
+	 */
+	def boolean isFetchGraphSupported(RepositoryOperation op) {
+		op.isGenericAccessObject() &&
+			(op.getAccessNormalizedName() == "FindAllAccess" || op.getAccessNormalizedName() == "FindByConditionAccess")
+	}
+
+	/**
+	 * Name of the entity graph selected via hint "fetchProfile=&lt;name&gt;" of the repository operation.
+	 */
+	def String getFetchGraphName(RepositoryOperation op) {
+		if (!op.isFetchGraphSupported()) {
+			error(
+				"Hint 'fetchProfile' of repository operation '" + op.name + "' in repository '" + op.repository.name +
+					"' is only supported by the generic operations findAll and findByCondition")
+		}
+		val profile = op.getHint("fetchProfile")
+		val aggregateRoot = op.getAggregateRoot()
+		if (!aggregateRoot.getFetchProfiles().containsKey(profile)) {
+			error(
+				"Fetch profile '" + profile + "' of repository operation '" + op.name + "' in repository '" +
+					op.repository.name + "' isn't defined in domain object '" + aggregateRoot.name + "'")
+		}
+		aggregateRoot.name + "." + profile
+	}
+
 	def boolean hasAccessObjectPersistentClassConstructor(RepositoryOperation op) {
 		genericAccessObjectManager.isPersistentClassConstructor(op)
 	}
@@ -291,6 +291,10 @@ class Properties {
 		getBooleanProperty("generate.service")
 	}
 
+	def boolean isServiceAsyncToBeGenerated() {
+		getBooleanProperty("generate.service.async")
+	}
+
 	def boolean isServiceProxyToBeGenerated() {
 		getBooleanProperty("generate.service.proxy")
 	}
@@ -334,6 +338,10 @@ class Properties {
 		getBooleanProperty("generate.ddl.drop")
 	}
 
+	def boolean isDdlFinderIndexesToBeGenerated() {
+		getBooleanProperty("generate.ddl.finderIndexes")
+	}
+
 	def boolean isDatasourceToBeGenerated() {
 		getBooleanProperty("generate.datasource")
 	}
@@ -655,6 +663,18 @@ class Properties {
 		getBooleanProperty("jpa.useJpaDefaults")
 	}
 
+	def boolean isJpaFlushOutermostOnly() {
+		getBooleanProperty("jpa.flush.outermostOnly")
+	}
+
+	def int jpaFlushBatchSize() {
+		Integer.parseInt(getProperty("jpa.flush.batchSize"))
+	}
+
+	def boolean isJpaFlushDeferred() {
+		getBooleanProperty("jpa.flush.deferAutoFlush")
+	}
+
 	def boolean generateFinders() {
 		getBooleanProperty("generate.repository.finders")
 	}
@@ -30,8 +30,13 @@ import org.slf4j.LoggerFactory
  * <p>
  * All full qualified Java are replaced (as long as there is
  * no conflict) by their short name and the corresponding import statement is added. 
+ * <p>
+ * The JDT code formatter is not thread-safe. Therefore every thread calling {@link #format(String, String, boolean)}
+ * uses its own formatter instance created from the same formatter properties. If a {@link JavaCodeFormatterCache}
+ * is enabled then formatting and auto-importing is skipped for code already formatted in a previous generator run.
  * 
  * @see JavaCodeAutoImporter
+ * @see JavaCodeFormatterPipeline
  */
 class JavaCodeFormatter {
 
@@ -41,9 +46,17 @@ class JavaCodeFormatter {
 
 	@Inject var ConfigurationProvider configuration
 	@Inject var JavaCodeAutoImporter javaCodeAutoImporter
+	@Inject var JavaCodeFormatterCache cache
 
 	def format(String path, String code, boolean abortOnError) {
 
+		// Check if the same code was already formatted before
+		val cachedCode = cache.get(code, getCodeFormatterProperties())
+		if (cachedCode !== null) {
+			LOG.debug("Using cached formatted code for '{}'", path)
+			return cachedCode
+		}
+
 		// As fall-back return the original code
 		var formattedCode = code
 
@@ -59,6 +72,7 @@ class JavaCodeFormatter {
 			try {
 				textEdit.apply(doc)
 				formattedCode = doc.get()
+				cache.put(code, getCodeFormatterProperties(), formattedCode)
 			} catch (Exception e) {
 				LOG.error("Error formating code for '{}'. Using original code from generator", path)
 				if (abortOnError) {
@@ -74,10 +88,21 @@ class JavaCodeFormatter {
 		formattedCode
 	}
 
-	var CodeFormatter codeFormatter
+	val codeFormatters = new ThreadLocal<CodeFormatter>
+
+	var Properties codeFormatterProperties
 
 	private def getCodeFormatter() {
+		var codeFormatter = codeFormatters.get
 		if (codeFormatter === null) {
+			codeFormatter = ToolFactory.createCodeFormatter(getCodeFormatterProperties())
+			codeFormatters.set(codeFormatter)
+		}
+		codeFormatter
+	}
+
+	private synchronized def getCodeFormatterProperties() {
+		if (codeFormatterProperties === null) {
 			val classLoader = Thread.currentThread().getContextClassLoader() ?: this.^class.getClassLoader()
 
 			// Read default properties
@@ -100,9 +125,9 @@ class JavaCodeFormatter {
 					]
 				}
 			}
-			codeFormatter = ToolFactory.createCodeFormatter(props)
+			codeFormatterProperties = props
 		}
-		codeFormatter
+		codeFormatterProperties
 	}
 
 }
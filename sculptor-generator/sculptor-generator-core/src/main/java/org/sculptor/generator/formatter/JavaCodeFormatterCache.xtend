@@ -0,0 +1,135 @@
+/*
+ * Copyright 2013 The Sculptor Project Team, including the original 
+ * author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sculptor.generator.formatter
+
+import com.google.inject.Inject
+import java.io.File
+import java.io.IOException
+import java.nio.charset.StandardCharsets
+import java.nio.file.Files
+import java.nio.file.StandardCopyOption
+import java.security.MessageDigest
+import java.util.Properties
+import org.sculptor.generator.configuration.ConfigurationProvider
+import org.slf4j.LoggerFactory
+
+/**
+ * File-based cache for the output of the {@link JavaCodeFormatter}.
+ * <p>
+ * The formatted code is stored in the directory given via the configuration property
+ * <code>java.codeformatter.cache.dir</code>. The name of a cache entry is a hash calculated from the
+ * unformatted code (the raw template output) and the properties of the JDT code formatter. So a cache
+ * entry is only used if neither the template output nor the formatter configuration changed since the
+ * previous generator run.
+ * <p>
+ * If the configuration property is not set then caching is disabled.
+ */
+class JavaCodeFormatterCache {
+
+	static val LOG = LoggerFactory.getLogger(typeof(JavaCodeFormatterCache))
+
+	static val CACHE_DIR_PROPERTY = "java.codeformatter.cache.dir"
+
+	@Inject var ConfigurationProvider configuration
+
+	var File cacheDir
+	var boolean initialized
+
+	/**
+	 * Returns the formatted code for the given unformatted code or <code>null</code> if the cache is
+	 * disabled or there's no cache entry.
+	 */
+	def String get(String code, Properties formatterProperties) {
+		val dir = getCacheDir()
+		if (dir !== null) {
+			val file = new File(dir, hash(code, formatterProperties))
+			if (file.file) {
+				try {
+					return new String(Files.readAllBytes(file.toPath), StandardCharsets.UTF_8)
+				} catch (IOException e) {
+					LOG.warn("Reading cached formatted code from '{}' failed: {}", file, e.message)
+				}
+			}
+		}
+		null
+	}
+
+	/**
+	 * Stores the formatted code for the given unformatted code (if the cache is enabled).
+	 */
+	def void put(String code, Properties formatterProperties, String formattedCode) {
+		val dir = getCacheDir()
+		if (dir !== null) {
+			val file = new File(dir, hash(code, formatterProperties))
+			try {
+
+				// Write to temporary file first - the same code may be formatted concurrently
+				val tempFile = File.createTempFile(file.name, ".tmp", dir)
+				Files.write(tempFile.toPath, formattedCode.getBytes(StandardCharsets.UTF_8))
+				Files.move(tempFile.toPath, file.toPath, StandardCopyOption.REPLACE_EXISTING)
+			} catch (IOException e) {
+				LOG.warn("Writing cached formatted code to '{}' failed: {}", file, e.message)
+			}
+		}
+	}
+
+	private synchronized def getCacheDir() {
+		if (!initialized) {
+			if (configuration.has(CACHE_DIR_PROPERTY)) {
+				val dirName = configuration.getString(CACHE_DIR_PROPERTY)
+				if (!dirName.nullOrEmpty) {
+					val dir = new File(dirName)
+					if (dir.directory || dir.mkdirs()) {
+						LOG.debug("Using cache directory '{}' for Java code formatter", dir)
+						cacheDir = dir
+					} else {
+						LOG.warn("Cache directory '{}' for Java code formatter can't be created", dir)
+					}
+				}
+			}
+			initialized = true
+		}
+		cacheDir
+	}
+
+	var Properties hashedProperties
+	var byte[] propertiesHash
+
+	private def hash(String code, Properties formatterProperties) {
+		val digest = MessageDigest.getInstance("SHA-256")
+		digest.update(getPropertiesHash(formatterProperties))
+		digest.update(code.getBytes(StandardCharsets.UTF_8))
+		val hash = new StringBuilder
+		for (b : digest.digest) {
+			hash.append(String.format("%02x", b))
+		}
+		hash.toString
+	}
+
+	private synchronized def getPropertiesHash(Properties formatterProperties) {
+		if (hashedProperties !== formatterProperties) {
+			val digest = MessageDigest.getInstance("SHA-256")
+			formatterProperties.stringPropertyNames.sort.forEach [
+				digest.update((it + "=" + formatterProperties.getProperty(it) + "\n").getBytes(StandardCharsets.UTF_8))
+			]
+			propertiesHash = digest.digest
+			hashedProperties = formatterProperties
+		}
+		propertiesHash
+	}
+
+}
@@ -0,0 +1,167 @@
+/*
+ * Copyright 2013 The Sculptor Project Team, including the original 
+ * author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sculptor.generator.formatter
+
+import com.google.inject.Inject
+import java.io.File
+import java.io.FileWriter
+import java.util.List
+import java.util.concurrent.ExecutionException
+import java.util.concurrent.ExecutorService
+import java.util.concurrent.Executors
+import java.util.concurrent.Future
+import java.util.concurrent.ThreadFactory
+import java.util.concurrent.atomic.AtomicInteger
+import org.sculptor.generator.chain.GeneratorProfiler
+import org.sculptor.generator.configuration.ConfigurationProvider
+import org.slf4j.LoggerFactory
+
+/**
+ * Formats the generated Java source code with the {@link JavaCodeFormatter} and writes it to the
+ * corresponding file.
+ * <p>
+ * The number of threads used for formatting is given via the configuration property
+ * <code>java.codeformatter.threads</code>. With a value of <code>0</code> (the default) the number
+ * of available processors is used. With a value of <code>1</code> the code is formatted and written
+ * immediately by the calling thread.
+ * <p>
+ * <strong>After the generator finished call {@link #awaitCompletion()} to wait for the pending files.
+ * Otherwise generated files may be incomplete!!!</strong>
+ */
+class JavaCodeFormatterPipeline {
+
+	static val LOG = LoggerFactory.getLogger(typeof(JavaCodeFormatterPipeline))
+
+	static val THREADS_PROPERTY = "java.codeformatter.threads"
+
+	@Inject var ConfigurationProvider configuration
+	@Inject var JavaCodeFormatter javaCodeFormatter
+
+	var ExecutorService executor
+	val List<Future<?>> pendingFiles = newArrayList
+
+	/**
+	 * Formats the given code and writes it to the given file - either immediately or by a formatter thread.
+	 */
+	def void write(File file, String path, String code, boolean abortOnError) {
+		val executor = getExecutor()
+		if (executor === null) {
+			writeFile(file, format(path, code, abortOnError))
+		} else {
+			val Runnable task = [|writeFile(file, format(path, code, abortOnError))]
+			synchronized (pendingFiles) {
+				pendingFiles.add(executor.submit(GeneratorProfiler.wrap(task)))
+			}
+		}
+	}
+
+	/**
+	 * Waits until all pending files are formatted and written, and shuts down the formatter threads.
+	 *
+	 * @return list of errors occurred while formatting or writing the pending files
+	 */
+	def List<Throwable> awaitCompletion() {
+		val List<Future<?>> futures = synchronized (pendingFiles) {
+			val copy = pendingFiles.toList
+			pendingFiles.clear
+			copy
+		}
+		LOG.debug("Waiting for {} pending Java files", futures.size)
+		val List<Throwable> errors = newArrayList
+		for (future : futures) {
+			try {
+				future.get
+			} catch (ExecutionException e) {
+				errors.add(e.cause)
+			} catch (InterruptedException e) {
+				Thread.currentThread.interrupt
+				errors.add(e)
+			}
+		}
+		synchronized (this) {
+			if (executor !== null) {
+				executor.shutdown
+				executor = null
+			}
+		}
+		errors
+	}
+
+	private def String format(String path, String code, boolean abortOnError) {
+		if (!GeneratorProfiler.isEnabled) {
+			return javaCodeFormatter.format(path, code, abortOnError)
+		}
+		GeneratorProfiler.enter("JavaCodeFormatter.format")
+		try {
+			javaCodeFormatter.format(path, code, abortOnError)
+		} finally {
+			GeneratorProfiler.exit
+		}
+	}
+
+	private def void writeFile(File file, String code) {
+		val profile = GeneratorProfiler.isEnabled
+		if (profile) {
+			GeneratorProfiler.enter("JavaCodeFormatterPipeline.writeFile")
+		}
+		try {
+			val out = new FileWriter(file)
+			try {
+				out.write(code)
+			} finally {
+				out.close()
+			}
+		} finally {
+			if (profile) {
+				GeneratorProfiler.exit
+			}
+		}
+	}
+
+	private synchronized def getExecutor() {
+		if (executor === null) {
+			var threads = if(configuration.has(THREADS_PROPERTY)) configuration.getInt(THREADS_PROPERTY) else 0
+			if (threads <= 0) {
+				threads = Runtime.runtime.availableProcessors
+			}
+			if (threads > 1) {
+				LOG.debug("Using {} threads for Java code formatting", threads)
+				executor = Executors.newFixedThreadPool(threads, new FormatterThreadFactory)
+			}
+		}
+		executor
+	}
+
+	/**
+	 * Creates daemon threads which are using the context class loader of the generator thread (needed for
+	 * retrieving the formatter properties via the Maven plugins classpath).
+	 */
+	private static class FormatterThreadFactory implements ThreadFactory {
+
+		val threadNumber = new AtomicInteger(1)
+		val contextClassLoader = Thread.currentThread.contextClassLoader
+
+		override newThread(Runnable runnable) {
+			val thread = new Thread(runnable, "sculptor-formatter-" + threadNumber.andIncrement)
+			thread.daemon = true
+			thread.contextClassLoader = contextClassLoader
+			thread
+		}
+
+	}
+
+}
@@ -150,6 +150,10 @@ class TransformationHelper {
 	def dispatch void modifyChangeable(DataTransferObject dto) {
 		dto.attributes.filter(a | a.naturalKey).forEach[it.modifyChangeableToFalse()]
 		dto.references.filter(r | r.naturalKey).forEach[it.modifyChangeableToFalse()]
+		if (dto.isProjection()) {
+			dto.attributes.forEach[modifyChangeableToFalse()]
+			dto.references.filter(r | !r.many).forEach[modifyChangeableToFalse()]
+		}
 	}
 
 	def dispatch void modifyChangeable(Trait trait) {
@@ -203,6 +203,19 @@ public class GenericAccessObjectManager {
 			return false;
 		}
 
+		protected void addDefaultDeletedCountType(RepositoryOperation operation) {
+			if (operation.getType() == null && operation.getDomainObjectType() == null) {
+				operation.setType("int");
+			}
+		}
+
+		protected void checkJpa(RepositoryOperation operation) {
+			if ("none".equals(propBase.getProperty("jpa.provider"))) {
+				helperBase.error("Repository operation '" + operation.getName() + "' in repository '"
+						+ operation.getRepository().getName() + "' is only supported with JPA");
+			}
+		}
+
 		protected void addNotFoundException(RepositoryOperation operation) {
 			if (propBase.getBooleanProperty("generate.NotFoundException")
 					&& (operation.getThrows() == null)) {
@@ -831,4 +844,64 @@ public class GenericAccessObjectManager {
 
 	}
 
+	/**
+	 * Bulk delete of the entities matching the conditions, returns the number of
+	 * deleted rows. Only supported with JPA.
+	 */
+	public class DeleteByConditionStrategy extends AbstractGenericAccessObjectStrategy {
+
+		@Override
+		public void addDefaultValues(RepositoryOperation operation) {
+			checkJpa(operation);
+			if (operation.getParameters().isEmpty()) {
+				String conditionalCriteriaClass;
+				if (propBase.hasProperty("framework.accessapi.ConditionalCriteria")) {
+					conditionalCriteriaClass = propBase.getProperty("framework.accessapi.ConditionalCriteria");
+				} else {
+					conditionalCriteriaClass = "org.sculptor.framework.accessapi.ConditionalCriteria";
+				}
+				addParameter(operation, "java.util.List<" + conditionalCriteriaClass + ">", "condition");
+			}
+			addDefaultDeletedCountType(operation);
+		}
+
+		@Override
+		public String getGenericType(RepositoryOperation operation) {
+			return "<" + aggregateRootClassName(operation) + ">";
+		}
+
+		@Override
+		public boolean isPersistentClassConstructor() {
+			return true;
+		}
+
+	}
+
+	/**
+	 * Bulk delete of the entities with the given ids, returns the number of
+	 * deleted rows. Only supported with JPA.
+	 */
+	public class DeleteByIdsStrategy extends AbstractGenericAccessObjectStrategy {
+
+		@Override
+		public void addDefaultValues(RepositoryOperation operation) {
+			checkJpa(operation);
+			if (operation.getParameters().isEmpty()) {
+				addParameter(operation, "java.util.Collection<?>", "ids");
+			}
+			addDefaultDeletedCountType(operation);
+		}
+
+		@Override
+		public String getGenericType(RepositoryOperation operation) {
+			return "<" + aggregateRootClassName(operation) + ">";
+		}
+
+		@Override
+		public boolean isPersistentClassConstructor() {
+			return true;
+		}
+
+	}
+
 }
@@ -77,6 +77,9 @@ public class HelperBase {
 
 	private PropertiesBase propBase;
 
+	@Inject
+	private ModelQueryCache modelQueryCache;
+
 	private PrimitiveTypeMapper primitiveTypeMapper = new PrimitiveTypeMapper();
 	private Map<String, String> collectionInterfaceTypeMapper = new HashMap<String, String>();
 	private Map<String, String> collectionImplTypeMapper = new HashMap<String, String>();
@@ -916,28 +919,30 @@ public class HelperBase {
 	}
 
 	public Set<Reference> getAllReferences(Application application) {
-		Set<Reference> all = new HashSet<Reference>();
-		for (DomainObject d : getAllDomainObjects(application)) {
-			for (Reference ref : (List<Reference>) d.getReferences()) {
-				if (!all.contains(ref.getOpposite())) {
-					all.add(ref);
+		return modelQueryCache.get("allReferences", application, app -> {
+			Set<Reference> all = new HashSet<Reference>();
+			for (DomainObject d : getAllDomainObjects(app)) {
+				for (Reference ref : (List<Reference>) d.getReferences()) {
+					if (!all.contains(ref.getOpposite())) {
+						all.add(ref);
+					}
 				}
 			}
-		}
-
-		return all;
+			return all;
+		});
 	}
 
 	private List<DomainObject> getAllDomainObjects(Application application) {
-		List<DomainObject> all = new ArrayList<DomainObject>();
-		List<Module> modules = application.getModules();
-		for (Module m : modules) {
-			for (DomainObject d : (List<DomainObject>) m.getDomainObjects()) {
-				all.add(d);
+		return modelQueryCache.get("sortedDomainObjects", application, app -> {
+			List<DomainObject> all = new ArrayList<DomainObject>();
+			List<Module> modules = app.getModules();
+			for (Module m : modules) {
+				for (DomainObject d : (List<DomainObject>) m.getDomainObjects()) {
+					all.add(d);
+				}
 			}
-		}
-		List<DomainObject> result = sortByName(all);
-		return result;
+			return sortByName(all);
+		});
 	}
 
 	public boolean isPrimitiveType(String typeName) {
@@ -1396,7 +1401,7 @@ public class HelperBase {
 		return result;
 	}
 
-	private static final HashMap<String, Integer> counters = new HashMap<String, Integer>();
+	private final HashMap<String, Integer> counters = new HashMap<String, Integer>();
 
 	public String counterInc(String counter) {
 		Integer i = counters.get(counter);
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2014 The Sculptor Project Team, including the original 
+ * author or authors.
+ * 
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * 
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sculptor.generator.util;
+
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.function.Function;
+
+import javax.inject.Singleton;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Memoizes the results of queries derived from the generator model, e.g. all
+ * domain objects of an application sorted by name. The results are cached per
+ * query name and identity of the model element the query is executed on.
+ * <p>
+ * While the model is transformed the results of these queries change.
+ * Therefore the cache is disabled by default and only enabled (via
+ * {@link #enable()}) for the code generation phase, where the model isn't
+ * modified anymore. Disabling the cache (via {@link #disable()}) drops all
+ * cached results.
+ * <p>
+ * <strong>The cached results are shared by all callers and must not be
+ * modified!!!</strong>
+ */
+@Singleton
+public class ModelQueryCache {
+
+	private static final Logger LOG = LoggerFactory.getLogger(ModelQueryCache.class);
+
+	private final Map<String, Map<Object, Object>> queries = new HashMap<String, Map<Object, Object>>();
+	private boolean enabled;
+	private long hits;
+	private long misses;
+
+	public synchronized void enable() {
+		LOG.debug("Enabling model query cache");
+		enabled = true;
+	}
+
+	public synchronized void disable() {
+		if (enabled) {
+			LOG.debug("Disabling model query cache - {} cache hits and {} cache misses for {} queries", hits, misses,
+					queries.size());
+		}
+		enabled = false;
+		queries.clear();
+		hits = 0;
+		misses = 0;
+	}
+
+	public synchronized boolean isEnabled() {
+		return enabled;
+	}
+
+	/**
+	 * Number of queries answered from the cache since it was enabled.
+	 */
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	/**
+	 * Number of queries executed while the cache was enabled.
+	 */
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Returns the cached result of the given query for the given model element.
+	 * If there's no cached result (or the cache is disabled) then the query is
+	 * executed.
+	 */
+	@SuppressWarnings("unchecked")
+	public synchronized <K, V> V get(String query, K element, Function<? super K, ? extends V> function) {
+		if (!enabled) {
+			return function.apply(element);
+		}
+		Map<Object, Object> results = queries.get(query);
+		if (results == null) {
+			results = new IdentityHashMap<Object, Object>();
+			queries.put(query, results);
+		}
+		if (results.containsKey(element)) {
+			hits++;
+			return (V) results.get(element);
+		}
+		misses++;
+
+		// Recursive queries (e.g. for the super class) are modifying the map
+		// while the function is executed - so no computeIfAbsent() here
+		V result = function.apply(element);
+		results.put(element, result);
+		return result;
+	}
+
+}
@@ -38,8 +38,8 @@ import javax.inject.Inject;
  * </pre>
  */
 public class SingularPluralConverter {
-	private static Map<String, String> singular2pluralDefinitions;
-	private static Map<String, String> plural2singularDefinitions;
+	private Map<String, String> singular2pluralDefinitions;
+	private Map<String, String> plural2singularDefinitions;
 
 	@Inject
 	private void init(PropertiesBase propertiesBase) {
@@ -30,6 +30,7 @@ import sculptormetamodel.BasicType
 import sculptormetamodel.DomainObject
 import sculptormetamodel.Enum
 import sculptormetamodel.Reference
+import sculptormetamodel.RepositoryOperation
 
 @ChainOverridable
 class MysqlDDLTmpl {
@@ -68,6 +69,7 @@ def String ddl(Application it) {
 	it.getDomainObjectsInCreateOrder(true).filter[d | !isInheritanceTypeSingleTable(getRootExtends(d.^extends))].map[d | createTable(d, false)].join
 	it.getDomainObjectsInCreateOrder(true).filter[d | !isInheritanceTypeSingleTable(getRootExtends(d.^extends))].map[d | foreignKeyAlter(d)].join
 	it.getDomainObjectsInCreateOrder(true).filter[d | d.^extends !== null && !isInheritanceTypeSingleTable(getRootExtends(d.^extends))].map[d | extendsForeignKeyAlter(d)].join
+	it.getDomainObjectsInCreateOrder(true).map[d | d.getFinderIndexOperations()].flatten.map[op | finderIndex(op)].join
 	
 	-- Many to many relations
 	it.resolveManyToManyRelations(true).map[r | createTable(r, true)].join
@@ -75,6 +77,18 @@ def String ddl(Application it) {
 	)
 }
 
+/*
+ * Composite index serving the where clause of generated finders (columns of the finder parameters), the comment
+ * reports the finders using the index.
+ */
+def String finderIndex(RepositoryOperation it) {
+	'''
+	-- Index for finder getFindersServedByIndex(it).map[o | o.repository.name + "." + o.name + "(" + o.parameters.filter[p | !p.isPagingParameter()].map[p | p.name].join(", ") + ")"].join(", ")
+	CREATE INDEX getFinderIndexName(it)
+		ON getAggregateRoot().getDatabaseName() (getFinderIndexColumns(it).join(", "));
+	'''
+}
+
 def String dropSequence(Application it) {
 	'''
 	IF applicationServer == "jboss" || jpaProviderHibernate
@@ -108,15 +122,47 @@ def String createTable(DomainObject it, Boolean manyToManyRelationTable) {
 		IF ^extends !== null
 			extendsForeignKey(it, !alreadyUsedColumns.isEmpty)
 		ENDIF
-		uniqueConstraint(it)
+		uniqueConstraint(it)
+		partitionPrimaryKey(it)
 	)afterCreateTable(it);
 	
 	'''
 }
 
 def String afterCreateTable(DomainObject it) {
-	'''
-	'''
+	'''IF it.isPartitioned()
+		partitionBy(it)ENDIF'''
+}
+
+/*
+ * MySQL doesn't support interval partitioning, the range partitions of partitionCount intervals are created ahead of
+ * time. Further partitions have to be split off from the MAX partition (ALTER TABLE ... REORGANIZE PARTITION).
+ * MySQL doesn't support a default partition for LIST partitioning, inserting a value not listed in the model fails.
+ */
+def String partitionBy(DomainObject it) {
+	'''IF it.getPartitionType() == "range"
+		PARTITION BY RANGE COLUMNS (it.getPartitionColumn()) (
+			PARTITION it.getPartitionName("START") VALUES LESS THAN ('it.getPartitionStart()'),
+			FOR range : it.getPartitionRanges()
+				PARTITION it.getPartitionName(range.key.replace("-", "")) VALUES LESS THAN ('range.value'),
+			ENDFOR
+			PARTITION it.getPartitionName("MAX") VALUES LESS THAN (MAXVALUE)
+		)
+	ELSE
+		PARTITION BY LIST COLUMNS (it.getPartitionColumn()) (
+			FOR value : it.getPartitionValues() SEPARATOR ",\n"PARTITION it.getPartitionName(value) VALUES IN (value.getPartitionValueLiteral())ENDFOR
+		)
+	ENDIF'''
+}
+
+// The primary key of a partitioned table must contain the partition key
+def String partitionPrimaryKey(DomainObject it) {
+	'''IF it.isPartitioned(),
+	PRIMARY KEY (getIdAttribute().getDatabaseName(), it.getPartitionColumn())ENDIF'''
+}
+
+def String partitionKeyColumn(DomainObject it) {
+	'''IF it.isPartitioned(), it.getPartitionColumn()ENDIF'''
 }
 
 def String columns(DomainObject it, Boolean manyToManyRelationTable, boolean initialComma, Set<String> alreadyDone) {
@@ -164,7 +210,7 @@ def String column(Attribute it, String prefix) {
 
 def String column(Attribute it, String prefix, boolean parentIsNullable) {
 	'''getDatabaseName(prefix, it) getDatabaseType(it)if (parentIsNullable) "" else getDatabaseTypeNullability(it)
-	IF name == "id" AUTO_INCREMENT PRIMARY KEYENDIF
+	IF name == "id" AUTO_INCREMENTIF !getDomainObject(it).isPartitioned() PRIMARY KEYENDIFENDIF
 	IF index,
 	INDEX (getDatabaseName(prefix, it))ENDIF'''
 }
@@ -203,7 +249,7 @@ def String foreignKey(Reference it, Boolean manyToManyRelationTable) {
 		IF it.hasOpposite() && "list" == opposite.getCollectionType()
 			opposite.getListIndexColumnName() getListIndexDatabaseType(),
 		ENDIF
-		it.getForeignKeyName() it.getForeignKeyType()IF manyToManyRelationTable,
+		it.getForeignKeyName() it.getForeignKeyType()IF manyToManyRelationTable && !to.getRootExtends().isPartitioned(),
 			FOREIGN KEY (it.getForeignKeyName()) REFERENCES to.getRootExtends().getDatabaseName()(to.getRootExtends().getIdAttribute().getDatabaseName()) IF (opposite !== null) && opposite.isDbOnDeleteCascade() ON DELETE CASCADEENDIFENDIF'''
 }
 
@@ -217,8 +263,12 @@ def dispatch String foreignKeyAlter(DomainObject it) {
 def dispatch String foreignKeyAlter(Reference it) {
 	'''
 	-- Reference from from.name.getForeignKeyName(it) to to.name
+	IF from.getRootExtends().isPartitioned() || to.getRootExtends().isPartitioned()
+		-- No foreign key constraint, partitioned tables don't support foreign keys
+	ELSE
 	ALTER TABLE from.getDatabaseName() ADD CONSTRAINT FK_truncateLongDatabaseName(from.getDatabaseName(), getDatabaseName(it))
 		FOREIGN KEY (getForeignKeyName(it)) REFERENCES to.getRootExtends().getDatabaseName()(to.getRootExtends().getIdAttribute().getDatabaseName()) IF (opposite !== null) && opposite.isDbOnDeleteCascade() ON DELETE CASCADEENDIF;
+	ENDIF
 	'''
 }
 
@@ -258,8 +308,12 @@ def String uniManyForeignKey(Reference it) {
 def String uniManyForeignKeyAlter(Reference it) {
 	'''
 	-- Entity to.name inverse referenced from from.name.name
+	IF from.getRootExtends().isPartitioned() || to.getRootExtends().isPartitioned()
+		-- No foreign key constraint, partitioned tables don't support foreign keys
+	ELSE
 	ALTER TABLE to.getDatabaseName() ADD CONSTRAINT FK_truncateLongDatabaseName(to.getDatabaseName(), from.getDatabaseName())
 	FOREIGN KEY (getOppositeForeignKeyName(it)) REFERENCES from.getRootExtends().getDatabaseName()(from.getRootExtends().getIdAttribute().getDatabaseName());
+	ENDIF
 	'''
 }
 
@@ -267,7 +321,7 @@ def String uniqueConstraint(DomainObject it) {
 	'''
 	IF hasUniqueConstraints(it),
 	IF attributes.exists(a | a.isUuid()) 
-		CONSTRAINT UNIQUE (attributes.filter(a | a.isUuid()).head.getDatabaseName())
+		CONSTRAINT UNIQUE (attributes.filter(a | a.isUuid()).head.getDatabaseName()partitionKeyColumn(it))
 	ELSE 
 		CONSTRAINT UNIQUE (
 			FOR key : getAllNaturalKeys(it) SEPARATOR ", "
@@ -278,7 +332,7 @@ def String uniqueConstraint(DomainObject it) {
 				ELSE
 					key.getDatabaseName()
 				ENDIF
-			ENDFOR
+			ENDFORpartitionKeyColumn(it)
 		)
 	ENDIF
 	ENDIF'''
@@ -31,6 +31,7 @@ import sculptormetamodel.BasicType
 import sculptormetamodel.DomainObject
 import sculptormetamodel.Enum
 import sculptormetamodel.Reference
+import sculptormetamodel.RepositoryOperation
 
 @ChainOverridable
 class OracleDDLTmpl {
@@ -119,13 +120,57 @@ def String createTable(DomainObject it) {
 	IF isInheritanceTypeSingleTable(it)inheritanceSingleTable(it, alreadyUsedColumns)ENDIF
 	IF ^extends !== nullextendsForeignKeyColumn(it, !alreadyUsedColumns.isEmpty)ENDIF
 	)afterCreateTable(it);
+	IF it.isPartitioned() && dbProduct == "postgresql"
+		postgresqlPartitions(it)
+	ENDIF
 	
 	'''
 }
 
 def String afterCreateTable(DomainObject it) {
-	'''IF hasHint(it, "tablespace")
-		TABLESPACE getHint(it, "tablespace").toUpperCase()ENDIF'''
+	'''IF dbProduct == "postgresql"partitionBy(it)ENDIFIF hasHint(it, "tablespace")
+		TABLESPACE getHint(it, "tablespace").toUpperCase()ENDIFIF dbProduct != "postgresql"partitionBy(it)ENDIF'''
+}
+
+def String partitionBy(DomainObject it) {
+	'''IF it.isPartitioned()
+		PARTITION BY it.getPartitionType().toUpperCase() (it.getPartitionColumn())IF dbProduct == "oracle"
+		IF it.getPartitionType() == "range"
+		INTERVAL (oraclePartitionInterval(it))
+		(PARTITION it.getPartitionName("START") VALUES LESS THAN (TO_DATE('it.getPartitionStart()', 'YYYY-MM-DD')))
+		ELSE
+		(FOR value : it.getPartitionValues()PARTITION it.getPartitionName(value) VALUES (value.getPartitionValueLiteral()), ENDFORPARTITION it.getPartitionName("DEFAULT") VALUES (DEFAULT))
+		ENDIFENDIFENDIF'''
+}
+
+def String oraclePartitionInterval(DomainObject it) {
+	switch (it.getPartitionInterval()) {
+		case "day" : "NUMTODSINTERVAL(1, 'DAY')"
+		case "year" : "NUMTOYMINTERVAL(1, 'YEAR')"
+		default : "NUMTOYMINTERVAL(1, 'MONTH')"
+	}
+}
+
+/*
+ * PostgreSQL doesn't create range partitions automatically, the partitions of partitionCount intervals are created
+ * ahead of time. Rows not matching any partition are stored in the default partition.
+ */
+def String postgresqlPartitions(DomainObject it) {
+	'''
+	IF it.getPartitionType() == "range"
+		FOR range : it.getPartitionRanges()
+			CREATE TABLE it.getPartitionName(range.key.replace("-", "")) PARTITION OF getDatabaseName(it) FOR VALUES FROM ('range.key') TO ('range.value');
+		ENDFOR
+	ELSE
+		FOR value : it.getPartitionValues()
+			CREATE TABLE it.getPartitionName(value) PARTITION OF getDatabaseName(it) FOR VALUES IN (value.getPartitionValueLiteral());
+		ENDFOR
+	ENDIF
+	CREATE TABLE it.getPartitionName("DEFAULT") PARTITION OF getDatabaseName(it) DEFAULT;
+	IF it.getPartitionType() == "range"
+		-- Create the following partitions per it.getPartitionInterval() ahead of time, later rows are stored in the default partition
+	ENDIF
+	'''
 }
 
 def String columns(DomainObject it, boolean initialComma, Set<String> alreadyDone) {
@@ -211,11 +256,16 @@ def String discriminatorColumn(DomainObject it) {
 def String idPrimaryKey(DomainObject it) {
 	'''
 	ALTER TABLE getDatabaseName(it) ADD CONSTRAINT PK_getDatabaseName(it)
-		PRIMARY KEY (attributes.filter[a | a.name == "id"].head.getDatabaseName())
+		PRIMARY KEY (attributes.filter[a | a.name == "id"].head.getDatabaseName()partitionKeyColumn(it))
 		afterIdPrimaryKey(it);
 	'''
 }
 
+// Unique constraints of partitioned tables must contain the partition key (except for Oracle)
+def String partitionKeyColumn(DomainObject it) {
+	'''IF it.isPartitioned() && dbProduct != "oracle", it.getPartitionColumn()ENDIF'''
+}
+
 def String afterIdPrimaryKey(DomainObject it) {
 	'''
 		usingIndexTablespace(it)'''
@@ -274,15 +324,19 @@ def dispatch String foreignKeyConstraint(Reference it) {
 	'''
 	
 	-- Reference from from.name.name to to.name
+	IF to.getRootExtends().isPartitioned() && dbProduct != "oracle"
+		-- No foreign key constraint, the primary key of partitioned table to.getRootExtends().getDatabaseName() includes the partition key
+	ELSE
 	ALTER TABLE from.getDatabaseName() ADD CONSTRAINT FK_truncateLongDatabaseName(from.getDatabaseName(), getDatabaseName(it))
 		FOREIGN KEY (getForeignKeyName(it)) REFERENCES to.getRootExtends().getDatabaseName() (to.getRootExtends().getIdAttribute().getDatabaseName()) IF (opposite !== null) && opposite.isDbOnDeleteCascade() ON DELETE CASCADEENDIF;
+	ENDIF
 	foreignKeyIndex(it)
 	'''
 }
 
 def String foreignKeyIndex(Reference it) {
 	'''
-	CREATE INDEX IX_truncateLongDatabaseName(from.getDatabaseName(), getForeignKeyName(it)) ON from.getDatabaseName() (getForeignKeyName(it));
+	CREATE INDEX IX_truncateLongDatabaseName(from.getDatabaseName(), getForeignKeyName(it)) ON from.getDatabaseName() (getForeignKeyName(it))localIndex(from);
 	'''
 }
 
@@ -290,15 +344,19 @@ def String uniManyForeignKeyConstraint(Reference it) {
 	'''
 	
 	-- Reference from from.name.name to to.name
+	IF from.getRootExtends().isPartitioned() && dbProduct != "oracle"
+		-- No foreign key constraint, the primary key of partitioned table from.getRootExtends().getDatabaseName() includes the partition key
+	ELSE
 	ALTER TABLE to.getDatabaseName() ADD CONSTRAINT FK_truncateLongDatabaseName(to.getDatabaseName(), from.getDatabaseName())
 		FOREIGN KEY (getOppositeForeignKeyName(it)) REFERENCES from.getRootExtends().getDatabaseName() (from.getRootExtends().getIdAttribute().getDatabaseName());
+	ENDIF
 	uniManyForeignKeyIndex(it)
 	'''
 }
 
 def String uniManyForeignKeyIndex(Reference it) {
 	'''
-	CREATE INDEX IX_truncateLongDatabaseName(to.getDatabaseName(), getOppositeForeignKeyName(it)) ON to.getDatabaseName() (getOppositeForeignKeyName(it));
+	CREATE INDEX IX_truncateLongDatabaseName(to.getDatabaseName(), getOppositeForeignKeyName(it)) ON to.getDatabaseName() (getOppositeForeignKeyName(it))localIndex(to);
 	'''
 }
 
@@ -323,7 +381,7 @@ def String uniqueConstraint(DomainObject it) {
 	IF hasUniqueConstraints(it)
 	ALTER TABLE getDatabaseName(it)
 		IF attributes.exists(a | a.isUuid()) 
-			ADD CONSTRAINT UQ_getDatabaseName(it) UNIQUE (UUID)
+			ADD CONSTRAINT UQ_getDatabaseName(it) UNIQUE (UUIDpartitionKeyColumn(it))
 		ELSE
 			ADD CONSTRAINT UQ_getDatabaseName(it) UNIQUE (
 			FOR key : getAllNaturalKeys(it) SEPARATOR ", "
@@ -334,7 +392,7 @@ def String uniqueConstraint(DomainObject it) {
 				ELSE
 					key.getDatabaseName()
 				ENDIF
-			ENDFOR)
+			ENDFORpartitionKeyColumn(it))
 		ENDIF
 		afterUniqueConstraint(it);
 	ENDIF
@@ -352,6 +410,21 @@ def String index(DomainObject it) {
 	IF isInheritanceTypeSingleTable(it)
 		discriminatorIndex(it)
 	ENDIF
+	it.getFinderIndexOperations().map[finderIndex(it)].join()
+	'''
+}
+
+/*
+ * Composite index serving the where clause of generated finders (columns of the finder parameters), the comment
+ * reports the finders using the index.
+ */
+def String finderIndex(RepositoryOperation it) {
+	'''
+	-- Index for finder getFindersServedByIndex(it).map[o | o.repository.name + "." + o.name + "(" + o.parameters.filter[p | !p.isPagingParameter()].map[p | p.name].join(", ") + ")"].join(", ")
+	IF !getFinderIndexIncludeColumns(it).empty, covering the projection domainObjectType.nameENDIF
+	CREATE INDEX getFinderIndexName(it)
+		ON getAggregateRoot().getDatabaseName() (getFinderIndexColumns(it).join(", "))
+		IF !getFinderIndexIncludeColumns(it).empty INCLUDE (getFinderIndexIncludeColumns(it).join(", "))ENDIFlocalIndex(getAggregateRoot());
 	'''
 }
 
@@ -370,12 +443,20 @@ def String index(Attribute it, String prefix, DomainObject domainObject) {
 
 def String afterIndex(Attribute it, String prefix, DomainObject domainObject) {
 	'''
+	IF domainObject.isPartitioned() && dbProduct == "oracle"
+		LOCAL
+	ENDIF
 	IF domainObject.hasHint("tablespace")
 		TABLESPACE domainObject.getHint("tablespace").toUpperCase()
 	ENDIF
 	'''
 }
 
+// Indexes of partitioned tables are partitioned the same way (PostgreSQL does this implicitly)
+def String localIndex(DomainObject it) {
+	'''IF it.isPartitioned() && dbProduct == "oracle" LOCALENDIF'''
+}
+
 def String discriminatorIndex(DomainObject it) {
 	'''
 	CREATE INDEX IX_truncateLongDatabaseName(getDatabaseName(it), inheritance.discriminatorColumnName())
@@ -390,6 +471,9 @@ def String dropIndex(DomainObject it) {
 	IF isInheritanceTypeSingleTable(it)
 		dropDiscriminatorIndex(it)
 	ENDIF
+	FOR op : it.getFinderIndexOperations()
+		DROP INDEX op.getFinderIndexName();
+	ENDFOR
 	'''
 }
 
@@ -16,6 +16,8 @@
  */
 package org.sculptor.generator.template.domain
 
+import java.util.List
+import java.util.Set
 import javax.inject.Inject
 import org.sculptor.generator.chain.ChainOverridable
 import org.sculptor.generator.ext.DbHelper
@@ -83,10 +85,52 @@ def String domainObjectAnnotations(DomainObject it) {
 			IF isJpaProviderHibernate() && cache
 				@org.hibernate.annotations.Cache(usage = it.getHibernateCacheStrategy())
 			ENDIF
+			IF isJpaProviderHibernate() && it.getClassBatchSize() !== null
+				@org.hibernate.annotations.BatchSize(size = it.getClassBatchSize())
+			ENDIF
+			IF !it.getFetchProfiles().empty
+				namedEntityGraphs(it)
+			ENDIF
 		ENDIF
 	'''
 }
 
+/* Named entity graphs of the fetch profiles, each on a single line because it is included in JavaDoc. */
+def String namedEntityGraphs(DomainObject it) {
+	'''
+		@javax.persistence.NamedEntityGraphs({
+		FOR profile : it.getFetchProfiles().entrySet SEPARATOR ",\n"namedEntityGraph(it, profile.key, profile.value)ENDFOR
+		})
+	'''
+}
+
+def String namedEntityGraph(DomainObject it, String profile, List<String> paths) {
+	val subgraphs = <String>newLinkedHashSet
+	for (path : paths) {
+		var index = path.indexOf(".")
+		while (index != -1) {
+			subgraphs.add(path.substring(0, index))
+			index = path.indexOf(".", index + 1)
+		}
+	}
+	'''@javax.persistence.NamedEntityGraph(name = "name.profile", attributeNodes = {namedAttributeNodes("", paths, subgraphs)}IF !subgraphs.empty, subgraphs = {FOR subgraph : subgraphs SEPARATOR ", "@javax.persistence.NamedSubgraph(name = "subgraph", attributeNodes = {namedAttributeNodes(subgraph + ".", paths, subgraphs)})ENDFOR}ENDIF)'''
+}
+
+def String namedAttributeNodes(String prefix, List<String> paths, Set<String> subgraphs) {
+	val attributes = <String>newLinkedHashSet
+	for (path : paths + subgraphs) {
+		if (path.startsWith(prefix)) {
+			val attribute = path.substring(prefix.length)
+			attributes.add(if (attribute.contains(".")) attribute.substring(0, attribute.indexOf(".")) else attribute)
+		}
+	}
+	attributes.map[
+		if (subgraphs.contains(prefix + it))
+			'@javax.persistence.NamedAttributeNode(value = "' + it + '", subgraph = "' + prefix + it + '")'
+		else
+			'@javax.persistence.NamedAttributeNode("' + it + '")'].join(", ")
+}
+
 def dispatch String domainObjectBaseAnnotations(DataTransferObject it) {
 	'''
 		IF it.isValidationAnnotationToBeGeneratedForObject()
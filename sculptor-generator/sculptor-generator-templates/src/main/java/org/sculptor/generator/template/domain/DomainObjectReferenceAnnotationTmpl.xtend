@@ -110,6 +110,7 @@ def String oneReferenceJpaAnnotations(Reference it) {
 						manyToOneJpaAnnotation(it)
 					ENDIF
 					oneReferenceOnDeleteJpaAnnotation(it)
+					batchFetchJpaAnnotation(it)
 				ELSE
 					@javax.persistence.Transient
 				ENDIF
@@ -177,6 +178,16 @@ def String enumJpaAnnotation(Reference it) {
 	'''
 }
 
+def String batchFetchJpaAnnotation(Reference it) {
+	'''
+		IF isJpaProviderEclipseLink() && it.isBatchFetch()
+			@org.eclipse.persistence.annotations.BatchFetch(it.getEclipseLinkBatchFetch())
+		ELSEIF isJpaProviderOpenJpa() && it.isBatchFetch()
+			@org.apache.openjpa.persistence.jdbc.EagerFetchMode(org.apache.openjpa.persistence.jdbc.FetchMode.PARALLEL)
+		ENDIF
+	'''
+}
+
 def String oneToOneJpaAnnotation(Reference it) {
 	'''
 		@javax.persistence.OneToOne(
@@ -357,6 +368,10 @@ def String manyReferenceJpaAnnotations(Reference it) {
 				IF isJpaProviderHibernate() && it.getHibernateFetchType() !== null
 					@org.hibernate.annotations.Fetch(it.getHibernateFetchType())
 				ENDIF
+				IF isJpaProviderHibernate() && it.getBatchSize() !== null
+					@org.hibernate.annotations.BatchSize(size = it.getBatchSize())
+				ENDIF
+				batchFetchJpaAnnotation(it)
 				IF isJpaProviderHibernate() && it.getHibernateCascadeType() !== null
 					@org.hibernate.annotations.Cascade(it.getHibernateCascadeType())
 				ENDIF
@@ -244,6 +244,10 @@ def void persistenceUnitPropertiesDataNucleus(Application it, String unitName, j
 	if (propBase.dbProduct == 'hsqldb-inmemory') {
 		propertyList.put('datanucleus.autoCreateSchema', 'true');
 	}
+	// DataNucleus supports no batch size per reference - fetch the collections of all query results at once
+	if (it.isBatchFetchUsed()) {
+		propertyList.put('datanucleus.rdbms.query.multivaluedFetch', 'exists');
+	}
 	persistenceUnitCachePropertiesDataNucleus(it, unitName, propertyList);
 	persistenceUnitTransactionPropertiesDataNucleus(it, unitName, propertyList);
 }
@@ -300,6 +300,7 @@ def String baseRepositoryMethod(RepositoryOperation it) {
 		ENDIF
 		setCache(it)
 		setEagerColumns(it)
+		setFetchGraph(it)
 		setOrdered(it)
 		FOR parameter : parameters.filter(e | e != pagingParameter)
 			ao.setparameter.name.toFirstUpper()(parameter.name);
@@ -348,6 +349,14 @@ def String setEagerColumns (RepositoryOperation it) {
 	'''
 }
 
+def String setFetchGraph(RepositoryOperation it) {
+	'''
+		IF jpa() && it.hasHint("fetchProfile")
+			ao.setFetchGraph("it.getFetchGraphName()");
+		ENDIF
+	'''
+}
+
 def String setOrdered(RepositoryOperation it) {
 	'''
 		/* JPA2 supports multiple ordering columns, e.g. hint="orderBy=col1 asc, col2 desc" */
@@ -404,6 +413,7 @@ def String genericBaseRepositoryMethod(RepositoryOperation it) {
 			ENDIF
 			setCache(it)
 			setEagerColumns(it)
+			setFetchGraph(it)
 			setOrdered(it)
 			IF it.hasHint("useSingleResult")
 				ao.setUseSingleResult(true);
@@ -422,6 +432,8 @@ def String genericBaseRepositoryMethod(RepositoryOperation it) {
 					return IF !jpa() && it.getTypeName() != "Object"(it.getTypeName().getObjectTypeName()) ENDIFao.getSingleResult();
 				ELSEIF name == "findByConditionStat" 
 					return ao.getColumnStatResult();
+				ELSEIF name == "deleteByCondition" || name == "deleteByIds"
+					return ao.getDeletedCount();
 				ELSE
 					return ao.getResult();
 				ENDIF
@@ -446,10 +458,14 @@ def String pagedGenericBaseRepositoryMethod(RepositoryOperation it) {
 		ENDIF
 		setCache(it)
 		setEagerColumns(it)
+		setFetchGraph(it)
 		setOrdered(it)
 		FOR parameter : parameters.filter(e | e != pagingParameter && e != resultTypeParameter)
 		ao.setparameter.name.toFirstUpper()(parameter.name);
 		ENDFOR
+		IF it.isConcurrentResultCount()
+			startConcurrentResultCount(it)
+		ENDIF
 
 		if (pagingParameter.name.getStartRow() != fw("domain.PagedResult").UNKNOWN
 				&& pagingParameter.name.getRealFetchCount() != fw("domain.PagedResult").UNKNOWN) {
@@ -465,6 +481,12 @@ def String pagedGenericBaseRepositoryMethod(RepositoryOperation it) {
 				List<R> result = ao.getResult();
 			ENDIF
 			calculateMaxPages(it)
+			IF it.isConcurrentResultCount()
+				if (concurrentResultCount != null) {
+					// Not needed if the page was the last one - don't start counting if not started yet
+					concurrentResultCount.cancel(false);
+				}
+			ENDIF
 
 			it.getTypeName() pagedResult = new it.getTypeName()(result
 					, pagingParameter.getStartRow()
@@ -483,6 +505,29 @@ def String pagedGenericBaseRepositoryMethod(RepositoryOperation it) {
 	'''
 }
 
+def String startConcurrentResultCount(RepositoryOperation it) {
+	val pagingParameter = it.getPagingParameter();
+	val resultTypeParameter = it.parameters.findFirst(e | e.name == 'resultType');
+	'''
+		// Count the total number of rows on a separate connection while the requested page is fetched
+		// (within a read-write transaction the rows are counted afterwards on the same connection)
+		java.util.concurrent.Future<Long> concurrentResultCount = null;
+		if (pagingParameter.name.isCountTotal()) {
+			concurrentResultCount = fw("accessimpl.jpa.JpaConcurrentResultCount").execute(() -> {
+				IF it.useGenericAccessStrategy()
+					genericAccessObjectInterface(name)2it.getGenericType() countAo = creategetAccessNormalizedName()(resultTypeParameter === null ? '' : resultTypeParameter.name);
+				ELSE
+					genericAccessObjectInterface(name)it.getGenericType() countAo = creategetAccessNormalizedName()(resultTypeParameter === null ? '' : resultTypeParameter.name);
+				ENDIF
+				FOR parameter : parameters.filter(e | e != pagingParameter && e != resultTypeParameter)
+					countAo.setparameter.name.toFirstUpper()(parameter.name);
+				ENDFOR
+				return countAo;
+			});
+		}
+	'''
+}
+
 def String calculateMaxPages(RepositoryOperation it) {
 	val pagingParameter  = it.getPagingParameter()
 	val countOperationHint = it.getHint("countOperation")
@@ -528,6 +573,9 @@ def String calculateMaxPages(RepositoryOperation it) {
 							ELSEIF param.name == "useSingleResult"true ELSEIF param.name == "parameters"parameters
 							ELSEIF parameters.exists(e|e.name == param.name)param.name ELSEnullENDIFENDFOR)IF countOperation1 === null.size()ENDIF;
 					ENDIF
+					ELSEIF it.isConcurrentResultCount()
+						Long countNumber = concurrentResultCount == null ? null
+							: fw("accessimpl.jpa.JpaConcurrentResultCount").getResultCount(concurrentResultCount);
 					ELSEIF (it.useGenericAccessStrategy())
 						// If you need an alternative way to calculate max pages you could define hint="countOperation=..." or hint="countQuery=..."
 						ao.executeResultCount();
@@ -729,11 +777,19 @@ def String conditionBasedFinderMethod(RepositoryOperation it) {
 			java.util.List<fw("accessapi.ConditionalCriteria")> condition =
 				fw("accessapi.ConditionalCriteriaBuilder").criteriaFor(it.getAggregateRootTypeName().class)
 				    toConditionalCriteria(it.buildConditionalCriteria(), it.getAggregateRootTypeName())
+				    IF it.isReturningProjection()
+				    .readOnly()
+				    ENDIF
+				    IF it.hasHint("scroll")
+				    .scroll()
+				    ENDIF
 				    .build();
 
 			IF collectionType !== null
 				java.util.List<it.getResultTypeName()> result =
-				IF !it.useTupleToObjectMapping()
+				IF it.isReturningProjection()
+					findByCondition(condition, it.getResultTypeName().class);
+				ELSEIF !it.useTupleToObjectMapping()
 					findByCondition(condition
 						IF properties.getBooleanProperty("findByCondition.paging") && pagingParameter === null
 							, PagingParameter.noLimits()).getValues();
@@ -750,7 +806,9 @@ def String conditionBasedFinderMethod(RepositoryOperation it) {
 				ENDIF
 			ELSE
 				it.getResultTypeName() result =
-				IF !it.useTupleToObjectMapping()
+				IF it.isReturningProjection()
+					findByCondition(condition, true, it.getResultTypeName().class);
+				ELSEIF !it.useTupleToObjectMapping()
 						findByCondition(condition, true
 						IF properties.getBooleanProperty("findByCondition.paging") && pagingParameter === null
 							, new PagingParameter.rowAccess(0,1));
@@ -83,6 +83,11 @@ def String resourceBase(Resource it) {
 		
 		it.operations.filter(op | !op.isImplementedInGapClass()).map[resourceMethod(it)].join()
 		
+		IF it.operations.exists(op | op.isStreamingGet())
+			streamingSupport(it)
+			it.operations.filter(op | op.isStreamingGet()).map[resourceStreamingMethod(it)].join()
+		ENDIF
+		
 		it.operations.filter(op | op.isImplementedInGapClass()) .map[resourceAbstractMethod(it)].join()
 		
 		it.operations.filter(e|e.httpMethod == HttpMethod.POST || e.httpMethod == HttpMethod.PUT).map[resourceMethodFromForm(it)].join()
@@ -203,6 +208,9 @@ def String resourceMethod(ResourceOperation it) {
 		ELSE
 			resourceMethodValidation(it)
 			resourceMethodDelegation(it)
+			IF it.isConditionalGet()
+				resourceMethodNotModified(it)
+			ENDIF
 			resourceMethodModelMapResult(it)
 			resourceMethodReturn(it)
 		ENDIF
@@ -212,7 +220,163 @@ def String resourceMethod(ResourceOperation it) {
 
 def String resourceMethodSignature(ResourceOperation it) {
 	'''
-	it.getVisibilityLitteral() IF returnString !== nullStringELSEit.getTypeName()ENDIF name(it.parameters.map[p | annotatedParamTypeAndName(p, it, false)].join(", ")) exceptionTmpl.throwsDecl(it)
+	it.getVisibilityLitteral() IF returnString !== nullStringELSEit.getTypeName()ENDIF name(it.parameters.map[p | annotatedParamTypeAndName(p, it, false)].join(", ")
+		IF it.isConditionalGet()IF !parameters.isEmpty, ENDIForg.springframework.web.context.request.WebRequest webRequestENDIF) exceptionTmpl.throwsDecl(it)
+	'''
+}
+
+/*
+ * Returns 304 (without rendering the result) if the ETag or Last-Modified sent by the client matches the result.
+ */
+def String resourceMethodNotModified(ResourceOperation it) {
+	val etag = delegate.domainObjectType.getETagExpression("result")
+	val lastModified = delegate.domainObjectType.getLastModifiedExpression("result")
+	'''
+		IF etag !== null || lastModified !== null
+			if (result != null && webRequest.checkNotModified(
+				IF etag !== null && lastModified !== nulletag, lastModified
+				ELSEIF etag !== nulletag
+				ELSElastModifiedENDIF)) {
+				return null;
+			}
+		ENDIF
+	'''
+}
+
+/*
+ * The JSON is written with the ObjectMapper of the application (if there is a bean), persistent elements are written
+ * as flat DTOs (attributes and the ids of referenced objects) so that no lazy associations are loaded. With JPA the
+ * persistence context is cleared every streamClearInterval() elements.
+ */
+def String streamingSupport(Resource it) {
+	val streamedTypes = it.operations.filter(op | op.isStreamingGet()).map[delegate.domainObjectType].filterNull
+		.filter[isEntityOrPersistentValueObject()].toSet
+	val persistenceUnit = streamedTypes.map[module.persistenceUnit].findFirst[usePersistenceContextUnitName() && it != "null"]
+	'''
+		private com.fasterxml.jackson.databind.ObjectMapper streamObjectMapper = org.springframework.http.converter.json.Jackson2ObjectMapperBuilder.json().build();
+		IF jpa()
+
+		@org.springframework.beans.factory.annotation.Autowired
+		private org.springframework.transaction.PlatformTransactionManager transactionManager;
+
+		@javax.persistence.PersistenceContextIF persistenceUnit !== null(unitName = "persistenceUnit")ENDIF
+		private javax.persistence.EntityManager entityManager;
+		ENDIF
+
+		/**
+		 * Dependency injection of the ObjectMapper of the application, without it the defaults of Spring MVC are used
+		 */
+		@org.springframework.beans.factory.annotation.Autowired(required = false)
+		protected void setStreamObjectMapper(com.fasterxml.jackson.databind.ObjectMapper streamObjectMapper) {
+			this.streamObjectMapper = streamObjectMapper;
+		}
+
+		protected com.fasterxml.jackson.databind.ObjectMapper streamObjectMapper() {
+			return streamObjectMapper;
+		}
+
+		/**
+		 * Number of elements after which the written elements are flushed to the responseIF jpa() and the
+		 * persistence context is clearedENDIF.
+		 */
+		protected int streamClearInterval() {
+			return 100;
+		}
+
+		/**
+		 * Writes the elements as JSON array while iterating the result, the result isn't serialized into memory. Results
+		 * of scrolling finders are read from the database while writing.
+		 */
+		protected <T> void writeJsonArray(java.io.OutputStream out, java.util.Collection<T> result, StreamElementWriter<? super T> elementWriter) throws java.io.IOException {
+			com.fasterxml.jackson.core.JsonGenerator generator = streamObjectMapper().getFactory().createGenerator(out);
+			try (java.util.stream.Stream<T> stream = result.stream()) {
+				generator.writeStartArray();
+				int count = 0;
+				for (java.util.Iterator<T> iter = stream.iterator(); iter.hasNext();) {
+					elementWriter.write(generator, iter.next());
+					if (++count % streamClearInterval() == 0) {
+						generator.flush();
+						IF jpa()
+						entityManager.clear();
+						ENDIF
+					}
+				}
+				generator.writeEndArray();
+			} finally {
+				generator.close();
+			}
+		}
+
+		protected interface StreamElementWriter<T> {
+			void write(com.fasterxml.jackson.core.JsonGenerator generator, T element) throws java.io.IOException;
+		}
+		FOR type : streamedTypes
+
+			streamJsonWriter(type)
+		ENDFOR
+	'''
+}
+
+def String streamJsonWriter(DomainObject it) {
+	'''
+		/**
+		 * Writes the attributes of the name and the ids of the referenced objects, collections are not written.
+		 */
+		protected void writenameJson(com.fasterxml.jackson.core.JsonGenerator generator, getDomainPackage().name element) throws java.io.IOException {
+			generator.writeStartObject();
+			FOR a : it.getAllAttributes().filter[a | !a.isCollection()]
+				generator.writeObjectField("a.name", element.a.getGetAccessor()());
+			ENDFOR
+			FOR r : it.getAllReferences().filter[r | !r.many]
+				IF r.to.isEntityOrPersistentValueObject() && r.to.getIdAttribute() !== null
+					generator.writeObjectField("r.nameId", element.r.getGetAccessor()() == null ? null : element.r.getGetAccessor()().getId());
+				ELSE
+					generator.writeObjectField("r.name", element.r.getGetAccessor()());
+				ENDIF
+			ENDFOR
+			generator.writeEndObject();
+		}
+	'''
+}
+
+/*
+ * The result is written within a read-only transaction, so that the persistence context of a scrolling finder is
+ * still open while writing.
+ */
+def String resourceStreamingMethod(ResourceOperation it) {
+	val streamParameters = parameters.filter[p | p.type != "ModelMap" && p.type != "Model"]
+	val elementType = delegate.domainObjectType
+	val elementWriter = if (elementType !== null && elementType.isEntityOrPersistentValueObject())
+			"this::write" + elementType.name + "Json"
+		else
+			"(generator, element) -> generator.writeObject(element)"
+	'''
+		/**
+		 * Streams the result of {@link #name} as JSON array.
+		 */
+		@org.springframework.web.bind.annotation.RequestMapping(value = "path", method=org.springframework.web.bind.annotation.RequestMethod.GET, produces = "application/json"
+			IF it.hasHint("params"), params = "it.getHint("params")"ENDIF)
+		it.getVisibilityLitteral() void nameStream(FOR p : streamParametersannotatedParamTypeAndName(p, it, false), ENDFORjavax.servlet.http.HttpServletResponse response) throws java.lang.Exception {
+			IF jpa()
+				org.springframework.transaction.support.DefaultTransactionDefinition definition = new org.springframework.transaction.support.DefaultTransactionDefinition();
+				definition.setReadOnly(true);
+				org.springframework.transaction.TransactionStatus transaction = transactionManager.getTransaction(definition);
+				try {
+					resourceMethodDelegation(it)
+					response.setContentType("application/json");
+					writeJsonArray(response.getOutputStream(), result, elementWriter);
+					transactionManager.commit(transaction);
+				} finally {
+					if (!transaction.isCompleted()) {
+						transactionManager.rollback(transaction);
+					}
+				}
+			ELSE
+				resourceMethodDelegation(it)
+				response.setContentType("application/json");
+				writeJsonArray(response.getOutputStream(), result, elementWriter);
+			ENDIF
+		}
 	'''
 }
 
@@ -100,6 +100,7 @@ def String serviceInterface(Service it) {
 		ENDIF
 
 		it.operations.filter(op | op.isPublicVisibility()).map[interfaceMethod(it)].join
+		it.operations.filter(op | op.isAsync()).map[asyncInterfaceMethod(it)].join
 		
 		serviceInterfaceHook(it)
 
@@ -115,6 +116,16 @@ def String interfaceMethod(ServiceOperation it) {
 	'''
 }
 
+def String asyncInterfaceMethod(ServiceOperation it) {
+	'''
+		/**
+		 * Asynchronous variant of {@link #name}, the returned future is completed exceptionally with the
+		 * exceptions thrown by name.
+		 */
+		public it.getAsyncTypeName() nameAsync(it.parameters.map[e | anotParamTypeAndName(e)].join(","));
+	'''
+}
+
 
 
 def String serviceImplBase(Service it) {
@@ -154,8 +165,12 @@ def String serviceImplBase(Service it) {
 
 		delegateRepositories(it) 
 		delegateServices(it) 
+		IF it.operations.exists(op | op.isAsync())
+			asyncSelfReference(it)
+		ENDIF
 
 		it.operations.filter(op | !op.isImplementedInGapClass()).map[implMethod(it)].join
+		it.operations.filter(op | op.isAsync()).map[asyncImplMethod(it)].join
 
 		serviceHook(it)
 	}
@@ -205,6 +220,29 @@ def String delegateServices(Service it) {
 	'''
 }
 
+/*
+ * The asynchronous variants invoke the operations via the service proxy (instead of this) to apply the transaction
+ * handling and the other advices.
+ */
+def String asyncSelfReference(Service it) {
+	'''
+	@org.springframework.beans.factory.annotation.Autowired
+	@org.springframework.context.annotation.Lazy
+	private it.getServiceapiPackage().name asyncSelf;
+	'''
+}
+
+def String asyncImplMethod(ServiceOperation it) {
+	'''
+	public it.getAsyncTypeName() nameAsync(it.parameters.map[p | paramTypeAndName(p)].join(",")) {
+		return fw("context.AsyncServiceSupport").supplyAsync(() -> IF it.getTypeName() == "void"{
+			asyncSelf.name(FOR parameter : parameters SEPARATOR ", "parameter.nameENDFOR);
+			return null;
+		}ELSEasyncSelf.name(FOR parameter : parameters SEPARATOR ", "parameter.nameENDFOR)ENDIF);
+	}
+	'''
+}
+
 def String serviceImplSubclass(Service it) {
 	fileOutput(javaFileName(it.getServiceimplPackage() + "." + name + "Impl"), OutputSlot.TO_SRC, '''
 	javaHeader()
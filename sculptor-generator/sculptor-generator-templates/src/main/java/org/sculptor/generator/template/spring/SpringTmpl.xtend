@@ -451,7 +451,17 @@ def String interceptor(Application it) {
 		aspectjAutoproxy(it)
 
 		IF jpa()
-			<bean id="jpaFlushEagerAdvice" class="fw("persistence.JpaFlushEagerAdvice")"/>
+			<bean id="jpaFlushEagerAdvice" class="fw("persistence.JpaFlushEagerAdvice")">
+				IF isJpaFlushOutermostOnly()
+					<property name="flushNested" value="false"/>
+				ENDIF
+				IF jpaFlushBatchSize() > 0
+					<property name="batchSize" value="jpaFlushBatchSize()"/>
+				ENDIF
+				IF isJpaFlushDeferred()
+					<property name="deferAutoFlush" value="true"/>
+				ENDIF
+			</bean>
 		ENDIF
 		IF nosql()
 			<bean id="errorHandlingAdvice" class="fw("errorhandling.BasicErrorHandlingAdvice")"/>
@@ -907,6 +917,16 @@ def String entityManagerFactoryTx(Application it, boolean test) {
 		<tx:annotation-driven transaction-manager="txManager" order="1"/>
 	ENDIF
 	persistenceExceptionTranslationPostProcessor(it)
+	IF isConcurrentResultCountUsed()
+		jpaConcurrentResultCountExecutor(it)
+	ENDIF
+	'''
+}
+
+def String jpaConcurrentResultCountExecutor(Application it) {
+	'''
+	<!-- threads of the repository operations counting concurrently, shut down when the context is closed -->
+	<bean id="jpaConcurrentResultCountExecutor" class="fw("accessimpl.jpa.JpaConcurrentResultCountExecutor")"/>
 	'''
 }
 
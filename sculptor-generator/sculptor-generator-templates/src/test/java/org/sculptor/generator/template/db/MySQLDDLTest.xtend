@@ -97,6 +97,39 @@ class MySQLDDLTest extends GeneratorTestBase {
 				"FOREIGN KEY (EXISTSINMEDIA) REFERENCES MEDIA(ID)",
 				");"
 			])
+
+		// Partitioned table
+		assertContainsConsecutiveFragments(ddl,
+			#[
+				"CREATE TABLE LOAN (",
+				"ID BIGINT NOT NULL AUTO_INCREMENT,",
+				"LOANDATE DATE NOT NULL,",
+				"BORROWER VARCHAR(100) NOT NULL,",
+				"PHYSICALMEDIA BIGINT NOT NULL,",
+				"VERSION BIGINT NOT NULL,",
+				"PRIMARY KEY (ID, LOANDATE)",
+				")",
+				"PARTITION BY RANGE COLUMNS (LOANDATE) (",
+				"PARTITION LOAN_START VALUES LESS THAN ('2020-01-01'),",
+				"PARTITION LOAN_20200101 VALUES LESS THAN ('2020-02-01'),",
+				"PARTITION LOAN_20200201 VALUES LESS THAN ('2020-03-01'),",
+				"PARTITION LOAN_20200301 VALUES LESS THAN ('2020-04-01'),",
+				"PARTITION LOAN_MAX VALUES LESS THAN (MAXVALUE)",
+				");"
+			])
+		assertContainsConsecutiveFragments(ddl,
+			#[
+				"-- Reference from Loan.PHYSICALMEDIA to PhysicalMedia",
+				"-- No foreign key constraint, partitioned tables don't support foreign keys"
+			])
+
+		// Indexes for generated finders
+		assertContainsConsecutiveFragments(ddl,
+			#[
+				"-- Index for finder LoanRepository.findByBorrower(borrower, loanDate)",
+				"CREATE INDEX IX_LOAN_BORROWER_LOANDATE",
+				"ON LOAN (BORROWER, LOANDATE);"
+			])
 	}
 
 }
@@ -74,6 +74,39 @@ class OracleDDLTest extends GeneratorTestBase {
 			"	ADD CONSTRAINT UQ_PERSON UNIQUE (SSN_NUMBER, SSN_COUNTRY);"
 		])
 
+		// Partitioned table
+		assertContainsConsecutiveFragments(ddl, #[
+			"CREATE TABLE LOAN (",
+			"ID NUMBER(19) NOT NULL,",
+			"LOANDATE DATE NOT NULL,",
+			"BORROWER VARCHAR2(100) NOT NULL,",
+			"PHYSICALMEDIA NUMBER(19) NOT NULL,",
+			"VERSION NUMBER(19) NOT NULL",
+			")",
+			"PARTITION BY RANGE (LOANDATE)",
+			"INTERVAL (NUMTOYMINTERVAL(1, 'MONTH'))",
+			"(PARTITION LOAN_START VALUES LESS THAN (TO_DATE('2020-01-01', 'YYYY-MM-DD')));"
+		])
+
+		// Local index of partitioned table
+		assertContains(ddl, "CREATE INDEX IX_LOAN_PHYSICALMEDIA ON LOAN (PHYSICALMEDIA) LOCAL;")
+
+		// Indexes for generated finders
+		assertContainsConsecutiveFragments(ddl, #[
+			"-- Index for finder LoanRepository.findByBorrower(borrower, loanDate)",
+			"CREATE INDEX IX_LOAN_BORROWER_LOANDATE",
+			"ON LOAN (BORROWER, LOANDATE) LOCAL;"
+		])
+		assertContainsConsecutiveFragments(ddl, #[
+			"-- Index for finder MediaRepository.findByTitle(title)",
+			"CREATE INDEX IX_MEDIA_TITLE",
+			"ON MEDIA (TITLE);"
+		])
+		assertContains(ddl, "DROP INDEX IX_MEDIA_TITLE;")
+		// Served by foreign key index and unique constraint
+		assertNotContains(ddl, "-- Index for finder LoanRepository.findByPhysicalMedia")
+		assertNotContains(ddl, "-- Index for finder LibraryRepository.findLibraryByName")
+
 	}
 
 }
@@ -0,0 +1,79 @@
+/*
+ * Copyright 2015 The Sculptor Project Team, including the original
+ * author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.sculptor.generator.template.db
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.sculptor.generator.test.GeneratorTestBase
+
+import static org.sculptor.generator.test.GeneratorTestExtensions.*
+
+class PostgreSQLDDLTest extends GeneratorTestBase {
+
+	static val TEST_NAME = "ddl"
+
+	new() {
+		super(TEST_NAME)
+	}
+
+	@BeforeAll
+	def static void setup() {
+		System.setProperty("db.product", "postgresql")
+		runGenerator(TEST_NAME)
+	}
+
+	@Test
+	def void assertDdl() {
+
+		val ddl = getFileText(TO_GEN_RESOURCES + "/dbschema/Library_ddl.sql");
+
+		// Drop table
+		assertContains(ddl, "DROP TABLE PERSON CASCADE;")
+
+		// Partitioned table with range partitions created ahead of time
+		assertContainsConsecutiveFragments(ddl, #[
+			"CREATE TABLE LOAN (",
+			"ID BIGINT NOT NULL,",
+			"LOANDATE TIMESTAMP NOT NULL,",
+			"BORROWER VARCHAR(100) NOT NULL,",
+			"PHYSICALMEDIA BIGINT NOT NULL,",
+			"VERSION BIGINT NOT NULL",
+			")",
+			"PARTITION BY RANGE (LOANDATE);",
+			"CREATE TABLE LOAN_20200101 PARTITION OF LOAN FOR VALUES FROM ('2020-01-01') TO ('2020-02-01');",
+			"CREATE TABLE LOAN_20200201 PARTITION OF LOAN FOR VALUES FROM ('2020-02-01') TO ('2020-03-01');",
+			"CREATE TABLE LOAN_20200301 PARTITION OF LOAN FOR VALUES FROM ('2020-03-01') TO ('2020-04-01');",
+			"CREATE TABLE LOAN_DEFAULT PARTITION OF LOAN DEFAULT;"
+		])
+
+		// Primary key of partitioned table includes the partition key
+		assertContainsConsecutiveFragments(ddl, #[
+			"ALTER TABLE LOAN ADD CONSTRAINT PK_LOAN",
+			"PRIMARY KEY (ID, LOANDATE);"
+		])
+
+		// Foreign keys of a partitioned table to a non-partitioned table are supported
+		assertContainsConsecutiveFragments(ddl, #[
+			"-- Reference from Loan.PHYSICALMEDIA to PhysicalMedia",
+			"ALTER TABLE LOAN ADD CONSTRAINT FK_LOAN_PHYSICALMEDIA"
+		])
+		assertContains(ddl, "CREATE INDEX IX_LOAN_PHYSICALMEDIA ON LOAN (PHYSICALMEDIA);")
+		assertNotContains(ddl, "PARTITION LOAN_START")
+
+	}
+
+}
@@ -41,16 +41,19 @@ class DomainObjectReferenceAnnotationTmplLibraryTest extends XtextTest {
 	var GeneratorModelTestFixtures generatorModelTestFixtures
 
 	var DomainObjectReferenceAnnotationTmpl domainObjectReferenceAnnotationTmpl
+	var DomainObjectAnnotationTmpl domainObjectAnnotationTmpl
 
 	@BeforeEach
 	def void setup() {
 		System.setProperty(Configuration.PROPERTIES_LOCATION_PROPERTY,
 			"generator-tests/library/sculptor-generator.properties")
-		generatorModelTestFixtures.setupInjector(typeof(DomainObjectReferenceAnnotationTmpl))
+		generatorModelTestFixtures.setupInjector(typeof(DomainObjectReferenceAnnotationTmpl),
+			typeof(DomainObjectAnnotationTmpl))
 		generatorModelTestFixtures.setupModel("generator-tests/library/model.btdesign")
 
 		domainObjectReferenceAnnotationTmpl = generatorModelTestFixtures.getProvidedObject(
 			typeof(DomainObjectReferenceAnnotationTmpl))
+		domainObjectAnnotationTmpl = generatorModelTestFixtures.getProvidedObject(typeof(DomainObjectAnnotationTmpl))
 	}
 
 	@AfterEach
@@ -136,5 +139,44 @@ class DomainObjectReferenceAnnotationTmplLibraryTest extends XtextTest {
 		assertContains(code, 'name="FK_EXISTSINMEDIA_MEDIACHARACTER_MEDIACHARACTER"')
 	}
 
+	@Test
+	def void assertBatchSizeInLibraryForReferenceMedia() {
+		val app = generatorModelTestFixtures.app
+		assertNotNull(app)
+
+		val module = app.modules.namedElement("media")
+		assertNotNull(module)
+
+		val library = module.domainObjects.namedElement("Library")
+		val media = library.references.namedElement("media")
+		assertNotNull(media)
+
+		val code = domainObjectReferenceAnnotationTmpl.manyReferenceJpaAnnotations(media)
+		assertNotNull(code)
+		assertContains(code, '@javax.persistence.OneToMany')
+		assertContains(code, '@org.hibernate.annotations.BatchSize(size = 25)')
+		assertNotContains(code, '@org.eclipse.persistence.annotations.BatchFetch')
+	}
+
+	@Test
+	def void assertBatchSizeForPhysicalMedia() {
+		val app = generatorModelTestFixtures.app
+		assertNotNull(app)
+
+		val module = app.modules.namedElement("media")
+		assertNotNull(module)
+
+		val physicalMedia = module.domainObjects.namedElement("PhysicalMedia")
+		assertNotNull(physicalMedia)
+
+		val code = domainObjectAnnotationTmpl.domainObjectAnnotations(physicalMedia)
+		assertNotNull(code)
+		assertContains(code, '@org.hibernate.annotations.BatchSize(size = 10)')
+
+		val library = module.domainObjects.namedElement("Library")
+		assertNotContains(domainObjectAnnotationTmpl.domainObjectAnnotations(library),
+			'@org.hibernate.annotations.BatchSize')
+	}
+
 }
 	
\ No newline at end of file
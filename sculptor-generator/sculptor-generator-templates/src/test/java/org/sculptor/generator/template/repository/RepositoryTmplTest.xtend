@@ -24,6 +24,8 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.^extension.ExtendWith;
 import org.sculptor.dsl.tests.SculptordslInjectorProvider
+import org.sculptor.generator.SculptorGeneratorException
+import org.sculptor.generator.template.domain.DomainObjectAnnotationTmpl
 import org.sculptor.generator.test.GeneratorModelTestFixtures
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -41,7 +43,7 @@ class RepositoryTmplTest extends XtextTest {
 
 	@BeforeEach
 	def void setup() {
-		generatorModelTestFixtures.setupInjector(typeof(RepositoryTmpl))
+		generatorModelTestFixtures.setupInjector(typeof(RepositoryTmpl), typeof(DomainObjectAnnotationTmpl))
 		generatorModelTestFixtures.setupModel("generator-tests/repository/model.btdesign")
 
 		repositoryTmpl = generatorModelTestFixtures.getProvidedObject(typeof(RepositoryTmpl))
@@ -63,4 +65,88 @@ class RepositoryTmplTest extends XtextTest {
 		assertContains(code, 'java.util.Map<org.sculptor.example.foobars.domain.Foo, org.sculptor.example.foobars.domain.Bar> allFooBars()')
 	}
 
+	@Test
+	def void assertFetchProfile() {
+		val app = generatorModelTestFixtures.app
+		val module = app.modules.namedElement("foobars")
+		val purchaseOrder = module.domainObjects.namedElement("PurchaseOrder")
+
+		val domainObjectAnnotationTmpl = generatorModelTestFixtures.getProvidedObject(typeof(DomainObjectAnnotationTmpl))
+		val annotations = domainObjectAnnotationTmpl.namedEntityGraphs(purchaseOrder)
+		assertContains(annotations, '@javax.persistence.NamedEntityGraph(name = "PurchaseOrder.summary", attributeNodes = {@javax.persistence.NamedAttributeNode("customer")})')
+		assertContains(annotations, '@javax.persistence.NamedEntityGraph(name = "PurchaseOrder.details", attributeNodes = {@javax.persistence.NamedAttributeNode("customer"), @javax.persistence.NamedAttributeNode(value = "lines", subgraph = "lines")}, subgraphs = {@javax.persistence.NamedSubgraph(name = "lines", attributeNodes = {@javax.persistence.NamedAttributeNode("product")})})')
+
+		val repository = purchaseOrder.repository
+		assertContains(repositoryTmpl.setFetchGraph(repository.operations.findFirst[name == "findAll"]), 'ao.setFetchGraph("PurchaseOrder.summary");')
+		assertContains(repositoryTmpl.setFetchGraph(repository.operations.findFirst[name == "findByCondition"]), 'ao.setFetchGraph("PurchaseOrder.details");')
+
+		// The access object of findById doesn't support fetch graphs
+		val findById = repository.operations.findFirst[name == "findById"]
+		assertThrows(typeof(SculptorGeneratorException), [repositoryTmpl.setFetchGraph(findById)])
+	}
+
+	@Test
+	def void assertBulkDelete() {
+		val app = generatorModelTestFixtures.app
+		val module = app.modules.namedElement("foobars")
+		val repository = module.domainObjects.namedElement("Product").repository
+
+		val deleteByCondition = repository.operations.findFirst[name == "deleteByCondition"]
+		assertContains(repositoryTmpl.interfaceRepositoryMethod(deleteByCondition),
+			'int deleteByCondition(java.util.List<org.sculptor.framework.accessapi.ConditionalCriteria> condition)')
+		assertContainsConsecutiveFragments(repositoryTmpl.genericBaseRepositoryMethod(deleteByCondition), #[
+			'org.sculptor.framework.accessapi.BulkDeleteAccess<org.sculptor.example.foobars.domain.Product> ao = createDeleteByConditionAccess();',
+			'ao.setCondition(condition);',
+			'ao.execute();',
+			'return ao.getDeletedCount();'
+		])
+
+		val deleteByIds = repository.operations.findFirst[name == "deleteByIds"]
+		assertContainsConsecutiveFragments(repositoryTmpl.genericBaseRepositoryMethod(deleteByIds), #[
+			'int deleteByIds(java.util.Collection<?> ids)',
+			'ao.setIds(ids);',
+			'ao.execute();',
+			'return ao.getDeletedCount();'
+		])
+	}
+
+	@Test
+	def void assertProjection() {
+		val app = generatorModelTestFixtures.app
+		val module = app.modules.namedElement("foobars")
+		val customerSummary = module.domainObjects.namedElement("CustomerSummary")
+		assertFalse(customerSummary.attributes.exists[changeable])
+
+		val repository = module.domainObjects.namedElement("Customer").repository
+		val code = repositoryTmpl.finderMethod(repository.operations.findFirst[name == "findCustomerSummaries"])
+		assertContainsConsecutiveFragments(code, #[
+			'.select(',
+			'.select(',
+			'.readOnly()',
+			'.build();'
+		])
+		assertContains(code, 'findByCondition(condition, org.sculptor.example.foobars.domain.CustomerSummary.class);')
+		assertNotContains(code, 'mapTupleToObject')
+	}
+
+	@Test
+	def void assertConcurrentResultCount() {
+		val app = generatorModelTestFixtures.app
+		val module = app.modules.namedElement("foobars")
+
+		val repository = module.domainObjects.namedElement("Product").repository
+		val code = repositoryTmpl.pagedGenericBaseRepositoryMethod(repository.operations.findFirst[name == "findAll"])
+		assertContainsConsecutiveFragments(code, #[
+			'concurrentResultCount = org.sculptor.framework.accessimpl.jpa.JpaConcurrentResultCount.execute(() -> {',
+			'countAo = createFindAllAccess();',
+			'return countAo;',
+			'});',
+			'ao.execute();',
+			'org.sculptor.framework.accessimpl.jpa.JpaConcurrentResultCount.getResultCount(concurrentResultCount);',
+			'concurrentResultCount.cancel(false);',
+			'return pagedResult;'
+		])
+		assertNotContains(code, 'ao.executeResultCount();')
+	}
+
 }
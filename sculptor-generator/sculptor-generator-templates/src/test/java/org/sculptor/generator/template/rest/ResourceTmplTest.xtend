@@ -43,4 +43,46 @@ class ResourceTmplTest extends GeneratorTestBase {
 				'org.helloworld.milkyway.domain.Planet.class.getSimpleName(), Long.valueOf(text));'])
 	}
 
+	@Test
+	def void assertStreamingGet() {
+		val code = getFileText(TO_GEN_SRC + "/org/helloworld/milkyway/rest/PlanetResourceBase.java");
+		assertContainsConsecutiveFragments(code, #[
+			'@org.springframework.web.bind.annotation.RequestMapping(value = "/planet", method=org.springframework.web.bind.annotation.RequestMethod.GET, produces = "application/json")',
+			'public void showAllStream(javax.servlet.http.HttpServletResponse response) throws java.lang.Exception {'
+		])
+		assertContains(code, 'writeJsonArray(response.getOutputStream(), result, this::writePlanetJson);')
+		assertContains(code, 'protected <T> void writeJsonArray(java.io.OutputStream out, java.util.Collection<T> result, StreamElementWriter<? super T> elementWriter) throws java.io.IOException {')
+	}
+
+	@Test
+	def void assertStreamingWritesFlatDtos() {
+		val code = getFileText(TO_GEN_SRC + "/org/helloworld/milkyway/rest/PlanetResourceBase.java");
+		assertContains(code, 'protected void setStreamObjectMapper(com.fasterxml.jackson.databind.ObjectMapper streamObjectMapper) {')
+		assertNotContains(code, 'new com.fasterxml.jackson.databind.ObjectMapper()')
+		assertContainsConsecutiveFragments(code, #[
+			'protected void writePlanetJson(com.fasterxml.jackson.core.JsonGenerator generator, org.helloworld.milkyway.domain.Planet element) throws java.io.IOException {',
+			'generator.writeStartObject();'
+		])
+		assertContains(code, 'generator.writeObjectField("name", element.getName());')
+		assertContains(code, 'generator.writeObjectField("diameter", element.getDiameter());')
+		assertContainsConsecutiveFragments(code, #[
+			'if (++count % streamClearInterval() == 0) {',
+			'generator.flush();',
+			'entityManager.clear();',
+			'}'
+		])
+	}
+
+	@Test
+	def void assertConditionalGet() {
+		val code = getFileText(TO_GEN_SRC + "/org/helloworld/milkyway/rest/PlanetResourceBase.java");
+		assertContains(code, 'org.springframework.web.context.request.WebRequest webRequest)')
+		assertContainsConsecutiveFragments(code, #[
+			'if (result != null && webRequest.checkNotModified(String.valueOf(result.getVersion())',
+			'return null;',
+			'}'
+		])
+		assertNotContains(code, 'showAll(org.springframework.ui.ModelMap modelMap, org.springframework.web.context.request.WebRequest webRequest)')
+	}
+
 }
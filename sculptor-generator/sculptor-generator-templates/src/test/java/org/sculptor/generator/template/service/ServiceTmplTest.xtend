@@ -79,4 +79,26 @@ class ServiceTmplTest extends XtextTest {
 		assertContains(code, "private org.sculptor.example.library.media.domain.LibraryRepository libraryRepository;")
 	}
 
+	@Test
+	def void assertAsyncMethods() {
+		val app = generatorModelTestFixtures.app
+		assertNotNull(app)
+
+		val module = app.modules.namedElement("media")
+		assertNotNull(module)
+
+		val service = module.services.namedElement("MediaService")
+		assertNotNull(service)
+
+		val operation = service.operations.namedElement("findAll")
+		assertNotNull(operation)
+
+		val interfaceCode = serviceTmpl.asyncInterfaceMethod(operation)
+		assertContains(interfaceCode, "public java.util.concurrent.CompletableFuture<java.util.List<")
+		assertContains(interfaceCode, "> findAllAsync(")
+
+		val code = serviceTmpl.asyncImplMethod(operation)
+		assertContains(code, "return org.sculptor.framework.context.AsyncServiceSupport.supplyAsync(() -> asyncSelf.findAll(")
+	}
+
 }
@@ -53,4 +53,25 @@ class SpringTmplTest extends GeneratorTestBase {
 		assertNotContains(text, 'PropertySourcesPlaceholderConfigurer')
 	}
 
+	@Test
+	def void assertJpaFlushEagerAdvice() {
+		val text = getFileText(TO_GEN_RESOURCES + "/Interceptor.xml")
+		assertContainsConsecutiveFragments(text, #[
+			'<bean id="jpaFlushEagerAdvice" class="org.sculptor.framework.persistence.JpaFlushEagerAdvice">',
+			'<property name="flushNested" value="false"/>',
+			'<property name="batchSize" value="100"/>',
+			'</bean>'
+		])
+		assertNotContains(text, 'deferAutoFlush')
+	}
+
+	@Test
+	def void assertJpaConcurrentResultCountExecutor() {
+		val text = getFileText(TO_GEN_RESOURCES + "/EntityManagerFactory.xml")
+		assertContains(text,
+			'<bean id="jpaConcurrentResultCountExecutor" class="org.sculptor.framework.accessimpl.jpa.JpaConcurrentResultCountExecutor"/>')
+		val testText = getFileText(TO_GEN_RESOURCES_TEST + "/EntityManagerFactory-test.xml")
+		assertContains(testText, 'jpaConcurrentResultCountExecutor')
+	}
+
 }
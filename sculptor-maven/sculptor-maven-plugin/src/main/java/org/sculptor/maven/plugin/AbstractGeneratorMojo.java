@@ -362,9 +362,13 @@ public abstract class AbstractGeneratorMojo extends AbstractMojo {
 	/**
 	 * Returns a hex representation of the MD5 checksum from given file.
 	 */
-	private String calculateChecksum(File file) throws IOException {
+	protected String calculateChecksum(File file) throws IOException {
 		InputStream is = new FileInputStream(file);
-		return DigestUtils.md5Hex(is);
+		try {
+			return DigestUtils.md5Hex(is);
+		} finally {
+			is.close();
+		}
 	}
 
 }
@@ -17,6 +17,7 @@
 package org.sculptor.maven.plugin;
 
 import java.io.File;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.net.MalformedURLException;
 import java.net.URL;
@@ -32,6 +33,9 @@ import java.util.List;
 import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.maven.execution.MavenSession;
 import org.apache.maven.model.FileSet;
@@ -47,6 +51,7 @@ import org.sculptor.generator.SculptorGeneratorIssue;
 import org.sculptor.generator.SculptorGeneratorResult;
 import org.sculptor.generator.SculptorGeneratorResult.Status;
 import org.sculptor.generator.SculptorGeneratorRunner;
+import org.sculptor.generator.chain.GeneratorProfiler;
 import org.sonatype.plexus.build.incremental.BuildContext;
 
 /**
@@ -61,6 +66,9 @@ public class GeneratorMojo extends AbstractGeneratorMojo {
 
 	protected static final String OUTPUT_SLOT_PATH_PREFIX = "outputSlot.path.";
 
+	protected static final String FORMATTER_CACHE_DIR_PROPERTY = "java.codeformatter.cache.dir";
+	protected static final String MODEL_CACHE_DIR_PROPERTY = "generator.model.cache.dir";
+
 	/**
 	 * The current build session instance. This is used for toolchain manager
 	 * API calls.
@@ -80,6 +88,27 @@ public class GeneratorMojo extends AbstractGeneratorMojo {
 	@Parameter(defaultValue = "src/main/resources/model.btdesign", required = true)
 	private String model;
 
+	/**
+	 * Relative paths of additional model files. The code for all model files
+	 * (including <code>model</code>) is generated concurrently.
+	 */
+	@Parameter
+	private String[] models;
+
+	/**
+	 * Maximum number of model files the code is generated for concurrently. A
+	 * value of <code>0</code> uses the number of available processors.
+	 * <p>
+	 * The limit applies to each execution of this goal, the threads are
+	 * created for the execution and stopped when it's finished.
+	 * <p>
+	 * Can be set from command line using '-Dsculptor.generator.threads=...'.
+	 */
+	@Parameter(property = "sculptor.generator.threads", defaultValue = "0")
+	private int threads;
+
+	private static final AtomicInteger generatorThreadNumber = new AtomicInteger(1);
+
 	/**
 	 * A <code>java.util.List</code> of {@link FileSet}s that will be checked on
 	 * up-to-date. If all resources are up-to-date the plugin stops the
@@ -135,6 +164,54 @@ public class GeneratorMojo extends AbstractGeneratorMojo {
 	@Parameter
 	private Map<String, String> properties;
 
+	/**
+	 * Directory used by the Java code formatter to cache the formatted code
+	 * between generator runs. Generated Java code which hasn't changed since
+	 * the previous generator run is not formatted again.
+	 * <p>
+	 * Can be set from command line using
+	 * '-Dsculptor.generator.formatterCacheDir=...'.
+	 */
+	@Parameter(property = "sculptor.generator.formatterCacheDir", defaultValue = "${project.build.directory}/sculptor-formatter-cache")
+	private File formatterCacheDir;
+
+	/**
+	 * Directory used to cache the parsed and linked resources of the DSL
+	 * model between generator runs. Model files which haven't changed since
+	 * the previous generator run (e.g. imported model libraries) are not
+	 * parsed and validated again.
+	 * <p>
+	 * Can be set from command line using
+	 * '-Dsculptor.generator.modelCacheDir=...'.
+	 */
+	@Parameter(property = "sculptor.generator.modelCacheDir", defaultValue = "${project.build.directory}/sculptor-model-cache")
+	private File modelCacheDir;
+
+	/**
+	 * Profile the code generator. The number of calls and the time spent in
+	 * every template method, in the Java code formatter and in writing the
+	 * generated files is logged as summary table and written in the folded
+	 * stacks format (for creating flame graphs) to <code>profileFile</code>.
+	 * <p>
+	 * Can be set from command line using '-Dsculptor.generator.profile=true'.
+	 */
+	@Parameter(property = "sculptor.generator.profile", defaultValue = "false")
+	private boolean profile;
+
+	/**
+	 * File the folded call stacks of the profiled code generator are written
+	 * to.
+	 */
+	@Parameter(defaultValue = "${project.build.directory}/sculptor-generator-profile.folded")
+	private File profileFile;
+
+	/**
+	 * Number of entries (with highest exclusive time) shown in the summary
+	 * table of the profiled code generator.
+	 */
+	@Parameter(defaultValue = "30")
+	private int profileSummarySize;
+
 	/**
 	 * Returns <code>model</code> file.
 	 */
@@ -142,6 +219,21 @@ public class GeneratorMojo extends AbstractGeneratorMojo {
 		return new File(project.getBasedir(), model);
 	}
 
+	/**
+	 * Returns <code>model</code> file followed by the <code>models</code>
+	 * files.
+	 */
+	protected List<File> getModelFiles() {
+		List<File> modelFiles = new ArrayList<File>();
+		modelFiles.add(getModelFile());
+		if (models != null) {
+			for (String additionalModel : models) {
+				modelFiles.add(new File(project.getBasedir(), additionalModel));
+			}
+		}
+		return modelFiles;
+	}
+
 	/**
 	 * Check if the execution should be skipped.
 	 * 
@@ -193,11 +285,20 @@ public class GeneratorMojo extends AbstractGeneratorMojo {
 			return;
 		}
 
-		// Check model file
+		// Check model files
 		File modelFile = getModelFile();
 		if (!modelFile.exists() || !modelFile.isFile()) {
 			throw new MojoExecutionException("Model file '" + model + "' specified in <model/> does not exists");
 		}
+		if (models != null) {
+			for (String additionalModel : models) {
+				File additionalModelFile = new File(project.getBasedir(), additionalModel);
+				if (!additionalModelFile.exists() || !additionalModelFile.isFile()) {
+					throw new MojoExecutionException("Model file '" + additionalModel
+							+ "' specified in <models/> does not exists");
+				}
+			}
+		}
 
 		// If not forced flag set the check for modified source files
 		Set<String> changedFiles;
@@ -423,6 +524,18 @@ public class GeneratorMojo extends AbstractGeneratorMojo {
 			}
 		}
 
+		// Set property with directory of Java code formatter cache (if not
+		// defined in the plugins properties)
+		if (formatterCacheDir != null && !generatorProperties.containsKey(FORMATTER_CACHE_DIR_PROPERTY)) {
+			generatorProperties.setProperty(FORMATTER_CACHE_DIR_PROPERTY, formatterCacheDir.toString());
+		}
+
+		// Set property with directory of model cache (if not defined in the
+		// plugins properties)
+		if (modelCacheDir != null && !generatorProperties.containsKey(MODEL_CACHE_DIR_PROPERTY)) {
+			generatorProperties.setProperty(MODEL_CACHE_DIR_PROPERTY, modelCacheDir.toString());
+		}
+
 		// Set properties with output slot paths
 		generatorProperties.setProperty(OUTPUT_SLOT_PATH_PREFIX + "TO_SRC", outletSrcOnceDir.toString());
 		generatorProperties.setProperty(OUTPUT_SLOT_PATH_PREFIX + "TO_RESOURCES", outletResOnceDir.toString());
@@ -471,29 +584,110 @@ public class GeneratorMojo extends AbstractGeneratorMojo {
 	}
 
 	protected List<File> doRunGenerator(Properties generatorProperties) {
-		SculptorGeneratorResult result = SculptorGeneratorRunner.run(getModelFile(), generatorProperties);
-
-		// Log all issues occured during workflow execution
-		for (SculptorGeneratorIssue issue : result.getIssues()) {
-			switch (issue.getSeverity()) {
-				case ERROR :
-					if (issue.getThrowable() != null) {
-						getLog().error(issue.getMessage(), issue.getThrowable());
-					} else {
-						getLog().error(issue.getMessage());
-					}
-					break;
-				case WARNING :
-					getLog().warn(issue.getMessage());
-					break;
-				case INFO :
-					getLog().info(issue.getMessage());
-					break;
+		List<File> modelFiles = getModelFiles();
+		Map<File, SculptorGeneratorResult> results;
+		ExecutorService executor = createGeneratorExecutor(threads, modelFiles.size());
+		try {
+			if (profile) {
+
+				// Every execution of the goal uses its own profiler - concurrent
+				// executions of a parallel build don't interfere
+				GeneratorProfiler profiler = new GeneratorProfiler();
+				profiler.activate();
+				try {
+					results = SculptorGeneratorRunner.run(modelFiles, generatorProperties, executor);
+				} finally {
+					profiler.deactivate();
+				}
+				reportProfile(profiler);
+			} else {
+				results = SculptorGeneratorRunner.run(modelFiles, generatorProperties, executor);
+			}
+		} finally {
+			executor.shutdown();
+		}
+
+		// Log all issues occured during workflow executions (prefixed with the
+		// model file if there are multiple model files)
+		List<File> generatedFiles = new ArrayList<File>();
+		List<String> failedModels = new ArrayList<String>();
+		for (Map.Entry<File, SculptorGeneratorResult> entry : results.entrySet()) {
+			String prefix = (results.size() > 1 ? "[" + getProjectRelativePath(entry.getKey()) + "] " : "");
+			SculptorGeneratorResult result = entry.getValue();
+			for (SculptorGeneratorIssue issue : result.getIssues()) {
+				switch (issue.getSeverity()) {
+					case ERROR :
+						if (issue.getThrowable() != null) {
+							getLog().error(prefix + issue.getMessage(), issue.getThrowable());
+						} else {
+							getLog().error(prefix + issue.getMessage());
+						}
+						break;
+					case WARNING :
+						getLog().warn(prefix + issue.getMessage());
+						break;
+					case INFO :
+						getLog().info(prefix + issue.getMessage());
+						break;
+				}
+			}
+			if (result.getStatus() == Status.SUCCESS) {
+				generatedFiles.addAll(result.getGeneratedFiles());
+			} else {
+				failedModels.add(getProjectRelativePath(entry.getKey()));
 			}
 		}
 
 		// Abort build on error
-		return (result.getStatus() == Status.SUCCESS ? result.getGeneratedFiles() : null);
+		if (!failedModels.isEmpty()) {
+			if (results.size() > 1) {
+				getLog().error("Code generator failed for " + failedModels.size() + " of " + results.size()
+						+ " model files: " + toCommaSeparatedString(failedModels));
+			}
+			return null;
+		}
+		return generatedFiles;
+	}
+
+	/**
+	 * Creates the executor used for running the code generator for the model
+	 * files of one execution of this goal. The caller shuts it down when the
+	 * code is generated, so changed settings are used by the next execution
+	 * within the same JVM (e.g. Maven daemon or IDE builder).
+	 */
+	protected static ExecutorService createGeneratorExecutor(int threads, int modelFileCount) {
+		int poolSize = (threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+		poolSize = Math.max(1, Math.min(poolSize, modelFileCount));
+		return Executors.newFixedThreadPool(poolSize, runnable -> {
+			Thread thread = new Thread(runnable, "sculptor-generator-" + generatorThreadNumber.getAndIncrement());
+			thread.setDaemon(true);
+			return thread;
+		});
+	}
+
+	/**
+	 * Logs the summary table of the profiled code generator and writes the
+	 * folded call stacks to <code>profileFile</code>.
+	 */
+	protected void reportProfile(GeneratorProfiler profiler) {
+		getLog().info("Code generator profile:");
+		for (String line : profiler.getSummary(profileSummarySize)) {
+			getLog().info(line);
+		}
+		if (profileFile != null) {
+			try {
+				profileFile.getParentFile().mkdirs();
+				FileWriter writer = new FileWriter(profileFile);
+				try {
+					profiler.writeFoldedStacks(writer);
+				} finally {
+					writer.close();
+				}
+				getLog().info("Folded call stacks written to '" + getProjectRelativePath(profileFile) + "'");
+			} catch (IOException e) {
+				getLog().warn("Writing profile file failed: " + e.getMessage());
+			}
+		}
 	}
 
 	public void extendPluginClasspath(List<Object> classpathEntries) throws MojoExecutionException {
@@ -17,14 +17,25 @@
 package org.sculptor.maven.plugin;
 
 import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
 import java.io.IOException;
 import java.text.MessageFormat;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.exec.CommandLine;
 import org.apache.commons.exec.DefaultExecutor;
 import org.apache.commons.exec.ExecuteException;
+import org.apache.commons.exec.ExecuteWatchdog;
 import org.apache.commons.exec.Executor;
 import org.apache.commons.exec.PumpStreamHandler;
 import org.apache.maven.plugin.MojoExecutionException;
@@ -40,6 +51,11 @@ import org.apache.maven.plugins.annotations.Parameter;
  * href="http://www.graphviz.org/">Graphviz</a> to generate images (PNG format)
  * for all graph files (<code>src/generated/resources/*.dot</code>) created
  * during the previous run of the Sculptor code generator.
+ * <p>
+ * The checksums of the dot files the images are created from are kept in the
+ * <code>imageStatusFile</code>. Only images of changed dot files are
+ * recreated. The images are created concurrently - with a separate
+ * <code>dot</code> process per dot file.
  */
 @Mojo(name = "generate-images", defaultPhase = LifecyclePhase.GENERATE_RESOURCES, threadSafe = true)
 public class GraphvizMojo extends AbstractGeneratorMojo {
@@ -64,6 +80,31 @@ public class GraphvizMojo extends AbstractGeneratorMojo {
 	@Parameter(property = "sculptor.graphviz.skip", defaultValue = "false")
 	private boolean skip;
 
+	/**
+	 * File holding the checksums of the dot files used for the last image
+	 * generation.
+	 */
+	@Parameter(defaultValue = ".sculptor-graphviz-status")
+	private File imageStatusFile;
+
+	/**
+	 * Maximum number of concurrently running <code>dot</code> processes. A
+	 * value of <code>0</code> uses the number of available processors.
+	 * <p>
+	 * Can be set from command line using '-Dsculptor.graphviz.threads=...'.
+	 */
+	@Parameter(property = "sculptor.graphviz.threads", defaultValue = "0")
+	private int threads;
+
+	/**
+	 * Timeout (in seconds) for creating the image of a single dot file. A
+	 * value of <code>0</code> disables the timeout.
+	 * <p>
+	 * Can be set from command line using '-Dsculptor.graphviz.timeout=...'.
+	 */
+	@Parameter(property = "sculptor.graphviz.timeout", defaultValue = "300")
+	private int timeout;
+
 	/**
 	 * Check if the execution should be skipped.
 	 * 
@@ -115,7 +156,10 @@ public class GraphvizMojo extends AbstractGeneratorMojo {
 			return null;
 		}
 
-		// Check if images for generated dot files are missing or outdated
+		// Check if images for generated dot files are missing or outdated -
+		// via the checksum of the dot file used for the previous image
+		// generation (if available) or the timestamps
+		Properties imageStatus = getImageStatusProperties();
 		Set<String> changedDotFiles = new HashSet<String>();
 		for (String generatedFile : generatedFiles) {
 			if (generatedFile.endsWith(".dot")) {
@@ -123,8 +167,14 @@ public class GraphvizMojo extends AbstractGeneratorMojo {
 						generatedFile);
 				File imageFile = new File(getProject().getBasedir(),
 						generatedFile + ".png");
-				if (!imageFile.exists()
-						|| imageFile.lastModified() < dotFile.lastModified()) {
+				String checksum = imageStatus.getProperty(generatedFile);
+				if (!imageFile.exists()) {
+					changedDotFiles.add(generatedFile);
+				} else if (checksum != null) {
+					if (!checksum.equals(getChecksum(dotFile))) {
+						changedDotFiles.add(generatedFile);
+					}
+				} else if (imageFile.lastModified() < dotFile.lastModified()) {
 					changedDotFiles.add(generatedFile);
 				}
 			}
@@ -152,7 +202,9 @@ public class GraphvizMojo extends AbstractGeneratorMojo {
 	}
 
 	/**
-	 * Executes the command line tool <code>dot</code>.
+	 * Executes the command line tool <code>dot</code> concurrently for each of
+	 * the given dot files and updates the checksums of the successfully
+	 * processed dot files in the <code>imageStatusFile</code>.
 	 * 
 	 * @param dotFiles
 	 *            list of dot files from the
@@ -160,28 +212,139 @@ public class GraphvizMojo extends AbstractGeneratorMojo {
 	 */
 	protected boolean executeDot(Set<String> dotFiles)
 			throws MojoExecutionException {
+		int poolSize = Math.max(1, Math.min(dotFiles.size(),
+				threads > 0 ? threads : Runtime.getRuntime()
+						.availableProcessors()));
+		ExecutorService executor = Executors.newFixedThreadPool(poolSize);
+		try {
+			Map<String, Future<Boolean>> results = new LinkedHashMap<String, Future<Boolean>>();
+			for (String dotFile : dotFiles) {
+				final CommandLine commandLine = getDotCommandLine(Collections
+						.singleton(dotFile));
+				results.put(dotFile,
+						executor.submit(() -> executeDot(commandLine)));
+			}
+
+			// Wait for all dot processes and remember the checksums of the
+			// successfully processed dot files
+			Properties imageStatus = getImageStatusProperties();
+			boolean success = true;
+			for (Map.Entry<String, Future<Boolean>> result : results
+					.entrySet()) {
+				String dotFile = result.getKey();
+				try {
+					if (result.getValue().get()) {
+						String checksum = getChecksum(new File(getProject()
+								.getBasedir(), dotFile));
+						if (checksum != null) {
+							imageStatus.setProperty(dotFile, checksum);
+						}
+						continue;
+					}
+				} catch (ExecutionException e) {
+					getLog().error(e.getCause());
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new MojoExecutionException(
+							"Interrupted while creating images", e);
+				}
+				getLog().error("Creating image for '" + dotFile + "' failed");
+				imageStatus.remove(dotFile);
+				success = false;
+			}
+			updateImageStatusFile(imageStatus);
+			return success;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * Executes the given command line within the projects base directory and
+	 * checks the return code. The process is killed if it doesn't finish
+	 * within the <code>timeout</code>.
+	 */
+	protected boolean executeDot(CommandLine commandLine) {
 
 		// Build executor for projects base directory
 		MavenLogOutputStream stdout = getStdoutStream();
 		MavenLogOutputStream stderr = getStderrStream();
 		Executor exec = getExecutor();
 		exec.setWorkingDirectory(project.getBasedir());
-		exec.setStreamHandler(new PumpStreamHandler(stdout, stderr, System.in));
+		exec.setStreamHandler(new PumpStreamHandler(stdout, stderr));
+		ExecuteWatchdog watchdog = null;
+		if (timeout > 0) {
+			watchdog = new ExecuteWatchdog(timeout * 1000L);
+			exec.setWatchdog(watchdog);
+		}
 
 		// Execute commandline and check return code
 		try {
-			int exitValue = exec.execute(getDotCommandLine(dotFiles));
+			int exitValue = exec.execute(commandLine);
 			if (exitValue == 0 && stdout.getErrorCount() == 0) {
 				return true;
 			}
 		} catch (ExecuteException e) {
-			// ignore
+			if (watchdog != null && watchdog.killedProcess()) {
+				getLog().error(
+						"Command '" + commandLine + "' killed after "
+								+ timeout + " seconds");
+			}
 		} catch (IOException e) {
 			// ignore
 		}
 		return false;
 	}
 
+	/**
+	 * Returns the checksums of the dot files from the
+	 * <code>imageStatusFile</code> (empty if no file exists).
+	 */
+	protected Properties getImageStatusProperties() {
+		Properties imageStatus = new Properties();
+		if (imageStatusFile != null && imageStatusFile.exists()) {
+			try {
+				FileReader reader = new FileReader(imageStatusFile);
+				try {
+					imageStatus.load(reader);
+				} finally {
+					reader.close();
+				}
+			} catch (IOException e) {
+				getLog().warn(
+						"Reading image status file failed: " + e.getMessage());
+			}
+		}
+		return imageStatus;
+	}
+
+	private void updateImageStatusFile(Properties imageStatus) {
+		if (imageStatusFile != null) {
+			try {
+				FileWriter writer = new FileWriter(imageStatusFile);
+				try {
+					imageStatus.store(writer, "Sculptor created images for "
+							+ "the following " + imageStatus.size()
+							+ " dot files");
+				} finally {
+					writer.close();
+				}
+			} catch (IOException e) {
+				getLog().warn(
+						"Updating image status file failed: " + e.getMessage());
+			}
+		}
+	}
+
+	private String getChecksum(File dotFile) {
+		try {
+			return calculateChecksum(dotFile);
+		} catch (IOException e) {
+			getLog().warn("Checksum calculation failed: " + e.getMessage());
+			return null;
+		}
+	}
+
 	/**
 	 * Returns {@link MavenLogOutputStream} implementation for stdout.
 	 * <p>
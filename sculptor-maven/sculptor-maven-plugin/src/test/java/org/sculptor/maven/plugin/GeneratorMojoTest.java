@@ -34,6 +34,7 @@ import java.util.Set;
 
 import junit.framework.AssertionFailedError;
 
+import org.apache.maven.plugin.MojoExecutionException;
 import org.apache.maven.project.MavenProject;
 import org.mockito.ArgumentCaptor;
 
@@ -106,6 +107,29 @@ public class GeneratorMojoTest extends AbstractGeneratorMojoTestCase<GeneratorMo
 		assertEquals("7d436134142a2e69dfc98eb9f22f5907", statusFileProps.getProperty(GENERATED_FILE));
 	}
 
+	public void testModelFiles() throws Exception {
+		GeneratorMojo mojo = createMojo(createProject("test2"));
+		setVariableValueToObject(mojo, "models", new String[] { "src/main/resources/model-test.btdesign" });
+
+		List<File> modelFiles = mojo.getModelFiles();
+		assertEquals(2, modelFiles.size());
+		assertEquals(mojo.getModelFile(), modelFiles.get(0));
+		assertEquals(new File(mojo.getProject().getBasedir(), "src/main/resources/model-test.btdesign"),
+				modelFiles.get(1));
+	}
+
+	public void testExecuteMissingModelFile() throws Exception {
+		GeneratorMojo mojo = createMojo(createProject("test2"));
+		setVariableValueToObject(mojo, "models", new String[] { "src/main/resources/missing.btdesign" });
+		try {
+			mojo.execute();
+		} catch (MojoExecutionException e) {
+			assertTrue(e.getMessage().contains("missing.btdesign"));
+			return;
+		}
+		fail();
+	}
+
 	public void testExecuteSkip() throws Exception {
 		GeneratorMojo mojo = createMojo(createProject("test1"));
 		doThrow(AssertionFailedError.class).when(mojo).executeGenerator();
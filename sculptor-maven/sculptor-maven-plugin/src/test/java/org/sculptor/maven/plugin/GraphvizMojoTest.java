@@ -21,7 +21,9 @@ import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.spy;
 
 import java.io.File;
+import java.io.FileWriter;
 import java.util.LinkedHashSet;
+import java.util.Properties;
 import java.util.Set;
 
 import junit.framework.AssertionFailedError;
@@ -60,6 +62,30 @@ public class GraphvizMojoTest extends
 		assertEquals(2, changedDotFiles.size());
 	}
 
+	public void testChangedDotFilesUnchangedChecksum() throws Exception {
+		GraphvizMojo mojo = createMojo(createProject("test2"));
+		File dotFile = new File(mojo.getProject().getBasedir(), GENERATED_FILE);
+		dotFile.setLastModified(System.currentTimeMillis() + 1000);
+
+		// Image of regenerated but unchanged dot file is not recreated
+		File imageStatusFile = File.createTempFile("sculptor-graphviz-status", null);
+		imageStatusFile.deleteOnExit();
+		Properties imageStatus = new Properties();
+		imageStatus.setProperty(GENERATED_FILE, mojo.calculateChecksum(dotFile));
+		FileWriter writer = new FileWriter(imageStatusFile);
+		try {
+			imageStatus.store(writer, null);
+		} finally {
+			writer.close();
+		}
+		setVariableValueToObject(mojo, "imageStatusFile", imageStatusFile);
+
+		Set<String> changedDotFiles = mojo.getChangedDotFiles();
+		assertNotNull(changedDotFiles);
+		assertEquals(2, changedDotFiles.size());
+		assertFalse(changedDotFiles.contains(GENERATED_FILE));
+	}
+
 	public void testDotCommandLine() throws Exception {
 		GraphvizMojo mojo = createMojo(createProject("test1"));
 		setVariableValueToObject(mojo, "verbose", false);